@@ -73,6 +73,7 @@ import org.apache.openejb.config.NewLoaderLogic;
 import org.apache.openejb.config.QuickJarsTxtParser;
 import org.apache.openejb.config.TldScanner;
 import org.apache.openejb.core.ConnectorReference;
+import org.apache.openejb.core.LazyDeployment;
 import org.apache.openejb.core.CoreContainerSystem;
 import org.apache.openejb.core.CoreUserTransaction;
 import org.apache.openejb.core.JndiFactory;
@@ -110,6 +111,7 @@ import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.monitoring.DynamicMBeanWrapper;
 import org.apache.openejb.monitoring.LocalMBeanServer;
 import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.monitoring.StartupProfiler;
 import org.apache.openejb.monitoring.remote.RemoteResourceMonitor;
 import org.apache.openejb.observer.Observes;
 import org.apache.openejb.persistence.JtaEntityManagerRegistry;
@@ -757,7 +759,13 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
         return createApplication(appInfo, classLoader, true);
     }
 
-    private AppContext createApplication(final AppInfo appInfo, ClassLoader classLoader, final boolean start) throws OpenEJBException, IOException, NamingException {
+    private AppContext createApplication(final AppInfo appInfo, final ClassLoader classLoader, final boolean start) throws OpenEJBException, IOException, NamingException {
+        try (final StartupProfiler.Span ignored = StartupProfiler.start("Assembler " + appInfo.appId)) {
+            return doCreateApplication(appInfo, classLoader, start);
+        }
+    }
+
+    private AppContext doCreateApplication(final AppInfo appInfo, ClassLoader classLoader, final boolean start) throws OpenEJBException, IOException, NamingException {
         try {
             try {
                 mergeServices(appInfo);
@@ -951,7 +959,10 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                     }
                 }
 
-                final List<BeanContext> allDeployments = initEjbs(classLoader, appInfo, appContext, injections, new ArrayList<BeanContext>(), null);
+                final List<BeanContext> allDeployments;
+                try (final StartupProfiler.Span span = StartupProfiler.start("initEjbs")) {
+                    allDeployments = initEjbs(classLoader, appInfo, appContext, injections, new ArrayList<BeanContext>(), null);
+                }
 
                 if ("true".equalsIgnoreCase(SystemInstance.get()
                         .getProperty(PROPAGATE_APPLICATION_EXCEPTIONS,
@@ -960,7 +971,9 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                 }
 
                 if (cdiActive) {
-                    new CdiBuilder().build(appInfo, appContext, allDeployments);
+                    try (final StartupProfiler.Span span = StartupProfiler.start("CdiBuilder")) {
+                        new CdiBuilder().build(appInfo, appContext, allDeployments);
+                    }
                     ensureWebBeansContext(appContext);
                     appJndiContext.bind("app/BeanManager", appContext.getBeanManager());
                     appContext.getBindings().put("app/BeanManager", appContext.getBeanManager());
@@ -994,7 +1007,9 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                     }
                 }
 
-                startEjbs(start, allDeployments);
+                try (final StartupProfiler.Span span = StartupProfiler.start("startEjbs")) {
+                    startEjbs(start, allDeployments);
+                }
 
                 // App Client
                 for (final ClientInfo clientInfo : appInfo.clients) {
@@ -1670,6 +1685,16 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                 try {
                     final Container container = deployment.getContainer();
                     if (container.getBeanContext(deployment.getDeploymentID()) == null) {
+                        if (deployment.get(LazyDeployment.class) != null) {
+                            continue;
+                        }
+                        if (deployment.getModuleContext().getOptions().get(LazyDeployment.PROPERTY, false)
+                            && LazyDeployment.isEligible(deployment)) {
+                            deployment.set(LazyDeployment.class, new LazyDeployment(deployment));
+                            logger.info("createApplication.lazyEjb", deployment.getDeploymentID(), deployment.getEjbName(), container.getContainerID());
+                            continue;
+                        }
+
                         container.deploy(deployment);
                         if (!((String) deployment.getDeploymentID()).endsWith(".Comp")
                             && !deployment.isHidden()) {
@@ -2348,6 +2373,9 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
             for (final BeanContext deployment : deployments) {
                 final String deploymentID = String.valueOf(deployment.getDeploymentID());
                 try {
+                    if (!LazyDeployment.isDeployedOrEager(deployment)) {
+                        continue;
+                    }
                     final Container container = deployment.getContainer();
                     container.stop(deployment);
                 } catch (final Throwable t) {
@@ -2359,6 +2387,11 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
             for (final BeanContext bean : deployments) {
                 final String deploymentID = String.valueOf(bean.getDeploymentID());
                 try {
+                    final LazyDeployment lazy = bean.get(LazyDeployment.class);
+                    if (lazy != null && !lazy.close()) {
+                        bean.setContainer(null);
+                        continue;
+                    }
                     final Container container = bean.getContainer();
                     container.undeploy(bean);
                     bean.setContainer(null);
@@ -49,10 +49,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
 
@@ -61,17 +64,27 @@ import static java.util.Arrays.asList;
  */
 public class CdiScanner implements ScannerService {
     public static final String OPENEJB_CDI_FILTER_CLASSLOADER = "openejb.cdi.filter.classloader";
+    public static final String PARALLEL_PROPERTY = "openejb.cdi.scanner.parallel";
+    public static final String PARALLEL_THREADS_PROPERTY = "openejb.cdi.scanner.parallel.threads";
+
+    // under this size a bean archive is loaded by the deploying thread, a fork is not worth it
+    private static final int PARALLEL_THRESHOLD = 64;
 
     private static final Class<?>[] TRANSACTIONAL_INTERCEPTORS = new Class<?>[]{
         MandatoryInterceptor.class, NeverInterceptor.class, NotSupportedInterceptor.class,
         RequiredInterceptor.class, RequiredNewInterceptor.class, SupportsInterceptor.class
     };
 
-    private final Set<Class<?>> classes = new HashSet<>();
-    private final Set<Class<?>> startupClasses = new HashSet<>();
-    private final Set<URL> beansXml = new HashSet<>();
+    // linked: classes are added in the bean archive order whatever the loading is parallel or not
+    private final Set<Class<?>> classes = new LinkedHashSet<>();
+    private final Set<Class<?>> startupClasses = new LinkedHashSet<>();
+    private final Set<URL> beansXml = new LinkedHashSet<>();
     private final boolean logDebug;
 
+    private ForkJoinPool pool;
+    private long scanTime;
+    private long loadTime;
+
     private WebBeansContext webBeansContext;
     private ClassLoader containerLoader;
 
@@ -90,7 +103,23 @@ public class CdiScanner implements ScannerService {
         }
         containerLoader = ParentClassLoaderFinder.Helper.get();
 
-        final StartupObject startupObject = StartupObject.class.cast(object);
+        final long start = System.nanoTime();
+        loadTime = 0;
+        final int threads = SystemInstance.get().getOptions().get(PARALLEL_PROPERTY, false) ?
+                SystemInstance.get().getOptions().get(PARALLEL_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()) : 1;
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            doInit(StartupObject.class.cast(object));
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+            }
+            scanTime = System.nanoTime() - start - loadTime;
+        }
+    }
+
+    private void doInit(final StartupObject startupObject) {
         final AppInfo appInfo = startupObject.getAppInfo();
         final ClassLoader classLoader = startupObject.getClassLoader();
         final ClassLoaderComparator comparator;
@@ -247,16 +276,23 @@ public class CdiScanner implements ScannerService {
                 }
             }
 
+            final List<String> names = new ArrayList<>(bda.managedClasses.size());
             for (final String name : bda.managedClasses) {
-                if (information.isClassExcluded(name)) {
-                    continue;
+                if (!information.isClassExcluded(name)) {
+                    names.add(name);
                 }
+            }
 
-                final Class clazz = load(name, classLoader);
+            // loading is the costly part so it can be parallelized, filtering stays sequential to keep the order
+            final Class<?>[] loaded = loadAll(names, classLoader);
+            for (int i = 0; i < loaded.length; i++) {
+                final Class clazz = loaded[i];
                 if (clazz == null) {
                     continue;
                 }
 
+                final String name = names.get(i);
+
                 if (scanModeAnnotated) {
                     if (isBean(clazz)) {
                         classes.add(clazz);
@@ -331,6 +367,23 @@ public class CdiScanner implements ScannerService {
         }
     }
 
+    private Class<?>[] loadAll(final List<String> names, final ClassLoader classLoader) {
+        final long start = System.nanoTime();
+        try {
+            final Class<?>[] loaded = new Class<?>[names.size()];
+            if (pool == null || names.size() < PARALLEL_THRESHOLD) {
+                for (int i = 0; i < loaded.length; i++) {
+                    loaded[i] = load(names.get(i), classLoader);
+                }
+            } else {
+                pool.invoke(new LoadTask(names, classLoader, loaded, 0, loaded.length));
+            }
+            return loaded;
+        } finally {
+            loadTime += System.nanoTime() - start;
+        }
+    }
+
     private void tryToMakeItFail(final Class<?> loadClass) { // we try to avoid later NoClassDefFoundError
         loadClass.getDeclaredFields();
         loadClass.getDeclaredMethods();
@@ -359,4 +412,50 @@ public class CdiScanner implements ScannerService {
     public Set<Class<?>> getStartupClasses() {
         return startupClasses;
     }
+
+    /**
+     * @return the time spent in the last {@link #init(Object)} to find the bean archive classes excluding the class loading, in ms
+     */
+    public long getScanTime() {
+        return TimeUnit.NANOSECONDS.toMillis(scanTime);
+    }
+
+    /**
+     * @return the time spent in the last {@link #init(Object)} to load the bean archive classes, in ms
+     */
+    public long getLoadTime() {
+        return TimeUnit.NANOSECONDS.toMillis(loadTime);
+    }
+
+    // each task fills its own slice of the result array so the result is the same than a sequential loading
+    private final class LoadTask extends RecursiveAction {
+        private static final int SLICE = 32;
+
+        private final List<String> names;
+        private final ClassLoader loader;
+        private final Class<?>[] loaded;
+        private final int from;
+        private final int to;
+
+        private LoadTask(final List<String> names, final ClassLoader loader, final Class<?>[] loaded, final int from, final int to) {
+            this.names = names;
+            this.loader = loader;
+            this.loaded = loaded;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SLICE) {
+                for (int i = from; i < to; i++) {
+                    loaded[i] = load(names.get(i), loader);
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new LoadTask(names, loader, loaded, from, middle), new LoadTask(names, loader, loaded, middle, to));
+        }
+    }
 }
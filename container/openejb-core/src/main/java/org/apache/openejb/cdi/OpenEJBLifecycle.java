@@ -169,6 +169,7 @@ public class OpenEJBLifecycle implements ContainerLifecycle {
 
             //Deploy the beans
             CdiScanner cdiScanner = null;
+            final long deployStart;
             try {
                 //Scanning process
                 logger.debug("Scanning classpaths for beans artifacts.");
@@ -193,6 +194,7 @@ public class OpenEJBLifecycle implements ContainerLifecycle {
                 SystemInstance.get().fireEvent(new WebBeansContextBeforeDeploy(webBeansContext));
 
                 //Deploy bean from XML. Also configures deployments, interceptors, decorators.
+                deployStart = System.currentTimeMillis();
                 deployer.deploy(scannerService);
                 contextsService.init(startupObject); // fire app event and also starts SingletonContext and ApplicationContext
             } catch (final Exception e1) {
@@ -202,6 +204,7 @@ public class OpenEJBLifecycle implements ContainerLifecycle {
                 CURRENT_APP_INFO.remove();
             }
 
+            final long startStart = System.currentTimeMillis();
             final Collection<Class<?>> ejbs = new ArrayList<>(stuff.getBeanContexts().size());
             for (final BeanContext bc : stuff.getBeanContexts()) {
                 ejbs.add(bc.getManagedClass());
@@ -230,6 +233,11 @@ public class OpenEJBLifecycle implements ContainerLifecycle {
                 }
                 starts(beanManager, clazz);
             }
+
+            // deploy covers the OWB processing (extension events, bean definitions) and its validation
+            logger.debug("OpenWebBeans Container phases: scan {0} ms, load {1} ms, deploy {2} ms, start {3} ms.",
+                    Long.toString(cdiScanner.getScanTime()), Long.toString(cdiScanner.getLoadTime()),
+                    Long.toString(startStart - deployStart), Long.toString(System.currentTimeMillis() - startStart));
         } finally {
             Thread.currentThread().setContextClassLoader(oldCl);
 
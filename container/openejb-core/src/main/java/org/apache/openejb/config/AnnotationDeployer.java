@@ -124,6 +124,7 @@ import org.apache.openejb.jee.WebserviceDescription;
 import org.apache.openejb.jee.oejb3.OpenejbJar;
 import org.apache.openejb.loader.JarLocation;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.StartupProfiler;
 import org.apache.openejb.util.Classes;
 import org.apache.openejb.util.Join;
 import org.apache.openejb.util.LogCategory;
@@ -377,11 +378,15 @@ public class AnnotationDeployer implements DynamicDeployer {
         Thread.currentThread().setContextClassLoader(appModule.getClassLoader());
         setModule(appModule);
         try {
-            appModule = discoverAnnotatedBeans.deploy(appModule);
+            try (final StartupProfiler.Span ignored = StartupProfiler.start("DiscoverAnnotatedBeans")) {
+                appModule = discoverAnnotatedBeans.deploy(appModule);
+            }
             appModule = envEntriesPropertiesDeployer.deploy(appModule);
             appModule = mergeWebappJndiContext.deploy(appModule);
             appModule = builtInEnvironmentEntries.deploy(appModule);
-            appModule = processAnnotatedBeans.deploy(appModule);
+            try (final StartupProfiler.Span ignored = StartupProfiler.start("ProcessAnnotatedBeans")) {
+                appModule = processAnnotatedBeans.deploy(appModule);
+            }
             appModule = mergeWebappJndiContext.deploy(appModule);
             appModule = mBeanDeployer.deploy(appModule);
             return appModule;
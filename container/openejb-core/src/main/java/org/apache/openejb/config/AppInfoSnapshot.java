@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.ContainerInfo;
+import org.apache.openejb.assembler.classic.ResourceInfo;
+import org.apache.openejb.core.ObjectInputStreamFiltered;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.OpenEjbVersion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serialized {@link AppInfo} of an application archive, reused at the next boot
+ * instead of loading and configuring the archive again.
+ * <p/>
+ * A snapshot is valid as long as its fingerprint matches: the archive files (path, size, last modification),
+ * the content of <code>conf/system.properties</code>, <code>conf/tomee.xml</code>, <code>conf/openejb.xml</code>
+ * and <code>~/.openejb/system.properties</code>, and the OpenEJB version.
+ * Containers and resources auto-created while configuring the application are stored with the snapshot
+ * and installed again when it is reused.
+ * <p/>
+ * Activated with {@link #ENABLED_PROPERTY}, snapshots are stored in {@link #LOCATION_PROPERTY}
+ * (<code>${openejb.base}/data/appinfo-snapshot</code> by default).
+ * <p/>
+ * Only applications without web module are snapshotted: ejb jars, ears without war and the archives
+ * deployed by the embedded container or the {@link AutoDeployer}. A war, alone or in an ear, is configured
+ * again at each boot since Tomcat needs the annotation finder of the scanning (not serializable) to give the
+ * classes to the <code>@HandlesTypes</code> of the <code>ServletContainerInitializer</code>s, see
+ * <code>OpenEJBContextConfig</code>: without it these initializers would silently get no class.
+ */
+public final class AppInfoSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, AppInfoSnapshot.class);
+
+    public static final String ENABLED_PROPERTY = "openejb.appinfo.snapshot";
+    public static final String LOCATION_PROPERTY = "openejb.appinfo.snapshot.location";
+
+    private static final String[] CONFIGURATION = {"system.properties", "tomee.xml", "openejb.xml"};
+    private static final ThreadLocal<AppInfoSnapshot> RECORDING = new ThreadLocal<>();
+
+    private final String fingerprint;
+    private final transient File archive;
+    private AppInfo appInfo;
+    private final List<ContainerInfo> containers = new ArrayList<>();
+    private final List<ResourceInfo> resources = new ArrayList<>();
+
+    private AppInfoSnapshot(final File archive, final String fingerprint) {
+        this.archive = archive;
+        this.fingerprint = fingerprint;
+    }
+
+    public AppInfo getAppInfo() {
+        return appInfo;
+    }
+
+    public List<ContainerInfo> getContainers() {
+        return containers;
+    }
+
+    public List<ResourceInfo> getResources() {
+        return resources;
+    }
+
+    public static boolean isActive() {
+        return SystemInstance.get().getOptions().get(ENABLED_PROPERTY, false);
+    }
+
+    /**
+     * @param archive the application archive
+     * @return the snapshot of the archive if its fingerprint still matches, null otherwise
+     */
+    public static AppInfoSnapshot load(final File archive) {
+        final File file;
+        final String fingerprint;
+        try {
+            file = file(archive);
+            fingerprint = fingerprint(archive);
+        } catch (final IOException e) {
+            LOGGER.warning("Can't use AppInfo snapshot of " + archive.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (final ObjectInputStream in = new ObjectInputStreamFiltered(new BufferedInputStream(new FileInputStream(file)))) {
+            final Object read = in.readObject();
+            if (!AppInfoSnapshot.class.isInstance(read)) {
+                return null;
+            }
+
+            final AppInfoSnapshot snapshot = AppInfoSnapshot.class.cast(read);
+            if (!fingerprint.equals(snapshot.fingerprint)) {
+                LOGGER.info("AppInfo snapshot of " + archive.getName() + " is outdated, configuring the application again");
+                return null;
+            }
+            for (final String path : snapshot.appInfo.paths) { // an unpacked archive can have been deleted
+                if (!new File(path).exists()) {
+                    return null;
+                }
+            }
+            return snapshot;
+        } catch (final Exception e) {
+            LOGGER.debug("Ignoring AppInfo snapshot " + file.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Starts recording the containers and resources installed by the current thread.
+     *
+     * @param archive the application archive
+     * @return the recording snapshot, to pass to {@link #store(AppInfoSnapshot, AppInfo)}
+     * @throws IOException if the archive can't be read
+     */
+    public static AppInfoSnapshot record(final File archive) throws IOException {
+        final AppInfoSnapshot snapshot = new AppInfoSnapshot(archive, fingerprint(archive));
+        RECORDING.set(snapshot);
+        return snapshot;
+    }
+
+    public static void recorded(final ContainerInfo containerInfo) {
+        final AppInfoSnapshot snapshot = RECORDING.get();
+        if (snapshot != null) {
+            snapshot.containers.add(containerInfo);
+        }
+    }
+
+    public static void recorded(final ResourceInfo resourceInfo) {
+        final AppInfoSnapshot snapshot = RECORDING.get();
+        if (snapshot != null) {
+            snapshot.resources.add(resourceInfo);
+        }
+    }
+
+    public static void stopRecording() {
+        RECORDING.remove();
+    }
+
+    public static void store(final AppInfoSnapshot snapshot, final AppInfo appInfo) {
+        if (!appInfo.webApps.isEmpty()) {
+            LOGGER.info("No AppInfo snapshot for " + appInfo.appId + ", web modules are scanned at each deployment");
+            return;
+        }
+
+        snapshot.appInfo = appInfo;
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(snapshot);
+        } catch (final IOException e) { // NotSerializableException for custom properties values
+            LOGGER.debug("AppInfo of " + appInfo.appId + " can't be snapshotted: " + e.getMessage());
+            return;
+        } finally {
+            snapshot.appInfo = null;
+        }
+
+        File tmp = null;
+        try {
+            final File file = file(snapshot.archive);
+            tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                buffer.writeTo(out);
+            }
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            LOGGER.warning("Can't write AppInfo snapshot of " + appInfo.appId + ": " + e.getMessage());
+            if (tmp != null && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    private static File file(final File archive) throws IOException {
+        final String configured = SystemInstance.get().getOptions().get(LOCATION_PROPERTY, (String) null);
+        final File folder = configured != null ?
+            new File(configured) : new File(SystemInstance.get().getBase().getDirectory(), "data/appinfo-snapshot");
+        if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Can't create " + folder.getAbsolutePath());
+        }
+
+        final String path = archive.getAbsolutePath();
+        return new File(folder, archive.getName() + '-' + hex(digest().digest(path.getBytes(StandardCharsets.UTF_8))).substring(0, 16) + ".ser");
+    }
+
+    static String fingerprint(final File archive) throws IOException {
+        final MessageDigest digest = digest();
+        update(digest, OpenEjbVersion.get().getVersion());
+        update(digest, archive.getAbsolutePath());
+        files(digest, archive, "");
+
+        final File conf = SystemInstance.get().getConf(null);
+        for (final String name : CONFIGURATION) {
+            content(digest, conf == null ? null : new File(conf, name));
+        }
+        content(digest, new File(System.getProperty("user.home"), ".openejb/system.properties"));
+        return hex(digest.digest());
+    }
+
+    private static void files(final MessageDigest digest, final File file, final String path) {
+        update(digest, path);
+        if (file.isDirectory()) {
+            final String[] children = file.list();
+            if (children != null) {
+                Arrays.sort(children);
+                for (final String child : children) {
+                    files(digest, new File(file, child), path + '/' + child);
+                }
+            }
+        } else {
+            update(digest, file.length() + "@" + file.lastModified());
+        }
+    }
+
+    private static void content(final MessageDigest digest, final File file) throws IOException {
+        if (file == null || !file.isFile()) {
+            update(digest, "-");
+            return;
+        }
+
+        final byte[] buffer = new byte[8192];
+        try (final InputStream is = IO.read(file)) {
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(final byte[] digest) {
+        final StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (final byte b : digest) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
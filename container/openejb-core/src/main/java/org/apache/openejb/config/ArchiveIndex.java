@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.URLs;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Entry names of the jars of the deployments in progress.
+ * <p/>
+ * Looking for descriptors, persistence units or TLDs used to open each jar once per lookup,
+ * with the index a jar is opened once per deployment and the lookups only read the cached entry names.
+ * Current readers are the {@link DeploymentLoader} descriptor lookups, the openejb TLD scanner and the
+ * tomcat TLD jar scan (TomEEJarScanner skips jars without TLD). Tomcat web fragment lookups still go
+ * through the jar tomcat opens itself, web annotations come from the module finder.
+ * The index is populated between {@link #acquire()} and the matching {@link #release()}, outside of
+ * such a scope (or with {@link #ACTIVE_PROPERTY} set to false) {@link #get(File)} returns null and callers
+ * read the jar themselves.
+ * <p/>
+ * Class bytes are not indexed: they are read once per deployment by the module finder which is then shared.
+ */
+public final class ArchiveIndex {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, ArchiveIndex.class);
+
+    public static final String ACTIVE_PROPERTY = "openejb.deployment.archive-index";
+
+    private static final Entries NOT_A_JAR = new Entries(null, new String[0]);
+    private static final ConcurrentMap<String, Entries> ENTRIES = new ConcurrentHashMap<>();
+    private static final AtomicInteger SCOPES = new AtomicInteger();
+    private static final AtomicInteger OPENS = new AtomicInteger();
+    private static final AtomicInteger HITS = new AtomicInteger();
+
+    private ArchiveIndex() {
+        // no-op
+    }
+
+    /**
+     * Starts a deployment scope, scopes can be nested or concurrent.
+     */
+    public static void acquire() {
+        SCOPES.incrementAndGet();
+    }
+
+    /**
+     * Ends a deployment scope, the index is dropped when the last one ends.
+     */
+    public static void release() {
+        if (SCOPES.decrementAndGet() > 0) {
+            return;
+        }
+
+        final int opens = OPENS.getAndSet(0);
+        final int hits = HITS.getAndSet(0);
+        if (opens > 0) {
+            LOGGER.debug("Archive index released: " + opens + " jars opened, " + hits + " lookups served from the index");
+        }
+        ENTRIES.clear();
+    }
+
+    public static boolean isActive() {
+        return SCOPES.get() > 0 && SystemInstance.get().getOptions().get(ACTIVE_PROPERTY, true);
+    }
+
+    /**
+     * @param url a jar url
+     * @return the jar entries or null if the url is not a jar or there is no active deployment scope
+     */
+    public static Entries get(final URL url) {
+        if (url == null || !isActive() || !"file".equals(url.getProtocol()) || !url.getPath().endsWith(".jar")) {
+            return null;
+        }
+        try {
+            return get(URLs.toFile(url));
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param file a jar
+     * @return the jar entries or null if the file is not a readable jar or there is no active deployment scope
+     */
+    public static Entries get(final File file) {
+        if (!isActive() || !file.isFile()) {
+            return null;
+        }
+
+        final String key = file.getAbsolutePath();
+        final Entries cached = ENTRIES.get(key);
+        if (cached != null && cached.isValid(file)) {
+            HITS.incrementAndGet();
+            return cached == NOT_A_JAR ? null : cached;
+        }
+
+        final Entries entries = read(file);
+        ENTRIES.put(key, entries);
+        return entries == NOT_A_JAR ? null : entries;
+    }
+
+    public static int getOpens() {
+        return OPENS.get();
+    }
+
+    public static int getHits() {
+        return HITS.get();
+    }
+
+    private static Entries read(final File file) {
+        OPENS.incrementAndGet();
+        try (final JarFile jar = new JarFile(file)) {
+            final List<String> names = new ArrayList<>(jar.size());
+            final Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                names.add(entries.nextElement().getName());
+            }
+            final String[] sorted = names.toArray(new String[names.size()]);
+            Arrays.sort(sorted);
+            return new Entries(file, sorted);
+        } catch (final IOException e) {
+            LOGGER.debug("Can't index " + file.getAbsolutePath() + ": " + e.getMessage());
+            return NOT_A_JAR;
+        }
+    }
+
+    public static final class Entries {
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final String[] names; // sorted so a prefix is a contiguous range
+        private volatile URL base;
+
+        private Entries(final File file, final String[] names) {
+            this.file = file;
+            this.length = file == null ? -1 : file.length();
+            this.lastModified = file == null ? -1 : file.lastModified();
+            this.names = names;
+        }
+
+        private boolean isValid(final File current) {
+            return this == NOT_A_JAR || current.length() == length && current.lastModified() == lastModified;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public boolean contains(final String name) {
+            return Arrays.binarySearch(names, name) >= 0;
+        }
+
+        /**
+         * @param prefix       an entry name prefix, a folder ends with a slash
+         * @param directOnly   skip the entries of nested folders
+         * @return the matching file entries (folders are skipped)
+         */
+        public List<String> list(final String prefix, final boolean directOnly) {
+            int idx = Arrays.binarySearch(names, prefix);
+            if (idx < 0) {
+                idx = -idx - 1;
+            }
+
+            List<String> found = null;
+            for (int i = idx; i < names.length && names[i].startsWith(prefix); i++) {
+                final String name = names[i];
+                if (name.endsWith("/") || directOnly && name.indexOf('/', prefix.length()) >= 0) {
+                    continue;
+                }
+                if (found == null) {
+                    found = new ArrayList<>();
+                }
+                found.add(name);
+            }
+            return found == null ? Collections.<String>emptyList() : found;
+        }
+
+        /**
+         * @param prefix a folder, ending with a slash
+         * @return the direct file children of the folder by their name relative to prefix, as jar urls
+         */
+        public Map<String, URL> resources(final String prefix) throws MalformedURLException {
+            final List<String> entries = list(prefix, true);
+            if (entries.isEmpty()) {
+                return new HashMap<>();
+            }
+
+            final Map<String, URL> resources = new HashMap<>();
+            for (final String entry : entries) {
+                resources.put(entry.substring(prefix.length()), url(entry));
+            }
+            return resources;
+        }
+
+        public URL url(final String entry) throws MalformedURLException {
+            URL root = base;
+            if (root == null) {
+                root = new URL("jar", "", -1, file.toURI().toURL().toExternalForm() + "!/");
+                base = root;
+            }
+            return new URL(root, entry);
+        }
+    }
+}
@@ -83,6 +83,7 @@ import org.apache.openejb.loader.Options;
 import org.apache.openejb.loader.ProvisioningUtil;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.StartupProfiler;
 import org.apache.openejb.resource.jdbc.DataSourceFactory;
 import org.apache.openejb.resource.jdbc.pool.DataSourceCreator;
 import org.apache.openejb.resource.jdbc.pool.DefaultDataSourceCreator;
@@ -417,7 +418,9 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
         @Override
         public AppModule deploy(AppModule appModule) throws OpenEJBException {
             for (final DynamicDeployer deployer : chain) {
-                appModule = deployer.deploy(appModule);
+                try (final StartupProfiler.Span ignored = StartupProfiler.start(StartupProfiler.name(deployer.getClass()))) {
+                    appModule = deployer.deploy(appModule);
+                }
             }
             return appModule;
         }
@@ -440,6 +443,7 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     }
 
     protected void install(final ContainerInfo serviceInfo) throws OpenEJBException {
+        AppInfoSnapshot.recorded(serviceInfo);
         if (sys != null) {
             sys.containerSystem.containers.add(serviceInfo);
         } else if (!offline) {
@@ -453,6 +457,7 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     }
 
     protected void install(final ResourceInfo serviceInfo) throws OpenEJBException {
+        AppInfoSnapshot.recorded(serviceInfo);
         if (sys != null) {
             sys.facilities.resources.add(serviceInfo);
         } else if (!offline) {
@@ -849,6 +854,45 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     }
 
     public AppInfo configureApplication(final File jarFile) throws OpenEJBException {
+        if (!AppInfoSnapshot.isActive()) {
+            return doConfigureApplication(jarFile);
+        }
+
+        final AppInfoSnapshot existing = AppInfoSnapshot.load(jarFile);
+        if (existing != null) {
+            logger.info("Using AppInfo snapshot of " + jarFile.getAbsolutePath());
+            final List<String> containerIds = getContainerIds();
+            for (final ContainerInfo containerInfo : existing.getContainers()) {
+                if (!containerIds.contains(containerInfo.id)) {
+                    install(containerInfo);
+                }
+            }
+            final List<String> resourceIds = getResourceIds();
+            for (final ResourceInfo resourceInfo : existing.getResources()) {
+                if (!resourceIds.contains(resourceInfo.id)) {
+                    install(resourceInfo);
+                }
+            }
+            return existing.getAppInfo();
+        }
+
+        final AppInfoSnapshot snapshot;
+        try {
+            snapshot = AppInfoSnapshot.record(jarFile);
+        } catch (final IOException e) {
+            logger.warning("Can't snapshot " + jarFile.getAbsolutePath() + ": " + e.getMessage());
+            return doConfigureApplication(jarFile);
+        }
+        try {
+            final AppInfo appInfo = doConfigureApplication(jarFile);
+            AppInfoSnapshot.store(snapshot, appInfo);
+            return appInfo;
+        } finally {
+            AppInfoSnapshot.stopRecording();
+        }
+    }
+
+    private AppInfo doConfigureApplication(final File jarFile) throws OpenEJBException {
         logger.debug("Beginning load: " + jarFile.getAbsolutePath());
 
         try {
@@ -1034,10 +1078,15 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
 
             final String location = appModule.getJarLocation();
             logger.info("config.configApp", null != location ? location : appModule.getModuleId());
-            deployer.deploy(appModule);
-            final AppInfoBuilder appInfoBuilder = new AppInfoBuilder(this);
+            final AppInfo info;
+            try (final StartupProfiler.Span ignored = StartupProfiler.start("configure " + appModule.getModuleId())) {
+                deployer.deploy(appModule);
 
-            final AppInfo info = appInfoBuilder.build(appModule);
+                try (final StartupProfiler.Span build = StartupProfiler.start("AppInfoBuilder")) {
+                    final AppInfoBuilder appInfoBuilder = new AppInfoBuilder(this);
+                    info = appInfoBuilder.build(appModule);
+                }
+            }
             info.eventClassesNeedingAppClassloader.addAll(notLoaded);
 
             return info;
@@ -47,6 +47,7 @@ import org.apache.openejb.jee.oejb3.OpenejbJar;
 import org.apache.openejb.loader.FileUtils;
 import org.apache.openejb.loader.IO;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.StartupProfiler;
 import org.apache.openejb.sxc.ApplicationXml;
 import org.apache.openejb.util.AnnotationFinder;
 import org.apache.openejb.util.JarExtractor;
@@ -127,6 +128,15 @@ public class DeploymentLoader implements DeploymentFilterable {
      * @return the loaded module
      */
     public AppModule load(final File jarFile, final ExternalConfiguration config) throws OpenEJBException {
+        ArchiveIndex.acquire();
+        try (final StartupProfiler.Span ignored = StartupProfiler.start("DeploymentLoader " + jarFile.getName())) {
+            return doLoad(jarFile, config);
+        } finally {
+            ArchiveIndex.release();
+        }
+    }
+
+    private AppModule doLoad(final File jarFile, final ExternalConfiguration config) throws OpenEJBException {
         // verify we have a valid file
         final String jarPath;
         try {
@@ -321,10 +331,16 @@ public class DeploymentLoader implements DeploymentFilterable {
             try {
                 final File file = URLs.toFile(url);
                 if (file.getName().endsWith(".jar")) {
+                    final ArchiveIndex.Entries entries = ArchiveIndex.get(file);
+                    final String raXml = (ALTDD != null ? ALTDD + "." : "") + "ra.xml";
+                    if (entries != null && !entries.contains(raXml) && !entries.contains("META-INF/" + raXml)) {
+                        continue;
+                    }
+
                     try (JarFile jarFile = new JarFile(file)) {
 
                         // TODO: better management of altdd
-                        String name = (ALTDD != null ? ALTDD + "." : "") + "ra.xml";
+                        String name = raXml;
 
                         JarEntry entry = jarFile.getJarEntry(name);
                         if (entry == null) {
@@ -1575,8 +1591,7 @@ public class DeploymentLoader implements DeploymentFilterable {
 
 
         for (final URL url : urls) {
-            final ResourceFinder finder = new ResourceFinder("", webModule.getClassLoader(), url);
-            final Map<String, URL> descriptors = getDescriptors(finder, false);
+            final Map<String, URL> descriptors = getJarDescriptors(webModule.getClassLoader(), url);
 
             if (descriptors.containsKey(WEB_FRAGMENT_XML)) {
                 final URL descriptor = descriptors.get(WEB_FRAGMENT_XML);
@@ -1629,8 +1644,7 @@ public class DeploymentLoader implements DeploymentFilterable {
         for (final URL url : urls) {
             // OPENEJB-1059: looking for an altdd persistence.xml file in all urls
             // delegates to xbean finder for going throughout the list
-            final ResourceFinder finder = new ResourceFinder("", appModule.getClassLoader(), url);
-            final Map<String, URL> descriptors = getDescriptors(finder, false);
+            final Map<String, URL> descriptors = getJarDescriptors(appModule.getClassLoader(), url);
 
             // if a persistence.xml has been found, just pull it to the list
             if (descriptors.containsKey("persistence.xml")) {
@@ -1656,8 +1670,7 @@ public class DeploymentLoader implements DeploymentFilterable {
         for (final URL url : urls) {
             // OPENEJB-1059: looking for an altdd persistence.xml file in all urls
             // delegates to xbean finder for going throughout the list
-            final ResourceFinder finder = new ResourceFinder("", appModule.getClassLoader(), url);
-            final Map<String, URL> descriptors = getDescriptors(finder, false);
+            final Map<String, URL> descriptors = getJarDescriptors(appModule.getClassLoader(), url);
 
             // if a persistence.xml has been found, just pull it to the list
             if (descriptors.containsKey("persistence-fragment.xml")) {
@@ -1687,6 +1700,20 @@ public class DeploymentLoader implements DeploymentFilterable {
         return getDescriptors(finder);
     }
 
+    // descriptors of a module url, using the archive index when it is a jar
+    private static Map<String, URL> getJarDescriptors(final ClassLoader loader, final URL url) throws OpenEJBException {
+        final ArchiveIndex.Entries entries = ArchiveIndex.get(url);
+        if (entries == null) {
+            return getDescriptors(new ResourceFinder("", loader, url), false);
+        }
+
+        try {
+            return altDDSources(entries.resources(ddDir), false);
+        } catch (final MalformedURLException e) {
+            throw new OpenEJBException("Unable to determine descriptors in jar.", e);
+        }
+    }
+
     private static Map<String, URL> getDescriptors(final ResourceFinder finder) throws OpenEJBException {
         return getDescriptors(finder, true);
     }
@@ -1777,7 +1804,14 @@ public class DeploymentLoader implements DeploymentFilterable {
         // xbean resource finder has a bug when you use any uri but "META-INF"
         // and the jar file does not contain a directory entry for the uri
 
-        if (warFile.isFile()) { // only to discover module type so xml file filtering is enough
+        final ArchiveIndex.Entries entries = warFile.isFile() ? ArchiveIndex.get(warFile) : null;
+        if (entries != null) {
+            for (final String entryName : entries.list("WEB-INF/", false)) {
+                if (KNOWN_DESCRIPTORS.contains(entryName.substring("WEB-INF/".length())) || entryName.endsWith(".xml")) {
+                    descriptors.put(entryName, entries.url(entryName));
+                }
+            }
+        } else if (warFile.isFile()) { // only to discover module type so xml file filtering is enough
             final URL jarURL = new URL("jar", "", -1, warFile.toURI().toURL() + "!/");
             try (JarFile jarFile = new JarFile(warFile)) {
                 for (final JarEntry entry : Collections.list(jarFile.entries())) {
@@ -0,0 +1,642 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.xml.namespace.QName;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary cache of parsed descriptors (org.apache.openejb.jee model) to avoid the XML parsing and JAXB
+ * unmarshalling of unchanged descriptors at each boot.
+ * <p/>
+ * Entries are keyed by a SHA-256 of the descriptor content and stored in {@link #LOCATION_PROPERTY}
+ * (<code>${openejb.base}/data/descriptor-cache</code> by default). Only the descriptor model classes and
+ * the JDK types they use are supported: anything else is not cached and the descriptor is always parsed.
+ * The JDK collections are rebuilt from their content so only the ones without other state are supported,
+ * a sorted collection with a comparator is not (a <code>LinkedHashMap</code> keeps its access order).
+ * Each class layout is stored with the entry so a cache written by another version is ignored,
+ * an entry which can't be read is deleted.
+ * <p/>
+ * Activated with {@link #ENABLED_PROPERTY}, parse and load times are logged per descriptor in debug.
+ */
+public final class DescriptorCache {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, DescriptorCache.class);
+
+    public static final String ENABLED_PROPERTY = "openejb.descriptors.cache";
+    public static final String LOCATION_PROPERTY = "openejb.descriptors.cache.location";
+
+    private static final int MAGIC = 0x4F444343; // ODCC
+    private static final int VERSION = 2;
+    private static final String MODEL_PACKAGE = "org.apache.openejb.jee.";
+
+    private DescriptorCache() {
+        // no-op
+    }
+
+    public interface Parser<T> {
+        T parse(byte[] content) throws Exception;
+    }
+
+    public static boolean isActive() {
+        return SystemInstance.get().getOptions().get(ENABLED_PROPERTY, false);
+    }
+
+    /**
+     * @param name    the descriptor name, used for the logs and the cache file name
+     * @param type    expected model type
+     * @param content descriptor content
+     * @param parser  used when the cache can't be used, its result is then cached
+     * @return the parsed descriptor
+     * @throws Exception the parser exception
+     */
+    public static <T> T read(final String name, final Class<T> type, final byte[] content, final Parser<T> parser) throws Exception {
+        if (!isActive()) {
+            return parser.parse(content);
+        }
+
+        final File file;
+        try {
+            file = new File(folder(), name + '-' + sha256(content) + ".bin");
+        } catch (final IOException e) {
+            LOGGER.warning("Can't use descriptor cache: " + e.getMessage());
+            return parser.parse(content);
+        }
+
+        if (file.isFile()) {
+            final long start = System.nanoTime();
+            Object value = null;
+            try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                value = new Reader(in).readRoot();
+            } catch (final Exception e) {
+                LOGGER.debug("Deleting descriptor cache " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+            if (type.isInstance(value)) {
+                LOGGER.debug("Loaded " + name + " from " + file.getName() + " in " + millis(start) + "ms");
+                return type.cast(value);
+            }
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+
+        final long start = System.nanoTime();
+        final T parsed = parser.parse(content);
+        LOGGER.debug("Parsed " + name + " in " + millis(start) + "ms");
+        if (parsed != null) {
+            store(file, parsed);
+        }
+        return parsed;
+    }
+
+    private static void store(final File file, final Object value) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            final DataOutputStream out = new DataOutputStream(buffer);
+            new Writer(out).writeRoot(value);
+            out.flush();
+
+            // never store an entry the next boot would fail to read
+            new Reader(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()))).readRoot();
+        } catch (final Exception e) {
+            LOGGER.debug("Descriptor " + file.getName() + " can't be cached: " + e.getMessage());
+            return;
+        }
+
+        // concurrent deployments can read the same descriptor so write aside and move it once complete
+        File tmp = null;
+        try {
+            tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                buffer.writeTo(out);
+            }
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            LOGGER.warning("Can't write descriptor cache " + file.getAbsolutePath() + ": " + e.getMessage());
+            if (tmp != null && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    private static File folder() throws IOException {
+        final String configured = SystemInstance.get().getOptions().get(LOCATION_PROPERTY, (String) null);
+        final File folder = configured != null ?
+            new File(configured) : new File(SystemInstance.get().getBase().getDirectory(), "data/descriptor-cache");
+        if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Can't create " + folder.getAbsolutePath());
+        }
+        return folder;
+    }
+
+    public static byte[] bytes(final InputStream is) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IO.copy(is, out);
+        return out.toByteArray();
+    }
+
+    private static String sha256(final byte[] content) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            final StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long millis(final long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static final byte NULL = 0;
+    private static final byte REFERENCE = 1;
+    private static final byte STRING = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte INTEGER = 4;
+    private static final byte LONG = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte SHORT = 8;
+    private static final byte BYTE = 9;
+    private static final byte CHARACTER = 10;
+    private static final byte ENUM = 11;
+    private static final byte BIG_INTEGER = 12;
+    private static final byte BIG_DECIMAL = 13;
+    private static final byte QNAME = 14;
+    private static final byte COLLECTION = 15;
+    private static final byte MAP = 16;
+    private static final byte ARRAY = 17;
+    private static final byte OBJECT = 18;
+    private static final byte EMPTY_LIST = 19;
+    private static final byte EMPTY_SET = 20;
+    private static final byte EMPTY_MAP = 21;
+
+    private static final ConcurrentMap<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+
+    // instance fields of the class hierarchy, parent first, sorted by name in each class for a stable layout
+    private static Field[] fields(final Class<?> type) {
+        final Field[] cached = FIELDS.get(type);
+        if (cached != null) {
+            return cached;
+        }
+
+        final List<Field> fields = new ArrayList<>();
+        final List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            hierarchy.add(0, current);
+        }
+        for (final Class<?> current : hierarchy) {
+            final List<Field> declared = new ArrayList<>();
+            for (final Field field : current.getDeclaredFields()) {
+                final int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                declared.add(field);
+            }
+            Collections.sort(declared, new Comparator<Field>() {
+                @Override
+                public int compare(final Field o1, final Field o2) {
+                    return o1.getName().compareTo(o2.getName());
+                }
+            });
+            fields.addAll(declared);
+        }
+        final Field[] array = fields.toArray(new Field[fields.size()]);
+        FIELDS.putIfAbsent(type, array);
+        return array;
+    }
+
+    private static boolean isModel(final Class<?> type) {
+        return type.getName().startsWith(MODEL_PACKAGE);
+    }
+
+    // a model class extending a JDK class would lose the parent state (often transient) so only stateless parents are accepted
+    private static boolean hasModelState(final Class<?> type) {
+        for (Class<?> current = type.getSuperclass(); current != null && current != Object.class; current = current.getSuperclass()) {
+            if (!isModel(current) && !current.getName().startsWith("java.util.Abstract")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // collections fully described by their content, a comparator or a subclass state would be lost
+    private static final Collection<Class<?>> CONTAINERS = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+        ArrayList.class, LinkedList.class, Vector.class, ArrayDeque.class, CopyOnWriteArrayList.class,
+        HashSet.class, LinkedHashSet.class, TreeSet.class,
+        HashMap.class, LinkedHashMap.class, Hashtable.class, TreeMap.class, ConcurrentHashMap.class));
+
+    private static boolean isJdkContainer(final Class<?> type) {
+        return CONTAINERS.contains(type);
+    }
+
+    private static boolean isSupportedContainer(final Object value) {
+        if (!isJdkContainer(value.getClass())) {
+            return false;
+        }
+        if (value instanceof SortedMap<?, ?>) {
+            return ((SortedMap<?, ?>) value).comparator() == null;
+        }
+        if (value instanceof SortedSet<?>) {
+            return ((SortedSet<?>) value).comparator() == null;
+        }
+        return true;
+    }
+
+    // the order mode is not exposed, it is probed on an empty copy
+    @SuppressWarnings("unchecked")
+    private static boolean isAccessOrder(final LinkedHashMap<?, ?> map) {
+        final LinkedHashMap<Object, Object> probe = (LinkedHashMap<Object, Object>) map.clone();
+        probe.clear();
+        probe.put(0, 0);
+        probe.put(1, 1);
+        probe.get(0);
+        return Integer.valueOf(1).equals(probe.keySet().iterator().next());
+    }
+
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<Object, Integer> references = new IdentityHashMap<>();
+        private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+        private Writer(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void writeRoot(final Object value) throws IOException, IllegalAccessException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            write(value);
+        }
+
+        private void write(final Object value) throws IOException, IllegalAccessException {
+            if (value == null) {
+                out.writeByte(NULL);
+                return;
+            }
+
+            final Integer reference = references.get(value);
+            if (reference != null) {
+                out.writeByte(REFERENCE);
+                out.writeInt(reference);
+                return;
+            }
+
+            final Class<?> type = value.getClass();
+            if (type == String.class) {
+                out.writeByte(STRING);
+                writeString((String) value);
+            } else if (type == Boolean.class) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (type == Integer.class) {
+                out.writeByte(INTEGER);
+                out.writeInt((Integer) value);
+            } else if (type == Long.class) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (type == Double.class) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (type == Float.class) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else if (type == Short.class) {
+                out.writeByte(SHORT);
+                out.writeShort((Short) value);
+            } else if (type == Byte.class) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (type == Character.class) {
+                out.writeByte(CHARACTER);
+                out.writeChar((Character) value);
+            } else if (value instanceof Enum<?>) {
+                out.writeByte(ENUM);
+                writeClass(((Enum<?>) value).getDeclaringClass(), false);
+                writeString(((Enum<?>) value).name());
+            } else if (type == BigInteger.class) {
+                out.writeByte(BIG_INTEGER);
+                writeString(value.toString());
+            } else if (type == BigDecimal.class) {
+                out.writeByte(BIG_DECIMAL);
+                writeString(value.toString());
+            } else if (type == QName.class) {
+                final QName qName = (QName) value;
+                out.writeByte(QNAME);
+                writeString(qName.getNamespaceURI());
+                writeString(qName.getLocalPart());
+                writeString(qName.getPrefix());
+            } else if (value == Collections.EMPTY_LIST) {
+                out.writeByte(EMPTY_LIST);
+            } else if (value == Collections.EMPTY_SET) {
+                out.writeByte(EMPTY_SET);
+            } else if (value == Collections.EMPTY_MAP) {
+                out.writeByte(EMPTY_MAP);
+            } else if ((value instanceof Collection<?> || value instanceof Map<?, ?>) && type.getName().startsWith("java.util.")
+                && !isSupportedContainer(value)) {
+                throw new UnsupportedOperationException("unsupported container " + type.getName());
+            } else if (value instanceof Collection<?> && isJdkContainer(type)) {
+                register(value);
+                out.writeByte(COLLECTION);
+                writeClass(type, false);
+                final Collection<?> collection = (Collection<?>) value;
+                out.writeInt(collection.size());
+                for (final Object item : collection) {
+                    write(item);
+                }
+            } else if (value instanceof Map<?, ?> && isJdkContainer(type)) {
+                register(value);
+                out.writeByte(MAP);
+                writeClass(type, false);
+                if (type == LinkedHashMap.class) {
+                    out.writeBoolean(isAccessOrder((LinkedHashMap<?, ?>) value));
+                }
+                final Map<?, ?> map = (Map<?, ?>) value;
+                out.writeInt(map.size());
+                for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                    write(entry.getKey());
+                    write(entry.getValue());
+                }
+            } else if (type.isArray()) {
+                register(value);
+                out.writeByte(ARRAY);
+                final Class<?> component = type.getComponentType();
+                if (component.isPrimitive() || !(component == String.class || component == Object.class || isModel(component))) {
+                    throw new UnsupportedOperationException("unsupported array type " + type.getName());
+                }
+                writeClass(component, false);
+                final int length = Array.getLength(value);
+                out.writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    write(Array.get(value, i));
+                }
+            } else if (isModel(type) && hasModelState(type)) {
+                register(value);
+                out.writeByte(OBJECT);
+                writeClass(type, true);
+                for (final Field field : fields(type)) {
+                    write(field.get(value));
+                }
+            } else {
+                throw new UnsupportedOperationException("unsupported type " + type.getName());
+            }
+        }
+
+        private void register(final Object value) {
+            references.put(value, references.size());
+        }
+
+        // a class is written once with its layout then referenced by index
+        private void writeClass(final Class<?> type, final boolean layout) throws IOException {
+            final Integer index = classes.get(type);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            out.writeInt(-1);
+            classes.put(type, classes.size());
+            writeString(type.getName());
+            if (layout) {
+                final Field[] fields = fields(type);
+                out.writeInt(fields.length);
+                for (final Field field : fields) {
+                    writeString(field.getDeclaringClass().getName() + '#' + field.getName());
+                }
+            }
+        }
+
+        // DataOutput#writeUTF is limited to 64k
+        private void writeString(final String value) throws IOException {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final List<Object> references = new ArrayList<>();
+        private final List<Class<?>> classes = new ArrayList<>();
+        private final ClassLoader loader = DescriptorCache.class.getClassLoader();
+
+        private Reader(final DataInputStream in) {
+            this.in = in;
+        }
+
+        private Object readRoot() throws Exception {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a descriptor cache entry");
+            }
+            return read();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object read() throws Exception {
+            final byte tag = in.readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case REFERENCE:
+                    return references.get(in.readInt());
+                case STRING:
+                    return readString();
+                case BOOLEAN:
+                    return in.readBoolean();
+                case INTEGER:
+                    return in.readInt();
+                case LONG:
+                    return in.readLong();
+                case DOUBLE:
+                    return in.readDouble();
+                case FLOAT:
+                    return in.readFloat();
+                case SHORT:
+                    return in.readShort();
+                case BYTE:
+                    return in.readByte();
+                case CHARACTER:
+                    return in.readChar();
+                case ENUM:
+                    return Enum.valueOf((Class<Enum>) readClass(false), readString());
+                case BIG_INTEGER:
+                    return new BigInteger(readString());
+                case BIG_DECIMAL:
+                    return new BigDecimal(readString());
+                case QNAME:
+                    return new QName(readString(), readString(), readString());
+                case EMPTY_LIST:
+                    return Collections.EMPTY_LIST;
+                case EMPTY_SET:
+                    return Collections.EMPTY_SET;
+                case EMPTY_MAP:
+                    return Collections.EMPTY_MAP;
+                case COLLECTION: {
+                    final Collection<Object> collection = (Collection<Object>) newInstance(readContainer(Collection.class));
+                    references.add(collection);
+                    final int size = in.readInt();
+                    for (int i = 0; i < size; i++) {
+                        collection.add(read());
+                    }
+                    return collection;
+                }
+                case MAP: {
+                    final Class<?> type = readContainer(Map.class);
+                    final Map<Object, Object> map = type == LinkedHashMap.class ?
+                        new LinkedHashMap<>(16, 0.75f, in.readBoolean()) : (Map<Object, Object>) newInstance(type);
+                    references.add(map);
+                    final int size = in.readInt();
+                    for (int i = 0; i < size; i++) {
+                        final Object key = read();
+                        map.put(key, read());
+                    }
+                    return map;
+                }
+                case ARRAY: {
+                    final Class<?> component = readClass(false);
+                    final int length = in.readInt();
+                    final Object array = Array.newInstance(component, length);
+                    references.add(array);
+                    for (int i = 0; i < length; i++) {
+                        Array.set(array, i, read());
+                    }
+                    return array;
+                }
+                case OBJECT: {
+                    final Class<?> type = readClass(true);
+                    if (!isModel(type)) {
+                        throw new IOException("unexpected type " + type.getName());
+                    }
+                    final Object instance = newInstance(type);
+                    references.add(instance);
+                    for (final Field field : fields(type)) {
+                        final Object value = read();
+                        if (value != null || !field.getType().isPrimitive()) {
+                            field.set(instance, value);
+                        }
+                    }
+                    return instance;
+                }
+                default:
+                    throw new IOException("unknown tag " + tag);
+            }
+        }
+
+        private Class<?> readContainer(final Class<?> api) throws Exception {
+            final Class<?> type = readClass(false);
+            if (!api.isAssignableFrom(type) || !isJdkContainer(type)) {
+                throw new IOException("unexpected type " + type.getName());
+            }
+            return type;
+        }
+
+        private Class<?> readClass(final boolean layout) throws Exception {
+            final int index = in.readInt();
+            if (index >= 0) {
+                return classes.get(index);
+            }
+
+            final String name = readString();
+            if (!name.startsWith(MODEL_PACKAGE) && !name.startsWith("java.")) {
+                throw new IOException("unexpected type " + name);
+            }
+            final Class<?> type = Class.forName(name, false, loader);
+            classes.add(type);
+            if (layout) {
+                final Field[] fields = fields(type);
+                final int count = in.readInt();
+                if (count != fields.length) {
+                    throw new IOException("layout of " + name + " changed");
+                }
+                for (final Field field : fields) {
+                    if (!readString().equals(field.getDeclaringClass().getName() + '#' + field.getName())) {
+                        throw new IOException("layout of " + name + " changed");
+                    }
+                }
+            }
+            return type;
+        }
+
+        private static Object newInstance(final Class<?> type) throws Exception {
+            final Constructor<?> constructor = type.getDeclaredConstructor();
+            if (!constructor.isAccessible()) {
+                constructor.setAccessible(true);
+            }
+            return constructor.newInstance();
+        }
+
+        private String readString() throws IOException {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
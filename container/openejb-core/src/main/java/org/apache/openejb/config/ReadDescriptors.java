@@ -60,6 +60,7 @@ import org.apache.openejb.sxc.HandlerChainsXml;
 import org.apache.openejb.sxc.TldTaglibXml;
 import org.apache.openejb.sxc.WebXml;
 import org.apache.openejb.sxc.WebservicesXml;
+import org.apache.openejb.util.DaemonThreadFactory;
 import org.apache.openejb.util.LengthInputStream;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
@@ -80,55 +81,47 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class ReadDescriptors implements DynamicDeployer {
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP, ReadDescriptors.class);
 
+    public static final String PARALLEL_PROPERTY = "openejb.descriptors.parallel";
+    public static final String PARALLEL_THREADS_PROPERTY = "openejb.descriptors.parallel.threads";
+
     private static final boolean ROOT_URL_FROM_WEBINF = SystemInstance.get().getOptions().get("openejb.jpa.root-url-from-webinf", false);
 
     public static final TldTaglib SKIP_TAGLIB = new TldTaglib();
 
     @SuppressWarnings({"unchecked"})
     public AppModule deploy(final AppModule appModule) throws OpenEJBException {
-        for (final EjbModule ejbModule : appModule.getEjbModules()) {
-
-            if (ejbModule.getEjbJar() == null) {
-                readEjbJar(ejbModule, appModule);
+        final int modules = appModule.getEjbModules().size() + appModule.getClientModules().size()
+            + appModule.getConnectorModules().size() + appModule.getWebModules().size();
+        if (modules > 1 && SystemInstance.get().getOptions().get(PARALLEL_PROPERTY, false)) {
+            readModulesInParallel(appModule, modules);
+        } else {
+            for (final EjbModule ejbModule : appModule.getEjbModules()) {
+                readEjbModule(ejbModule, appModule);
             }
-
-            if (ejbModule.getOpenejbJar() == null) {
-                readOpenejbJar(ejbModule);
+            for (final ClientModule clientModule : appModule.getClientModules()) {
+                readClientModule(clientModule, appModule);
             }
-
-            if (ejbModule.getBeans() == null) {
-                readBeans(ejbModule);
+            for (final ConnectorModule connectorModule : appModule.getConnectorModules()) {
+                readConnectorModule(connectorModule, appModule);
+            }
+            for (final WebModule webModule : appModule.getWebModules()) {
+                readWebModule(webModule, appModule);
             }
-
-            readValidationConfigType(ejbModule);
-            readCmpOrm(ejbModule);
-            readResourcesXml(ejbModule);
-        }
-
-        for (final ClientModule clientModule : appModule.getClientModules()) {
-            readAppClient(clientModule, appModule);
-            readValidationConfigType(clientModule);
-            readResourcesXml(clientModule);
-        }
-
-        for (final ConnectorModule connectorModule : appModule.getConnectorModules()) {
-            readConnector(connectorModule, appModule);
-            readValidationConfigType(connectorModule);
-            readResourcesXml(connectorModule);
-        }
-
-        for (final WebModule webModule : appModule.getWebModules()) {
-            readWebApp(webModule, appModule);
-            readValidationConfigType(webModule);
-            readResourcesXml(webModule);
         }
 
         final List<Object> persistenceUrls = (List<Object>) appModule.getAltDDs().get("persistence.xml");
@@ -177,7 +170,12 @@ public class ReadDescriptors implements DynamicDeployer {
                 }
 
                 try {
-                    final Persistence persistence = JaxbPersistenceFactory.getPersistence(Persistence.class, source.get());
+                    final Persistence persistence = DescriptorCache.read("persistence.xml", Persistence.class, DescriptorCache.bytes(source.get()), new DescriptorCache.Parser<Persistence>() {
+                        @Override
+                        public Persistence parse(final byte[] bytes) throws Exception {
+                            return JaxbPersistenceFactory.getPersistence(Persistence.class, new ByteArrayInputStream(bytes));
+                        }
+                    });
                     final PersistenceModule persistenceModule = new PersistenceModule(appModule, rootUrl, persistence);
                     persistenceModule.getWatchedResources().add(moduleName);
                     if (url && "file".equals(((URL) persistenceUrl).getProtocol())) {
@@ -247,6 +245,135 @@ public class ReadDescriptors implements DynamicDeployer {
         return appModule;
     }
 
+    private void readEjbModule(final EjbModule ejbModule, final AppModule appModule) throws OpenEJBException {
+        if (ejbModule.getEjbJar() == null) {
+            readEjbJar(ejbModule, appModule);
+        }
+
+        if (ejbModule.getOpenejbJar() == null) {
+            readOpenejbJar(ejbModule);
+        }
+
+        if (ejbModule.getBeans() == null) {
+            readBeans(ejbModule);
+        }
+
+        readValidationConfigType(ejbModule);
+        readCmpOrm(ejbModule);
+        readResourcesXml(ejbModule);
+    }
+
+    private void readClientModule(final ClientModule clientModule, final AppModule appModule) throws OpenEJBException {
+        readAppClient(clientModule, appModule);
+        readValidationConfigType(clientModule);
+        readResourcesXml(clientModule);
+    }
+
+    private void readConnectorModule(final ConnectorModule connectorModule, final AppModule appModule) throws OpenEJBException {
+        readConnector(connectorModule, appModule);
+        readValidationConfigType(connectorModule);
+        readResourcesXml(connectorModule);
+    }
+
+    private void readWebModule(final WebModule webModule, final AppModule appModule) throws OpenEJBException {
+        readWebApp(webModule, appModule);
+        readValidationConfigType(webModule);
+        readResourcesXml(webModule);
+    }
+
+    /**
+     * Each module only reads its own descriptors so they can be parsed concurrently,
+     * anything shared by the application (persistence units, fragments) is still done
+     * by the caller once all modules are read.
+     */
+    private void readModulesInParallel(final AppModule appModule, final int modules) throws OpenEJBException {
+        final long start = System.nanoTime();
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(modules);
+        for (final EjbModule ejbModule : appModule.getEjbModules()) {
+            tasks.add(new ModuleReader(loader) {
+                @Override
+                protected void read() throws OpenEJBException {
+                    readEjbModule(ejbModule, appModule);
+                }
+            });
+        }
+        for (final ClientModule clientModule : appModule.getClientModules()) {
+            tasks.add(new ModuleReader(loader) {
+                @Override
+                protected void read() throws OpenEJBException {
+                    readClientModule(clientModule, appModule);
+                }
+            });
+        }
+        for (final ConnectorModule connectorModule : appModule.getConnectorModules()) {
+            tasks.add(new ModuleReader(loader) {
+                @Override
+                protected void read() throws OpenEJBException {
+                    readConnectorModule(connectorModule, appModule);
+                }
+            });
+        }
+        for (final WebModule webModule : appModule.getWebModules()) {
+            tasks.add(new ModuleReader(loader) {
+                @Override
+                protected void read() throws OpenEJBException {
+                    readWebModule(webModule, appModule);
+                }
+            });
+        }
+
+        final int threads = Math.min(modules, SystemInstance.get().getOptions().get(PARALLEL_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory(ReadDescriptors.class));
+        try {
+            for (final Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof OpenEJBException) {
+                        throw (OpenEJBException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new OpenEJBException(cause);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpenEJBException("Interrupted while reading descriptors of " + appModule.getModuleId(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        logger.info("Read descriptors of " + modules + " modules of " + appModule.getModuleId() + " using " + threads
+            + " threads in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    }
+
+    private abstract static class ModuleReader implements Callable<Void> {
+        private final ClassLoader loader;
+
+        private ModuleReader(final ClassLoader loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            final Thread thread = Thread.currentThread();
+            final ClassLoader old = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            try {
+                read();
+            } finally {
+                thread.setContextClassLoader(old);
+            }
+            return null;
+        }
+
+        protected abstract void read() throws OpenEJBException;
+    }
+
     public static void readResourcesXml(final Module module) {
         { // xml
             final Source url = getSource(module.getAltDDs().get("resources.xml"));
@@ -323,7 +450,12 @@ public class ReadDescriptors implements DynamicDeployer {
         if (source != null) {
             try {
                 // Attempt to parse it first as a v3 descriptor
-                final OpenejbJar openejbJar = JaxbOpenejbJar3.unmarshal(OpenejbJar.class, source.get()).postRead();
+                final OpenejbJar openejbJar = DescriptorCache.read("openejb-jar.xml", OpenejbJar.class, DescriptorCache.bytes(source.get()), new DescriptorCache.Parser<OpenejbJar>() {
+                    @Override
+                    public OpenejbJar parse(final byte[] bytes) throws Exception {
+                        return JaxbOpenejbJar3.unmarshal(OpenejbJar.class, new ByteArrayInputStream(bytes)).postRead();
+                    }
+                });
                 ejbModule.setOpenejbJar(openejbJar);
             } catch (final Exception v3ParsingException) {
                 // Attempt to parse it second as a v2 descriptor
@@ -656,11 +788,16 @@ public class ReadDescriptors implements DynamicDeployer {
     public static EjbJar readEjbJar(final InputStream is) throws OpenEJBException {
         try {
             final String content = IO.slurp(is);
-            if (isEmptyEjbJar(new ByteArrayInputStream(content.getBytes()))) {
-                final String id = getId(new ByteArrayInputStream(content.getBytes()));
-                return new EjbJar(id);
-            }
-            return EjbJarXml.unmarshal(new ByteArrayInputStream(content.getBytes()));
+            return DescriptorCache.read("ejb-jar.xml", EjbJar.class, content.getBytes(), new DescriptorCache.Parser<EjbJar>() {
+                @Override
+                public EjbJar parse(final byte[] bytes) throws Exception {
+                    if (isEmptyEjbJar(new ByteArrayInputStream(bytes))) {
+                        final String id = getId(new ByteArrayInputStream(bytes));
+                        return new EjbJar(id);
+                    }
+                    return EjbJarXml.unmarshal(new ByteArrayInputStream(bytes));
+                }
+            });
         } catch (final SAXException e) {
             throw new OpenEJBException("Cannot parse the ejb-jar.xml", e); // file: " + url.toExternalForm(), e);
         } catch (final IOException e) {
@@ -825,7 +962,16 @@ public class ReadDescriptors implements DynamicDeployer {
     public static WebApp readWebApp(final URL url) throws OpenEJBException {
         final WebApp webApp;
         try {
-            webApp = WebXml.unmarshal(url);
+            final byte[] content;
+            try (final InputStream is = IO.read(url)) {
+                content = DescriptorCache.bytes(is);
+            }
+            webApp = DescriptorCache.read("web.xml", WebApp.class, content, new DescriptorCache.Parser<WebApp>() {
+                @Override
+                public WebApp parse(final byte[] bytes) throws Exception {
+                    return WebXml.unmarshal(new ByteArrayInputStream(bytes));
+                }
+            });
         } catch (final SAXException e) {
             throw new OpenEJBException("Cannot parse the web.xml file: " + url.toExternalForm(), e);
         } catch (final JAXBException e) {
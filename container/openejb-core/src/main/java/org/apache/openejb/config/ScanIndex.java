@@ -0,0 +1,653 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.xbean.asm6.ClassReader;
+import org.apache.xbean.asm6.ClassWriter;
+import org.apache.xbean.finder.archive.Archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent index of the classes of a jar or an exploded folder used to avoid reading the archive at each boot.
+ * <p/>
+ * For each class only a stub is stored: the bytecode without code, debug and frame attributes, i.e. what
+ * the xbean {@link org.apache.xbean.finder.AnnotationFinder} reads (hierarchy, annotations, members and signatures).
+ * A jar index is reused as long as the jar size, last modified date and SHA-256 didn't change (the hash check can be
+ * skipped with {@link #HASH_PROPERTY}, the jar is then trusted on its size and date only), a folder index is
+ * updated incrementally (only the class files with a different size or date are read again).
+ * <p/>
+ * Activated with {@link #ENABLED_PROPERTY}, indices are stored in {@link #LOCATION_PROPERTY}
+ * (<code>${openejb.base}/data/scan-index</code> by default). It is independent from jars.txt
+ * which only lists the jars to scan.
+ * <p/>
+ * An archive can also embed its index ({@link #EMBEDDED_INDEX}, see {@link #generate(File)}), activated with
+ * {@link #EMBEDDED_PROPERTY} it is used whatever the activation of the runtime index is, as long as it matches
+ * the archive classes. It is off by default since checking it opens each archive one more time.
+ * The libraries of a war or an ear can't be rebuilt, their index is carried by the war
+ * (<code>WEB-INF/classes/{@value #LIBRARIES_INDEX}&lt;jar&gt;.idx</code>) or the ear
+ * (<code>{@value #LIBRARIES_INDEX}&lt;jar&gt;.idx</code>), see {@link #generateLibraries(File, Collection)}.
+ */
+public final class ScanIndex {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, ScanIndex.class);
+
+    public static final String ENABLED_PROPERTY = "openejb.scanning.index";
+    public static final String LOCATION_PROPERTY = "openejb.scanning.index.location";
+    public static final String EMBEDDED_PROPERTY = "openejb.scanning.index.embedded";
+    public static final String HASH_PROPERTY = "openejb.scanning.index.hash";
+    public static final String EMBEDDED_INDEX = "META-INF/openejb-scan.idx";
+    public static final String LIBRARIES_INDEX = "META-INF/openejb-scan/";
+
+    private static final String EMBEDDED = "embedded";
+
+    private static final int MAGIC = 0x4F534958; // OSIX
+    private static final int VERSION = 2;
+    private static final String CLASS_EXTENSION = ".class";
+
+    private static final AtomicInteger HITS = new AtomicInteger();
+    private static final AtomicInteger MISSES = new AtomicInteger();
+
+    private ScanIndex() {
+        // no-op
+    }
+
+    public static boolean isActive() {
+        return SystemInstance.get().getOptions().get(ENABLED_PROPERTY, false);
+    }
+
+    public static boolean isEmbeddedActive() {
+        return SystemInstance.get().getOptions().get(EMBEDDED_PROPERTY, false);
+    }
+
+    public static boolean isHashActive() {
+        return SystemInstance.get().getOptions().get(HASH_PROPERTY, true);
+    }
+
+    /**
+     * @param loader   the loader used to load the classes
+     * @param location the jar or folder to index
+     * @return an archive backed by the index or null if the location can't be indexed
+     */
+    public static Archive archive(final ClassLoader loader, final URL location) {
+        final File file = toFile(location);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        try {
+            final Index embedded = isEmbeddedActive() ? embedded(file) : null;
+            if (embedded != null) {
+                HITS.incrementAndGet();
+                LOGGER.debug("Using embedded scan index of " + file.getAbsolutePath());
+                return new IndexedArchive(loader, embedded.stubs);
+            }
+
+            if (!isActive()) {
+                return null;
+            }
+
+            final File index = indexFile(file);
+            final Index existing = read(index, file);
+            final Index current;
+            if (file.isDirectory()) {
+                current = indexFolder(file, existing);
+            } else if (existing != null && existing.size == file.length() && existing.lastModified == file.lastModified()
+                    && (!isHashActive() || Arrays.equals(existing.hash, hash(file)))) { // hashing is cheaper than stubbing
+                current = existing;
+            } else {
+                current = indexJar(file);
+            }
+
+            if (current != existing) {
+                MISSES.incrementAndGet();
+                write(index, current);
+                LOGGER.debug("Indexed " + current.stubs.size() + " classes of " + file.getAbsolutePath());
+            } else {
+                HITS.incrementAndGet();
+            }
+            return new IndexedArchive(loader, current.stubs);
+        } catch (final IOException | RuntimeException e) {
+            final String message = "Can't use scan index for " + file.getAbsolutePath() + ", scanning it: " + e.getMessage();
+            if (isActive()) {
+                LOGGER.warning(message);
+            } else {
+                LOGGER.debug(message);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return number of archives served from an up to date index since the startup
+     */
+    public static int getHits() {
+        return HITS.get();
+    }
+
+    /**
+     * @return number of archives (re)indexed since the startup
+     */
+    public static int getMisses() {
+        return MISSES.get();
+    }
+
+    /**
+     * Writes the index of a classes folder in {@link #EMBEDDED_INDEX}, it is used as long
+     * as the classes match it, including once the folder is packaged as a jar or a war.
+     * Mainly intended to be called at build time.
+     *
+     * @param classes the folder to index
+     * @return the number of indexed classes
+     * @throws IOException if the folder can't be read or the index can't be written
+     */
+    public static int generate(final File classes) throws IOException {
+        final Index index = new Index(EMBEDDED, 0, 0);
+        generate(classes, "", index);
+
+        final File output = new File(classes, EMBEDDED_INDEX);
+        if (!output.getParentFile().isDirectory() && !output.getParentFile().mkdirs()) {
+            throw new IOException("Can't create " + output.getParentFile().getAbsolutePath());
+        }
+        try (final OutputStream out = new FileOutputStream(output)) {
+            write(out, index);
+        }
+        return index.stubs.size();
+    }
+
+    /**
+     * Writes the index of libraries in <code>output/{@value #LIBRARIES_INDEX}</code>, one file per jar.
+     * The output is the classes folder of a war or the root of an ear, the index of a library is then used
+     * as long as the jar of <code>WEB-INF/lib</code> or <code>lib</code> with the same name matches it.
+     *
+     * @param output the war classes folder or the ear folder
+     * @param jars   the libraries packaged with the application
+     * @return the number of indexed jars
+     * @throws IOException if a jar can't be read or an index can't be written
+     */
+    public static int generateLibraries(final File output, final Collection<File> jars) throws IOException {
+        final File folder = new File(output, LIBRARIES_INDEX);
+        int indexed = 0;
+        for (final File jar : jars) {
+            if (!jar.isFile() || !jar.getName().endsWith(".jar")) {
+                continue;
+            }
+            if (!folder.isDirectory() && !folder.mkdirs()) {
+                throw new IOException("Can't create " + folder.getAbsolutePath());
+            }
+
+            final Index index = new Index(EMBEDDED, 0, 0);
+            try (final JarFile jarFile = new JarFile(jar)) {
+                final Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    final JarEntry entry = entries.nextElement();
+                    if (entry.isDirectory() || !isScannable(entry.getName())) {
+                        continue;
+                    }
+                    try (final InputStream is = jarFile.getInputStream(entry)) {
+                        final byte[] bytecode = bytes(is);
+                        final CRC32 crc = new CRC32();
+                        crc.update(bytecode);
+                        index.stubs.put(className(entry.getName()), new Stub(bytecode.length, crc.getValue(), stub(bytecode)));
+                    }
+                }
+            }
+            try (final OutputStream out = new FileOutputStream(new File(folder, jar.getName() + ".idx"))) {
+                write(out, index);
+            }
+            indexed++;
+        }
+        return indexed;
+    }
+
+    private static void generate(final File folder, final String prefix, final Index index) throws IOException {
+        final File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children); // reproducible output
+        for (final File child : children) {
+            final String name = prefix + child.getName();
+            if (child.isDirectory()) {
+                generate(child, name + '/', index);
+            } else if (isScannable(name)) {
+                final byte[] bytecode = bytes(child);
+                final CRC32 crc = new CRC32();
+                crc.update(bytecode);
+                index.stubs.put(className(name), new Stub(bytecode.length, crc.getValue(), stub(bytecode)));
+            }
+        }
+    }
+
+    // the embedded index is only valid if it matches exactly the classes of the archive
+    private static Index embedded(final File file) throws IOException {
+        if (file.isDirectory()) {
+            final File indexFile = new File(file, EMBEDDED_INDEX);
+            if (!indexFile.isFile()) {
+                return null;
+            }
+            final Index index;
+            try (final InputStream in = new FileInputStream(indexFile)) {
+                index = read(in);
+            }
+            if (index == null || !EMBEDDED.equals(index.path)) {
+                return null;
+            }
+            final int[] matching = {0};
+            return matchesFolder(file, "", index, indexFile.lastModified(), matching) && matching[0] == index.stubs.size() ? index : null;
+        }
+
+        try (final JarFile jar = new JarFile(file)) {
+            final JarEntry indexEntry = jar.getJarEntry(EMBEDDED_INDEX);
+            final Index index;
+            if (indexEntry != null) {
+                try (final InputStream in = jar.getInputStream(indexEntry)) {
+                    index = read(in);
+                }
+            } else {
+                index = libraryIndex(file);
+            }
+            if (index == null || !EMBEDDED.equals(index.path)) {
+                return null;
+            }
+
+            // only the central directory is read there, entries are not inflated
+            int matching = 0;
+            final Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                final JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !isScannable(entry.getName())) {
+                    continue;
+                }
+                final Stub stub = index.stubs.get(className(entry.getName()));
+                if (stub == null || stub.size != entry.getSize() || stub.stamp != entry.getCrc()) {
+                    return null;
+                }
+                matching++;
+            }
+            return matching == index.stubs.size() ? index : null;
+        }
+    }
+
+    // WEB-INF/lib/foo.jar -> WEB-INF/classes/META-INF/openejb-scan/foo.jar.idx, lib/foo.jar -> META-INF/openejb-scan/foo.jar.idx
+    private static Index libraryIndex(final File jar) throws IOException {
+        final File lib = jar.getParentFile();
+        if (lib == null || lib.getParentFile() == null) {
+            return null;
+        }
+
+        final String name = LIBRARIES_INDEX + jar.getName() + ".idx";
+        for (final File candidate : new File[]{new File(lib.getParentFile(), "classes/" + name), new File(lib.getParentFile(), name)}) {
+            if (candidate.isFile()) {
+                try (final InputStream in = new FileInputStream(candidate)) {
+                    return read(in);
+                }
+            }
+        }
+        return null;
+    }
+
+    // only the classes modified after the index are read to compare their checksum
+    private static boolean matchesFolder(final File folder, final String prefix, final Index index,
+                                         final long generated, final int[] matching) throws IOException {
+        final File[] children = folder.listFiles();
+        if (children == null) {
+            return true;
+        }
+        for (final File child : children) {
+            final String name = prefix + child.getName();
+            if (child.isDirectory()) {
+                if (!matchesFolder(child, name + '/', index, generated, matching)) {
+                    return false;
+                }
+            } else if (isScannable(name)) {
+                final Stub stub = index.stubs.get(className(name));
+                if (stub == null || stub.size != child.length()) {
+                    return false;
+                }
+                if (child.lastModified() > generated) { // recompiled, maybe with the same size
+                    final CRC32 crc = new CRC32();
+                    crc.update(bytes(child));
+                    if (stub.stamp != crc.getValue()) {
+                        return false;
+                    }
+                }
+                matching[0]++;
+            }
+        }
+        return true;
+    }
+
+    public static byte[] stub(final byte[] bytecode) {
+        final ClassReader reader = new ClassReader(bytecode);
+        final ClassWriter writer = new ClassWriter(0);
+        reader.accept(writer, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return writer.toByteArray();
+    }
+
+    private static File toFile(final URL location) {
+        if ("jar".equals(location.getProtocol())) {
+            final String spec = location.getFile();
+            final int separator = spec.indexOf('!');
+            if (separator > 0 && separator < spec.length() - 2) { // jar:file:foo.jar!/bar/ is not indexed
+                return null;
+            }
+        } else if (!"file".equals(location.getProtocol())) {
+            return null;
+        }
+        try {
+            return Files.toFile(location);
+        } catch (final RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static File indexFile(final File file) throws IOException {
+        final String configured = SystemInstance.get().getOptions().get(LOCATION_PROPERTY, (String) null);
+        final File folder = configured != null ?
+            new File(configured) : new File(SystemInstance.get().getBase().getDirectory(), "data/scan-index");
+        if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Can't create " + folder.getAbsolutePath());
+        }
+
+        final String path = file.getCanonicalPath();
+        return new File(folder, file.getName() + '-' + Integer.toHexString(path.hashCode()) + ".idx");
+    }
+
+    private static Index indexJar(final File file) throws IOException {
+        final Index index = new Index(file.getCanonicalPath(), file.length(), file.lastModified());
+        index.hash = hash(file);
+        try (final JarFile jar = new JarFile(file)) {
+            final Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                final JarEntry entry = entries.nextElement();
+                final String name = entry.getName();
+                if (entry.isDirectory() || !isScannable(name)) {
+                    continue;
+                }
+                try (final InputStream is = jar.getInputStream(entry)) {
+                    index.stubs.put(className(name), new Stub(0, 0, stub(bytes(is))));
+                }
+            }
+        }
+        return index;
+    }
+
+    private static Index indexFolder(final File folder, final Index existing) throws IOException {
+        final Index index = new Index(folder.getCanonicalPath(), 0, 0);
+        final boolean[] updated = {existing == null};
+        indexFolder(folder, "", existing, index, updated);
+        if (!updated[0] && existing.stubs.size() == index.stubs.size()) {
+            return existing;
+        }
+        return index;
+    }
+
+    private static void indexFolder(final File folder, final String prefix, final Index existing,
+                                    final Index index, final boolean[] updated) throws IOException {
+        final File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (final File child : children) {
+            final String name = prefix + child.getName();
+            if (child.isDirectory()) {
+                indexFolder(child, name + '/', existing, index, updated);
+                continue;
+            }
+            if (!isScannable(name)) {
+                continue;
+            }
+
+            final String className = className(name);
+            final Stub previous = existing != null ? existing.stubs.get(className) : null;
+            if (previous != null && previous.size == child.length() && previous.stamp == child.lastModified()) {
+                index.stubs.put(className, previous);
+            } else {
+                index.stubs.put(className, new Stub(child.length(), child.lastModified(), stub(bytes(child))));
+                updated[0] = true;
+            }
+        }
+    }
+
+    private static byte[] bytes(final InputStream is) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IO.copy(is, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(final File file) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+        IO.copy(file, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] hash(final File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (final InputStream in = new FileInputStream(file)) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static boolean isScannable(final String name) {
+        return name.endsWith(CLASS_EXTENSION) && !name.startsWith("META-INF/") && !name.endsWith("module-info.class");
+    }
+
+    private static String className(final String name) {
+        return name.substring(0, name.length() - CLASS_EXTENSION.length()).replace('/', '.');
+    }
+
+    private static Index read(final File file, final File source) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (final InputStream in = new FileInputStream(file)) {
+            final Index index = read(in);
+            if (index == null || !index.path.equals(source.getCanonicalPath())) { // name collision
+                return null;
+            }
+            return index;
+        } catch (final IOException e) {
+            LOGGER.debug("Ignoring invalid scan index " + file.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Index read(final InputStream stream) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return null;
+        }
+        final Index index = new Index(in.readUTF(), in.readLong(), in.readLong());
+        index.hash = new byte[in.readInt()];
+        in.readFully(index.hash);
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final String name = in.readUTF();
+            final long size = in.readLong();
+            final long stamp = in.readLong();
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            index.stubs.put(name, new Stub(size, stamp, bytes));
+        }
+        return index;
+    }
+
+    private static void write(final File file, final Index index) throws IOException {
+        // concurrent deployments can share a library so write aside and move it once complete
+        final File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try (final OutputStream out = new FileOutputStream(tmp)) {
+            write(out, index);
+        }
+        try {
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            if (!tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+            throw e;
+        }
+    }
+
+    private static void write(final OutputStream stream, final Index index) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(index.path);
+        out.writeLong(index.size);
+        out.writeLong(index.lastModified);
+        out.writeInt(index.hash.length);
+        out.write(index.hash);
+        out.writeInt(index.stubs.size());
+        for (final Map.Entry<String, Stub> entry : index.stubs.entrySet()) {
+            final Stub stub = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeLong(stub.size);
+            out.writeLong(stub.stamp);
+            out.writeInt(stub.bytecode.length);
+            out.write(stub.bytecode);
+        }
+        out.flush();
+    }
+
+    private static final class Index {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final Map<String, Stub> stubs = new LinkedHashMap<>();
+        private byte[] hash = new byte[0]; // SHA-256 of a jar, empty for a folder or an embedded index
+
+        private Index(final String path, final long size, final long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class Stub {
+        private final long size;
+        private final long stamp; // last modified date for a folder index, CRC-32 for an embedded index
+        private final byte[] bytecode;
+
+        private Stub(final long size, final long stamp, final byte[] bytecode) {
+            this.size = size;
+            this.stamp = stamp;
+            this.bytecode = bytecode;
+        }
+    }
+
+    public static final class IndexedArchive implements Archive {
+        private final ClassLoader loader;
+        private final Map<String, Stub> stubs;
+
+        private IndexedArchive(final ClassLoader loader, final Map<String, Stub> stubs) {
+            this.loader = loader;
+            this.stubs = stubs;
+        }
+
+        @Override
+        public InputStream getBytecode(final String className) throws IOException, ClassNotFoundException {
+            final String name = className.endsWith(CLASS_EXTENSION) ? className(className) : className.replace('/', '.');
+            final Stub stub = stubs.get(name);
+            if (stub != null) {
+                return new ByteArrayInputStream(stub.bytecode);
+            }
+
+            final InputStream resource = loader.getResourceAsStream(name.replace('.', '/') + CLASS_EXTENSION);
+            if (resource == null) {
+                throw new ClassNotFoundException(className);
+            }
+            return new BufferedInputStream(resource);
+        }
+
+        @Override
+        public Class<?> loadClass(final String className) throws ClassNotFoundException {
+            return loader.loadClass(className);
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            final Iterator<Map.Entry<String, Stub>> delegate = stubs.entrySet().iterator();
+            return new Iterator<Entry>() {
+                @Override
+                public boolean hasNext() {
+                    return delegate.hasNext();
+                }
+
+                @Override
+                public Entry next() {
+                    final Map.Entry<String, Stub> next = delegate.next();
+                    return new Entry() {
+                        @Override
+                        public String getName() {
+                            return next.getKey();
+                        }
+
+                        @Override
+                        public InputStream getBytecode() throws IOException {
+                            return new ByteArrayInputStream(next.getValue().bytecode);
+                        }
+                    };
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -258,6 +258,20 @@ public class TldScanner {
             return urls;
         }
 
+        final ArchiveIndex.Entries entries = ArchiveIndex.get(file);
+        if (entries != null) {
+            try {
+                for (final String name : entries.list("META-INF/", false)) {
+                    if (name.endsWith(".tld")) {
+                        urls.add(entries.url(name));
+                    }
+                }
+            } catch (final MalformedURLException e) {
+                DeploymentLoader.logger.warning("Error scanning jar for JSP tag libraries: " + file.getAbsolutePath(), e);
+            }
+            return urls;
+        }
+
         JarFile jarFile = null;
         try {
             jarFile = new JarFile(file);
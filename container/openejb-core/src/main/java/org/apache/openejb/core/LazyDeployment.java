@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.BeanType;
+import org.apache.openejb.Container;
+import org.apache.openejb.OpenEJBException;
+import org.apache.openejb.core.timer.EjbTimerServiceImpl;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defers the container deployment (pool, instance manager, stats) of a bean
+ * to its first invocation.
+ * <p/>
+ * The bean context itself (metadata, interceptors, JNDI) is still built at boot
+ * since CDI, the validation and the JNDI tree need it, only the container side is lazy:
+ * the gain is the pools and instance managers of the beans never called, not the assembly time.
+ * The time each deferred deployment takes is logged on the first invocation.
+ * Containers call {@link #deploy(Object)} when they don't know the requested deployment.
+ */
+public class LazyDeployment {
+    public static final String PROPERTY = "openejb.deployment.lazy";
+
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP, LazyDeployment.class);
+
+    private final BeanContext beanContext;
+    private volatile boolean deployed;
+    private boolean closed;
+
+    public LazyDeployment(final BeanContext beanContext) {
+        this.beanContext = beanContext;
+    }
+
+    public boolean isDeployed() {
+        return deployed;
+    }
+
+    /**
+     * @return true if the bean was deployed by this call
+     * @throws OpenEJBException if the container can't deploy or start the bean or if the bean was undeployed
+     */
+    public boolean ensureDeployed() throws OpenEJBException {
+        if (deployed) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (deployed) {
+                return false;
+            }
+            if (closed) {
+                throw new OpenEJBException("Deployment was undeployed. Deployment(id='" + beanContext.getDeploymentID() + "')");
+            }
+
+            final long start = System.nanoTime();
+            final Container container = beanContext.getContainer();
+            final Thread thread = Thread.currentThread();
+            final ClassLoader oldLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(beanContext.getClassLoader());
+            try {
+                container.deploy(beanContext);
+                try {
+                    container.start(beanContext);
+                } catch (final OpenEJBException | RuntimeException e) {
+                    container.undeploy(beanContext);
+                    beanContext.setContainer(container); // undeploy resets it, keep it for a retry
+                    throw e;
+                }
+            } finally {
+                thread.setContextClassLoader(oldLoader);
+            }
+
+            deployed = true;
+            LOGGER.info("Deployed lazy Ejb(deployment-id=" + beanContext.getDeploymentID() + ", ejb-name=" + beanContext.getEjbName() + ") in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+            return true;
+        }
+    }
+
+    /**
+     * Marks the deployment as closed, a later invocation will fail instead of deploying it again.
+     *
+     * @return true if the bean was deployed in its container and needs to be stopped/undeployed
+     */
+    public synchronized boolean close() {
+        closed = true;
+        return deployed;
+    }
+
+    /**
+     * @param beanContext the bean
+     * @return true if the bean has to go through its container now, false if it is deferred
+     */
+    public static boolean isDeployedOrEager(final BeanContext beanContext) {
+        final LazyDeployment lazy = beanContext.get(LazyDeployment.class);
+        return lazy == null || lazy.isDeployed();
+    }
+
+    /**
+     * @param beanContext the bean, must be already fully built
+     * @return true if the bean can skip its container deployment at startup
+     */
+    public static boolean isEligible(final BeanContext beanContext) {
+        final BeanType type = beanContext.getComponentType();
+        if (type != BeanType.STATELESS && type != BeanType.STATEFUL && type != BeanType.MANAGED) {
+            return false; // singletons can be @Startup/@DependsOn, mdb need to listen
+        }
+        if (beanContext.isHidden() || String.valueOf(beanContext.getDeploymentID()).endsWith(".Comp")) {
+            return false;
+        }
+        return !EjbTimerServiceImpl.class.isInstance(beanContext.getEjbTimerService()); // schedules need a started bean
+    }
+
+    /**
+     * Resolves a deployment unknown from its container, deploying it if it was deferred.
+     *
+     * @param deploymentID the deployment id
+     * @return the deployed bean context or null if it is not a lazy deployment
+     * @throws OpenEJBException if the deployment fails
+     */
+    public static BeanContext deploy(final Object deploymentID) throws OpenEJBException {
+        final ContainerSystem containerSystem = SystemInstance.get().getComponent(ContainerSystem.class);
+        if (containerSystem == null || deploymentID == null) {
+            return null;
+        }
+
+        final BeanContext beanContext = containerSystem.getBeanContext(deploymentID);
+        if (beanContext == null) {
+            return null;
+        }
+
+        final LazyDeployment lazy = beanContext.get(LazyDeployment.class);
+        if (lazy == null) {
+            return null;
+        }
+
+        lazy.ensureDeployed();
+        return beanContext;
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.openejb.RpcContainer;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.ThreadContextListener;
+import org.apache.openejb.loader.ComponentHandle;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.spi.ContainerSystem;
 import org.apache.openejb.spi.SecurityService;
@@ -83,6 +84,7 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
 
     private static final String OPENEJB_LOCALCOPY = "openejb.localcopy";
     private static final boolean REMOTE_COPY_ENABLED = parseRemoteCopySetting();
+    private static volatile ComponentHandle<SecurityService> securityServiceHandle;
     static {
         ThreadContext.addThreadContextListener(new ThreadContextListener() {
             @Override
@@ -310,7 +312,7 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
         final Object localClientIdentity = ClientSecurity.getIdentity();
         try {
             if (callContext == null && localClientIdentity != null) {
-                final SecurityService securityService = SystemInstance.get().getComponent(SecurityService.class);
+                final SecurityService securityService = securityService();
                 securityService.associate(localClientIdentity);
             }
             if (strategy == CLASSLOADER_COPY || getBeanContext().getInterfaceType(interfce) == InterfaceType.BUSINESS_REMOTE) {
@@ -355,12 +357,20 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
         } finally {
 
             if (callContext == null && localClientIdentity != null) {
-                final SecurityService securityService = SystemInstance.get().getComponent(SecurityService.class);
+                final SecurityService securityService = securityService();
                 securityService.disassociate();
             }
         }
     }
 
+    private static SecurityService securityService() {
+        final ComponentHandle<SecurityService> handle = ComponentHandle.current(securityServiceHandle, SecurityService.class);
+        if (handle != securityServiceHandle) {
+            securityServiceHandle = handle;
+        }
+        return handle.get();
+    }
+
     private <T> T copy(final IntraVmCopyMonitor.State strategy, final T object) throws IOException, ClassNotFoundException {
         if (object == null || !strategy.isCopy()) {
             return object;
@@ -31,6 +31,7 @@ import org.apache.openejb.cdi.CdiEjbBean;
 import org.apache.openejb.cdi.CurrentCreationalContext;
 import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.InstanceContext;
+import org.apache.openejb.core.LazyDeployment;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.interceptor.InterceptorData;
@@ -355,7 +356,10 @@ public class StatefulContainer implements RpcContainer {
 
     @Override
     public Object invoke(final Object deployID, InterfaceType type, final Class callInterface, final Method callMethod, final Object[] args, final Object primKey) throws OpenEJBException {
-        final BeanContext beanContext = this.getBeanContext(deployID);
+        BeanContext beanContext = this.getBeanContext(deployID);
+        if (beanContext == null) {
+            beanContext = LazyDeployment.deploy(deployID);
+        }
 
         if (beanContext == null) {
             throw new OpenEJBException("Deployment does not exist in this container. Deployment(id='" + deployID + "'), Container(id='" + containerID + "')");
@@ -26,6 +26,7 @@ import org.apache.openejb.SystemException;
 import org.apache.openejb.api.resource.DestroyableResource;
 import org.apache.openejb.cdi.CurrentCreationalContext;
 import org.apache.openejb.core.ExceptionType;
+import org.apache.openejb.core.LazyDeployment;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.interceptor.InterceptorData;
@@ -154,7 +155,10 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer, Dest
                          final Method callMethod,
                          final Object[] args,
                          final Object primKey) throws OpenEJBException {
-        final BeanContext beanContext = this.getBeanContext(deployID);
+        BeanContext beanContext = this.getBeanContext(deployID);
+        if (beanContext == null) {
+            beanContext = LazyDeployment.deploy(deployID);
+        }
 
         if (beanContext == null) {
             final String msg = "Deployment does not exist in this container. Deployment(id='" + deployID + "'), Container(id='" + containerID + "')";
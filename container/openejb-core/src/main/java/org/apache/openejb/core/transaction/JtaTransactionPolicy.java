@@ -19,7 +19,7 @@ package org.apache.openejb.core.transaction;
 
 import org.apache.openejb.ApplicationException;
 import org.apache.openejb.SystemException;
-import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.loader.ComponentHandle;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
@@ -45,6 +45,8 @@ public abstract class JtaTransactionPolicy implements TransactionPolicy {
     protected static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
     protected static final Logger txLogger = Logger.getInstance(LogCategory.TRANSACTION, "org.apache.openejb.util.resources");
 
+    private static volatile ComponentHandle<TransactionSynchronizationRegistry> synchronizationRegistryHandle;
+
     protected final TransactionType transactionType;
 
     protected final TransactionManager transactionManager;
@@ -56,7 +58,16 @@ public abstract class JtaTransactionPolicy implements TransactionPolicy {
     public JtaTransactionPolicy(final TransactionType transactionType, final TransactionManager transactionManager) {
         this.transactionType = transactionType;
         this.transactionManager = transactionManager;
-        synchronizationRegistry = SystemInstance.get().getComponent(TransactionSynchronizationRegistry.class);
+        synchronizationRegistry = synchronizationRegistry();
+    }
+
+    private static TransactionSynchronizationRegistry synchronizationRegistry() {
+        final ComponentHandle<TransactionSynchronizationRegistry> handle =
+            ComponentHandle.current(synchronizationRegistryHandle, TransactionSynchronizationRegistry.class);
+        if (handle != synchronizationRegistryHandle) {
+            synchronizationRegistryHandle = handle;
+        }
+        return handle.get();
     }
 
     public TransactionType getTransactionType() {
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records nested startup spans (deployers, builders, lifecycle steps) with their wall time,
+ * CPU time, allocated bytes and loaded classes.
+ * <p/>
+ * Activated with {@link #ACTIVE_PROPERTY}, otherwise {@link #start(String)} returns a shared no-op span.
+ * When a root span ends its tree is logged in openejb.startup, appended in the collapsed stack format
+ * (<code>root;child;grandchild self-time-in-us</code>, usable by flame graph tools) to {@link #OUTPUT_PROPERTY}
+ * (<code>${openejb.base}/logs/startup-profile.folded</code> by default) and exposed through JMX.
+ * <p/>
+ * CPU time and allocations are measured on the span thread, loaded classes are JVM wide.
+ */
+public final class StartupProfiler {
+    public static final String ACTIVE_PROPERTY = "openejb.startup.profiler";
+    public static final String OUTPUT_PROPERTY = "openejb.startup.profiler.output";
+
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP, StartupProfiler.class);
+
+    private static final Span NOOP = new Span(null, null);
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+    private static final List<String> REPORT = new ArrayList<>();
+
+    private static volatile Probes probes;
+
+    private StartupProfiler() {
+        // no-op
+    }
+
+    public static boolean isActive() {
+        return SystemInstance.get().getOptions().get(ACTIVE_PROPERTY, false);
+    }
+
+    /**
+     * @param name the span name, should contain the module if it is module specific
+     * @return the started span, to close once the step is done
+     */
+    public static Span start(final String name) {
+        if (!isActive()) {
+            return NOOP;
+        }
+
+        final Span span = new Span(name, CURRENT.get());
+        CURRENT.set(span);
+        span.begin(probes());
+        return span;
+    }
+
+    /**
+     * @param type a step implementation
+     * @return a span name for this step, its class name without the package
+     */
+    public static String name(final Class<?> type) {
+        final String name = type.getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * @return the reports of the ended root spans
+     */
+    public static List<String> getReport() {
+        synchronized (REPORT) {
+            return new ArrayList<>(REPORT);
+        }
+    }
+
+    private static Probes probes() {
+        if (probes == null) {
+            synchronized (StartupProfiler.class) {
+                if (probes == null) {
+                    probes = new Probes();
+                    LocalMBeanServer.registerDynamicWrapperSilently(new StartupProfilerMBean(),
+                        new ObjectNameBuilder("openejb.management").set("ObjectType", "StartupProfiler").build());
+                }
+            }
+        }
+        return probes;
+    }
+
+    private static void report(final Span root) {
+        final List<String> lines = new ArrayList<>();
+        final StringBuilder folded = new StringBuilder();
+        root.report("", "", lines, folded);
+
+        final StringBuilder log = new StringBuilder("Startup profile:");
+        for (final String line : lines) {
+            log.append('\n').append(line);
+        }
+        LOGGER.info(log.toString());
+
+        synchronized (REPORT) {
+            REPORT.addAll(lines);
+        }
+
+        final String configured = SystemInstance.get().getOptions().get(OUTPUT_PROPERTY, (String) null);
+        try {
+            final File output = configured != null ?
+                new File(configured) : new File(SystemInstance.get().getBase().getDirectory(), "logs/startup-profile.folded");
+            final File parent = output.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Can't create " + parent.getAbsolutePath());
+            }
+            synchronized (StartupProfiler.class) {
+                try (final Writer writer = new OutputStreamWriter(new FileOutputStream(output, true), StandardCharsets.UTF_8)) {
+                    writer.write(folded.toString());
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.warning("Can't write startup profile: " + e.getMessage());
+        }
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final String name;
+        private final Span parent;
+        private final Map<String, Span> children = new LinkedHashMap<>(); // same name spans are merged
+        private Probes probes;
+        private int count;
+        private long wall;
+        private long cpu;
+        private long allocated;
+        private long classes;
+
+        private long startWall;
+        private long startCpu;
+        private long startAllocated;
+        private long startClasses;
+
+        private Span(final String name, final Span parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        private void begin(final Probes probes) {
+            this.probes = probes;
+            startClasses = probes.classes();
+            startAllocated = probes.allocated();
+            startCpu = probes.cpu();
+            startWall = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            if (probes == null) { // no-op span
+                return;
+            }
+
+            wall += System.nanoTime() - startWall;
+            cpu += probes.cpu() - startCpu;
+            allocated += probes.allocated() - startAllocated;
+            classes += probes.classes() - startClasses;
+            count++;
+
+            // unclosed children (exception paths) are dropped with their parent
+            if (parent == null) {
+                CURRENT.remove();
+                StartupProfiler.report(this);
+                return;
+            }
+            CURRENT.set(parent);
+
+            final Span existing = parent.children.get(name);
+            if (existing == null) {
+                parent.children.put(name, this);
+            } else {
+                existing.merge(this);
+            }
+        }
+
+        private void merge(final Span span) {
+            count += span.count;
+            wall += span.wall;
+            cpu += span.cpu;
+            allocated += span.allocated;
+            classes += span.classes;
+            for (final Span child : span.children.values()) {
+                final Span existing = children.get(child.name);
+                if (existing == null) {
+                    children.put(child.name, child);
+                } else {
+                    existing.merge(child);
+                }
+            }
+        }
+
+        private void report(final String indent, final String path, final List<String> lines, final StringBuilder folded) {
+            lines.add(String.format("%s%s: %d ms wall, %d ms cpu, %d kB allocated, %d classes loaded%s",
+                indent, name, TimeUnit.NANOSECONDS.toMillis(wall), TimeUnit.NANOSECONDS.toMillis(cpu),
+                allocated / 1024, classes, count > 1 ? " (" + count + " times)" : ""));
+
+            final String current = path.isEmpty() ? name.replace(';', ',') : path + ';' + name.replace(';', ',');
+            long self = wall;
+            for (final Span child : children.values()) {
+                self -= child.wall;
+                child.report(indent + "  ", current, lines, folded);
+            }
+            folded.append(current).append(' ').append(Math.max(0, TimeUnit.NANOSECONDS.toMicros(self))).append('\n');
+        }
+    }
+
+    private static final class Probes {
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        private final boolean cpuSupported;
+        private final com.sun.management.ThreadMXBean allocations;
+
+        private Probes() {
+            boolean cpu = false;
+            try {
+                cpu = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+            } catch (final UnsupportedOperationException e) {
+                // no-op
+            }
+            cpuSupported = cpu;
+
+            com.sun.management.ThreadMXBean allocationBean = null;
+            try {
+                if (threads instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+                    allocationBean = (com.sun.management.ThreadMXBean) threads;
+                    allocationBean.setThreadAllocatedMemoryEnabled(true);
+                }
+            } catch (final NoClassDefFoundError | UnsupportedOperationException e) { // not a HotSpot JVM
+                allocationBean = null;
+            }
+            allocations = allocationBean;
+        }
+
+        private long cpu() {
+            return cpuSupported ? threads.getCurrentThreadCpuTime() : 0;
+        }
+
+        private long allocated() {
+            return allocations != null ? allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+        }
+
+        private long classes() {
+            return classLoading.getTotalLoadedClassCount();
+        }
+    }
+
+    @MBean
+    @Internal
+    @Description("Startup spans timing")
+    public static final class StartupProfilerMBean {
+        @ManagedAttribute
+        @Description("Ended startup spans")
+        public String[] getSpans() {
+            final List<String> report = getReport();
+            return report.toArray(new String[report.size()]);
+        }
+
+        @ManagedOperation
+        @Description("Clear the ended startup spans")
+        public void reset() {
+            synchronized (REPORT) {
+                REPORT.clear();
+            }
+        }
+    }
+}
@@ -387,15 +387,11 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
             return false;
         }
 
-        for (final String prefix : URLClassLoaderFirst.FORCED_SKIP) {
-            if (name.startsWith(prefix)) {
-                return true;
-            }
+        if (URLClassLoaderFirst.isForcedSkip(name)) {
+            return true;
         }
-        for (final String prefix : URLClassLoaderFirst.FORCED_LOAD) {
-            if (name.startsWith(prefix)) {
-                return false;
-            }
+        if (URLClassLoaderFirst.isForcedLoad(name)) {
+            return false;
         }
 
         if (name.startsWith("java.")) {
@@ -39,6 +39,11 @@ public class JarExtractor {
 
     public static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, "org.apache.openejb.util.resources");
 
+    /**
+     * Number of threads used to extract an archive, 1 (default) extracts it sequentially.
+     */
+    public static final String THREADS_PROPERTY = "tomee.unpack.threads";
+
     /**
      * Extract the Jar file into an unpacked directory structure, and
      * return the absolute pathname to the extracted directory.
@@ -103,7 +108,7 @@ public class JarExtractor {
         }
 
         try {
-            Zips.unzip(file, destinationDir);
+            Zips.unzip(file, destinationDir, false, threads());
         } catch (final IOException e) {
             // If something went wrong, delete extracted dir to keep things clean
             Files.delete(destinationDir);
@@ -115,6 +120,10 @@ public class JarExtractor {
         return destinationDir.getAbsoluteFile();
     }
 
+    private static int threads() {
+        return SystemInstance.get().getOptions().get(THREADS_PROPERTY, 1);
+    }
+
     /**
      * Copy the specified file or directory to the destination.
      *
@@ -153,7 +162,15 @@ public class JarExtractor {
                 try {
                     ic = new FileInputStream(fileSrc).getChannel();
                     oc = new FileOutputStream(fileDest).getChannel();
-                    ic.transferTo(0, ic.size(), oc);
+                    final long size = ic.size();
+                    long position = 0;
+                    while (position < size) { // transferTo can copy less than requested
+                        final long transferred = ic.transferTo(position, size - position, oc);
+                        if (transferred <= 0) {
+                            throw new IOException("Source truncated while copying");
+                        }
+                        position += transferred;
+                    }
                 } catch (final IOException e) {
                     logger.error("Copy failed: src: " + fileSrc + ", dest: " + fileDest, e);
                     result = false;
@@ -37,7 +37,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -60,13 +61,21 @@ public class UrlCache {
     }
 
 
-    private final Map<String, Map<URL, File>> cache = new TreeMap<String, Map<URL, File>>();
+    // locking is done per application (on its map) so applications deployed in parallel copy their jars concurrently
+    private final ConcurrentMap<String, Map<URL, File>> cache = new ConcurrentHashMap<String, Map<URL, File>>();
 
-    public synchronized URL[] cacheUrls(final String appId, final URL[] urls) {
+    public URL[] cacheUrls(final String appId, final URL[] urls) {
         if (!antiJarLocking) {
             return urls;
         }
 
+        final Map<URL, File> appCache = getAppCache(appId);
+        synchronized (appCache) {
+            return cacheUrls(appCache, urls);
+        }
+    }
+
+    private URL[] cacheUrls(final Map<URL, File> appCache, final URL[] urls) {
         // the final cached urls
         final LinkedHashSet<URL> cachedUrls = new LinkedHashSet<URL>();
 
@@ -82,7 +91,7 @@ public class UrlCache {
             }
 
             // cache the URL
-            final File file = cacheUrl(appId, url);
+            final File file = cacheUrl(appCache, url);
 
             // if the url was successfully cached, process it's manifest classpath
             if (file != null) {
@@ -106,16 +115,18 @@ public class UrlCache {
         return cachedUrls.toArray(new URL[cachedUrls.size()]);
     }
 
-    public synchronized void releaseUrls(final String appId) {
+    public void releaseUrls(final String appId) {
         logger.debug("Releasing URLs for application " + appId);
 
         final Map<URL, File> urlFileMap = cache.remove(appId);
         if (urlFileMap != null) {
-            for (final File file : urlFileMap.values()) {
-                if (file.delete()) {
-                    logger.debug("Deleted cached file " + file);
-                } else {
-                    logger.debug("Unable to delete cached file " + file);
+            synchronized (urlFileMap) {
+                for (final File file : urlFileMap.values()) {
+                    if (file.delete()) {
+                        logger.debug("Deleted cached file " + file);
+                    } else {
+                        logger.debug("Unable to delete cached file " + file);
+                    }
                 }
             }
         }
@@ -123,15 +134,16 @@ public class UrlCache {
 
     public File getUrlCachedName(final String appId, final URL url) {
         final Map<URL, File> appCache = getAppCache(appId);
-        if (appCache.containsKey(url)) {
+        synchronized (appCache) {
             return appCache.get(url);
         }
-        return null;
     }
 
     public boolean isUrlCached(final String appId, final URL url) {
         final Map<URL, File> appCache = getAppCache(appId);
-        return appCache.containsKey(url);
+        synchronized (appCache) {
+            return appCache.containsKey(url);
+        }
     }
 
     public URL getUrlKeyCached(final String appId, final File file) {
@@ -139,25 +151,28 @@ public class UrlCache {
             return null;
         }
         final Map<URL, File> appCache = getAppCache(appId);
-        for (final Map.Entry<URL, File> entry : appCache.entrySet()) {
-            if (entry.getValue().equals(file)) {
-                return entry.getKey();
+        synchronized (appCache) {
+            for (final Map.Entry<URL, File> entry : appCache.entrySet()) {
+                if (entry.getValue().equals(file)) {
+                    return entry.getKey();
+                }
             }
-        }
 
-        final URL keyUrl;
-        try {
-            keyUrl = file.toURI().toURL();
-        } catch (final MalformedURLException e) {
-            return null;
-        }
-        if (appCache.containsKey(keyUrl)) {
-            return keyUrl;
+            final URL keyUrl;
+            try {
+                keyUrl = file.toURI().toURL();
+            } catch (final MalformedURLException e) {
+                return null;
+            }
+            if (appCache.containsKey(keyUrl)) {
+                return keyUrl;
+            }
         }
         return null;
     }
 
-    private synchronized File cacheUrl(final String appId, URL url) {
+    // called with the appCache lock held
+    private File cacheUrl(final Map<URL, File> appCache, URL url) {
         File sourceFile;
         if (!"file".equals(url.getProtocol())) {
             // todo: download the jar ourselves?
@@ -188,7 +203,6 @@ public class UrlCache {
         }
 
         // check if file is already cached
-        final Map<URL, File> appCache = getAppCache(appId);
         if (appCache.containsKey(url)) {
             return appCache.get(url);
         }
@@ -243,11 +257,14 @@ public class UrlCache {
         }
     }
 
-    private synchronized Map<URL, File> getAppCache(final String appId) {
+    private Map<URL, File> getAppCache(final String appId) {
         Map<URL, File> urlFileMap = cache.get(appId);
         if (urlFileMap == null) {
             urlFileMap = new LinkedHashMap<URL, File>();
-            cache.put(appId, urlFileMap);
+            final Map<URL, File> existing = cache.putIfAbsent(appId, urlFileMap);
+            if (existing != null) {
+                urlFileMap = existing;
+            }
         }
         return urlFileMap;
     }
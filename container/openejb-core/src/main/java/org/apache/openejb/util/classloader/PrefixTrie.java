@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.util.classloader;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable prefix tree returning the value of the longest registered prefix of a name.
+ * <p/>
+ * A lookup reads the name once, without any substring allocation, which makes it
+ * a good fit for the class name filters evaluated for each class or resource loading.
+ *
+ * @param <T> the value type
+ */
+public final class PrefixTrie<T> {
+    private static final char[] NO_KEY = new char[0];
+    private static final String[] NO_LABEL = new String[0];
+    private static final PrefixTrie<?>[] NO_CHILDREN = new PrefixTrie<?>[0];
+
+    // chains of nodes without value are collapsed so children are indexed by their first char
+    // and matched with their whole label (radix tree)
+    private final char[] keys; // sorted
+    private final String[] labels;
+    private final PrefixTrie<T>[] children;
+    private final T value;
+
+    private PrefixTrie(final char[] keys, final String[] labels, final PrefixTrie<T>[] children, final T value) {
+        this.keys = keys;
+        this.labels = labels;
+        this.children = children;
+        this.value = value;
+    }
+
+    /**
+     * @param name the name to test
+     * @return the value of the longest prefix of name or null if none matches
+     */
+    public T find(final String name) {
+        if (name == null) {
+            return null;
+        }
+
+        T found = value;
+        PrefixTrie<T> node = this;
+        int offset = 0;
+        final int length = name.length();
+        while (offset < length) {
+            final int idx = node.indexOf(name.charAt(offset));
+            if (idx < 0) {
+                break;
+            }
+
+            final String label = node.labels[idx];
+            if (!name.startsWith(label, offset)) {
+                break;
+            }
+            offset += label.length();
+            node = node.children[idx];
+            if (node.value != null) {
+                found = node.value;
+            }
+        }
+        return found;
+    }
+
+    public boolean matches(final String name) {
+        return find(name) != null;
+    }
+
+    public boolean isEmpty() {
+        return value == null && keys.length == 0;
+    }
+
+    private int indexOf(final char c) {
+        final char[] k = keys;
+        if (k.length < 8) { // the common case, a binary search doesn't pay there
+            for (int i = 0; i < k.length; i++) {
+                if (k[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        return Arrays.binarySearch(k, c);
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    public static class Builder<T> {
+        private final Node<T> root = new Node<>();
+
+        /**
+         * @param prefix the prefix, an empty prefix matches any name
+         * @param value  the value returned for the names starting with prefix, overrides a previous value
+         * @return this builder
+         */
+        public Builder<T> put(final String prefix, final T value) {
+            if (value == null) {
+                throw new IllegalArgumentException("null values are not supported, prefix=" + prefix);
+            }
+
+            Node<T> node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                final Character c = prefix.charAt(i);
+                Node<T> child = node.children.get(c);
+                if (child == null) {
+                    child = new Node<>();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.value = value;
+            return this;
+        }
+
+        public PrefixTrie<T> build() {
+            return root.compile();
+        }
+    }
+
+    private static final class Node<T> {
+        private final Map<Character, Node<T>> children = new TreeMap<>();
+        private T value;
+
+        @SuppressWarnings("unchecked")
+        private PrefixTrie<T> compile() {
+            if (children.isEmpty()) {
+                return new PrefixTrie<>(NO_KEY, NO_LABEL, (PrefixTrie<T>[]) NO_CHILDREN, value);
+            }
+
+            final int size = children.size();
+            final char[] keys = new char[size];
+            final String[] labels = new String[size];
+            final PrefixTrie<T>[] compiled = new PrefixTrie[size];
+            int i = 0;
+            for (final Map.Entry<Character, Node<T>> entry : children.entrySet()) { // sorted by the TreeMap
+                final StringBuilder label = new StringBuilder().append(entry.getKey().charValue());
+                Node<T> child = entry.getValue();
+                while (child.value == null && child.children.size() == 1) {
+                    final Map.Entry<Character, Node<T>> next = child.children.entrySet().iterator().next();
+                    label.append(next.getKey().charValue());
+                    child = next.getValue();
+                }
+
+                keys[i] = entry.getKey();
+                labels[i] = label.toString();
+                compiled[i] = child.compile();
+                i++;
+            }
+            return new PrefixTrie<>(keys, labels, compiled, value);
+        }
+    }
+}
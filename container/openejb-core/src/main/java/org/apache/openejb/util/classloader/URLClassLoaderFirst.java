@@ -24,19 +24,22 @@ import org.apache.openejb.util.JavaSecurityManagers;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.ArrayList;
+import java.util.AbstractCollection;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 // TODO: look SM usage, find a better name
 public class URLClassLoaderFirst extends URLClassLoader {
 
     // log4j is optional, moreover it will likely not work if not skipped and loaded by a temp classloader
     private static final boolean SKIP_LOG4J = "true".equals(SystemInstance.get().getProperty("openejb.skip.log4j", "true")) && skipLib("org.apache.log4j.Logger");
-    private static final boolean SKIP_MYFACES = "true".equals(SystemInstance.get().getProperty("openejb.skip.myfaces", "true")) && skipLib("org.apache.myfaces.spi.FactoryFinderProvider");
     private static final boolean SKIP_HSQLDB = skipLib("org.hsqldb.lib.HsqlTimer");
+    private static final boolean SKIP_MYFACES = "true".equals(SystemInstance.get().getProperty("openejb.skip.myfaces", "true")) && skipLib("org.apache.myfaces.spi.FactoryFinderProvider");
     // commons-net is only in tomee-plus
     private static final boolean SKIP_COMMONS_NET = skipLib("org.apache.commons.net.pop3.POP3Client");
 
@@ -45,9 +48,15 @@ public class URLClassLoaderFirst extends URLClassLoader {
     private static final boolean SKIP_JMS = skipLib("org.apache.activemq.broker.BrokerFactory");
     private static final boolean EMBEDDED = "true".equals(SystemInstance.get().getProperty("openejb.embedded"));
 
+    private static final String OPENEJB_PACKAGE = "org.apache.openejb.";
+    private static final String[] WEBAPP_ENRICHMENT = {"hibernate.", "jpa.integration.", "toplink.", "eclipselink.", "arquillian."};
+    private static final PrefixTrie<Decision> RULES = rules();
+
     // - will not match anything, that's the desired default behavior
-    public static final Collection<String> FORCED_SKIP = new ArrayList<>();
-    public static final Collection<String> FORCED_LOAD = new ArrayList<>();
+    private static final PrefixCollection SKIPPED = new PrefixCollection();
+    private static final PrefixCollection LOADED = new PrefixCollection();
+    public static final Collection<String> FORCED_SKIP = SKIPPED;
+    public static final Collection<String> FORCED_LOAD = LOADED;
 
     static {
         reloadConfig();
@@ -61,16 +70,16 @@ public class URLClassLoaderFirst extends URLClassLoader {
     private static final boolean ALLOW_OPEN_EJB_SYSTEM_LOADING = !Boolean.getBoolean("openejb.classloader.first.disallow-system-loading");
 
     public static void reloadConfig() {
-        list(FORCED_SKIP, "openejb.classloader.forced-skip");
-        list(FORCED_LOAD, "openejb.classloader.forced-load");
+        list(SKIPPED, "openejb.classloader.forced-skip");
+        list(LOADED, "openejb.classloader.forced-load");
     }
 
-    private static void list(final Collection<String> list, final String key) {
-        list.clear();
-
+    private static void list(final PrefixCollection list, final String key) {
         final String s = SystemInstance.get().getOptions().get(key, (String) null);
         if (s != null && !s.trim().isEmpty()) {
-            list.addAll(Arrays.asList(s.trim().split(",")));
+            list.reset(Arrays.asList(s.trim().split(",")));
+        } else {
+            list.clear();
         }
     }
 
@@ -188,326 +197,128 @@ public class URLClassLoaderFirst extends URLClassLoader {
     // we skip webapp enrichment jars since we want to load them from the webapp or lib
     // Note: this is not a real limitation since it is first fail it will be done later
     public static boolean canBeLoadedFromSystem(final String name) {
-        return ALLOW_OPEN_EJB_SYSTEM_LOADING && (!name.startsWith("org.apache.openejb.") || !isWebAppEnrichment(name.substring("org.apache.openejb.".length())));
+        return ALLOW_OPEN_EJB_SYSTEM_LOADING && (!name.startsWith(OPENEJB_PACKAGE) || !isWebAppEnrichment(name, OPENEJB_PACKAGE.length()));
     }
 
-    // making all these call inline if far more costly than factorizing packages
+    // the filter is compiled once in a prefix trie, see rules(), so we don't pay a startsWith/substring chain per class
     //
     // /!\ please check org.apache.openejb.persistence.PersistenceUnitInfoImpl.isServerClass() too
-    // when updating this method
+    // when updating the rules
     public static boolean shouldSkip(final String name) {
         if (name == null) { // can happen with rest servlet definition or errors
             return false;
         }
 
-        for (final String prefix : FORCED_SKIP) {
-            if (name.startsWith(prefix)) {
-                return true;
-            }
-        }
-        for (final String prefix : FORCED_LOAD) {
-            if (name.startsWith(prefix)) {
-                return false;
-            }
-        }
-
-        if (name.startsWith("java.")) {
+        if (SKIPPED.matches(name)) {
             return true;
         }
-        if (name.startsWith("javax.faces.")) {
-            return false;
-        }
-        if (name.startsWith("javax.mail.")) {
+        if (LOADED.matches(name)) {
             return false;
         }
-        if (name.startsWith("javax.")) {
-            return isInServer(name);
-        }
-        if (name.startsWith("sun.")) {
-            return isInJvm(name);
-        }
 
-        // can be provided in the webapp
-        if (name.startsWith("javax.servlet.jsp.jstl")) {
+        final Decision decision = RULES.find(name);
+        if (decision == null) {
             return false;
         }
-
-        if (name.startsWith("org.")) {
-            final String org = name.substring("org.".length());
-
-            if (org.startsWith("apache.")) {
-                final String apache = org.substring("apache.".length());
-
-                // the following block is classes which enrich webapp classloader
-                if (apache.startsWith("webbeans.jsf")) {
-                    return false;
-                }
-                if (apache.startsWith("tomee.mojarra.")) {
-                    return false;
-                }
-
-                // here we find server classes
-                if (apache.startsWith("bval.")) {
-                    return true;
-                }
-                if (apache.startsWith("openjpa.")) {
-                    return true;
-                }
-                if (apache.startsWith("xbean.")) {
-                    return !apache.substring("xbean.".length()).startsWith("spring");
-                }
-                if (apache.startsWith("geronimo.")) {
-                    return true;
-                }
-                if (apache.startsWith("coyote.")) {
-                    return true;
-                }
-                if (apache.startsWith("webbeans.")) {
-                    return true;
-                }
-                if (apache.startsWith("log4j.") && SKIP_LOG4J) {
-                    return true;
-                }
-                if (apache.startsWith("catalina.")) {
-                    return true;
-                }
-                if (apache.startsWith("jasper.")) {
-                    return true;
-                }
-                if (apache.startsWith("tomcat.")) {
-                    return true;
-                }
-                if (apache.startsWith("el.")) {
-                    return true;
-                }
-                // if (apache.startsWith("jsp")) return true; // precompiled jsp have to be loaded from the webapp
-                if (apache.startsWith("naming.")) {
-                    return true;
-                }
-                if (apache.startsWith("taglibs.standard.")) {
-                    return true;
-                }
-
-                if (apache.startsWith("openejb.")) { // skip all excepted webapp enrichment artifacts
-                    return !isWebAppEnrichment(apache.substring("openejb.".length()));
-                }
-
-                if (apache.startsWith("commons.")) {
-                    final String commons = apache.substring("commons.".length());
-
-                    // don't stop on commons package since we don't bring all commons
-                    if (commons.startsWith("beanutils.")) {
-                        return isInServer(name);
-                    }
-                    if (commons.startsWith("cli.")) {
-                        return true;
-                    }
-                    if (commons.startsWith("codec.")) {
-                        return true;
-                    }
-                    if (commons.startsWith("collections.")) {
-                        return true;
-                    }
-                    if (commons.startsWith("dbcp.")) {
-                        return true;
-                    }
-                    if (commons.startsWith("dbcp2.")) {
-                        return true;
-                    }
-                    if (commons.startsWith("digester.")) {
-                        return true;
-                    }
-                    if (commons.startsWith("jocl.")) {
-                        return true;
-                    }
-                    if (commons.startsWith("lang.")) { // openjpa
-                        return true;
-                    }
-                    if (commons.startsWith("lang3.")) {  // us
-                        return true;
-                    }
-                    if (commons.startsWith("logging.")) {
-                        return false;
-                    }
-                    if (commons.startsWith("pool.")) {
-                        return true;
-                    }
-                    if (commons.startsWith("pool2.")) {
-                        return true;
-                    }
-                    if (commons.startsWith("net.") && SKIP_COMMONS_NET) {
-                        return true;
-                    }
-
-                    return false;
-                }
-
-                if (SKIP_MYFACES && apache.startsWith("myfaces.")) {
-                    // we bring only myfaces-impl (+api but that's javax)
-                    // mainly inspired from a comparison with tomahawk packages
-                    final String myfaces = name.substring("myfaces.".length());
-                    if (myfaces.startsWith("shared.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("ee6.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("lifecycle.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("context.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("logging.")) {
-                        return true;
-                    }
-                    // tomahawk uses component.html package
-                    if (myfaces.startsWith("component.visit.") || myfaces.equals("component.ComponentResourceContainer")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("application.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("config.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("event.")) {
-                        return true;
-                    }
-
-                    if (myfaces.startsWith("resource.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("el.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("spi.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("convert.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("debug.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("util.")) {
-                        return true;
-                    }
-                    if (myfaces.startsWith("view.")) {
-                        return true;
-                    }
-                    if (myfaces.equals("convert.ConverterUtils")) {
-                        return true;
-                    }
-
-                    if (myfaces.startsWith("renderkit.")) {
-                        final String renderkit = myfaces.substring("renderkit.".length());
-                        if (renderkit.startsWith("html.Html")) {
-                            return true;
-                        }
-                        final char firstNextletter = renderkit.charAt(0);
-                        if (Character.isUpperCase(firstNextletter)) {
-                            return true;
-                        }
-                        return false;
-                    }
-
-                    if (myfaces.startsWith("taglib.")) {
-                        final String taglib = myfaces.substring("taglib.".length());
-                        if (taglib.startsWith("html.Html")) {
-                            return true;
-                        }
-                        if (taglib.startsWith("core.")) {
-                            return true;
-                        }
-                        return false;
-                    }
-
-                    if (myfaces.startsWith("webapp.")) {
-                        final String webapp = myfaces.substring("webapp.".length());
-                        if (webapp.startsWith("Faces")) {
-                            return true;
-                        }
-                        if (webapp.startsWith("Jsp")) {
-                            return true;
-                        }
-                        if (webapp.startsWith("Startup")) {
-                            return true;
-                        }
-                        if (webapp.equals("AbstractFacesInitializer")) {
-                            return true;
-                        }
-                        if (webapp.equals("MyFacesServlet")) {
-                            return true;
-                        }
-                        if (webapp.equals("ManagedBeanDestroyerListener")) {
-                            return true;
-                        }
-                        if (webapp.equals("WebConfigParamsLogger")) {
-                            return true;
-                        }
-                        return false;
-                    }
-
-                    return false;
-                }
-
-                if (apache.startsWith("activemq.")) {
-                    return SKIP_JMS && isInServer(name);
-                }
-
-                return false;
-            }
-
-            // other org packages
-            if (org.startsWith("hsqldb.") && SKIP_HSQLDB) {
+        switch (decision) {
+            case SKIP:
                 return true;
-            }
-            if (org.startsWith("codehaus.swizzle.")) {
-                final String swizzle = org.substring("codehaus.swizzle.".length());
-                if (swizzle.startsWith("stream.")) {
-                    return true;
-                }
-                if (swizzle.startsWith("rss.")) {
-                    return true;
-                }
-                if (swizzle.startsWith("Grep.class") || swizzle.startsWith("Lexer.class")) {
-                    return true;
-                }
-                return false;
-            }
-            if (org.startsWith("w3c.dom.") || org.startsWith("xml.sax.")) {
+            case SERVER:
+                return isInServer(name);
+            case JVM:
                 return isInJvm(name);
-            }
-            if (org.startsWith("eclipse.jdt.")) {
-                return true;
-            }
+            default:
+                return false;
+        }
+    }
 
-            // let an app use its own slf4j impl (so its own api too)
-            // if (org.startsWith("slf4j")) return true;
+    public static boolean isForcedSkip(final String name) {
+        return SKIPPED.matches(name);
+    }
 
-            return false;
+    public static boolean isForcedLoad(final String name) {
+        return LOADED.matches(name);
+    }
+
+    // when several prefixes match a name the longest one wins so the order doesn't matter
+    private static PrefixTrie<Decision> rules() {
+        final PrefixTrie.Builder<Decision> rules = PrefixTrie.builder();
+
+        rules.put("java.", Decision.SKIP)
+            .put("javax.", Decision.SERVER)
+            .put("javax.faces.", Decision.LOAD)
+            .put("javax.mail.", Decision.LOAD)
+            .put("javax.jws.", SKIP_JAXWS || EMBEDDED ? Decision.SKIP : Decision.LOAD)
+            .put("javax.jms.", SKIP_JMS || EMBEDDED ? Decision.SKIP : Decision.LOAD)
+            .put("sun.", Decision.JVM)
+            .put("jdk.", Decision.SKIP)
+            .put("serp.bytecode.", Decision.SKIP)
+            .put("com.sun.", Decision.JVM)
+            .put("com.oracle.", Decision.SKIP);
+
+        // the following prefixes are classes which enrich webapp classloader
+        rules.put("org.apache.webbeans.jsf", Decision.LOAD)
+            .put("org.apache.tomee.mojarra.", Decision.LOAD)
+            .put("org.apache.xbean.spring", Decision.LOAD);
+        for (final String enrichment : WEBAPP_ENRICHMENT) {
+            rules.put(OPENEJB_PACKAGE + enrichment, Decision.LOAD);
         }
 
-        // other packages
-        if (name.startsWith("com.")) {
-            final String sub = name.substring("com.".length());
-            if (sub.startsWith("sun.")) {
-                return !name.startsWith("sun.mail.") && isInJvm(name);
+        // here we find server classes
+        for (final String server : new String[]{
+            "bval.", "openjpa.", "xbean.", "geronimo.", "coyote.", "webbeans.", "catalina.", "jasper.", "tomcat.",
+            // "jsp." is not there since precompiled jsp have to be loaded from the webapp
+            "el.", "naming.", "taglibs.standard.", "openejb."}) {
+            rules.put("org.apache." + server, Decision.SKIP);
+        }
+        if (SKIP_LOG4J) {
+            rules.put("org.apache.log4j.", Decision.SKIP);
+        }
+        if (SKIP_JMS) {
+            rules.put("org.apache.activemq.", Decision.SERVER);
+        }
+        if (SKIP_MYFACES) {
+            // we bring only myfaces-impl (+api but that's javax), the rest (tomahawk...) is loaded from the webapp
+            // mainly inspired from a comparison with tomahawk packages
+            for (final String myfaces : new String[]{
+                "shared.", "ee6.", "lifecycle.", "context.", "logging.", "application.", "config.", "event.",
+                "resource.", "el.", "spi.", "convert.", "debug.", "util.", "view.",
+                "component.visit.", "component.ComponentResourceContainer", // tomahawk uses component.html package
+                "renderkit.html.Html", "taglib.html.Html", "taglib.core.",
+                "webapp.Faces", "webapp.Jsp", "webapp.Startup", "webapp.AbstractFacesInitializer", "webapp.MyFacesServlet",
+                "webapp.ManagedBeanDestroyerListener", "webapp.WebConfigParamsLogger"}) {
+                rules.put("org.apache.myfaces." + myfaces, Decision.SKIP);
             }
-            if (sub.startsWith("oracle.")) {
-                return true;
+            for (char c = 'A'; c <= 'Z'; c++) { // renderkit root classes
+                rules.put("org.apache.myfaces.renderkit." + c, Decision.SKIP);
             }
         }
-        if (name.startsWith("jdk.")) {
-            return true;
-        }
 
-        if (name.startsWith("serp.bytecode.")) {
-            return true;
+        // don't stop on commons package since we don't bring all commons
+        rules.put("org.apache.commons.beanutils.", Decision.SERVER);
+        for (final String commons : new String[]{
+            "cli.", "codec.", "collections.", "dbcp.", "dbcp2.", "digester.", "jocl.",
+            "lang." /* openjpa */, "lang3." /* us */, "pool.", "pool2."}) {
+            rules.put("org.apache.commons." + commons, Decision.SKIP);
+        }
+        if (SKIP_COMMONS_NET) {
+            rules.put("org.apache.commons.net.", Decision.SKIP);
         }
 
-        return false;
+        // other org packages
+        if (SKIP_HSQLDB) {
+            rules.put("org.hsqldb.", Decision.SKIP);
+        }
+        rules.put("org.codehaus.swizzle.stream.", Decision.SKIP)
+            .put("org.codehaus.swizzle.rss.", Decision.SKIP)
+            .put("org.codehaus.swizzle.Grep.class", Decision.SKIP)
+            .put("org.codehaus.swizzle.Lexer.class", Decision.SKIP)
+            .put("org.w3c.dom.", Decision.JVM)
+            .put("org.xml.sax.", Decision.JVM)
+            .put("org.eclipse.jdt.", Decision.SKIP);
+        // let an app use its own slf4j impl (so its own api too) so no org.slf4j. rule
+
+        return rules.build();
     }
 
     private static boolean isInJvm(final String name) {
@@ -515,15 +326,6 @@ public class URLClassLoaderFirst extends URLClassLoader {
     }
 
     private static boolean isInServer(final String name) {
-        if (name.startsWith("javax.")) {
-            final String sub = name.substring("javax.".length());
-            if (sub.startsWith("jws.")) {
-                return SKIP_JAXWS || EMBEDDED;
-            }
-            if (sub.startsWith("jms.")) {
-                return SKIP_JMS || EMBEDDED;
-            }
-        }
         return ParentClassLoaderFinder.Helper.get().getResource(name.replace('.', '/') + ".class") != null;
     }
 
@@ -553,10 +355,13 @@ public class URLClassLoaderFirst extends URLClassLoader {
     }
 
     // in org.apache.openejb.
-    private static boolean isWebAppEnrichment(final String openejb) {
-        return openejb.startsWith("hibernate.") || openejb.startsWith("jpa.integration.")
-            || openejb.startsWith("toplink.") || openejb.startsWith("eclipselink.")
-            || openejb.startsWith("arquillian.");
+    private static boolean isWebAppEnrichment(final String name, final int offset) {
+        for (final String enrichment : WEBAPP_ENRICHMENT) {
+            if (name.startsWith(enrichment, offset)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -623,4 +428,83 @@ public class URLClassLoaderFirst extends URLClassLoader {
         }
         return result;
     }
+
+    private enum Decision {
+        SKIP, LOAD, SERVER, JVM
+    }
+
+    // forced prefixes are compiled too, the collection stays mutable since integrations (log4j2) add prefixes directly
+    private static final class PrefixCollection extends AbstractCollection<String> {
+        private final List<String> prefixes = new CopyOnWriteArrayList<>();
+        private volatile PrefixTrie<Boolean> trie = PrefixTrie.<Boolean>builder().build();
+
+        private boolean matches(final String name) {
+            return trie.matches(name);
+        }
+
+        private synchronized void reset(final Collection<String> values) {
+            prefixes.clear();
+            prefixes.addAll(values);
+            compile();
+        }
+
+        @Override
+        public synchronized boolean add(final String prefix) {
+            prefixes.add(prefix);
+            compile();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean addAll(final Collection<? extends String> values) {
+            final boolean changed = prefixes.addAll(values);
+            compile();
+            return changed;
+        }
+
+        @Override
+        public synchronized boolean remove(final Object prefix) {
+            final boolean changed = prefixes.remove(prefix);
+            compile();
+            return changed;
+        }
+
+        @Override
+        public synchronized boolean removeAll(final Collection<?> values) {
+            final boolean changed = prefixes.removeAll(values);
+            compile();
+            return changed;
+        }
+
+        @Override
+        public synchronized boolean retainAll(final Collection<?> values) {
+            final boolean changed = prefixes.retainAll(values);
+            compile();
+            return changed;
+        }
+
+        @Override
+        public synchronized void clear() {
+            prefixes.clear();
+            compile();
+        }
+
+        @Override
+        public Iterator<String> iterator() { // snapshot, read-only
+            return prefixes.iterator();
+        }
+
+        @Override
+        public int size() {
+            return prefixes.size();
+        }
+
+        private void compile() {
+            final PrefixTrie.Builder<Boolean> builder = PrefixTrie.builder();
+            for (final String prefix : prefixes) {
+                builder.put(prefix, Boolean.TRUE);
+            }
+            trie = builder.build();
+        }
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.cdi;
+
+import org.apache.openejb.AppContext;
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.BeansInfo;
+import org.apache.openejb.assembler.classic.EjbJarInfo;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.JarLocation;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.webbeans.config.WebBeansContext;
+import org.apache.webbeans.spi.BeanArchiveService;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CdiScannerParallelTest {
+    private static final String MISSING = "org.apache.openejb.cdi.DoesNotExist";
+
+    @After
+    public void reset() {
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void parallelScanMatchesSequentialScan() throws Exception {
+        final ClassLoader loader = new HidingLoader(CdiScannerParallelTest.class.getClassLoader());
+
+        final List<String> infos = classes(AppInfo.class, "Info");
+        assertTrue("the archive must be big enough to be loaded in parallel", infos.size() >= 64);
+        infos.add(Broken.class.getName()); // NoClassDefFoundError
+        infos.add(MISSING); // ClassNotFoundException
+
+        final AppInfo appInfo = new AppInfo();
+        appInfo.appId = "parallel";
+        appInfo.ejbJars.add(ejbJar("all", bda("all", "ALL", infos), bda("none", "NONE", infos)));
+        appInfo.ejbJars.add(ejbJar("annotated", bda("annotated", "ANNOTATED", classes(CdiScanner.class, ""))));
+        appInfo.ejbJars.get(0).beans.startupClasses.add(AppInfo.class.getName());
+        appInfo.ejbJars.get(0).beans.startupClasses.add(Broken.class.getName());
+
+        final Scan sequential = scan(appInfo, loader, false);
+        final Scan parallel = scan(appInfo, loader, true);
+
+        assertEquals(sequential.classes, parallel.classes);
+        assertEquals(sequential.startupClasses, parallel.startupClasses);
+        assertEquals(sequential.beansXml, parallel.beansXml);
+        assertEquals(sequential.modes, parallel.modes);
+
+        assertTrue(parallel.classes.contains(AppInfo.class.getName()));
+        assertEquals(Collections.singletonList(AppInfo.class.getName()), parallel.startupClasses);
+        assertFalse(parallel.classes.contains(Broken.class.getName()));
+        assertFalse(parallel.classes.contains(MISSING));
+        assertEquals(3, parallel.beansXml.size());
+        assertEquals("NONE", parallel.modes.get(bda("none", "NONE", infos).uri.toURL().toExternalForm()));
+    }
+
+    private static Scan scan(final AppInfo appInfo, final ClassLoader loader, final boolean parallel) throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty(CdiScanner.PARALLEL_PROPERTY, Boolean.toString(parallel));
+        properties.setProperty(CdiScanner.PARALLEL_THREADS_PROPERTY, "4");
+        SystemInstance.init(properties);
+        try {
+            final OpenEJBBeanInfoService beanInfoService = new OpenEJBBeanInfoService();
+            final Map<Class<?>, Object> services = new HashMap<>();
+            services.put(BeanArchiveService.class, beanInfoService);
+            final WebBeansContext webBeansContext = new WebBeansContext(services, new Properties());
+            final AppContext appContext = new AppContext(appInfo.appId, SystemInstance.get(), loader, null, null, false);
+            appContext.setWebBeansContext(webBeansContext);
+
+            final CdiScanner scanner = new CdiScanner();
+            scanner.setContext(webBeansContext);
+            scanner.init(new StartupObject(appContext, appInfo, Collections.<BeanContext>emptyList()));
+
+            final Map<String, String> modes = new TreeMap<>();
+            for (final Map.Entry<URL, BeanArchiveService.BeanArchiveInformation> info : beanInfoService.getBeanArchiveInfo().entrySet()) {
+                modes.put(info.getKey().toExternalForm(), info.getValue().getBeanDiscoveryMode().name());
+            }
+            return new Scan(names(scanner.getBeanClasses()), names(scanner.getStartupClasses()), new ArrayList<>(scanner.getBeanXmls()), modes);
+        } finally {
+            SystemInstance.reset();
+        }
+    }
+
+    private static EjbJarInfo ejbJar(final String id, final BeansInfo.BDAInfo... bdas) {
+        final EjbJarInfo ejbJar = new EjbJarInfo();
+        ejbJar.moduleId = id;
+        ejbJar.properties.setProperty(CdiScanner.OPENEJB_CDI_FILTER_CLASSLOADER, "false"); // don't depend on the test loaders
+        ejbJar.beans = new BeansInfo();
+        ejbJar.beans.discoveryMode = "all";
+        ejbJar.beans.bdas.addAll(Arrays.asList(bdas));
+        return ejbJar;
+    }
+
+    private static BeansInfo.BDAInfo bda(final String name, final String mode, final Collection<String> classes) {
+        final BeansInfo.BDAInfo bda = new BeansInfo.BDAInfo();
+        bda.uri = new File("target/CdiScannerParallelTest/" + name + "/META-INF/beans.xml").getAbsoluteFile().toURI();
+        bda.discoveryMode = mode;
+        bda.managedClasses.addAll(classes);
+        return bda;
+    }
+
+    // the compiled classes of the package of the sample, ending with suffix
+    private static List<String> classes(final Class<?> sample, final String suffix) {
+        final String pkg = sample.getPackage().getName();
+        final File folder = new File(JarLocation.jarLocation(sample), pkg.replace('.', '/'));
+        final String[] files = folder.list();
+        assertNotNull(folder.getAbsolutePath(), files);
+        Arrays.sort(files);
+
+        final List<String> names = new ArrayList<>();
+        for (final String file : files) {
+            if (file.endsWith(suffix + ".class")) {
+                names.add(pkg + '.' + file.substring(0, file.length() - ".class".length()));
+            }
+        }
+        return names;
+    }
+
+    private static List<String> names(final Collection<Class<?>> classes) {
+        final List<String> names = new ArrayList<>(classes.size());
+        for (final Class<?> clazz : classes) {
+            names.add(clazz.getName());
+        }
+        return names;
+    }
+
+    private static final class Scan {
+        private final List<String> classes;
+        private final List<String> startupClasses;
+        private final List<URL> beansXml;
+        private final Map<String, String> modes;
+
+        private Scan(final List<String> classes, final List<String> startupClasses, final List<URL> beansXml, final Map<String, String> modes) {
+            this.classes = classes;
+            this.startupClasses = startupClasses;
+            this.beansXml = beansXml;
+            this.modes = modes;
+        }
+    }
+
+    public static class Missing {
+    }
+
+    public static class Broken {
+        private Missing missing;
+    }
+
+    // defines Broken itself and hides Missing so Broken loads but fails on its fields
+    private static final class HidingLoader extends ClassLoader {
+        private HidingLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (Missing.class.getName().equals(name)) {
+                throw new ClassNotFoundException(name);
+            }
+            if (!Broken.class.getName().equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                final Class<?> loaded = findLoadedClass(name);
+                if (loaded != null) {
+                    return loaded;
+                }
+                try (final InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    IO.copy(is, out);
+                    final byte[] bytes = out.toByteArray();
+                    return defineClass(name, bytes, 0, bytes.length);
+                } catch (final IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.ContainerInfo;
+import org.apache.openejb.assembler.classic.EjbJarInfo;
+import org.apache.openejb.assembler.classic.WebAppInfo;
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class AppInfoSnapshotTest {
+    private File work;
+    private File app;
+
+    @Before
+    public void init() throws Exception {
+        work = new File(Files.tmpdir(), "AppInfoSnapshotTest-" + System.nanoTime());
+        app = Files.mkdirs(new File(work, "app"));
+        IO.copy(new byte[]{1, 2, 3}, new File(app, "Foo.class"));
+        SystemInstance.get().setProperty(AppInfoSnapshot.ENABLED_PROPERTY, "true");
+        SystemInstance.get().setProperty(AppInfoSnapshot.LOCATION_PROPERTY, new File(work, "snapshots").getAbsolutePath());
+    }
+
+    @After
+    public void reset() {
+        SystemInstance.reset();
+        Files.delete(work);
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        assertNull(AppInfoSnapshot.load(app));
+
+        final AppInfoSnapshot snapshot = AppInfoSnapshot.record(app);
+        try {
+            final ContainerInfo container = new ContainerInfo();
+            container.id = "auto";
+            AppInfoSnapshot.recorded(container);
+        } finally {
+            AppInfoSnapshot.stopRecording();
+        }
+        AppInfoSnapshot.recorded(new ContainerInfo()); // not recording anymore
+        AppInfoSnapshot.store(snapshot, appInfo());
+
+        final AppInfoSnapshot loaded = AppInfoSnapshot.load(app);
+        assertNotNull(loaded);
+        assertEquals("snapshot", loaded.getAppInfo().appId);
+        assertEquals("ejbs", loaded.getAppInfo().ejbJars.iterator().next().moduleId);
+        assertEquals(1, loaded.getContainers().size());
+        assertEquals("auto", loaded.getContainers().get(0).id);
+    }
+
+    @Test
+    public void outdatedWhenArchiveChanges() throws Exception {
+        final AppInfoSnapshot snapshot = AppInfoSnapshot.record(app);
+        AppInfoSnapshot.stopRecording();
+        AppInfoSnapshot.store(snapshot, appInfo());
+        assertNotNull(AppInfoSnapshot.load(app));
+
+        IO.copy(new byte[]{4}, new File(app, "Bar.class"));
+        assertNull(AppInfoSnapshot.load(app));
+    }
+
+    @Test
+    public void webAppsAreNotStored() throws Exception {
+        final AppInfo appInfo = appInfo();
+        appInfo.webApps.add(new WebAppInfo());
+
+        final AppInfoSnapshot snapshot = AppInfoSnapshot.record(app);
+        AppInfoSnapshot.stopRecording();
+        AppInfoSnapshot.store(snapshot, appInfo);
+        assertNull(AppInfoSnapshot.load(app));
+    }
+
+    private AppInfo appInfo() {
+        final AppInfo appInfo = new AppInfo();
+        appInfo.appId = "snapshot";
+        appInfo.path = app.getAbsolutePath();
+        appInfo.paths.add(appInfo.path);
+
+        final EjbJarInfo ejbJar = new EjbJarInfo();
+        ejbJar.moduleId = "ejbs";
+        appInfo.ejbJars.add(ejbJar);
+        return appInfo;
+    }
+}
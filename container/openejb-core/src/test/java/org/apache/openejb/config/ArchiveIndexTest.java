@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveIndexTest {
+    private File jar;
+
+    @Before
+    public void createJar() throws Exception {
+        jar = new File(Files.tmpdir(), "ArchiveIndexTest-" + System.nanoTime() + ".jar");
+        try (final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (final String name : asList("META-INF/", "META-INF/persistence.xml", "META-INF/c.tld", "META-INF/sub/d.tld", "WEB-INF/web.xml", "org/Foo.class")) {
+                out.putNextEntry(new JarEntry(name));
+                if (!name.endsWith("/")) {
+                    out.write(1);
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    @After
+    public void deleteJar() {
+        Files.delete(jar);
+    }
+
+    @Test
+    public void noScope() {
+        assertNull(ArchiveIndex.get(jar));
+    }
+
+    @Test
+    public void index() throws Exception {
+        ArchiveIndex.acquire();
+        try {
+            final int opens = ArchiveIndex.getOpens();
+            final ArchiveIndex.Entries entries = ArchiveIndex.get(jar);
+            assertNotNull(entries);
+            assertTrue(entries.contains("WEB-INF/web.xml"));
+            assertEquals(asList("META-INF/c.tld", "META-INF/persistence.xml", "META-INF/sub/d.tld"), entries.list("META-INF/", false));
+
+            final Map<String, URL> resources = entries.resources("META-INF/");
+            assertEquals(2, resources.size());
+            assertEquals("jar:" + jar.toURI().toURL().toExternalForm() + "!/META-INF/persistence.xml", resources.get("persistence.xml").toExternalForm());
+
+            final Set<URL> tlds = TldScanner.scanJarForTagLibs(jar);
+            assertEquals(2, tlds.size());
+
+            assertNotNull(ArchiveIndex.get(jar.toURI().toURL()));
+            assertEquals(opens + 1, ArchiveIndex.getOpens());
+        } finally {
+            ArchiveIndex.release();
+        }
+        assertNull(ArchiveIndex.get(jar));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.EnterpriseBean;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class DescriptorCacheTest {
+    private File work;
+
+    @Before
+    public void init() {
+        work = new File(Files.tmpdir(), "DescriptorCacheTest-" + System.nanoTime());
+        SystemInstance.get().setProperty(DescriptorCache.ENABLED_PROPERTY, "true");
+        SystemInstance.get().setProperty(DescriptorCache.LOCATION_PROPERTY, work.getAbsolutePath());
+    }
+
+    @After
+    public void reset() {
+        SystemInstance.reset();
+        Files.delete(work);
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        final AtomicInteger parsed = new AtomicInteger();
+        final DescriptorCache.Parser<EjbJar> parser = new DescriptorCache.Parser<EjbJar>() {
+            @Override
+            public EjbJar parse(final byte[] content) throws Exception {
+                parsed.incrementAndGet();
+                final EjbJar ejbJar = new EjbJar("cached");
+                ejbJar.addEnterpriseBean(new StatelessBean("Orange", "org.acme.Orange"));
+                return ejbJar;
+            }
+        };
+        final byte[] content = "<ejb-jar/>".getBytes("UTF-8");
+
+        final EjbJar first = DescriptorCache.read("ejb-jar.xml", EjbJar.class, content, parser);
+        final EjbJar second = DescriptorCache.read("ejb-jar.xml", EjbJar.class, content, parser);
+        assertEquals(1, parsed.get());
+        assertNotSame(first, second);
+        assertEquals("cached", second.getId());
+
+        final EnterpriseBean bean = second.getEnterpriseBean("Orange");
+        assertEquals(StatelessBean.class, bean.getClass());
+        assertEquals("org.acme.Orange", bean.getEjbClass());
+
+        // another content is another entry
+        DescriptorCache.read("ejb-jar.xml", EjbJar.class, "<ejb-jar />".getBytes("UTF-8"), parser);
+        assertEquals(2, parsed.get());
+    }
+
+    @Test
+    public void containers() throws Exception {
+        final AtomicInteger parsed = new AtomicInteger();
+        final DescriptorCache.Parser<Map> sorted = new DescriptorCache.Parser<Map>() {
+            @Override
+            public Map parse(final byte[] content) throws Exception {
+                parsed.incrementAndGet();
+                final Map<String, String> map = new TreeMap<>(Collections.<String>reverseOrder());
+                map.put("a", "1");
+                return map;
+            }
+        };
+        final byte[] content = "<sorted/>".getBytes("UTF-8");
+
+        // the comparator can't be stored
+        DescriptorCache.read("sorted.xml", Map.class, content, sorted);
+        DescriptorCache.read("sorted.xml", Map.class, content, sorted);
+        assertEquals(2, parsed.get());
+
+        final DescriptorCache.Parser<Map> accessOrdered = new DescriptorCache.Parser<Map>() {
+            @Override
+            public Map parse(final byte[] content) throws Exception {
+                parsed.incrementAndGet();
+                final Map<String, String> map = new LinkedHashMap<>(16, 0.75f, true);
+                map.put("a", "1");
+                map.put("b", "2");
+                return map;
+            }
+        };
+        final byte[] other = "<access/>".getBytes("UTF-8");
+        DescriptorCache.read("access.xml", Map.class, other, accessOrdered);
+        final Map<?, ?> cached = DescriptorCache.read("access.xml", Map.class, other, accessOrdered);
+        assertEquals(3, parsed.get());
+        cached.get("a");
+        assertEquals("b", cached.keySet().iterator().next());
+    }
+
+    @Test
+    public void unreadableEntryDeleted() throws Exception {
+        final AtomicInteger parsed = new AtomicInteger();
+        final DescriptorCache.Parser<EjbJar> parser = new DescriptorCache.Parser<EjbJar>() {
+            @Override
+            public EjbJar parse(final byte[] content) throws Exception {
+                parsed.incrementAndGet();
+                return new EjbJar("cached");
+            }
+        };
+        final byte[] content = "<ejb-jar/>".getBytes("UTF-8");
+        DescriptorCache.read("ejb-jar.xml", EjbJar.class, content, parser);
+
+        final File[] entries = work.listFiles();
+        assertEquals(1, entries.length);
+        IO.copy(new byte[]{1, 2, 3}, entries[0]);
+
+        // deleted, parsed and stored again
+        DescriptorCache.read("ejb-jar.xml", EjbJar.class, content, parser);
+        DescriptorCache.read("ejb-jar.xml", EjbJar.class, content, parser);
+        assertEquals(2, parsed.get());
+    }
+}
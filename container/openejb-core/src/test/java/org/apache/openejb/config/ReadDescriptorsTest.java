@@ -17,8 +17,10 @@
 package org.apache.openejb.config;
 
 
+import org.apache.openejb.OpenEJBException;
 import org.apache.openejb.config.sys.Resource;
 import org.apache.openejb.config.sys.Resources;
+import org.apache.openejb.loader.SystemInstance;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -92,4 +94,28 @@ public class ReadDescriptorsTest {
         Assert.assertNull(res.getProperties().getProperty("InitializeAfterDeployment"));
     }
 
+
+    @Test
+    public void testParallelRead() throws OpenEJBException {
+        SystemInstance.get().setProperty(ReadDescriptors.PARALLEL_PROPERTY, "true");
+        try {
+            final AppModule appModule = new AppModule(ReadDescriptorsTest.class.getClassLoader(), "parallel");
+            for (int i = 0; i < 4; i++) {
+                final EjbModule ejbModule = new EjbModule(ReadDescriptorsTest.class.getClassLoader(), "ejb" + i, "ejb" + i, null, null);
+                ejbModule.getAltDDs().put("ejb-jar.xml", "<ejb-jar id=\"ejb" + i + "\" />");
+                appModule.getEjbModules().add(ejbModule);
+            }
+
+            new ReadDescriptors().deploy(appModule);
+
+            for (int i = 0; i < 4; i++) {
+                final EjbModule ejbModule = appModule.getEjbModules().get(i);
+                Assert.assertNotNull(ejbModule.getEjbJar());
+                Assert.assertEquals("ejb" + i, ejbModule.getEjbJar().getId());
+                Assert.assertNotNull(ejbModule.getOpenejbJar());
+            }
+        } finally {
+            SystemInstance.reset();
+        }
+    }
 }
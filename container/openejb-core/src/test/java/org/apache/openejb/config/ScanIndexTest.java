@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.xbean.finder.AnnotationFinder;
+import org.apache.xbean.finder.archive.Archive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScanIndexTest {
+    private File work;
+
+    @Before
+    public void init() {
+        work = new File(Files.tmpdir(), "ScanIndexTest-" + System.nanoTime());
+        SystemInstance.get().setProperty(ScanIndex.LOCATION_PROPERTY, new File(work, "index").getAbsolutePath());
+    }
+
+    @After
+    public void reset() {
+        SystemInstance.reset();
+        Files.delete(work);
+    }
+
+    @Test
+    public void indexFolder() throws Exception {
+        SystemInstance.get().setProperty(ScanIndex.ENABLED_PROPERTY, "true");
+        final File classes = new File(work, "classes");
+        final String resource = ScanIndexTest.class.getName().replace('.', '/') + ".class";
+        try (final InputStream is = ScanIndexTest.class.getClassLoader().getResourceAsStream(resource)) {
+            IO.copy(is, Files.mkparent(new File(classes, resource)));
+        }
+
+        final int misses = ScanIndex.getMisses();
+        final Archive first = ScanIndex.archive(ScanIndexTest.class.getClassLoader(), classes.toURI().toURL());
+        assertNotNull(first);
+        assertEquals(misses + 1, ScanIndex.getMisses());
+        assertEquals(1, names(first).size());
+        assertEquals(ScanIndexTest.class.getName(), names(first).get(0));
+
+        final int hits = ScanIndex.getHits();
+        final Archive second = ScanIndex.archive(ScanIndexTest.class.getClassLoader(), classes.toURI().toURL());
+        assertNotNull(second);
+        assertEquals(hits + 1, ScanIndex.getHits());
+
+        final List<Method> tests = new AnnotationFinder(second).findAnnotatedMethods(Test.class);
+        assertEquals(1, tests.size());
+        assertEquals("indexFolder", tests.get(0).getName());
+    }
+
+    @Test
+    public void embeddedIndex() throws Exception {
+        final File classes = new File(work, "embedded");
+        final String resource = ScanIndexTest.class.getName().replace('.', '/') + ".class";
+        final File classFile = new File(classes, resource);
+        try (final InputStream is = ScanIndexTest.class.getClassLoader().getResourceAsStream(resource)) {
+            IO.copy(is, Files.mkparent(classFile));
+        }
+
+        assertEquals(1, ScanIndex.generate(classes));
+        final File index = new File(classes, ScanIndex.EMBEDDED_INDEX);
+        assertTrue(index.isFile());
+
+        // off by default
+        assertNull(ScanIndex.archive(ScanIndexTest.class.getClassLoader(), classes.toURI().toURL()));
+        SystemInstance.get().setProperty(ScanIndex.EMBEDDED_PROPERTY, "true");
+
+        final int misses = ScanIndex.getMisses();
+        final Archive archive = ScanIndex.archive(ScanIndexTest.class.getClassLoader(), classes.toURI().toURL());
+        assertNotNull(archive);
+        assertEquals(misses, ScanIndex.getMisses());
+        assertEquals(ScanIndexTest.class.getName(), names(archive).get(0));
+
+        // recompiled with the same size
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IO.copy(classFile, out);
+        final byte[] bytecode = out.toByteArray();
+        bytecode[bytecode.length - 1]++;
+        IO.copy(bytecode, classFile);
+        assertTrue(classFile.setLastModified(index.lastModified() + 2000));
+        assertNull(ScanIndex.archive(ScanIndexTest.class.getClassLoader(), classes.toURI().toURL()));
+        bytecode[bytecode.length - 1]--;
+        IO.copy(bytecode, classFile);
+        assertTrue(classFile.setLastModified(index.lastModified() + 2000));
+        assertNotNull(ScanIndex.archive(ScanIndexTest.class.getClassLoader(), classes.toURI().toURL()));
+
+        // not matching anymore, runtime index not activated
+        IO.copy(new byte[]{0}, new File(classFile.getParentFile(), "Other.class"));
+        assertNull(ScanIndex.archive(ScanIndexTest.class.getClassLoader(), classes.toURI().toURL()));
+    }
+
+    @Test
+    public void librariesIndex() throws Exception {
+        final File war = new File(work, "war");
+        final File jar = Files.mkparent(new File(war, "WEB-INF/lib/lib.jar"));
+        final String resource = ScanIndexTest.class.getName().replace('.', '/') + ".class";
+        writeJar(jar, resource);
+
+        assertEquals(1, ScanIndex.generateLibraries(new File(war, "WEB-INF/classes"), Collections.singletonList(jar)));
+        assertTrue(new File(war, "WEB-INF/classes/" + ScanIndex.LIBRARIES_INDEX + "lib.jar.idx").isFile());
+
+        SystemInstance.get().setProperty(ScanIndex.EMBEDDED_PROPERTY, "true");
+        final int misses = ScanIndex.getMisses();
+        final Archive archive = ScanIndex.archive(ScanIndexTest.class.getClassLoader(), jar.toURI().toURL());
+        assertNotNull(archive);
+        assertEquals(misses, ScanIndex.getMisses());
+        assertEquals(ScanIndexTest.class.getName(), names(archive).get(0));
+
+        // the jar was replaced
+        writeJar(jar, resource, "Other.class");
+        assertNull(ScanIndex.archive(ScanIndexTest.class.getClassLoader(), jar.toURI().toURL()));
+    }
+
+    @Test
+    public void jarIndexChecksContent() throws Exception {
+        SystemInstance.get().setProperty(ScanIndex.ENABLED_PROPERTY, "true");
+        final File jar = Files.mkparent(new File(work, "lib/lib.jar"));
+        final String resource = ScanIndexTest.class.getName().replace('.', '/') + ".class";
+        writeJarEntry(jar, "a/First.class", resource);
+        final long length = jar.length();
+        final long lastModified = jar.lastModified();
+        assertEquals(Collections.singletonList("a.First"), names(ScanIndex.archive(ScanIndexTest.class.getClassLoader(), jar.toURI().toURL())));
+
+        // same size and date, other content
+        writeJarEntry(jar, "a/Other.class", resource);
+        assertEquals(length, jar.length());
+        assertTrue(jar.setLastModified(lastModified));
+        final int misses = ScanIndex.getMisses();
+        assertEquals(Collections.singletonList("a.Other"), names(ScanIndex.archive(ScanIndexTest.class.getClassLoader(), jar.toURI().toURL())));
+        assertEquals(misses + 1, ScanIndex.getMisses());
+
+        // without the hash the jar is trusted on its size and date
+        SystemInstance.get().setProperty(ScanIndex.HASH_PROPERTY, "false");
+        writeJarEntry(jar, "a/Third.class", resource);
+        assertTrue(jar.setLastModified(lastModified));
+        assertEquals(Collections.singletonList("a.Other"), names(ScanIndex.archive(ScanIndexTest.class.getClassLoader(), jar.toURI().toURL())));
+    }
+
+    @Test
+    public void stubHasNoCode() throws IOException {
+        final String resource = ScanIndexTest.class.getName().replace('.', '/') + ".class";
+        final byte[] bytecode;
+        try (final InputStream is = ScanIndexTest.class.getClassLoader().getResourceAsStream(resource)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IO.copy(is, out);
+            bytecode = out.toByteArray();
+        }
+        assertTrue(ScanIndex.stub(bytecode).length < bytecode.length);
+    }
+
+    private static void writeJar(final File jar, final String... resources) throws IOException {
+        try (final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (final String resource : resources) {
+                out.putNextEntry(new JarEntry(resource));
+                try (final InputStream is = ScanIndexTest.class.getClassLoader().getResourceAsStream(resource)) {
+                    if (is != null) {
+                        IO.copy(is, out);
+                    } else {
+                        out.write(0);
+                    }
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static void writeJarEntry(final File jar, final String name, final String resource) throws IOException {
+        try (final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(name));
+            try (final InputStream is = ScanIndexTest.class.getClassLoader().getResourceAsStream(resource)) {
+                IO.copy(is, out);
+            }
+            out.closeEntry();
+        }
+    }
+
+    private static List<String> names(final Archive archive) {
+        final List<String> names = new ArrayList<>();
+        for (final Archive.Entry entry : archive) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+}
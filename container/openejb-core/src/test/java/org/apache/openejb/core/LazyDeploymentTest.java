@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.Empty;
+import org.apache.openejb.jee.SingletonBean;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.ejb.EJB;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class LazyDeploymentTest {
+    @EJB
+    private Lazy lazy;
+
+    @EJB
+    private Eager eager;
+
+    @Configuration
+    public Properties config() {
+        final Properties properties = new Properties();
+        properties.setProperty(LazyDeployment.PROPERTY, "true");
+        return properties;
+    }
+
+    @Module
+    public EjbJar beans() {
+        final EjbJar ejbJar = new EjbJar();
+
+        final StatelessBean stateless = new StatelessBean(Lazy.class);
+        stateless.setLocalBean(new Empty());
+        ejbJar.addEnterpriseBean(stateless);
+
+        final SingletonBean singleton = new SingletonBean(Eager.class);
+        singleton.setLocalBean(new Empty());
+        ejbJar.addEnterpriseBean(singleton);
+
+        return ejbJar;
+    }
+
+    @Test
+    public void deployOnFirstInvocation() {
+        final BeanContext beanContext = beanContext("Lazy");
+        final LazyDeployment deployment = beanContext.get(LazyDeployment.class);
+        assertNotNull(deployment);
+        assertFalse(deployment.isDeployed());
+        assertNull(beanContext.getContainer().getBeanContext(beanContext.getDeploymentID()));
+
+        assertEquals("lazy", lazy.name());
+        assertTrue(deployment.isDeployed());
+        assertSame(beanContext, beanContext.getContainer().getBeanContext(beanContext.getDeploymentID()));
+
+        assertEquals("lazy", lazy.name());
+    }
+
+    @Test
+    public void singletonsStayEager() {
+        final BeanContext beanContext = beanContext("Eager");
+        assertNull(beanContext.get(LazyDeployment.class));
+        assertSame(beanContext, beanContext.getContainer().getBeanContext(beanContext.getDeploymentID()));
+        assertEquals("eager", eager.name());
+    }
+
+    private static BeanContext beanContext(final String name) {
+        for (final BeanContext beanContext : SystemInstance.get().getComponent(ContainerSystem.class).deployments()) {
+            if (name.equals(beanContext.getEjbName())) {
+                return beanContext;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    public static class Lazy {
+        public String name() {
+            return "lazy";
+        }
+    }
+
+    public static class Eager {
+        public String name() {
+            return "eager";
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StartupProfilerTest {
+    private File output;
+
+    @Before
+    public void init() {
+        output = new File(Files.tmpdir(), "StartupProfilerTest-" + System.nanoTime() + ".folded");
+        SystemInstance.get().setProperty(StartupProfiler.OUTPUT_PROPERTY, output.getAbsolutePath());
+    }
+
+    @After
+    public void reset() {
+        SystemInstance.reset();
+        if (output.exists() && !output.delete()) {
+            output.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void inactive() {
+        final int size = StartupProfiler.getReport().size();
+        try (final StartupProfiler.Span ignored = StartupProfiler.start("root")) {
+            StartupProfiler.start("child").close();
+        }
+        assertEquals(size, StartupProfiler.getReport().size());
+        assertFalse(output.exists());
+    }
+
+    @Test
+    public void nestedSpans() throws Exception {
+        SystemInstance.get().setProperty(StartupProfiler.ACTIVE_PROPERTY, "true");
+        final int size = StartupProfiler.getReport().size();
+
+        try (final StartupProfiler.Span ignored = StartupProfiler.start("deploy app")) {
+            for (int i = 0; i < 2; i++) {
+                try (final StartupProfiler.Span child = StartupProfiler.start("AnnotationDeployer")) {
+                    StartupProfiler.start("ProcessAnnotatedBeans").close();
+                }
+            }
+            StartupProfiler.start("AppInfoBuilder").close();
+            StartupProfiler.start("unclosed"); // dropped with its parent
+        }
+
+        final List<String> report = StartupProfiler.getReport().subList(size, StartupProfiler.getReport().size());
+        assertEquals(4, report.size());
+        assertTrue(report.get(0), report.get(0).startsWith("deploy app: "));
+        assertTrue(report.get(1), report.get(1).startsWith("  AnnotationDeployer: ") && report.get(1).endsWith("(2 times)"));
+        assertTrue(report.get(2), report.get(2).startsWith("    ProcessAnnotatedBeans: "));
+        assertTrue(report.get(3), report.get(3).startsWith("  AppInfoBuilder: "));
+
+        final String folded = IO.slurp(output);
+        assertTrue(folded, folded.contains("deploy app;AnnotationDeployer;ProcessAnnotatedBeans "));
+        assertTrue(folded, folded.contains("deploy app;AnnotationDeployer "));
+        assertTrue(folded, folded.contains("\ndeploy app "));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.util.classloader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixTrieTest {
+    @Test
+    public void longestPrefixWins() {
+        final PrefixTrie<String> trie = PrefixTrie.<String>builder()
+            .put("org.apache.", "apache")
+            .put("org.apache.openejb.", "openejb")
+            .put("org.apache.openejb.hibernate.", "enrichment")
+            .put("org.apache.xbean.spring", "spring")
+            .build();
+
+        assertEquals("apache", trie.find("org.apache.bval.Foo"));
+        assertEquals("openejb", trie.find("org.apache.openejb.core.Foo"));
+        assertEquals("enrichment", trie.find("org.apache.openejb.hibernate.OpenEJBJtaPlatform"));
+        assertEquals("apache", trie.find("org.apache.openejb")); // shorter than the prefix
+        assertEquals("spring", trie.find("org.apache.xbean.springframework.Foo"));
+        assertEquals("apache", trie.find("org.apache.xbean.finder.Foo"));
+        assertNull(trie.find("org.apach"));
+        assertNull(trie.find("com.acme.Foo"));
+        assertNull(trie.find(""));
+        assertNull(trie.find(null));
+    }
+
+    @Test
+    public void emptyPrefix() {
+        final PrefixTrie<Boolean> trie = PrefixTrie.<Boolean>builder().put("", true).put("java.", false).build();
+        assertTrue(trie.find("com.acme.Foo"));
+        assertTrue(trie.find(""));
+        assertFalse(trie.find("java.lang.String"));
+    }
+
+    @Test
+    public void empty() {
+        final PrefixTrie<Boolean> trie = PrefixTrie.<Boolean>builder().build();
+        assertTrue(trie.isEmpty());
+        assertFalse(trie.matches("java.lang.String"));
+    }
+}
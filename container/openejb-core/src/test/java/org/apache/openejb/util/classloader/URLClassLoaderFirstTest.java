@@ -23,10 +23,19 @@ import org.junit.Test;
 
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.wsdl.WSDLException;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class URLClassLoaderFirstTest {
@@ -65,4 +74,61 @@ public class URLClassLoaderFirstTest {
         assertTrue(URLClassLoaderFirst.shouldSkip("javax.wsdl.WSDLException"));
         SystemInstance.reset();
     }
+
+    @Test
+    public void forcedPrefixesAddedDirectly() {
+        assertFalse(URLClassLoaderFirst.shouldSkip("com.acme.Service"));
+        URLClassLoaderFirst.FORCED_SKIP.add("com.acme.");
+        try {
+            assertTrue(URLClassLoaderFirst.shouldSkip("com.acme.Service"));
+        } finally {
+            URLClassLoaderFirst.FORCED_SKIP.remove("com.acme.");
+        }
+        assertFalse(URLClassLoaderFirst.shouldSkip("com.acme.Service"));
+    }
+
+    @Test
+    public void parallelLoading() throws Exception {
+        final String[] names = {
+            "org.junit.Assert", "org.junit.runner.JUnitCore", "org.junit.rules.TemporaryFolder",
+            "org.junit.runners.Parameterized", "org.junit.experimental.categories.Categories"
+        };
+        final URLClassLoader loader = new URLClassLoaderFirst(
+            new URL[]{JarLocation.jarLocation(Test.class).toURI().toURL()}, URLClassLoaderFirstTest.class.getClassLoader());
+
+        final int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            final Collection<Future<Class<?>[]>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(es.submit(new Callable<Class<?>[]>() {
+                    @Override
+                    public Class<?>[] call() throws Exception {
+                        start.await();
+                        final Class<?>[] classes = new Class<?>[names.length];
+                        for (int i = 0; i < names.length; i++) {
+                            classes[i] = loader.loadClass(names[i]);
+                        }
+                        return classes;
+                    }
+                }));
+            }
+            start.countDown();
+
+            final Class<?>[] expected = new Class<?>[names.length];
+            for (int i = 0; i < names.length; i++) {
+                expected[i] = loader.loadClass(names[i]);
+            }
+            for (final Future<Class<?>[]> result : results) {
+                final Class<?>[] classes = result.get(1, TimeUnit.MINUTES);
+                for (int i = 0; i < names.length; i++) {
+                    assertSame(expected[i], classes[i]);
+                }
+            }
+        } finally {
+            es.shutdownNow();
+            loader.close();
+        }
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.loader;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Pre-resolved, typed view of a {@link SystemInstance} component.
+ * <p/>
+ * Reading the handle is a single volatile read once the component has been resolved,
+ * a missing component is cached as well (negative lookup) and the owning
+ * {@link SystemInstance} pushes every {@link SystemInstance#setComponent(Class, Object)}
+ * and {@link SystemInstance#removeComponent(Class)} to its handles.
+ * <p/>
+ * A handle is bound to the {@link SystemInstance} which created it, callers keeping
+ * a handle in a static field should use {@link #current(ComponentHandle, Class)} to follow
+ * {@link SystemInstance#reset()}/{@link SystemInstance#init(java.util.Properties)}.
+ *
+ * @param <T> the component type
+ */
+public final class ComponentHandle<T> {
+    private static final Object UNRESOLVED = new Object();
+    private static final Object ABSENT = new Object();
+    @SuppressWarnings("unchecked") // a class literal can't carry the type parameter
+    private static final AtomicReferenceFieldUpdater<ComponentHandle<?>, Object> VALUE = AtomicReferenceFieldUpdater.newUpdater(
+        (Class<ComponentHandle<?>>) (Class<?>) ComponentHandle.class, Object.class, "value");
+
+    private final SystemInstance owner;
+    private final Class<T> type;
+    private volatile Object value = UNRESOLVED;
+
+    ComponentHandle(final SystemInstance owner, final Class<T> type) {
+        this.owner = owner;
+        this.type = type;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public SystemInstance getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return the component or null if the owner doesn't have any
+     */
+    public T get() {
+        Object current = value;
+        if (current == UNRESOLVED) {
+            current = resolve();
+        }
+        return current == ABSENT ? null : type.cast(current);
+    }
+
+    public boolean isPresent() {
+        return get() != null;
+    }
+
+    private Object resolve() {
+        final T component = owner.getComponent(type);
+        final Object resolved = component == null ? ABSENT : component;
+        if (VALUE.compareAndSet(this, UNRESOLVED, resolved)) {
+            return resolved;
+        }
+        // concurrently updated by the owner, its value wins
+        final Object current = value;
+        return current == UNRESOLVED ? resolved : current;
+    }
+
+    void update(final Object component) {
+        value = component == null ? ABSENT : component;
+    }
+
+    void invalidate() {
+        VALUE.compareAndSet(this, ABSENT, UNRESOLVED);
+    }
+
+    /**
+     * @param handle a previously cached handle, can be null
+     * @param type   the component type
+     * @return the handle itself if it is still bound to the current {@link SystemInstance}, a new one otherwise
+     */
+    public static <T> ComponentHandle<T> current(final ComponentHandle<T> handle, final Class<T> type) {
+        final SystemInstance systemInstance = SystemInstance.get();
+        if (handle != null && handle.owner == systemInstance) {
+            return handle;
+        }
+        return systemInstance.getComponentHandle(type);
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentHandle{type=" + type.getName() + '}';
+    }
+}
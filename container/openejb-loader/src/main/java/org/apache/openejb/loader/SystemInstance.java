@@ -23,9 +23,10 @@ import org.apache.openejb.observer.ObserverManager;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -55,12 +56,14 @@ public final class SystemInstance {
     private final FileUtils home;
     private final FileUtils base;
     private final ClassLoader classLoader;
-    private final Map<Class, Object> components;
+    private final ConcurrentMap<Class, Object> components;
+    private final ConcurrentMap<Class, ComponentHandle<?>> handles;
     private final ClassPath classPath;
     private final ObserverManager observerManager = new ObserverManager();
 
     private SystemInstance(final Properties properties) {
-        this.components = new HashMap<Class, Object>();
+        this.components = new ConcurrentHashMap<Class, Object>();
+        this.handles = new ConcurrentHashMap<Class, ComponentHandle<?>>();
 
         // import JVM system property config (if a resource/container/... is set through this way)
         for (final String key : System.getProperties().stringPropertyNames()) {
@@ -177,7 +180,21 @@ public final class SystemInstance {
         if (isExternalProperty) {
             System.setProperty(key, value);
         }
-        return internalProperties.setProperty(key, value);
+        final Object previous = internalProperties.setProperty(key, value);
+        invalidateAbsentHandle(key);
+        return previous;
+    }
+
+    // a property named after a component type can provide the implementation, so a cached miss is no more valid
+    private void invalidateAbsentHandle(final String key) {
+        if (handles.isEmpty()) {
+            return;
+        }
+        for (final Map.Entry<Class, ComponentHandle<?>> entry : handles.entrySet()) {
+            if (entry.getKey().getName().equals(key) && !components.containsKey(entry.getKey())) {
+                entry.getValue().invalidate();
+            }
+        }
     }
 
     public FileUtils getHome() {
@@ -224,7 +241,11 @@ public final class SystemInstance {
             try {
                 final T instance = type.cast(Thread.currentThread().getContextClassLoader()
                     .loadClass(classname).newInstance());
-                components.put(type, instance);
+                final T existing = (T) components.putIfAbsent(type, instance);
+                if (existing != null) {
+                    return existing;
+                }
+                notifyHandle(type, instance);
                 return instance;
             } catch (final Throwable e) {
                 // no-op
@@ -234,11 +255,31 @@ public final class SystemInstance {
         return null;
     }
 
+    /**
+     * Resolving a component through a handle avoids the map lookup (and the property fallback
+     * when the component is missing) for each access so callers on hot paths should keep it.
+     *
+     * @param type the class type of the component
+     * @return the handle for this component type, shared by all callers of this instance
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ComponentHandle<T> getComponentHandle(final Class<T> type) {
+        final ComponentHandle<T> handle = (ComponentHandle<T>) handles.get(type);
+        if (handle != null) {
+            return handle;
+        }
+
+        final ComponentHandle<T> created = new ComponentHandle<T>(this, type);
+        final ComponentHandle<T> existing = (ComponentHandle<T>) handles.putIfAbsent(type, created);
+        return existing != null ? existing : created;
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T removeComponent(final Class<T> type) {
         final T component = (T) components.remove(type);
 
         if (component != null) {
+            notifyHandle(type, null);
             fireEvent(new ComponentRemoved(type, component));
         }
 
@@ -250,7 +291,8 @@ public final class SystemInstance {
      */
     @SuppressWarnings("unchecked")
     public <T> T setComponent(final Class<T> type, final T value) {
-        final T removed = (T) components.put(type, value);
+        final T removed = (T) (value == null ? components.remove(type) : components.put(type, value));
+        notifyHandle(type, value);
 
         if (removed != null) {
             fireEvent(new ComponentRemoved(type, value));
@@ -263,6 +305,13 @@ public final class SystemInstance {
         return removed;
     }
 
+    private void notifyHandle(final Class<?> type, final Object value) {
+        final ComponentHandle<?> handle = handles.get(type);
+        if (handle != null) {
+            handle.update(value);
+        }
+    }
+
     private static final AtomicReference<SystemInstance> system = new AtomicReference<SystemInstance>();
 
     static {
@@ -306,7 +355,10 @@ public final class SystemInstance {
     }
 
     private static void initDefaultComponents() {
-        system.get().components.put(ProvisioningResolver.class, new ProvisioningResolver());
+        final SystemInstance instance = system.get();
+        final ProvisioningResolver resolver = new ProvisioningResolver();
+        instance.components.put(ProvisioningResolver.class, resolver);
+        instance.notifyHandle(ProvisioningResolver.class, resolver);
     }
 
     private static void readUserSystemProperties() {
@@ -17,9 +17,29 @@
 package org.apache.openejb.loader;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -46,19 +66,176 @@ public class Zips {
         }
     }
 
+    /**
+     * Unzips with several threads, each of them reading the archive through its own {@link ZipFile}
+     * so entries are inflated and written concurrently. Folders are created upfront and each file is written
+     * with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}. When several entries resolve to the same file
+     * only the last one is extracted, as the sequential unzip would leave it. {@link ZipFile} only reads the first
+     * of several entries sharing a name so such archives fall back on the sequential stream unzip.
+     * <p/>
+     * Inflating is CPU bound and entries are independent so it only pays on multi-core hosts with big archives,
+     * it was not benchmarked which is why callers keep it opt-in.
+     *
+     * @param threads the number of threads to use, 1 or less falls back on the sequential {@link #unzip(File, File, boolean)}
+     */
+    public static void unzip(final File zipFile, final File destination, final boolean noparent, final int threads) throws IOException {
+        if (threads <= 1) {
+            unzip(zipFile, destination, noparent);
+            return;
+        }
+
+        Files.dir(destination);
+        Files.writable(destination);
+
+        Files.file(zipFile);
+        Files.readable(zipFile);
+
+        final Path root = root(destination);
+        final List<ZipEntry> sources = new ArrayList<ZipEntry>();
+        final List<File> targets = new ArrayList<File>();
+        boolean duplicated = false;
+        try (final ZipFile zip = new ZipFile(zipFile)) {
+            // keyed by target so two workers never write the same file
+            final Map<Path, ZipEntry> files = new LinkedHashMap<Path, ZipEntry>();
+            final Set<String> names = new HashSet<String>();
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (!names.add(entry.getName())) { // ZipFile only reads the first one, a stream sees the last
+                    duplicated = true;
+                    break;
+                }
+                final File file = target(destination, root, entry, noparent);
+
+                // folders are created here so workers never race on mkdirs
+                if (entry.isDirectory()) {
+                    Files.mkdir(file);
+                    continue;
+                }
+                Files.mkdir(file.getParentFile());
+
+                final Path path = file.toPath().toAbsolutePath().normalize();
+                files.remove(path);
+                files.put(path, entry);
+            }
+            for (final Map.Entry<Path, ZipEntry> file : files.entrySet()) {
+                sources.add(file.getValue());
+                targets.add(file.getKey().toFile());
+            }
+
+            if (!duplicated && sources.size() < 2) {
+                for (int i = 0; i < sources.size(); i++) {
+                    copy(zip, sources.get(i), targets.get(i));
+                }
+                return;
+            }
+        }
+
+        if (duplicated) {
+            unzip(zipFile, destination, noparent);
+            return;
+        }
+
+        final int workers = Math.min(threads, sources.size());
+        final ExecutorService pool = Executors.newFixedThreadPool(workers, new UnzipThreadFactory(zipFile));
+        try {
+            final AtomicInteger next = new AtomicInteger();
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>(workers);
+            for (int i = 0; i < workers; i++) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try (final ZipFile zip = new ZipFile(zipFile)) {
+                            int idx;
+                            while ((idx = next.getAndIncrement()) < sources.size()) {
+                                copy(zip, sources.get(idx), targets.get(idx));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final ExecutionException e) {
+            throw new IOException("Unable to unzip " + zipFile.getAbsolutePath(), e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while unzipping " + zipFile.getAbsolutePath(), e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Path root(final File destination) {
+        return destination.toPath().toAbsolutePath().normalize();
+    }
+
+    private static File target(final File destination, final Path root, final ZipEntry entry, final boolean noparent) throws IOException {
+        String path = entry.getName();
+        if (noparent) {
+            path = path.replaceFirst("^[^/]+/", "");
+        }
+        final File file = new File(destination, path);
+        if (!file.toPath().toAbsolutePath().normalize().startsWith(root)) {
+            throw new IOException("Entry " + entry.getName() + " is outside of " + destination.getAbsolutePath());
+        }
+        return file;
+    }
+
+    private static void copy(final ZipFile zip, final ZipEntry entry, final File file) throws IOException {
+        try (final InputStream in = zip.getInputStream(entry);
+             final FileOutputStream out = new FileOutputStream(file)) {
+            final long size = entry.getSize();
+            if (size < 0) {
+                IO.copy(in, out);
+            } else {
+                final FileChannel channel = out.getChannel();
+                final ReadableByteChannel source = Channels.newChannel(in);
+                long position = 0;
+                while (position < size) {
+                    final long transferred = channel.transferFrom(source, position, size - position);
+                    if (transferred <= 0) {
+                        throw new IOException("Truncated entry " + entry.getName() + ", " + position + "/" + size + " bytes read");
+                    }
+                    position += transferred;
+                }
+            }
+        }
+
+        final long lastModified = entry.getTime();
+        if (lastModified > 0) {
+            file.setLastModified(lastModified);
+        }
+    }
+
+    private static final class UnzipThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String name;
+
+        private UnzipThreadFactory(final File zipFile) {
+            this.name = "unzip-" + zipFile.getName() + "-";
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, name + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     public static void unzip(final InputStream read, final File destination, final boolean noparent) throws IOException {
         try {
             // Open the ZIP file
             final ZipInputStream in = new ZipInputStream(read);
+            final Path root = root(destination);
 
             ZipEntry entry;
 
             while ((entry = in.getNextEntry()) != null) {
-                String path = entry.getName();
-                if (noparent) {
-                    path = path.replaceFirst("^[^/]+/", "");
-                }
-                final File file = new File(destination, path);
+                final File file = target(destination, root, entry, noparent);
 
                 if (entry.isDirectory()) {
                     Files.mkdir(file);
@@ -61,4 +61,38 @@ public class SystemInstanceTest extends TestCase {
         assertEquals("SystemInstance.get(\"height\")", "2", systemInstance.get("height"));
 
     }
+
+    public void testComponentHandle() {
+        final SystemInstance instance = SystemInstance.get();
+        final ComponentHandle<StringBuilder> handle = instance.getComponentHandle(StringBuilder.class);
+        try {
+            assertSame(handle, instance.getComponentHandle(StringBuilder.class));
+            assertNull(handle.get());
+            assertFalse(handle.isPresent());
+
+            final StringBuilder component = new StringBuilder();
+            instance.setComponent(StringBuilder.class, component);
+            assertSame(component, handle.get());
+
+            instance.removeComponent(StringBuilder.class);
+            assertNull(handle.get());
+
+            instance.setProperty(StringBuilder.class.getName(), StringBuilder.class.getName());
+            assertNotNull(handle.get());
+            assertSame(instance.getComponent(StringBuilder.class), handle.get());
+        } finally {
+            instance.removeComponent(StringBuilder.class);
+            instance.getProperties().remove(StringBuilder.class.getName());
+        }
+    }
+
+    public void testComponentHandleFollowsReset() {
+        final ComponentHandle<StringBuilder> handle = ComponentHandle.current(null, StringBuilder.class);
+        assertSame(handle, ComponentHandle.current(handle, StringBuilder.class));
+
+        SystemInstance.reset();
+        final ComponentHandle<StringBuilder> afterReset = ComponentHandle.current(handle, StringBuilder.class);
+        assertNotSame(handle, afterReset);
+        assertSame(SystemInstance.get(), afterReset.getOwner());
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.loader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZipsTest {
+    private File work;
+
+    @Before
+    public void init() {
+        work = Files.mkdirs(new File("target/test/ZipsTest-" + System.nanoTime()));
+    }
+
+    @After
+    public void clean() {
+        Files.delete(work);
+    }
+
+    @Test
+    public void parallelUnzip() throws Exception {
+        final File zip = new File(work, "app.zip");
+        try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("app/lib/"));
+            out.closeEntry();
+            for (int i = 0; i < 20; i++) {
+                final ZipEntry entry = new ZipEntry("app/lib/" + i + ".jar");
+                entry.setTime(1000000000000L);
+                out.putNextEntry(entry);
+                out.write(content(i));
+                out.closeEntry();
+            }
+        }
+
+        final File sequential = Files.mkdirs(new File(work, "sequential"));
+        final File parallel = Files.mkdirs(new File(work, "parallel"));
+        Zips.unzip(zip, sequential, true);
+        Zips.unzip(zip, parallel, true, 4);
+
+        final String[] files = new File(parallel, "lib").list();
+        assertEquals(20, files.length);
+        for (int i = 0; i < 20; i++) {
+            final File extracted = new File(parallel, "lib/" + i + ".jar");
+            assertArrayEquals(content(i), bytes(extracted));
+            assertArrayEquals(bytes(new File(sequential, "lib/" + i + ".jar")), bytes(extracted));
+            assertEquals(new File(sequential, "lib/" + i + ".jar").lastModified(), extracted.lastModified());
+        }
+    }
+
+    @Test
+    public void parallelUnzipWritesDuplicatesOnce() throws Exception {
+        final File zip = new File(work, "duplicates.zip");
+        try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (int i = 0; i < 20; i++) { // same file once the parent is stripped
+                out.putNextEntry(new ZipEntry("v" + i + "/lib.jar"));
+                out.write(content(i));
+                out.closeEntry();
+            }
+        }
+
+        final File sequential = Files.mkdirs(new File(work, "sequential"));
+        final File parallel = Files.mkdirs(new File(work, "parallel"));
+        Zips.unzip(zip, sequential, true);
+        Zips.unzip(zip, parallel, true, 4);
+
+        assertArrayEquals(content(19), bytes(new File(sequential, "lib.jar")));
+        assertArrayEquals(content(19), bytes(new File(parallel, "lib.jar")));
+    }
+
+    @Test
+    public void parallelUnzipKeepsLastOfDuplicatedNames() throws Exception {
+        final File zip = new File(work, "names.zip");
+        try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (int i = 0; i < 2; i++) { // ZipOutputStream rejects duplicated names, renamed below
+                out.putNextEntry(new ZipEntry(i == 0 ? "app/a.txt" : "app/A.txt"));
+                out.write(content(i));
+                out.closeEntry();
+            }
+            out.putNextEntry(new ZipEntry("app/b.txt"));
+            out.write(content(2));
+            out.closeEntry();
+        }
+        final String raw = new String(bytes(zip), "ISO-8859-1").replace("app/A.txt", "app/a.txt");
+        java.nio.file.Files.write(zip.toPath(), raw.getBytes("ISO-8859-1"));
+
+        final File parallel = Files.mkdirs(new File(work, "parallel"));
+        Zips.unzip(zip, parallel, true, 4);
+
+        assertArrayEquals(content(1), bytes(new File(parallel, "a.txt")));
+        assertArrayEquals(content(2), bytes(new File(parallel, "b.txt")));
+    }
+
+    @Test
+    public void unzipStaysInDestination() throws Exception {
+        final File zip = new File(work, "evil.zip");
+        try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("../evil.txt"));
+            out.write(1);
+            out.closeEntry();
+        }
+
+        for (final int threads : new int[]{1, 2}) {
+            final File destination = Files.mkdirs(new File(work, "destination-" + threads));
+            try {
+                Zips.unzip(zip, destination, false, threads);
+                fail();
+            } catch (final IOException e) {
+                final Throwable error = e.getCause() != null ? e.getCause() : e;
+                assertTrue(error.getMessage(), error.getMessage().contains("../evil.txt"));
+            }
+            assertFalse(new File(work, "evil.txt").exists());
+        }
+    }
+
+    private static byte[] bytes(final File file) throws IOException {
+        return java.nio.file.Files.readAllBytes(file.toPath());
+    }
+
+    private static byte[] content(final int i) {
+        final byte[] bytes = new byte[1024 * (i + 1)];
+        Arrays.fill(bytes, (byte) i);
+        return bytes;
+    }
+}
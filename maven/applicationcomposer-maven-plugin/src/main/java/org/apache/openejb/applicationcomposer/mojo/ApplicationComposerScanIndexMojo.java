@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.applicationcomposer.mojo;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.openejb.config.ScanIndex;
+
+import java.io.File;
+import java.io.IOException;
+
+@Mojo(name = "scan-index", threadSafe = true, defaultPhase = LifecyclePhase.PROCESS_CLASSES)
+public class ApplicationComposerScanIndexMojo extends ApplicationComposerMojo {
+    @Parameter(property = "applicationcomposer.scan-index.skip", defaultValue = "false")
+    protected boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip || !binaries.isDirectory()) {
+            return;
+        }
+
+        try {
+            final int indexed = ScanIndex.generate(binaries);
+            getLog().info("Indexed " + indexed + " classes in " + new File(binaries, ScanIndex.EMBEDDED_INDEX).getAbsolutePath());
+        } catch (final IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.apache.openejb.maven.plugin;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.apache.openejb.config.ScanIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Precomputes the scanning index of the compiled classes and embeds it in META-INF/openejb-scan.idx
+ * to let the deployment skip reading the module classes when it matches them.
+ */
+@Mojo(name = "scan-index", threadSafe = true, defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.RUNTIME)
+public class ScanIndexMojo extends AbstractMojo {
+    @Parameter(property = "tomee-plugin.scan-index.classes", defaultValue = "${project.build.outputDirectory}")
+    protected File classes;
+
+    @Parameter(property = "tomee-plugin.scan-index.skip", defaultValue = "false")
+    protected boolean skip;
+
+    /**
+     * Indexes the runtime dependencies too, they are the WEB-INF/lib jars of a war or the lib jars of an ear.
+     */
+    @Parameter(property = "tomee-plugin.scan-index.libraries", defaultValue = "true")
+    protected boolean libraries;
+
+    /**
+     * Where the index of the libraries is written, the classes of a war by default,
+     * use the ear working directory (${project.build.directory}/${project.build.finalName}) for an ear.
+     */
+    @Parameter(property = "tomee-plugin.scan-index.libraries-output", defaultValue = "${project.build.outputDirectory}")
+    protected File librariesOutput;
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    protected MavenProject project;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping scan index generation");
+            return;
+        }
+
+        try {
+            if (classes.isDirectory()) {
+                final int indexed = ScanIndex.generate(classes);
+                getLog().info("Indexed " + indexed + " classes in " + new File(classes, ScanIndex.EMBEDDED_INDEX).getAbsolutePath());
+            } else {
+                getLog().info(classes.getAbsolutePath() + " doesn't exist, no scan index generated for the classes");
+            }
+
+            if (libraries) {
+                final int indexed = ScanIndex.generateLibraries(librariesOutput, jars());
+                getLog().info("Indexed " + indexed + " libraries in " + new File(librariesOutput, ScanIndex.LIBRARIES_INDEX).getAbsolutePath());
+            }
+        } catch (final IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<File> jars() {
+        final Collection<File> jars = new ArrayList<>();
+        for (final Artifact artifact : (Collection<Artifact>) project.getArtifacts()) {
+            if ("jar".equals(artifact.getType()) && artifact.getFile() != null
+                && (Artifact.SCOPE_COMPILE.equals(artifact.getScope()) || Artifact.SCOPE_RUNTIME.equals(artifact.getScope()))) {
+                jars.add(artifact.getFile());
+            }
+        }
+        return jars;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class descriptors already sent on a connection, see {@link KeepAliveStyle#DESCRIPTORS}.
+ * <p/>
+ * The object streams are still created for each request but a class descriptor is sent in full
+ * only the first time, the next streams of the connection send its id. There is one dictionary
+ * per direction and both sides number the descriptors in the order they are sent.
+ * When the dictionary of the writer reaches {@link #MAX_PROPERTY} descriptors it is reset, the reader follows.
+ * <p/>
+ * The ids are positional so a stream not read until its end desynchronizes the dictionaries: each stream starts
+ * with the size of the writer dictionary, checked by the reader. Once a mismatch or a class resolution failure
+ * is seen the dictionaries are {@link #isBroken() broken} and the connection must be discarded.
+ * <p/>
+ * Classes are still resolved, and filtered, by {@link EjbObjectInputStream} for each stream.
+ * A connection is used by a single request at a time so the dictionaries are not thread safe.
+ */
+public class ClassDescriptors {
+
+    public static final String MAX_PROPERTY = "openejb.client.descriptors.max";
+
+    private static final int NEW = -1;
+    private static final int RESET = -2;
+
+    private final Map<String, Integer> written = new HashMap<String, Integer>();
+    private final List<ObjectStreamClass> read = new ArrayList<ObjectStreamClass>();
+    private final int max;
+    private volatile boolean broken;
+
+    public ClassDescriptors() {
+        this.max = Math.max(1, SocketConnectionFactory.getInt(System.getProperties(), MAX_PROPERTY, 512));
+    }
+
+    /**
+     * @return the dictionaries of the connection the stream belongs to, null if it has none
+     */
+    public static ClassDescriptors of(final Object connectionOrStream) {
+        return Holder.class.isInstance(connectionOrStream) ? Holder.class.cast(connectionOrStream).getClassDescriptors() : null;
+    }
+
+    public ObjectOutputStream newOutputStream(final OutputStream out) throws IOException {
+        new DataOutputStream(out).writeInt(written.size());
+        return new DescriptorOutputStream(out);
+    }
+
+    public ObjectInputStream newInputStream(final InputStream in) throws IOException {
+        final int size = new DataInputStream(in).readInt();
+        if (size != read.size()) {
+            broken = true;
+            throw new StreamCorruptedException("Class descriptors out of sync, " + size + " sent and " + read.size() + " read");
+        }
+        return new DescriptorInputStream(in);
+    }
+
+    /**
+     * @return true if the dictionaries can't be trusted anymore, the connection should then be closed
+     */
+    public boolean isBroken() {
+        return broken;
+    }
+
+    public interface Holder {
+        ClassDescriptors getClassDescriptors();
+    }
+
+    private class DescriptorOutputStream extends ObjectOutputStream {
+
+        private DescriptorOutputStream(final OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeClassDescriptor(final ObjectStreamClass desc) throws IOException {
+            final String key = desc.getName() + ':' + desc.getSerialVersionUID();
+            final Integer id = written.get(key);
+            if (id != null) {
+                writeInt(id);
+                return;
+            }
+
+            if (written.size() >= max) {
+                written.clear();
+                writeInt(RESET);
+            } else {
+                writeInt(NEW);
+            }
+            super.writeClassDescriptor(desc);
+            written.put(key, written.size());
+        }
+    }
+
+    private class DescriptorInputStream extends EjbObjectInputStream {
+
+        private DescriptorInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            final int id = readInt();
+            if (id >= 0) {
+                if (id >= read.size()) {
+                    broken = true;
+                    throw new StreamCorruptedException("Unknown class descriptor " + id);
+                }
+                return read.get(id);
+            }
+
+            if (RESET == id) {
+                read.clear();
+            } else if (NEW != id) {
+                broken = true;
+                throw new StreamCorruptedException("Invalid class descriptor id " + id);
+            }
+
+            final ObjectStreamClass desc = super.readClassDescriptor();
+            read.add(desc);
+            return desc;
+        }
+
+        // the rest of the stream is not read, its new descriptors are lost
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass classDesc) throws IOException, ClassNotFoundException {
+            try {
+                return super.resolveClass(classDesc);
+            } catch (final IOException | ClassNotFoundException | RuntimeException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        @Override
+        protected Class resolveProxyClass(final String[] interfaces) throws IOException, ClassNotFoundException {
+            try {
+                return super.resolveProxyClass(interfaces);
+            } catch (final IOException | ClassNotFoundException | RuntimeException e) {
+                broken = true;
+                throw e;
+            }
+        }
+    }
+}
@@ -44,6 +44,14 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -61,6 +69,8 @@ public class Client {
     private static final ProtocolMetaData PROTOCOL_META_DATA = new ProtocolMetaData();
 
     private static Client client = new Client();
+    // failovers of the asynchronous requests, see retryAsync
+    private static volatile ExecutorService retries;
     private static final ProtocolMetaData COMPATIBLE_META_DATA;
 
     static {
@@ -143,18 +153,27 @@ public class Client {
         }
     }
 
+    /**
+     * Sends the request without waiting for its response.
+     * <p/>
+     * Only the multiplexed connections are read asynchronously, with the other ones the calling
+     * thread reads the response and the returned future is already done. Failed requests are
+     * retried on the other servers of the cluster as with {@link #request(Request, Response, ServerMetaData)}.
+     */
+    public static RemoteFuture<Response> requestAsync(final Request req, final Response res, final ServerMetaData server) {
+        final RemoteFuture<Response> future = new RemoteFuture<Response>();
+        client.processRequestAsync(req, res, server, new HashSet<URI>(), future);
+        return future;
+    }
+
     protected Response processRequest(final Request req, final Response res, final ServerMetaData server) throws RemoteException {
 
         if (server == null) {
             throw new IllegalArgumentException("Server instance cannot be null");
         }
 
-        final long start = System.nanoTime();
         final ClusterMetaData cluster = getClusterMetaData(server);
 
-        //Determine which protocol to use for request writes
-        final ProtocolMetaData protocolRequest = (null != COMPATIBLE_META_DATA ? COMPATIBLE_META_DATA : PROTOCOL_META_DATA);
-
         /*----------------------------*/
         /* Get a connection to server */
         /*----------------------------*/
@@ -166,9 +185,22 @@ public class Client {
             throw new RemoteException("Unable to connect", e);
         }
 
+        return this.processRequest(req, res, server, cluster, conn);
+    }
+
+    private Response processRequest(final Request req, final Response res, final ServerMetaData server, final ClusterMetaData cluster, final Connection conn) throws RemoteException {
+
+        final long start = System.nanoTime();
+
+        //Determine which protocol to use for request writes
+        final ProtocolMetaData protocolRequest = (null != COMPATIBLE_META_DATA ? COMPATIBLE_META_DATA : PROTOCOL_META_DATA);
+
         OutputStream out = null;
         InputStream in = null;
 
+        // class descriptors already exchanged on this connection, null if not negotiated
+        final ClassDescriptors descriptors = ClassDescriptors.of(conn);
+
         try {
 
 
@@ -183,76 +215,7 @@ public class Client {
                 throw newIOException("Cannot open output stream to server: ", e);
             }
 
-            /*----------------------------------*/
-            /* Write the protocol magic         */
-            /*----------------------------------*/
-            try {
-                protocolRequest.writeExternal(out);
-                out.flush();
-            } catch (final IOException e) {
-                throw newIOException("Cannot write the protocol metadata to the server: ", e);
-            }
-
-            /*----------------------------------*/
-            /* Get output streams */
-            /*----------------------------------*/
-            final ObjectOutput objectOut;
-            try {
-                objectOut = new ObjectOutputStream(out);
-            } catch (final IOException e) {
-                throw newIOException("Cannot open object output stream to server: ", e);
-            }
-
-            /*----------------------------------*/
-            /* Write ServerMetaData */
-            /*----------------------------------*/
-            try {
-                server.setMetaData(protocolRequest);
-                server.writeExternal(objectOut);
-            } catch (final IOException e) {
-                throw newIOException("Cannot write the ServerMetaData to the server: ", e);
-            }
-
-            /*----------------------------------*/
-            /* Write ClusterMetaData */
-            /*----------------------------------*/
-            try {
-
-                final ClusterRequest clusterRequest = new ClusterRequest(cluster);
-                clusterRequest.setMetaData(protocolRequest);
-                objectOut.write(clusterRequest.getRequestType().getCode());
-                clusterRequest.writeExternal(objectOut);
-            } catch (final Throwable e) {
-                throw newIOException("Cannot write the ClusterMetaData to the server: ", e);
-            }
-
-            /*----------------------------------*/
-            /* Write request type */
-            /*----------------------------------*/
-            try {
-                objectOut.write(req.getRequestType().getCode());
-            } catch (final IOException e) {
-                throw newIOException("Cannot write the request type to the server: ", e);
-            }
-
-            /*----------------------------------*/
-            /* Write request */
-            /*----------------------------------*/
-            try {
-
-                req.setMetaData(protocolRequest);
-                req.writeExternal(objectOut);
-                objectOut.flush();
-                out.flush();
-
-            } catch (final java.io.NotSerializableException e) {
-
-                throw new IllegalArgumentException("Object is not serializable: " + e.getMessage());
-
-            } catch (final IOException e) {
-
-                throw newIOException("Cannot write the request to the server: " + e.getMessage(), e);
-            }
+            writeRequest(out, descriptors, protocolRequest, server, cluster, req, conn);
 
             /*----------------------------------*/
             /* Get input streams               */
@@ -269,93 +232,7 @@ public class Client {
                 throw newIOException("Cannot open input stream to server: ", e);
             }
 
-            //Determine the server response protocol for reading
-            final ProtocolMetaData protocolResponse = new ProtocolMetaData();
-            try {
-
-                protocolResponse.readExternal(in);
-
-            } catch (final EOFException e) {
-
-                throw newIOException("Prematurely reached the end of the stream.  " + protocolResponse.getSpec() + " : " + e.getMessage(), e);
-
-            } catch (final IOException e) {
-
-                throw newIOException("Cannot determine server protocol version: Received " + protocolResponse.getSpec() + " : " + e.getMessage(), e);
-            }
-
-            final ObjectInput objectIn;
-            try {
-
-                objectIn = new EjbObjectInputStream(in);
-
-            } catch (final IOException e) {
-                throw newIOException("Cannot open object input stream to server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
-            }
-
-            /*----------------------------------*/
-            /* Read cluster response */
-            /*----------------------------------*/
-            try {
-                final ClusterResponse clusterResponse = new ClusterResponse();
-                clusterResponse.setMetaData(protocolResponse);
-                clusterResponse.readExternal(objectIn);
-                switch (clusterResponse.getResponseCode()) {
-                    case UPDATE: {
-                        setClusterMetaData(server, clusterResponse.getUpdatedMetaData());
-                    }
-                    break;
-                    case FAILURE: {
-                        throw clusterResponse.getFailure();
-                    }
-                }
-            } catch (final ClassNotFoundException e) {
-                throw new RemoteException("Cannot read the cluster response from the server.  The class for an object being returned is not located in this system:", e);
-
-            } catch (final IOException e) {
-                throw newIOException("Cannot read the cluster response from the server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
-
-            } catch (final Throwable e) {
-                throw new RemoteException("Error reading cluster response from server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
-            }
-
-            /*----------------------------------*/
-            /* Read response */
-            /*----------------------------------*/
-            try {
-                res.setMetaData(protocolResponse);
-                res.readExternal(objectIn);
-            } catch (final ClassNotFoundException e) {
-                throw new RemoteException("Cannot read the response from the server.  The class for an object being returned is not located in this system:", e);
-
-            } catch (final IOException e) {
-                throw newIOException("Cannot read the response from the server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
-
-            } catch (final Throwable e) {
-                throw new RemoteException("Error reading response from server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
-            }
-
-            if (retryConditions.size() > 0) {
-                if (res instanceof EJBResponse) {
-                    final EJBResponse ejbResponse = (EJBResponse) res;
-                    if (ejbResponse.getResult() instanceof ThrowableArtifact) {
-                        final ThrowableArtifact artifact = (ThrowableArtifact) ejbResponse.getResult();
-                        //noinspection ThrowableResultOfMethodCallIgnored
-                        if (retryConditions.contains(artifact.getThrowable().getClass())) {
-
-                            throw new RetryException(res);
-
-                            //                            if (? < maxConditionRetry) {
-                            //                                throw new RetryException(res);
-                            //                            } else {
-                            //                                if (FINER) {
-                            //                                    logger.log(Level.FINER, "Giving up on " + artifact.getThrowable().getClass().getName().toString());
-                            //                                }
-                            //                            }
-                        }
-                    }
-                }
-            }
+            readResponse(in, descriptors, server, req, res);
 
             if (FINEST) {
                 final long time = System.nanoTime() - start;
@@ -364,6 +241,7 @@ public class Client {
             }
 
         } catch (final RemoteException e) {
+            discardDescriptors(conn, descriptors);
             throw e;
         } catch (final IOException e) {
             final URI uri = conn.getURI();
@@ -375,6 +253,7 @@ public class Client {
                 logger.log(Level.FINER, "Add Failed " + uri.toString());
             }
             failed.add(uri);
+            transportFailed(conn, e);
             conn.discard();
 
             if (e instanceof RetryException || getRetry()) {
@@ -396,6 +275,7 @@ public class Client {
             }
 
         } catch (final Throwable error) {
+            discardDescriptors(conn, descriptors);
             throw new RemoteException("Error while communicating with server: ", error);
 
         } finally {
@@ -428,6 +308,401 @@ public class Client {
         return res;
     }
 
+    // the other discards are caused by the request itself, they don't tell anything about the server health
+    private static void transportFailed(final Connection conn, final IOException e) {
+        if (!(e instanceof RetryException)) {
+            LeastLoadedConnectionStrategy.transportFailed(conn);
+        }
+    }
+
+    // a failed request can leave a stream partially read or written, the class descriptors ids then differ on both sides
+    private static void discardDescriptors(final Connection conn, final ClassDescriptors descriptors) {
+        if (descriptors != null) {
+            conn.discard();
+        }
+    }
+
+    protected void processRequestAsync(final Request req,
+                                       final Response res,
+                                       final ServerMetaData server,
+                                       final Set<URI> failedServers,
+                                       final RemoteFuture<Response> future) {
+        this.processRequestAsync(req, res, server, failedServers, future, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * @param loader the context loader of the caller, the response is read with it by the connection thread
+     */
+    private void processRequestAsync(final Request req,
+                                     final Response res,
+                                     final ServerMetaData server,
+                                     final Set<URI> failedServers,
+                                     final RemoteFuture<Response> future,
+                                     final ClassLoader loader) {
+
+        if (server == null) {
+            throw new IllegalArgumentException("Server instance cannot be null");
+        }
+
+        final ClusterMetaData cluster = getClusterMetaData(server);
+
+        // the connection strategies skip the servers which already failed for this request
+        final Set<URI> previous = failed.get();
+        failed.set(failedServers);
+        final Connection conn;
+        try {
+            try {
+                conn = ConnectionManager.getConnection(cluster, server, req);
+            } catch (final IOException e) {
+                future.fail(new RemoteException("Unable to connect", e));
+                return;
+            }
+
+            if (!(conn instanceof MultiplexedChannel.AsyncConnection)) {
+                try {
+                    future.complete(this.processRequest(req, res, server, cluster, conn));
+                } catch (final RemoteException e) {
+                    future.fail(e);
+                }
+                return;
+            }
+        } finally {
+            if (previous != null) {
+                failed.set(previous);
+            } else {
+                failed.remove();
+            }
+        }
+
+        final ProtocolMetaData protocolRequest = (null != COMPATIBLE_META_DATA ? COMPATIBLE_META_DATA : PROTOCOL_META_DATA);
+        final ClassDescriptors descriptors = ClassDescriptors.of(conn);
+        try {
+            writeRequest(conn.getOutputStream(), descriptors, protocolRequest, server, cluster, req, conn);
+        } catch (final IOException e) {
+            this.retryAsync(req, res, server, failedServers, future, conn, protocolRequest, e, loader);
+            return;
+        } catch (final Throwable error) {
+            future.fail(new RemoteException("Error while communicating with server: ", error));
+            return;
+        }
+
+        ((MultiplexedChannel.AsyncConnection) conn).send(new MultiplexedChannel.ResponseListener() {
+            @Override
+            public void onResponse(final InputStream in) {
+                // the connection thread is shared by the applications, the classes of the result are the caller ones
+                final Thread thread = Thread.currentThread();
+                final ClassLoader old = thread.getContextClassLoader();
+                thread.setContextClassLoader(loader);
+                try {
+                    readResponse(in, descriptors, server, req, res);
+                    future.complete(res);
+                } catch (final RemoteException e) {
+                    future.fail(e);
+                } catch (final IOException e) {
+                    retryAsync(req, res, server, failedServers, future, conn, protocolRequest, e, loader);
+                } catch (final Throwable error) {
+                    future.fail(new RemoteException("Error while communicating with server: ", error));
+                } finally {
+                    thread.setContextClassLoader(old);
+                }
+            }
+
+            @Override
+            public void onFailure(final IOException e) {
+                retryAsync(req, res, server, failedServers, future, conn, protocolRequest, e, loader);
+            }
+        });
+    }
+
+    /**
+     * The failover connects and may read the response synchronously, it runs on the retry threads
+     * so the connection thread and the timeouts keep serving the other requests meanwhile.
+     */
+    private void retryAsync(final Request req,
+                            final Response res,
+                            final ServerMetaData server,
+                            final Set<URI> failedServers,
+                            final RemoteFuture<Response> future,
+                            final Connection conn,
+                            final ProtocolMetaData protocolRequest,
+                            final IOException e,
+                            final ClassLoader loader) {
+        try {
+            getRetries().execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Thread thread = Thread.currentThread();
+                    final ClassLoader old = thread.getContextClassLoader();
+                    thread.setContextClassLoader(loader);
+                    try {
+                        retry(req, res, server, failedServers, future, conn, protocolRequest, e, loader);
+                    } catch (final Throwable error) {
+                        future.fail(new RemoteException("Error while communicating with server: ", error));
+                    } finally {
+                        thread.setContextClassLoader(old);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            conn.discard();
+            future.fail(new RemoteException("Cannot retry the request: " + e.getMessage(), e));
+        }
+    }
+
+    private void retry(final Request req,
+                       final Response res,
+                       final ServerMetaData server,
+                       final Set<URI> failedServers,
+                       final RemoteFuture<Response> future,
+                       final Connection conn,
+                       final ProtocolMetaData protocolRequest,
+                       final IOException e,
+                       final ClassLoader loader) {
+
+        final URI uri = conn.getURI();
+
+        Client.fireEvent(new RequestFailed(uri, req, e));
+
+        if (FINER) {
+            logger.log(Level.FINER, "Add Failed " + uri.toString());
+        }
+        failedServers.add(uri);
+        transportFailed(conn, e);
+        conn.discard();
+
+        if (!(e instanceof RetryException || getRetry())) {
+            future.fail(new RemoteException("Cannot read the response from the server (" + protocolRequest.getSpec() + ") : " + e.getMessage(), e));
+            return;
+        }
+
+        Client.fireEvent(new RetryingRequest(req, server));
+
+        final RemoteFuture<Response> retry = new RemoteFuture<Response>();
+        retry.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.complete(retry.get());
+                } catch (final ExecutionException ee) {
+                    final Throwable re = ee.getCause();
+                    if (re instanceof RemoteFailoverException || !(re instanceof RemoteException)) {
+                        future.fail(re);
+                    } else if (e instanceof RetryException) {
+                        future.complete(((RetryException) e).getResponse());
+                    } else {
+                        future.fail(new RemoteFailoverException("Cannot complete request.  Retry attempted on " + failedServers.size() + " servers", e));
+                    }
+                } catch (final InterruptedException ie) {
+                    // the retry is done, get() doesn't wait
+                    Thread.currentThread().interrupt();
+                    future.fail(ie);
+                }
+            }
+        }, RemoteFuture.DIRECT);
+
+        this.processRequestAsync(req, res, server, failedServers, retry, loader);
+    }
+
+    private static ExecutorService getRetries() {
+        ExecutorService executor = retries;
+        if (executor == null) {
+            synchronized (Client.class) {
+                executor = retries;
+                if (executor == null) {
+                    executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger i = new AtomicInteger(0);
+
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            final Thread t = new Thread(r, "OpenEJB.client.retry." + i.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                    retries = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static void writeRequest(final OutputStream out,
+                                     final ClassDescriptors descriptors,
+                                     final ProtocolMetaData protocolRequest,
+                                     final ServerMetaData server,
+                                     final ClusterMetaData cluster,
+                                     final Request req,
+                                     final Connection conn) throws IOException {
+
+        /*----------------------------------*/
+        /* Write the protocol magic         */
+        /*----------------------------------*/
+        try {
+            protocolRequest.writeExternal(out);
+            out.flush();
+        } catch (final IOException e) {
+            throw newIOException("Cannot write the protocol metadata to the server: ", e);
+        }
+
+        /*----------------------------------*/
+        /* Get output streams */
+        /*----------------------------------*/
+        final ObjectOutput objectOut;
+        try {
+            objectOut = null != descriptors ? descriptors.newOutputStream(out) : new ObjectOutputStream(out);
+        } catch (final IOException e) {
+            throw newIOException("Cannot open object output stream to server: ", e);
+        }
+
+        /*----------------------------------*/
+        /* Write ServerMetaData */
+        /*----------------------------------*/
+        try {
+            server.setMetaData(protocolRequest);
+            server.writeExternal(objectOut);
+        } catch (final IOException e) {
+            throw newIOException("Cannot write the ServerMetaData to the server: ", e);
+        }
+
+        /*----------------------------------*/
+        /* Write ClusterMetaData */
+        /*----------------------------------*/
+        try {
+
+            final ClusterRequest clusterRequest = new ClusterRequest(cluster);
+            clusterRequest.setMetaData(protocolRequest);
+            objectOut.write(clusterRequest.getRequestType().getCode());
+            clusterRequest.writeExternal(objectOut);
+        } catch (final Throwable e) {
+            throw newIOException("Cannot write the ClusterMetaData to the server: ", e);
+        }
+
+        /*----------------------------------*/
+        /* Write request type */
+        /*----------------------------------*/
+        try {
+            objectOut.write(req.getRequestType().getCode());
+        } catch (final IOException e) {
+            throw newIOException("Cannot write the request type to the server: ", e);
+        }
+
+        /*----------------------------------*/
+        /* Write request */
+        /*----------------------------------*/
+        try {
+
+            req.setMetaData(protocolRequest);
+            req.writeExternal(objectOut);
+            objectOut.flush();
+            out.flush();
+
+        } catch (final java.io.NotSerializableException e) {
+
+            // the request is incomplete, the connection can't be reused
+            conn.discard();
+            throw new IllegalArgumentException("Object is not serializable: " + e.getMessage());
+
+        } catch (final IOException e) {
+
+            throw newIOException("Cannot write the request to the server: " + e.getMessage(), e);
+        }
+    }
+
+    private void readResponse(final InputStream in,
+                              final ClassDescriptors descriptors,
+                              final ServerMetaData server,
+                              final Request req,
+                              final Response res) throws IOException {
+
+        //Determine the server response protocol for reading
+        final ProtocolMetaData protocolResponse = new ProtocolMetaData();
+        try {
+
+            protocolResponse.readExternal(in);
+
+        } catch (final EOFException e) {
+
+            throw newIOException("Prematurely reached the end of the stream.  " + protocolResponse.getSpec() + " : " + e.getMessage(), e);
+
+        } catch (final IOException e) {
+
+            throw newIOException("Cannot determine server protocol version: Received " + protocolResponse.getSpec() + " : " + e.getMessage(), e);
+        }
+
+        final ObjectInput objectIn;
+        try {
+
+            objectIn = null != descriptors ? descriptors.newInputStream(in) : new EjbObjectInputStream(in);
+
+        } catch (final IOException e) {
+            throw newIOException("Cannot open object input stream to server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
+        }
+
+        /*----------------------------------*/
+        /* Read cluster response */
+        /*----------------------------------*/
+        try {
+            final ClusterResponse clusterResponse = new ClusterResponse();
+            clusterResponse.setMetaData(protocolResponse);
+            clusterResponse.readExternal(objectIn);
+            switch (clusterResponse.getResponseCode()) {
+                case UPDATE: {
+                    setClusterMetaData(server, clusterResponse.getUpdatedMetaData());
+                }
+                break;
+                case FAILURE: {
+                    throw clusterResponse.getFailure();
+                }
+            }
+        } catch (final ClassNotFoundException e) {
+            throw new RemoteException("Cannot read the cluster response from the server.  The class for an object being returned is not located in this system:", e);
+
+        } catch (final IOException e) {
+            throw newIOException("Cannot read the cluster response from the server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
+
+        } catch (final Throwable e) {
+            throw new RemoteException("Error reading cluster response from server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
+        }
+
+        /*----------------------------------*/
+        /* Read response */
+        /*----------------------------------*/
+        try {
+            res.setMetaData(protocolResponse);
+            res.readExternal(objectIn);
+        } catch (final ClassNotFoundException e) {
+            throw new RemoteException("Cannot read the response from the server.  The class for an object being returned is not located in this system:", e);
+
+        } catch (final IOException e) {
+            throw newIOException("Cannot read the response from the server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
+
+        } catch (final Throwable e) {
+            throw new RemoteException("Error reading response from server (" + protocolResponse.getSpec() + ") : " + e.getMessage(), e);
+        }
+
+        if (retryConditions.size() > 0) {
+            if (res instanceof EJBResponse) {
+                final EJBResponse ejbResponse = (EJBResponse) res;
+                if (ejbResponse.getResult() instanceof ThrowableArtifact) {
+                    final ThrowableArtifact artifact = (ThrowableArtifact) ejbResponse.getResult();
+                    //noinspection ThrowableResultOfMethodCallIgnored
+                    if (retryConditions.contains(artifact.getThrowable().getClass())) {
+
+                        throw new RetryException(res);
+
+                        //                            if (? < maxConditionRetry) {
+                        //                                throw new RetryException(res);
+                        //                            } else {
+                        //                                if (FINER) {
+                        //                                    logger.log(Level.FINER, "Giving up on " + artifact.getThrowable().getClass().getName().toString());
+                        //                                }
+                        //                            }
+                    }
+                }
+            }
+        }
+    }
+
     public static Set<URI> getFailed() {
         Set<URI> set = failed.get();
         if (set == null) {
@@ -469,6 +744,7 @@ public class Client {
         private final ServerMetaData serverMetaData;
         private ClusterMetaData clusterMetaData;
         private Options options;
+        private volatile LookupCache lookupCache;
 
         private Context(final ServerMetaData serverMetaData) {
             this.serverMetaData = serverMetaData;
@@ -485,11 +761,18 @@ public class Client {
             return clusterMetaData;
         }
 
-        public void setClusterMetaData(final ClusterMetaData updated) {
+        public void setClusterMetaData(ClusterMetaData updated) {
             if (updated == null) {
                 throw new IllegalArgumentException("clusterMetaData cannot be null");
             }
 
+            if (updated.getLocations().length == 0 && serverMetaData.getLocation() != null) {
+                // a standalone server only sends its version, it is still the one to connect to
+                final ClusterMetaData standalone = new ClusterMetaData(updated.getVersion(), serverMetaData.getLocation());
+                standalone.setConnectionStrategy(updated.getConnectionStrategy());
+                updated = standalone;
+            }
+
             final ClusterMetaData previous = this.clusterMetaData;
             this.clusterMetaData = updated;
 
@@ -497,6 +780,12 @@ public class Client {
                 updated.setConnectionStrategy(previous.getConnectionStrategy());
             }
             updated.setLastLocation(previous.getLastLocation());
+
+            final LookupCache cache = this.lookupCache;
+            if (cache != null && updated.getVersion() != previous.getVersion()) {
+                cache.clear("cluster version " + updated.getVersion());
+            }
+
             final ClusterMetaDataUpdated clusterMetaDataUpdated = new ClusterMetaDataUpdated(serverMetaData, updated, previous);
 
             fireEvent(clusterMetaDataUpdated);
@@ -526,6 +815,27 @@ public class Client {
             return options;
         }
 
+        /**
+         * @return the lookup cache of this server, null unless {@link JNDIContext#LOOKUP_CACHE_SIZE} is set
+         */
+        public LookupCache getLookupCache() {
+            LookupCache cache = this.lookupCache;
+            if (cache == null) {
+                final int size = options.get(JNDIContext.LOOKUP_CACHE_SIZE, 0);
+                if (size <= 0) {
+                    return null;
+                }
+                synchronized (this) {
+                    cache = this.lookupCache;
+                    if (cache == null) {
+                        cache = new LookupCache(serverMetaData.getLocation(), size, options.get(JNDIContext.LOOKUP_CACHE_TTL, TimeUnit.MINUTES.toMillis(5)));
+                        this.lookupCache = cache;
+                    }
+                }
+            }
+            return cache;
+        }
+
         public Set<URI> diff(final Set<URI> a, final Set<URI> b) {
             final Set<URI> diffs = new HashSet<URI>();
             for (final URI uri : b) {
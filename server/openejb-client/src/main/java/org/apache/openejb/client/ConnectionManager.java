@@ -56,6 +56,7 @@ public class ConnectionManager {
         registerStrategy("random", new RandomConnectionStrategy());
         registerStrategy("roundrobin", new RoundRobinConnectionStrategy());
         registerStrategy("round-robin", strategies.get("roundrobin"));
+        registerStrategy("least-loaded", new LeastLoadedConnectionStrategy());
         registerStrategy("default", strategies.get("sticky"));
     }
 
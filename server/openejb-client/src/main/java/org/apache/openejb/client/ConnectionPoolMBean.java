@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+/**
+ * The statistics of the pooled connections to a server, registered as
+ * <code>openejb.client:type=ConnectionPool,uri="..."</code> in the platform MBean server
+ * when {@link SocketConnectionFactory#PROPERTY_POOL_JMX} is true.
+ */
+public interface ConnectionPoolMBean {
+
+    String getUri();
+
+    /**
+     * @return the number of connections the pool can hold now, it only changes in adaptive mode
+     */
+    int getSize();
+
+    int getMaxSize();
+
+    /**
+     * @return the connections in use
+     */
+    int getActive();
+
+    /**
+     * @return the opened connections waiting in the pool
+     */
+    int getIdle();
+
+    /**
+     * @return the number of requests which didn't get a connection in time
+     */
+    long getTimeouts();
+
+    /**
+     * @return the upper bounds in milliseconds of the {@link #getWaitHistogram()} buckets, the last one has no bound
+     */
+    long[] getWaitHistogramBounds();
+
+    /**
+     * @return how many requests waited for a connection, per bucket of {@link #getWaitHistogramBounds()}
+     */
+    long[] getWaitHistogram();
+
+    /**
+     * @return the average time to open a connection in milliseconds
+     */
+    double getAverageConnectTime();
+
+    double getMaxConnectTime();
+
+    /**
+     * Closes the idle connections, they are opened again when needed.
+     */
+    void closeIdle();
+}
@@ -40,6 +40,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -145,6 +146,9 @@ public abstract class EJBInvocationHandler implements InvocationHandler, Seriali
 
         final EJBResponse response = new EJBResponse();
         Client.request(req, response, server);
+        if (isStaleIndex(req, response)) {
+            Client.request(req, response, server);
+        }
         if (null != response.getServer()) {
             server.merge(response.getServer());
         }
@@ -157,12 +161,64 @@ public abstract class EJBInvocationHandler implements InvocationHandler, Seriali
         req.setServerHash(server.buildHash());
 
         Client.request(req, res, server);
+        if (isStaleIndex(req, res)) {
+            Client.request(req, res, server);
+        }
         if (null != res.getServer()) {
             server.merge(res.getServer());
         }
         return res;
     }
 
+    protected RemoteFuture<Response> requestAsync(final EJBRequest req, final EJBResponse res) {
+        req.setClientIdentity(getClientIdentity());
+
+        req.setServerHash(server.buildHash());
+
+        final RemoteFuture<Response> future = new RemoteFuture<Response>();
+        requestAsync(req, res, future, true);
+        return future;
+    }
+
+    private void requestAsync(final EJBRequest req, final EJBResponse res, final RemoteFuture<Response> future, final boolean retryStale) {
+        final RemoteFuture<Response> response = Client.requestAsync(req, res, server);
+        response.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.get();
+                } catch (final ExecutionException e) {
+                    future.fail(e.getCause());
+                    return;
+                } catch (final Exception e) {
+                    future.fail(e);
+                    return;
+                }
+
+                if (retryStale && isStaleIndex(req, res)) {
+                    requestAsync(req, res, future, false);
+                    return;
+                }
+                if (null != res.getServer()) {
+                    server.merge(res.getServer());
+                }
+                future.complete(res);
+            }
+        }, RemoteFuture.DIRECT);
+    }
+
+    /**
+     * The server restarted or the application was redeployed since the lookup,
+     * the request is sent again with the names, see {@link EJBMethodIndex}.
+     */
+    private static boolean isStaleIndex(final EJBRequest req, final EJBResponse res) {
+        if (res.getResponseCode() != ResponseCodes.EJB_INDEX_STALE || req.getEjbMetaData() == null) {
+            return false;
+        }
+        req.getEjbMetaData().clearIndex();
+        return true;
+    }
+
     protected Object getClientIdentity() {
         if (client != null) {
             final Object identity = client.getClientIdentity();
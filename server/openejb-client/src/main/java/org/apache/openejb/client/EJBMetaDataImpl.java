@@ -70,6 +70,12 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
     // only used for business objects;
     protected transient Object primaryKey;
 
+    // the view in the DeploymentIndex of the server which sent it, 0 if requests use the names
+    protected transient int indexCode;
+    protected transient int indexStamp;
+    protected transient int indexHash;
+    private transient volatile EJBMethodIndex methodIndex;
+
     private transient ProtocolMetaData metaData;
 
     public EJBMetaDataImpl() {
@@ -200,6 +206,56 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
         asynchronousMethods.add(generateMethodSignature(method));
     }
 
+    /**
+     * Lets the requests send the number of the view and of the method instead of their names,
+     * see {@link EJBMethodIndex}. Sent to the clients from the protocol 4.9.
+     *
+     * @param code  the number of the view on the server
+     * @param stamp the version of the numbers, changes when the server restarts
+     * @param index the methods of the view on the server
+     */
+    public void setIndex(final int code, final int stamp, final EJBMethodIndex index) {
+        this.indexCode = code;
+        this.indexStamp = stamp;
+        this.indexHash = index.getHash();
+        this.methodIndex = index;
+    }
+
+    public int getIndexCode() {
+        return indexCode;
+    }
+
+    public int getIndexStamp() {
+        return indexStamp;
+    }
+
+    /**
+     * @return the number of the method or -1 if the request must send its name
+     */
+    public int getMethodIndex(final Method method) {
+        if (indexStamp == 0) {
+            return -1;
+        }
+
+        EJBMethodIndex index = methodIndex;
+        if (index == null) {
+            index = EJBMethodIndex.of(this);
+            if (index.getHash() != indexHash) { // different classes than the server
+                clearIndex();
+                return -1;
+            }
+            methodIndex = index;
+        }
+        return index.indexOf(method);
+    }
+
+    /**
+     * The server doesn't know the numbers anymore, the application was redeployed or the server restarted.
+     */
+    public void clearIndex() {
+        indexStamp = 0;
+    }
+
     protected void setEJBHomeProxy(final EJBHomeProxy home) {
         ejbHomeProxy = home;
     }
@@ -234,8 +290,10 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
 
     @Override
     public void writeExternal(final ObjectOutput out) throws IOException {
+        final boolean indexed = indexStamp != 0 && metaData != null && metaData.isAtLeast(4, 9);
+
         // write out the version of the serialized data for future use
-        out.writeByte(3);
+        out.writeByte(indexed ? 4 : 3);
 
         out.writeObject(homeClass);
         out.writeObject(remoteClass);
@@ -273,6 +331,11 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
             out.write(bytes);
         }
 
+        if (indexed) {
+            out.writeShort(indexCode);
+            out.writeInt(indexStamp);
+            out.writeInt(indexHash);
+        }
     }
 
     @Override
@@ -312,6 +375,12 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
             final ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
             properties.load(bais);
         }
+
+        if (version > 3) {
+            indexCode = in.readShort();
+            indexStamp = in.readInt();
+            indexHash = in.readInt();
+        }
     }
 
     public String toString() {
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The remote methods of an ejb view numbered in a stable order, the client and the server build it
+ * from the interfaces of the {@link EJBMetaDataImpl} so an {@link EJBRequest} can send the number of the
+ * method instead of its interface, name and parameter types.
+ * <p/>
+ * The hash covers the signatures, the client only uses the numbers when its classes give the same
+ * hash as the ones of the server.
+ */
+public class EJBMethodIndex {
+
+    private static final Comparator<Method> SIGNATURE_ORDER = new Comparator<Method>() {
+        @Override
+        public int compare(final Method m1, final Method m2) {
+            return signature(m1).compareTo(signature(m2));
+        }
+    };
+
+    private final Class[] interfaces;
+    private final Method[] methods;
+    private final Map<Method, Integer> indexes = new HashMap<Method, Integer>();
+    private final int hash;
+
+    public EJBMethodIndex(final List<Class> views) {
+        final List<Class> interfaces = new ArrayList<Class>();
+        final List<Method> methods = new ArrayList<Method>();
+        int hash = 1;
+
+        for (final Class view : new LinkedHashSet<Class>(views)) {
+            final Method[] declared = view.getMethods();
+            Arrays.sort(declared, SIGNATURE_ORDER);
+            for (final Method method : declared) {
+                if (this.indexes.containsKey(method)) {
+                    continue; // first view wins, as in EJBRequest.Body#setMethodInstance
+                }
+                this.indexes.put(method, methods.size());
+                interfaces.add(view);
+                methods.add(method);
+                hash = 31 * hash + (view.getName() + '#' + signature(method)).hashCode();
+            }
+        }
+
+        this.interfaces = interfaces.toArray(new Class[interfaces.size()]);
+        this.methods = methods.toArray(new Method[methods.size()]);
+        this.hash = hash;
+    }
+
+    public static EJBMethodIndex of(final EJBMetaDataImpl ejb) {
+        return new EJBMethodIndex(interfaces(ejb));
+    }
+
+    /**
+     * The views in the order used by {@link EJBRequest.Body#setMethodInstance(Method)}.
+     */
+    public static List<Class> interfaces(final EJBMetaDataImpl ejb) {
+        final List<Class> views = new ArrayList<Class>();
+        if (ejb.homeClass != null) {
+            views.add(ejb.homeClass);
+        }
+        if (ejb.remoteClass != null) {
+            views.add(ejb.remoteClass);
+        }
+        views.addAll(ejb.businessClasses);
+        return views;
+    }
+
+    /**
+     * @return the number of the method or -1
+     */
+    public int indexOf(final Method method) {
+        final Integer index = this.indexes.get(method);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the method or null if the index is out of the table
+     */
+    public Method getMethod(final int index) {
+        return index >= 0 && index < this.methods.length ? this.methods[index] : null;
+    }
+
+    public Class getInterface(final int index) {
+        return this.interfaces[index];
+    }
+
+    public int size() {
+        return this.methods.length;
+    }
+
+    public int getHash() {
+        return this.hash;
+    }
+
+    private static String signature(final Method method) {
+        final StringBuilder buffer = new StringBuilder(method.getDeclaringClass().getName()).append('.').append(method.getName()).append('(');
+        for (final Class<?> parameterType : method.getParameterTypes()) {
+            buffer.append(parameterType.getName()).append(',');
+        }
+        return buffer.append(')').append(method.getReturnType().getName()).toString();
+    }
+
+    @Override
+    public String toString() {
+        return "EJBMethodIndex{methods=" + this.methods.length + ", hash=" + this.hash + '}';
+    }
+}
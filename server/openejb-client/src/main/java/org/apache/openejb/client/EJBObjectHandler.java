@@ -261,6 +261,11 @@ public abstract class EJBObjectHandler extends EJBInvocationHandler {
     protected Object businessMethod(final Method method, final Object[] args, final Object proxy) throws Throwable {
 
         if (ejb.isAsynchronousMethod(method)) {
+            if (SocketConnectionFactory.isMultiplexed()) {
+                // the connection thread reads the response, no thread waits for it
+                return _asynchronousBusinessMethod(method, args, UUID.randomUUID().toString());
+            }
+
             try {
                 final String requestId = UUID.randomUUID().toString();
                 final EJBResponse response = new EJBResponse();
@@ -297,6 +302,34 @@ public abstract class EJBObjectHandler extends EJBInvocationHandler {
         return _handleBusinessMethodResponse(res);
     }
 
+    private Future<Object> _asynchronousBusinessMethod(final Method method, final Object[] args, final String requestId) {
+        final EJBRequest req = new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, ejb, method, args, primaryKey, client.getSerializer());
+
+        final EJBRequest.Body body = req.getBody();
+        body.setRequestId(requestId);
+        body.setAuthentication(this.authenticationInfo);
+
+        final EJBResponse res = new EJBResponse();
+        final RemoteFuture<Response> response = requestAsync(req, res);
+        final AsynchronousFuture future = new AsynchronousFuture(requestId);
+        response.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.get();
+                    future.complete(_handleBusinessMethodResponse(res));
+                } catch (ExecutionException e) {
+                    future.fail(e.getCause());
+                } catch (Exception e) {
+                    future.fail(e);
+                } catch (Throwable error) {
+                    future.fail(new SystemException(error));
+                }
+            }
+        }, RemoteFuture.DIRECT);
+        return future;
+    }
+
     private Object _handleBusinessMethodResponse(final EJBResponse res) throws Throwable {
         switch (res.getResponseCode()) {
             case ResponseCodes.EJB_ERROR:
@@ -326,6 +359,27 @@ public abstract class EJBObjectHandler extends EJBInvocationHandler {
         return res.getResult();
     }
 
+    @SuppressWarnings("UnnecessaryBoxing")
+    private void cancelRemote(final String requestId, final boolean mayInterruptIfRunning) {
+        final EJBRequest req = new EJBRequest(RequestMethodCode.FUTURE_CANCEL,
+            ejb,
+            CANCEL,
+            new Object[]{Boolean.valueOf(mayInterruptIfRunning)},
+            primaryKey,
+            client.getSerializer());
+        req.getBody().setRequestId(requestId);
+        try {
+            final EJBResponse res = request(req);
+            if (res.getResponseCode() != ResponseCodes.EJB_OK) {
+                //TODO how do we notify the user that we fail to configure the value ?
+                Logger.getLogger(this.getClass().getName()).info("Unexpected response on cancel: " + res);
+            }
+        } catch (Exception e) {
+            //TODO how to handle
+            Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Unexpected error on cancel", e);
+        }
+    }
+
     private class AsynchronousCall implements Callable {
 
         private Method method;
@@ -411,24 +465,7 @@ public abstract class EJBObjectHandler extends EJBInvocationHandler {
                     if (lastMayInterruptIfRunningValue.getAndSet(mayInterruptIfRunning) == mayInterruptIfRunning) {
                         return false;
                     }
-                    final EJBRequest req = new EJBRequest(RequestMethodCode.FUTURE_CANCEL,
-                        ejb,
-                        CANCEL,
-                        new Object[]{Boolean.valueOf(mayInterruptIfRunning)},
-                        primaryKey,
-                        client.getSerializer());
-                    req.getBody().setRequestId(requestId);
-                    try {
-                        final EJBResponse res = request(req);
-                        if (res.getResponseCode() != ResponseCodes.EJB_OK) {
-                            //TODO how do we notify the user that we fail to configure the value ?
-                            Logger.getLogger(this.getClass().getName()).info("Unexpected response on cancel: " + res);
-                        }
-                    } catch (Exception e) {
-                        //TODO how to handle
-                        Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Unexpected error on cancel", e);
-                        return false;
-                    }
+                    cancelRemote(requestId, mayInterruptIfRunning);
                 }
                 return false;
             }
@@ -463,4 +500,27 @@ public abstract class EJBObjectHandler extends EJBInvocationHandler {
             return target.isDone();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * An invocation sent on a multiplexed connection, it is always dispatched so it can't be
+     * cancelled, the server is only told if the bean may be interrupted (EJB 3.1 spec 3.4.8.1.1).
+     */
+    private class AsynchronousFuture extends RemoteFuture<Object> {
+
+        private final String requestId;
+
+        private final AtomicBoolean lastMayInterruptIfRunningValue = new AtomicBoolean(false);
+
+        public AsynchronousFuture(final String requestId) {
+            this.requestId = requestId;
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (!isDone() && lastMayInterruptIfRunningValue.getAndSet(mayInterruptIfRunning) != mayInterruptIfRunning) {
+                cancelRemote(requestId, mayInterruptIfRunning);
+            }
+            return false;
+        }
+    }
+}
@@ -269,6 +269,9 @@ public class EJBRequest implements ClusterableRequest {
         }
         serverHash = in.readInt();
 
+        // only an indexed request sends a code without the deployment id, see writeExternal
+        body.indexed = deploymentId == null && deploymentCode > 0 && (null == metaData || metaData.isAtLeast(4, 9));
+
         if (ex != null) {
             throw ex;
         }
@@ -285,20 +288,24 @@ public class EJBRequest implements ClusterableRequest {
     @Override
     public void writeExternal(final ObjectOutput out) throws IOException {
 
+        body.setMetaData(metaData);
+        final boolean indexed = body.useIndex(ejbMetaData);
+
         out.writeByte(requestMethod.getCode());
 
-        if (deploymentCode > 0) {
+        if (indexed) {
+            // the body carries the number of the method, see EJBMethodIndex
             out.writeObject(null);
+            out.writeShort(ejbMetaData.getIndexCode());
         } else {
+            // the id is always sent, a code alone means the body is indexed
             out.writeObject(deploymentId);
+            out.writeShort(deploymentCode);
         }
-
-        out.writeShort(deploymentCode);
         out.writeObject(clientIdentity);
         out.writeInt(serverHash);
         out.flush();
 
-        body.setMetaData(metaData);
         body.writeExternal(out);
     }
 
@@ -321,6 +328,15 @@ public class EJBRequest implements ClusterableRequest {
         private transient JNDIContext.AuthenticationInfo authentication;
         private transient ProtocolMetaData metaData;
 
+        // -1 when the interface, name and parameter types are sent
+        private transient int methodIndex = -1;
+        // set by EJBRequest#readExternal when the header announced the number of the method
+        private transient boolean indexed;
+        private transient int indexStamp;
+        private transient EJBMethodIndex serverIndex;
+        private transient int serverStamp;
+        private transient boolean staleIndex;
+
         public Body(final EJBMetaDataImpl ejb) {
             this.ejb = ejb;
         }
@@ -404,6 +420,41 @@ public class EJBRequest implements ClusterableRequest {
             this.methodParameters = methodParameters;
         }
 
+        /**
+         * Sends the number of the method if the server gave one in the metadata, from the protocol 4.9.
+         * Only the servers supporting it give one, the requests to the older servers keep their format.
+         *
+         * @return true if the request doesn't need the deployment id
+         */
+        boolean useIndex(final EJBMetaDataImpl ejb) {
+            methodIndex = -1;
+            if (ejb != null && methodInstance != null && (null == metaData || metaData.isAtLeast(4, 9))) {
+                indexStamp = ejb.getIndexStamp();
+                if (indexStamp != 0) {
+                    methodIndex = ejb.getMethodIndex(methodInstance);
+                }
+            }
+            return methodIndex >= 0;
+        }
+
+        /**
+         * Used by the server to resolve the number of the method read by {@link #readExternal(ObjectInput)}.
+         *
+         * @param index the methods of the view of the request
+         * @param stamp the version of the index on the server
+         */
+        public void setServerIndex(final EJBMethodIndex index, final int stamp) {
+            this.serverIndex = index;
+            this.serverStamp = stamp;
+        }
+
+        /**
+         * @return true if the request carried a number the server doesn't know, the client must send the names
+         */
+        public boolean isStaleIndex() {
+            return staleIndex;
+        }
+
         public void setPrimaryKey(final Object primaryKey) {
             this.primaryKey = primaryKey;
         }
@@ -430,15 +481,29 @@ public class EJBRequest implements ClusterableRequest {
             primaryKey = null;
             methodName = null;
             methodInstance = null;
+            methodIndex = -1;
+            staleIndex = false;
             try {
                 requestId = (String) in.readObject();
                 primaryKey = in.readObject();
-                interfaceClass = (Class) in.readObject();
+                if (indexed) {
+                    methodIndex = in.readShort();
+                }
+                if (methodIndex < 0) {
+                    interfaceClass = (Class) in.readObject();
+                }
             } catch (ClassNotFoundException cnfe) {
                 result = cnfe;
             }
 
-            methodName = in.readUTF();
+            if (methodIndex >= 0) {
+                interfaceClass = null;
+                indexStamp = in.readInt();
+                // checked before the parameters, a reused code reads them with the classes of another bean
+                staleIndex = serverIndex == null || indexStamp != serverStamp;
+            } else {
+                methodName = in.readUTF();
+            }
 
             try {
                 readMethodParameters(in);
@@ -448,7 +513,12 @@ public class EJBRequest implements ClusterableRequest {
                 }
             }
 
-            if (interfaceClass != null) {
+            if (staleIndex) {
+                // the parameters are only read to keep the stream in sync, the client sends the names again
+                result = null;
+            } else if (methodIndex >= 0) {
+                resolveIndex();
+            } else if (interfaceClass != null) {
                 try {
                     //noinspection unchecked
                     methodInstance = interfaceClass.getMethod(methodName, methodParamTypes);
@@ -482,9 +552,14 @@ public class EJBRequest implements ClusterableRequest {
 
             out.writeObject(primaryKey);
 
-            out.writeObject(interfaceClass);
+            if (methodIndex >= 0) {
+                out.writeShort(methodIndex);
+                out.writeInt(indexStamp);
+            } else {
+                out.writeObject(interfaceClass);
 
-            out.writeUTF(methodName);
+                out.writeUTF(methodName);
+            }
 
             writeMethodParameters(out, methodParamTypes, methodParameters);
 
@@ -555,7 +630,9 @@ public class EJBRequest implements ClusterableRequest {
                         obj = Corbas.toStub(obj);
                     }
                     out.write(OBJECT);
-                    out.writeObject(clazz);
+                    if (methodIndex < 0) {
+                        out.writeObject(clazz);
+                    }
                     out.writeObject(obj);
                 }
             }
@@ -578,6 +655,7 @@ public class EJBRequest implements ClusterableRequest {
 
             final Class[] types = new Class[length];
             final Object[] args = new Object[length];
+            ClassNotFoundException notFound = null;
 
             for (int i = 0; i < types.length; i++) {
                 final Class clazz;
@@ -627,8 +705,14 @@ public class EJBRequest implements ClusterableRequest {
                         break;
 
                     case OBJECT:
-                        clazz = (Class) in.readObject();
-                        final Object read = in.readObject();
+                        // the method gives the type when its number is sent
+                        clazz = methodIndex < 0 ? (Class) in.readObject() : null;
+                        Object read = null;
+                        try {
+                            read = in.readObject();
+                        } catch (final ClassNotFoundException e) { // reads the other parameters
+                            notFound = notFound == null ? e : notFound;
+                        }
                         if (InstanceOf.isStub(read)) {
                             obj = Corbas.connect(read);
                         } else {
@@ -645,6 +729,31 @@ public class EJBRequest implements ClusterableRequest {
 
             methodParamTypes = types;
             methodParameters = args;
+
+            if (notFound != null) {
+                throw notFound;
+            }
+        }
+
+        private void resolveIndex() {
+            final Method method = serverIndex.getMethod(methodIndex);
+            if (method == null || method.getParameterTypes().length != methodParamTypes.length) {
+                staleIndex = true;
+                return;
+            }
+
+            methodInstance = method;
+            methodName = method.getName();
+            interfaceClass = serverIndex.getInterface(methodIndex);
+            final Class[] declared = method.getParameterTypes();
+            for (int i = 0; i < declared.length; i++) {
+                if (methodParamTypes[i] == null) {
+                    methodParamTypes[i] = declared[i];
+                } else if (methodParamTypes[i] != declared[i]) {
+                    staleIndex = true;
+                    return;
+                }
+            }
         }
 
         private static final int INT = 0;
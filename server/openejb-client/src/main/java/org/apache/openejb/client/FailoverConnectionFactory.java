@@ -28,7 +28,7 @@ import java.util.List;
  * <p/>
  * Where strategy and urlList are variables
  * <p/>
- * strategy = the ConnectionStrategy name, such as "sticky", "round-robin",
+ * strategy = the ConnectionStrategy name, such as "sticky", "round-robin", "least-loaded",
  * or "random".  This parameter is optional.
  * <p/>
  * urlList = a comma separated list connection URIs.  There must be a
@@ -39,6 +39,7 @@ import java.util.List;
  * - failover:ejbd://foo:4201,ejbd://bar:4201
  * - failover:random:ejbd://foo:4201,ejbd://bar:4201
  * - failover:round-robin:ejbd://foo:4201,ejbds://bar:4201,multicast://239.255.2.3:6142
+ * - failover:least-loaded:ejbd://foo:4201,ejbd://bar:4201
  * <p/>
  * The final URI being the most clever in that it will sequentially go
  * through the list, first attempting a couple hard-coded addresses before
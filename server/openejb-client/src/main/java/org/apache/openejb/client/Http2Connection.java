@@ -0,0 +1,506 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import javax.naming.AuthenticationException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sends the requests of a http(s) provider url with the <code>java.net.http</code> client of the JVM,
+ * enabled with the <code>http2=true</code> parameter of the url or the {@link #PROPERTY_HTTP2} system property.
+ * <p/>
+ * The connections of a url share one client so the concurrent calls are multiplexed as HTTP/2 streams over
+ * a single connection, h2 with https and h2c with http. The client falls back to HTTP/1.1 keep alive when the
+ * server doesn't speak HTTP/2. When the client is created a HEAD request warms the connection up and tells
+ * whether the server accepts gzip request bodies.
+ * <p/>
+ * With <code>gzip=true</code> the responses are requested gzip encoded and the requests are compressed
+ * once the server advertised it accepts them.
+ * <p/>
+ * At most {@link #PROPERTY_ENDPOINTS} clients (16 by default) are kept, the least recently used one is
+ * evicted and shut down once its last connection is closed.
+ * <p/>
+ * The client module targets java 7 so the client is used through reflection, {@link HttpConnectionFactory}
+ * keeps using {@link HttpURLConnection} on a JVM without it.
+ */
+public class Http2Connection implements Connection {
+
+    public static final String PROPERTY_HTTP2 = "openejb.client.http2";
+    public static final String PROPERTY_ENDPOINTS = "openejb.client.http2.endpoints";
+
+    private static final Logger logger = Logger.getLogger("OpenEJB.client");
+    private static final Api api = Api.load();
+    private static final int MAX_ENDPOINTS = Integer.getInteger(PROPERTY_ENDPOINTS, 16);
+    private static final Map<URI, Endpoint> endpoints = new LinkedHashMap<URI, Endpoint>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<URI, Endpoint> eldest) {
+            if (size() > MAX_ENDPOINTS) {
+                eldest.getValue().evict();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final URI uri;
+    private final Endpoint endpoint;
+    private final ByteArrayOutputStream request = new ByteArrayOutputStream(512);
+    private final boolean compressed;
+    private OutputStream outputStream;
+    private InputStream inputStream;
+    private boolean released;
+
+    public Http2Connection(final URI uri) throws IOException {
+        this.uri = uri;
+        this.endpoint = endpoint(uri);
+        this.compressed = this.endpoint.gzip && this.endpoint.gzipAccepted;
+    }
+
+    /**
+     * @return true if the url asks for HTTP/2 and the JVM provides the client
+     */
+    public static boolean isEnabled(final URI uri) {
+        if (api == null) {
+            return false;
+        }
+        final String http2 = params(uri).get("http2");
+        return Boolean.parseBoolean(http2 != null ? http2 : System.getProperty(PROPERTY_HTTP2, "false"));
+    }
+
+    private static Map<String, String> params(final URI uri) {
+        try {
+            return MulticastConnectionFactory.URIs.parseParamters(uri);
+        } catch (final URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid uri " + uri.toString(), e);
+        }
+    }
+
+    /**
+     * @return the shared endpoint of the uri, acquired by the caller
+     */
+    private static Endpoint endpoint(final URI uri) throws IOException {
+        while (true) {
+            Endpoint endpoint;
+            synchronized (endpoints) {
+                endpoint = endpoints.get(uri);
+            }
+            if (endpoint != null) {
+                if (endpoint.acquire()) {
+                    return endpoint;
+                }
+                continue; // evicted and shut down meanwhile, it is no more in the endpoints
+            }
+
+            final Endpoint created = new Endpoint(uri, params(uri));
+            created.acquire();
+            synchronized (endpoints) {
+                endpoint = endpoints.get(uri);
+                if (endpoint == null) {
+                    endpoints.put(uri, created);
+                }
+            }
+            if (endpoint == null) {
+                created.warm();
+                return created;
+            }
+            created.evict();
+            created.release(); // another thread created it first, drop ours
+        }
+    }
+
+    @Override
+    public void discard() {
+        try {
+            close();
+        } catch (final Exception e) {
+            //Ignore
+        }
+    }
+
+    @Override
+    public URI getURI() {
+        return uri;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            consume();
+        } finally {
+            if (!released) {
+                released = true;
+                endpoint.release();
+            }
+        }
+    }
+
+    private void consume() throws IOException {
+        if (inputStream != null) {
+            // the HTTP/1.1 fallback reuses the connection only once the response is consumed
+            try {
+                final byte[] buffer = new byte[64];
+                while (inputStream.read(buffer) > -1) {
+                    // no-op
+                }
+            } catch (final Throwable e) {
+                // ignore
+            }
+            try {
+                inputStream.close();
+            } finally {
+                inputStream = null;
+            }
+        }
+        outputStream = null;
+    }
+
+    /**
+     * The request is buffered and sent when the response is read.
+     */
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = compressed ? new GZIPOutputStream(request, 512) : request;
+        }
+        return outputStream;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            if (outputStream != null) {
+                outputStream.close(); // finishes the gzip stream
+            }
+
+            final Object response = endpoint.send("POST", request.toByteArray(), compressed);
+            final InputStream body = api.body(response);
+            final int status = api.statusCode(response);
+            if (status != HttpURLConnection.HTTP_OK) {
+                body.close();
+                if (status == HttpURLConnection.HTTP_UNAUTHORIZED) {
+                    throw new IOException(new AuthenticationException());
+                }
+                throw new IOException("Server returned HTTP response code: " + status + " for URL: " + endpoint.target);
+            }
+
+            endpoint.negotiated(response);
+            inputStream = "gzip".equalsIgnoreCase(api.header(response, "Content-Encoding")) ? new GZIPInputStream(body) : body;
+        }
+        return inputStream;
+    }
+
+    private static class Endpoint {
+
+        private final URI target;
+        private final Object client;
+        private final Object timeout;
+        private final String authorizationHeader;
+        private final String authorization;
+        private final boolean gzip;
+        private volatile boolean gzipAccepted;
+        private int connections;
+        private boolean evicted;
+        private boolean shutdown;
+
+        private Endpoint(final URI uri, final Map<String, String> params) throws IOException {
+            this.authorization = HttpConnectionFactory.authorization(params);
+            this.authorizationHeader = params.containsKey("authorizationHeader") ? params.get("authorizationHeader") : "Authorization";
+            this.target = URI.create(HttpConnectionFactory.stripAuthorization(uri.toString()));
+            this.gzip = Boolean.parseBoolean(params.get("gzip"));
+            this.timeout = params.containsKey("readTimeout") ? api.duration(Long.parseLong(params.get("readTimeout"))) : null;
+
+            final long connectTimeout = params.containsKey("connectTimeout") ? Long.parseLong(params.get("connectTimeout")) : 10000;
+            SSLContextBuilder ssl = null;
+            if (params.containsKey("sslKeyStore") || params.containsKey("sslTrustStore")) {
+                ssl = new SSLContextBuilder(params);
+            }
+            try {
+                this.client = api.newClient(connectTimeout, ssl == null ? null : ssl.build());
+            } catch (final NoSuchAlgorithmException | KeyManagementException e) {
+                throw new ClientRuntimeException(e.getMessage(), e);
+            }
+        }
+
+        /**
+         * @return false if the client was already shut down
+         */
+        private synchronized boolean acquire() {
+            if (shutdown) {
+                return false;
+            }
+            connections++;
+            return true;
+        }
+
+        private void release() {
+            synchronized (this) {
+                connections--;
+                if (!evicted || connections > 0 || shutdown) {
+                    return;
+                }
+                shutdown = true;
+            }
+            api.shutdown(client);
+        }
+
+        /**
+         * Removed from the endpoints, the client is shut down once its connections are closed.
+         */
+        private void evict() {
+            synchronized (this) {
+                evicted = true;
+                if (connections > 0 || shutdown) {
+                    return;
+                }
+                shutdown = true;
+            }
+            api.shutdown(client);
+        }
+
+        /**
+         * Opens the connection before the first call needs it, a failure is left to the calls.
+         */
+        private void warm() {
+            try {
+                final Object response = send("HEAD", null, false);
+                api.body(response).close();
+                negotiated(response);
+            } catch (final IOException e) {
+                logger.log(Level.FINE, "Can't warm up the connection to " + target + ": " + e.getMessage(), e);
+            }
+        }
+
+        private void negotiated(final Object response) {
+            if (gzip && !gzipAccepted) {
+                final String accepted = api.header(response, "Accept-Encoding");
+                gzipAccepted = accepted != null && accepted.toLowerCase().contains("gzip");
+            }
+        }
+
+        private Object send(final String method, final byte[] body, final boolean compressed) throws IOException {
+            final Object builder = api.newRequest(target);
+            api.header(builder, "Content-Type", "application/octet-stream");
+            if (gzip) {
+                api.header(builder, "Accept-Encoding", "gzip");
+            }
+            if (compressed) {
+                api.header(builder, "Content-Encoding", "gzip");
+            }
+            if (authorization != null) {
+                api.header(builder, authorizationHeader, authorization);
+            }
+            if (timeout != null) {
+                api.timeout(builder, timeout);
+            }
+            return api.send(client, api.build(builder, method, body));
+        }
+    }
+
+    /**
+     * The methods of the <code>java.net.http</code> and <code>java.time</code> classes used by the connections,
+     * looked up on the public types since the implementations are not accessible.
+     */
+    private static class Api {
+
+        private final Object http2;
+        private final Object inputStreamHandler;
+        private final Object noBody;
+        private final Method newClientBuilder;
+        private final Method version;
+        private final Method connectTimeout;
+        private final Method sslContext;
+        private final Method buildClient;
+        private final Method send;
+        private final Method newRequestBuilder;
+        private final Method header;
+        private final Method timeout;
+        private final Method method;
+        private final Method buildRequest;
+        private final Method ofByteArray;
+        private final Method statusCode;
+        private final Method body;
+        private final Method headers;
+        private final Method firstValue;
+        private final Method orElse;
+        private final Method ofMillis;
+        private final Method shutdown;
+
+        private Api() throws ReflectiveOperationException {
+            final Class<?> clientClass = Class.forName("java.net.http.HttpClient");
+            final Class<?> clientBuilderClass = Class.forName("java.net.http.HttpClient$Builder");
+            final Class<?> requestClass = Class.forName("java.net.http.HttpRequest");
+            final Class<?> requestBuilderClass = Class.forName("java.net.http.HttpRequest$Builder");
+            final Class<?> publisherClass = Class.forName("java.net.http.HttpRequest$BodyPublisher");
+            final Class<?> publishersClass = Class.forName("java.net.http.HttpRequest$BodyPublishers");
+            final Class<?> responseClass = Class.forName("java.net.http.HttpResponse");
+            final Class<?> handlerClass = Class.forName("java.net.http.HttpResponse$BodyHandler");
+            final Class<?> handlersClass = Class.forName("java.net.http.HttpResponse$BodyHandlers");
+            final Class<?> headersClass = Class.forName("java.net.http.HttpHeaders");
+            final Class<?> versionClass = Class.forName("java.net.http.HttpClient$Version");
+            final Class<?> durationClass = Class.forName("java.time.Duration");
+            final Class<?> optionalClass = Class.forName("java.util.Optional");
+
+            http2 = versionClass.getField("HTTP_2").get(null);
+            inputStreamHandler = handlersClass.getMethod("ofInputStream").invoke(null);
+            noBody = publishersClass.getMethod("noBody").invoke(null);
+
+            newClientBuilder = clientClass.getMethod("newBuilder");
+            version = clientBuilderClass.getMethod("version", versionClass);
+            connectTimeout = clientBuilderClass.getMethod("connectTimeout", durationClass);
+            sslContext = clientBuilderClass.getMethod("sslContext", javax.net.ssl.SSLContext.class);
+            buildClient = clientBuilderClass.getMethod("build");
+            send = clientClass.getMethod("send", requestClass, handlerClass);
+
+            newRequestBuilder = requestClass.getMethod("newBuilder", URI.class);
+            header = requestBuilderClass.getMethod("header", String.class, String.class);
+            timeout = requestBuilderClass.getMethod("timeout", durationClass);
+            method = requestBuilderClass.getMethod("method", String.class, publisherClass);
+            buildRequest = requestBuilderClass.getMethod("build");
+            ofByteArray = publishersClass.getMethod("ofByteArray", byte[].class);
+
+            statusCode = responseClass.getMethod("statusCode");
+            body = responseClass.getMethod("body");
+            headers = responseClass.getMethod("headers");
+            firstValue = headersClass.getMethod("firstValue", String.class);
+            orElse = optionalClass.getMethod("orElse", Object.class);
+            ofMillis = durationClass.getMethod("ofMillis", long.class);
+            shutdown = optional(clientClass, "shutdown");
+        }
+
+        private static Method optional(final Class<?> type, final String name) {
+            try {
+                return type.getMethod(name);
+            } catch (final NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return null before java 11
+         */
+        private static Api load() {
+            try {
+                return new Api();
+            } catch (final ReflectiveOperationException | LinkageError e) {
+                logger.log(Level.FINE, "No HTTP/2 client in this JVM, http2=true is ignored: " + e.getMessage());
+                return null;
+            }
+        }
+
+        private Object duration(final long millis) {
+            return invoke(ofMillis, null, millis);
+        }
+
+        private Object newClient(final long timeout, final javax.net.ssl.SSLContext ssl) {
+            Object builder = invoke(newClientBuilder, null);
+            builder = invoke(version, builder, http2);
+            builder = invoke(connectTimeout, builder, duration(timeout));
+            if (ssl != null) {
+                builder = invoke(sslContext, builder, ssl);
+            }
+            return invoke(buildClient, builder);
+        }
+
+        /**
+         * Before java 21 the client has no shutdown, its threads and connections go away once it is collected.
+         */
+        private void shutdown(final Object client) {
+            if (shutdown != null) {
+                try {
+                    invoke(shutdown, client);
+                } catch (final RuntimeException e) {
+                    logger.log(Level.FINE, "Can't shut the HTTP/2 client down: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        private Object newRequest(final URI uri) {
+            return invoke(newRequestBuilder, null, uri);
+        }
+
+        private void header(final Object builder, final String name, final String value) {
+            invoke(header, builder, name, value);
+        }
+
+        private void timeout(final Object builder, final Object duration) {
+            invoke(timeout, builder, duration);
+        }
+
+        private Object build(final Object builder, final String name, final byte[] content) {
+            invoke(method, builder, name, content == null ? noBody : invoke(ofByteArray, null, (Object) content));
+            return invoke(buildRequest, builder);
+        }
+
+        private Object send(final Object client, final Object request) throws IOException {
+            try {
+                return send.invoke(client, request, inputStreamHandler);
+            } catch (final InvocationTargetException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw (IOException) new InterruptedIOException(cause.getMessage()).initCause(cause);
+                }
+                throw new IOException(cause);
+            } catch (final IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private int statusCode(final Object response) {
+            return (Integer) invoke(statusCode, response);
+        }
+
+        private InputStream body(final Object response) {
+            return (InputStream) invoke(body, response);
+        }
+
+        private String header(final Object response, final String name) {
+            return (String) invoke(orElse, invoke(firstValue, invoke(headers, response), name), (Object) null);
+        }
+
+        private static Object invoke(final Method method, final Object target, final Object... args) {
+            try {
+                return method.invoke(target, args);
+            } catch (final IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (final InvocationTargetException e) {
+                final Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new ClientRuntimeException(cause.getMessage(), cause);
+            }
+        }
+    }
+}
@@ -47,6 +47,10 @@ public class HttpConnectionFactory implements ConnectionFactory {
 
     @Override
     public Connection getConnection(final URI uri) throws IOException {
+        if (Http2Connection.isEnabled(uri)) {
+            return new Http2Connection(uri);
+        }
+
         byte[] buffer = drainBuffers.poll();
         if (buffer == null) {
             buffer = new byte[Integer.getInteger("openejb.client.http.drain-buffer.size", 64)];
@@ -58,6 +62,45 @@ public class HttpConnectionFactory implements ConnectionFactory {
         }
     }
 
+    static String authorization(final Map<String, String> params) {
+        final String basicUsername = params.get("basic.username");
+        final String basicPassword = params.get("basic.password");
+        final String authorization = params.get("authorization");
+        if (authorization != null && basicUsername != null) {
+            throw new IllegalArgumentException("You can't set basic.* properties AND authorization on the provider url");
+        }
+        if (authorization == null && basicUsername != null) {
+            return "Basic " + printBase64Binary((basicUsername + (basicPassword != null ? ":" + basicPassword : "")).getBytes(StandardCharsets.UTF_8));
+        }
+        return authorization;
+    }
+
+    static String stripAuthorization(final String url) {
+        return stripQuery(
+                stripQuery(
+                    stripQuery(
+                        stripQuery(url, "authorization"),
+                "basic.username"),
+                    "basic.password"),
+        "authorizationHeader");
+    }
+
+    private static String stripQuery(final String url, final String param) {
+        String result = url;
+        do {
+            final int h = result.indexOf(param + '=');
+            int end = result.indexOf('&', h);
+            if (end < 0) {
+                end = result.length();
+            }
+            if (h <= 0) {
+                return result.endsWith("?") ? result.substring(0, result.length() - 1) : result;
+            }
+            result = result.substring(0, h) +
+                    (end < 0 || end == result.length() ? "" : result.substring(end + 1, result.length()));
+        } while (true);
+    }
+
     public static class HttpConnection implements Connection {
         private final byte[] buffer;
         private HttpURLConnection httpURLConnection;
@@ -78,26 +121,10 @@ public class HttpConnectionFactory implements ConnectionFactory {
                 throw new IllegalArgumentException("Invalid uri " + uri.toString(), e);
             }
 
-            final String basicUsername = params.get("basic.username");
-            final String basicPassword = params.get("basic.password");
             final String authorizationHeader = params.get("authorizationHeader");
-            String authorization = params.get("authorization");
-            if (authorization != null && basicUsername != null) {
-                throw new IllegalArgumentException("You can't set basic.* properties AND authorization on the provider url");
-            }
-            if (authorization == null && basicUsername != null) {
-                authorization = "Basic " + printBase64Binary((basicUsername + (basicPassword != null ? ":" + basicPassword : "")).getBytes(StandardCharsets.UTF_8));
-            }
+            final String authorization = authorization(params);
 
-            final String newUrl =
-                    stripQuery(
-                        stripQuery(
-                            stripQuery(
-                                stripQuery(url.toExternalForm(), "authorization"),
-                        "basic.username"),
-                            "basic.password"),
-                "authorizationHeader");
-            httpURLConnection = (HttpURLConnection) (authorization == null ? url : new URL(newUrl)).openConnection();
+            httpURLConnection = (HttpURLConnection) (authorization == null ? url : new URL(stripAuthorization(url.toExternalForm()))).openConnection();
             httpURLConnection.setDoOutput(true);
 
             final int timeout;
@@ -140,22 +167,6 @@ public class HttpConnectionFactory implements ConnectionFactory {
             }
         }
 
-        private String stripQuery(final String url, final String param) {
-            String result = url;
-            do {
-                final int h = result.indexOf(param + '=');
-                int end = result.indexOf('&', h);
-                if (end < 0) {
-                    end = result.length();
-                }
-                if (h <= 0) {
-                    return result.endsWith("?") ? result.substring(0, result.length() - 1) : result;
-                }
-                result = result.substring(0, h) +
-                        (end < 0 || end == result.length() ? "" : result.substring(end + 1, result.length()));
-            } while (true);
-        }
-
         @Override
         public void discard() {
             try {
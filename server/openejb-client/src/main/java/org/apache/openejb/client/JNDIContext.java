@@ -73,6 +73,10 @@ public class JNDIContext implements InitialContextFactory, Context {
     public static final String AUTHENTICATE_WITH_THE_REQUEST = "openejb.ejbd.authenticate-with-request";
     public static final String POOL_QUEUE_SIZE = "openejb.client.invoker.queue";
     public static final String POOL_THREAD_NUMBER = "openejb.client.invoker.threads";
+    // maximum number of cached lookups per server, see LookupCache
+    public static final String LOOKUP_CACHE_SIZE = "openejb.client.jndi.cache.size";
+    // time to live of the cached lookups in milliseconds
+    public static final String LOOKUP_CACHE_TTL = "openejb.client.jndi.cache.ttl";
 
     private static final Decipher DECIPHER;
 
@@ -438,19 +442,13 @@ public class JNDIContext implements InitialContextFactory, Context {
         req.setRequestString(name);
         req.setModuleId(moduleId);
 
-        final JNDIResponse res;
-        try {
-            res = request(req);
-        } catch (Exception e) {
-            if (e instanceof RemoteException) {
-                if (e.getCause() instanceof ConnectException) {
-                    e = (Exception) e.getCause();
-                    throw (ServiceUnavailableException) new ServiceUnavailableException("Cannot lookup '" + name + "'.").initCause(e);
-                } else if (AuthenticationException.class.isInstance(e.getCause())) {
-                    throw AuthenticationException.class.cast(e.getCause());
-                }
+        final LookupCache cache = Client.getContext(server).getLookupCache();
+        JNDIResponse res = null != cache ? cache.get(moduleId, name) : null;
+        if (null == res) {
+            res = lookup(req, name);
+            if (null != cache) {
+                cache.put(moduleId, name, res);
             }
-            throw (NamingException) new NamingException("Cannot lookup '" + name + "'.").initCause(e);
         }
 
         switch (res.getResponseCode()) {
@@ -526,6 +524,22 @@ public class JNDIContext implements InitialContextFactory, Context {
         }
     }
 
+    private JNDIResponse lookup(final JNDIRequest req, final String name) throws NamingException {
+        try {
+            return request(req);
+        } catch (Exception e) {
+            if (e instanceof RemoteException) {
+                if (e.getCause() instanceof ConnectException) {
+                    e = (Exception) e.getCause();
+                    throw (ServiceUnavailableException) new ServiceUnavailableException("Cannot lookup '" + name + "'.").initCause(e);
+                } else if (AuthenticationException.class.isInstance(e.getCause())) {
+                    throw AuthenticationException.class.cast(e.getCause());
+                }
+            }
+            throw (NamingException) new NamingException("Cannot lookup '" + name + "'.").initCause(e);
+        }
+    }
+
     private Object parseEntry(final String name, String value) throws NamingException {
         try {
             URI uri = new URI(value);
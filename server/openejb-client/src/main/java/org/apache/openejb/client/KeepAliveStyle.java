@@ -22,5 +22,18 @@ package org.apache.openejb.client;
 public enum KeepAliveStyle {
     PING,
     PING_PONG,
-    PING_PING
+    PING_PING,
+
+    /**
+     * Sent once when the connection is opened, the connection is then shared by concurrent
+     * requests identified in each frame, see {@link MultiplexedChannel}. Requires the protocol 4.7.
+     */
+    MULTIPLEX,
+
+    /**
+     * Sent once when the connection is opened, the following requests use {@link #PING} and
+     * the class descriptors already sent on the connection are replaced by ids, see {@link ClassDescriptors}.
+     * Requires the protocol 4.8.
+     */
+    DESCRIPTORS
 }
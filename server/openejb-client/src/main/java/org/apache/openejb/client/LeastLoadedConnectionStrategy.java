@@ -0,0 +1,337 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import org.apache.openejb.client.event.FailoverSelection;
+import org.apache.openejb.client.event.LeastLoadedFailoverSelection;
+import org.apache.openejb.client.event.ServerEjected;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the requests to the server answering the fastest, selected as "least-loaded".
+ * <p/>
+ * Each server has an exponentially weighted average of its response times and a count of
+ * its requests in flight, their product is its load. Two servers are picked at random and
+ * the least loaded one is used, which keeps slow servers from getting an even share of the
+ * requests without sending them all to the same server. The other servers follow as
+ * failover candidates, least loaded first.
+ * <p/>
+ * A server failing a request is avoided for {@link #PROPERTY_EJECTION} milliseconds, doubled
+ * for each consecutive failure. It is still used when all the servers are avoided.
+ * Only the transport failures count, see {@link #transportFailed(Connection)}: a connection discarded
+ * because of the request itself (not serializable argument, class not found...) is only released.
+ */
+public class LeastLoadedConnectionStrategy extends AbstractConnectionStrategy {
+
+    public static final String PROPERTY_EJECTION = "openejb.client.connection.strategy.ejection";
+
+    // weight of the last response time in the average
+    private static final double ALPHA = 0.3;
+    private static final int MAX_EJECTION_DOUBLING = 5;
+
+    private final ConcurrentMap<URI, Stats> stats = new ConcurrentHashMap<URI, Stats>();
+    private final Random random = new Random();
+
+    @Override
+    protected FailoverSelection createFailureEvent(final Set<URI> remaining, final Set<URI> failed, final URI uri) {
+        return new LeastLoadedFailoverSelection(remaining, failed, uri);
+    }
+
+    @Override
+    protected Iterable<URI> createIterable(final ClusterMetaData cluster) {
+        return new LeastLoadedIterable(cluster);
+    }
+
+    @Override
+    protected Connection connect(final ClusterMetaData cluster, final URI uri) throws IOException {
+        final Stats stats = this.getStats(uri);
+
+        final Connection connection;
+        try {
+            connection = super.connect(cluster, uri);
+        } catch (final IOException e) {
+            stats.failed();
+            throw e;
+        }
+
+        stats.started();
+        return connection instanceof MultiplexedChannel.AsyncConnection
+            ? new AsyncTrackedConnection(connection, stats) : new TrackedConnection(connection, stats);
+    }
+
+    /**
+     * @return the average response time of the server in milliseconds, 0 if unknown
+     */
+    public double getLatency(final URI uri) {
+        return TimeUnit.NANOSECONDS.toMicros((long) this.getStats(uri).latency) / 1000.;
+    }
+
+    /**
+     * @return the requests sent to the server which are not answered yet
+     */
+    public int getInFlight(final URI uri) {
+        return this.getStats(uri).inFlight.get();
+    }
+
+    private Stats getStats(final URI uri) {
+        Stats stats = this.stats.get(uri);
+        if (stats == null) {
+            stats = new Stats(uri);
+            final Stats existing = this.stats.putIfAbsent(uri, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Called when the connection failed to send the request or read its response.
+     */
+    static void transportFailed(final Connection connection) {
+        if (connection instanceof TrackedConnection) {
+            TrackedConnection.class.cast(connection).aborted();
+        }
+    }
+
+    private int random(final int bound) {
+        synchronized (this.random) {
+            return this.random.nextInt(bound);
+        }
+    }
+
+    private static class Stats {
+
+        private final URI uri;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double latency;
+        private volatile int failures;
+        private volatile long ejectedUntil;
+
+        private Stats(final URI uri) {
+            this.uri = uri;
+        }
+
+        private double load() {
+            return this.latency * (this.inFlight.get() + 1);
+        }
+
+        private boolean isEjected(final long now) {
+            return this.ejectedUntil > now;
+        }
+
+        private void started() {
+            this.inFlight.incrementAndGet();
+        }
+
+        private void completed(final long nanos) {
+            this.inFlight.decrementAndGet();
+            synchronized (this) {
+                this.latency = this.latency == 0 ? nanos : ALPHA * nanos + (1 - ALPHA) * this.latency;
+                this.failures = 0;
+                this.ejectedUntil = 0;
+            }
+        }
+
+        private void aborted() {
+            this.inFlight.decrementAndGet();
+            this.failed();
+        }
+
+        private void released() {
+            this.inFlight.decrementAndGet();
+        }
+
+        private void failed() {
+            final int failures;
+            final long duration;
+            synchronized (this) {
+                failures = ++this.failures;
+                duration = Long.getLong(PROPERTY_EJECTION, TimeUnit.SECONDS.toMillis(10)) << Math.min(failures - 1, MAX_EJECTION_DOUBLING);
+                this.ejectedUntil = System.currentTimeMillis() + duration;
+            }
+            Client.fireEvent(new ServerEjected(this.uri, failures, duration, TimeUnit.NANOSECONDS.toMicros((long) this.latency) / 1000.));
+        }
+    }
+
+    private class LeastLoadedIterable implements Iterable<URI> {
+
+        private final URI[] locations;
+
+        private LeastLoadedIterable(final ClusterMetaData clusterMetaData) {
+            this.locations = clusterMetaData.getLocations();
+        }
+
+        @Override
+        public Iterator<URI> iterator() {
+            final long now = System.currentTimeMillis();
+            final List<Stats> healthy = new ArrayList<Stats>(this.locations.length);
+            final List<Stats> ejected = new ArrayList<Stats>();
+            for (final URI location : this.locations) {
+                final Stats stats = getStats(location);
+                (stats.isEjected(now) ? ejected : healthy).add(stats);
+            }
+
+            // the loads change while sorting, take a snapshot
+            final List<URI> order = new ArrayList<URI>(this.locations.length);
+            final List<Stats> candidates = healthy.isEmpty() ? ejected : healthy;
+            if (candidates.size() > 1) {
+                final int first = random(candidates.size());
+                final int second = (first + 1 + random(candidates.size() - 1)) % candidates.size();
+                final Stats a = candidates.get(first);
+                final Stats b = candidates.get(second);
+                final Stats best = a.load() <= b.load() ? a : b;
+                order.add(best.uri);
+                candidates.remove(best);
+            }
+
+            order.addAll(sorted(candidates));
+            if (candidates != ejected) {
+                order.addAll(sorted(ejected));
+            }
+            return Collections.unmodifiableList(order).iterator();
+        }
+
+        private List<URI> sorted(final List<Stats> stats) {
+            final double[] loads = new double[stats.size()];
+            final Integer[] indexes = new Integer[stats.size()];
+            for (int i = 0; i < loads.length; i++) {
+                loads[i] = stats.get(i).load();
+                indexes[i] = i;
+            }
+            Arrays.sort(indexes, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer o1, final Integer o2) {
+                    return Double.compare(loads[o1], loads[o2]);
+                }
+            });
+
+            final List<URI> uris = new ArrayList<URI>(loads.length);
+            for (final Integer index : indexes) {
+                uris.add(stats.get(index).uri);
+            }
+            return uris;
+        }
+    }
+
+    /**
+     * Updates the statistics of the server when the request is done.
+     */
+    private static class TrackedConnection implements Connection, ClassDescriptors.Holder {
+
+        protected final Connection delegate;
+        private final Stats stats;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private TrackedConnection(final Connection delegate, final Stats stats) {
+            this.delegate = delegate;
+            this.stats = stats;
+        }
+
+        protected void completed() {
+            if (this.done.compareAndSet(false, true)) {
+                this.stats.completed(System.nanoTime() - this.start);
+            }
+        }
+
+        protected void aborted() {
+            if (this.done.compareAndSet(false, true)) {
+                this.stats.aborted();
+            }
+        }
+
+        protected void released() {
+            if (this.done.compareAndSet(false, true)) {
+                this.stats.released();
+            }
+        }
+
+        @Override
+        public void discard() {
+            this.released();
+            this.delegate.discard();
+        }
+
+        @Override
+        public URI getURI() {
+            return this.delegate.getURI();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.completed();
+            this.delegate.close();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return this.delegate.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return this.delegate.getOutputStream();
+        }
+
+        @Override
+        public ClassDescriptors getClassDescriptors() {
+            return ClassDescriptors.of(this.delegate);
+        }
+    }
+
+    private static class AsyncTrackedConnection extends TrackedConnection implements MultiplexedChannel.AsyncConnection {
+
+        private AsyncTrackedConnection(final Connection delegate, final Stats stats) {
+            super(delegate, stats);
+        }
+
+        @Override
+        public void send(final MultiplexedChannel.ResponseListener listener) {
+            MultiplexedChannel.AsyncConnection.class.cast(this.delegate).send(new MultiplexedChannel.ResponseListener() {
+                @Override
+                public void onResponse(final InputStream in) {
+                    AsyncTrackedConnection.this.completed();
+                    listener.onResponse(in);
+                }
+
+                @Override
+                public void onFailure(final IOException e) {
+                    AsyncTrackedConnection.this.aborted();
+                    listener.onFailure(e);
+                }
+            });
+        }
+    }
+}
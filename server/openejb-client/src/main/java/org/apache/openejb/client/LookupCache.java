@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import org.apache.openejb.client.event.LookupCacheAccessed;
+import org.apache.openejb.client.event.LookupCacheCleared;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The lookup responses of a server which can be reused, enabled with {@link JNDIContext#LOOKUP_CACHE_SIZE}.
+ * <p/>
+ * Only the metadata is cached, homes and business proxies are still created for each lookup.
+ * Stateful beans, references and resources are always looked up on the server.
+ * The least recently used entries are evicted when the cache is full, entries also expire after
+ * {@link JNDIContext#LOOKUP_CACHE_TTL} milliseconds and the cache is cleared when the server sends
+ * a new cluster version, which it does when an application is deployed or undeployed.
+ * <p/>
+ * Each lookup fires a {@link LookupCacheAccessed} event with the hit ratio.
+ */
+public class LookupCache {
+
+    private final URI server;
+    private final long ttl;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LookupCache(final URI server, final int size, final long ttl) {
+        this.server = server;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * @return the cached response or null
+     */
+    public JNDIResponse get(final String moduleId, final String name) {
+        final String key = key(moduleId, name);
+
+        Entry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+            if (entry != null && entry.expires < System.currentTimeMillis()) {
+                this.entries.remove(key);
+                entry = null;
+            }
+        }
+
+        final long hits = entry != null ? this.hits.incrementAndGet() : this.hits.get();
+        final long misses = entry == null ? this.misses.incrementAndGet() : this.misses.get();
+        Client.fireEvent(new LookupCacheAccessed(this.server, name, entry != null, hits, misses));
+
+        return entry != null ? entry.response : null;
+    }
+
+    /**
+     * Caches the response if it only holds immutable metadata.
+     */
+    public void put(final String moduleId, final String name, final JNDIResponse response) {
+        if (!isCacheable(response)) {
+            return;
+        }
+
+        final Entry entry = new Entry(response, System.currentTimeMillis() + this.ttl);
+        synchronized (this.entries) {
+            this.entries.put(key(moduleId, name), entry);
+        }
+    }
+
+    public void clear(final String reason) {
+        final int size;
+        synchronized (this.entries) {
+            size = this.entries.size();
+            this.entries.clear();
+        }
+        if (size > 0) {
+            Client.fireEvent(new LookupCacheCleared(this.server, size, reason));
+        }
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    private static boolean isCacheable(final JNDIResponse response) {
+        final Object result = response.getResult();
+        switch (response.getResponseCode()) {
+            case ResponseCodes.JNDI_EJBHOME:
+            case ResponseCodes.JNDI_CONTEXT:
+            case ResponseCodes.JNDI_DATA_SOURCE:
+            case ResponseCodes.JNDI_WEBSERVICE:
+                return true;
+            case ResponseCodes.JNDI_BUSINESS_OBJECT:
+                // each lookup of a stateful bean creates a new instance
+                final EJBMetaDataImpl ejb = (EJBMetaDataImpl) result;
+                return !ejb.isStatefulSession() && ejb.getPrimaryKey() == null;
+            case ResponseCodes.JNDI_OK:
+                // env entries
+                return result instanceof String || result instanceof Integer || result instanceof Long || result instanceof Boolean
+                    || result instanceof Double || result instanceof Float || result instanceof Short || result instanceof Byte
+                    || result instanceof Character;
+            default:
+                return false;
+        }
+    }
+
+    private static String key(final String moduleId, final String name) {
+        return moduleId == null ? name : moduleId + '|' + name;
+    }
+
+    private static class Entry {
+
+        private final JNDIResponse response;
+        private final long expires;
+
+        private Entry(final JNDIResponse response, final long expires) {
+            this.response = response;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A connection to the server shared by concurrent requests, see {@link KeepAliveStyle#MULTIPLEX}.
+ * <p/>
+ * Each request is buffered and sent in a <code>[request id][length][request]</code> frame,
+ * the caller then waits for the response frame with the same id. Response frames are read
+ * by the channel thread and can come back in any order.
+ * <p/>
+ * The connections are {@link AsyncConnection}s, a caller can also give the response to a
+ * {@link ResponseListener} instead of waiting for it.
+ */
+public class MultiplexedChannel implements Runnable {
+
+    private static final Logger logger = Logger.getLogger("OpenEJB.client");
+
+    // times out the asynchronous exchanges since nobody waits for them
+    private static final ScheduledThreadPoolExecutor timeouts = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "OpenEJB.client.multiplex.timeout");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    private final Connection connection;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final long timeout;
+    private final ConcurrentMap<Integer, Exchange> exchanges = new ConcurrentHashMap<Integer, Exchange>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Lock writeLock = new ReentrantLock();
+    private volatile IOException failure;
+
+    /**
+     * @param connection the opened socket, owned by the channel from now on
+     * @param timeout    maximum time to wait for a response in milliseconds
+     */
+    public MultiplexedChannel(final Connection connection, final long timeout) throws IOException {
+        this.connection = connection;
+        this.timeout = timeout;
+        this.out = new DataOutputStream(connection.getOutputStream());
+        this.in = new DataInputStream(connection.getInputStream());
+    }
+
+    /**
+     * Switches the connection to the multiplexed mode and starts the channel thread.
+     *
+     * @return false if the server doesn't support multiplexed connections
+     * @throws IOException if the connection failed, older servers simply close it
+     */
+    public boolean handshake() throws IOException {
+        this.out.write(KeepAliveStyle.MULTIPLEX.ordinal());
+        new ProtocolMetaData().writeExternal(this.out);
+        this.out.flush();
+
+        if (this.in.read() != KeepAliveStyle.MULTIPLEX.ordinal()) {
+            return false;
+        }
+
+        final ProtocolMetaData server = new ProtocolMetaData();
+        server.readExternal(this.in);
+        if (!server.isAtLeast(4, 7)) {
+            return false;
+        }
+
+        final Thread thread = new Thread(this, "OpenEJB.client.multiplex." + this.getURI());
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    public URI getURI() {
+        return this.connection.getURI();
+    }
+
+    public boolean isOpen() {
+        return this.failure == null;
+    }
+
+    /**
+     * @return the number of requests waiting for their response
+     */
+    public int getPending() {
+        return this.exchanges.size();
+    }
+
+    /**
+     * @return a connection for a single request, its output is sent when its input is requested
+     */
+    public AsyncConnection newConnection() {
+        return new MultiplexedConnection();
+    }
+
+    private byte[] exchange(final byte[] request) throws IOException {
+        this.checkOpen();
+
+        final int id = this.ids.incrementAndGet();
+        final Exchange exchange = new Exchange(null);
+        this.exchanges.put(id, exchange);
+        try {
+            this.write(id, request);
+            return exchange.await(id, this.timeout);
+        } finally {
+            this.exchanges.remove(id);
+        }
+    }
+
+    private void exchange(final byte[] request, final ResponseListener listener) {
+        final IOException closed = this.failure;
+        if (closed != null) {
+            listener.onFailure(new IOException("Multiplexed connection to " + this.getURI() + " is closed: " + closed.getMessage(), closed));
+            return;
+        }
+
+        final int id = this.ids.incrementAndGet();
+        final Exchange exchange = new Exchange(listener);
+        this.exchanges.put(id, exchange);
+        exchange.timeout = timeouts.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (MultiplexedChannel.this.exchanges.remove(id) != null) {
+                    exchange.fail(new SocketTimeoutException("No response for request " + id + " after " + MultiplexedChannel.this.timeout + "ms"));
+                }
+            }
+        }, this.timeout, TimeUnit.MILLISECONDS);
+
+        try {
+            this.write(id, request);
+        } catch (final IOException e) {
+            // fail() already notified the listener
+        }
+    }
+
+    private void write(final int id, final byte[] request) throws IOException {
+        this.writeLock.lock();
+        try {
+            this.out.writeInt(id);
+            this.out.writeInt(request.length);
+            this.out.write(request);
+            this.out.flush();
+        } catch (final IOException e) {
+            this.fail(e);
+            throw e;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                final int id = this.in.readInt();
+                final int length = this.in.readInt();
+                if (length < 0) {
+                    throw new IOException("Invalid frame length " + length + " for request " + id);
+                }
+
+                final byte[] response = new byte[length];
+                this.in.readFully(response);
+
+                final Exchange exchange = this.exchanges.get(id);
+                if (exchange != null) { // else the caller gave up
+                    if (exchange.listener != null) {
+                        this.exchanges.remove(id);
+                    }
+                    exchange.complete(response);
+                }
+            }
+        } catch (final IOException e) {
+            this.fail(e);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        final IOException e = this.failure;
+        if (e != null) {
+            throw new IOException("Multiplexed connection to " + this.getURI() + " is closed: " + e.getMessage(), e);
+        }
+    }
+
+    private void fail(final IOException e) {
+        synchronized (this) {
+            if (this.failure != null) {
+                return;
+            }
+            this.failure = e;
+        }
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.log(Level.FINER, "Closing multiplexed connection to " + this.getURI() + ": " + e.getMessage());
+        }
+        this.connection.discard();
+
+        final List<Exchange> pending = new ArrayList<Exchange>(this.exchanges.values());
+        for (final Exchange exchange : pending) {
+            if (exchange.listener != null) {
+                this.exchanges.values().remove(exchange);
+            }
+            exchange.fail(e);
+        }
+    }
+
+    /**
+     * Receives the response of a request sent with {@link AsyncConnection#send(ResponseListener)}.
+     * <p/>
+     * The methods are called by the channel thread, which reads the responses of all the requests
+     * of the connection, they must not block.
+     */
+    public interface ResponseListener {
+
+        void onResponse(InputStream in);
+
+        void onFailure(IOException e);
+    }
+
+    /**
+     * A connection which doesn't need a thread to wait for its response.
+     */
+    public interface AsyncConnection extends Connection {
+
+        /**
+         * Sends what was written to the output stream, the response is given to the listener.
+         */
+        void send(ResponseListener listener);
+    }
+
+    private static class Exchange {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final AtomicBoolean done = new AtomicBoolean();
+        private final ResponseListener listener;
+        private volatile ScheduledFuture<?> timeout;
+        private volatile byte[] response;
+        private volatile IOException failure;
+
+        private Exchange(final ResponseListener listener) {
+            this.listener = listener;
+        }
+
+        private void complete(final byte[] response) {
+            if (!this.done.compareAndSet(false, true)) {
+                return;
+            }
+
+            this.response = response;
+            this.latch.countDown();
+            if (this.listener != null) {
+                this.cancelTimeout();
+                this.listener.onResponse(new ByteArrayInputStream(response));
+            }
+        }
+
+        private void fail(final IOException e) {
+            if (!this.done.compareAndSet(false, true)) {
+                return;
+            }
+
+            this.failure = e;
+            this.latch.countDown();
+            if (this.listener != null) {
+                this.cancelTimeout();
+                this.listener.onFailure(e);
+            }
+        }
+
+        private void cancelTimeout() {
+            final ScheduledFuture<?> timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+
+        private byte[] await(final int id, final long timeout) throws IOException {
+            try {
+                if (!this.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new SocketTimeoutException("No response for request " + id + " after " + timeout + "ms");
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the response of request " + id, e);
+            }
+
+            if (this.failure != null) {
+                throw new IOException(this.failure.getMessage(), this.failure);
+            }
+            return this.response;
+        }
+    }
+
+    private class MultiplexedConnection implements AsyncConnection {
+
+        private final ByteArrayOutputStream request = new ByteArrayOutputStream(1024);
+        private InputStream response;
+
+        @Override
+        public URI getURI() {
+            return MultiplexedChannel.this.getURI();
+        }
+
+        @Override
+        public void discard() {
+            // a failed request doesn't break the channel, i/o errors close it for all its requests
+        }
+
+        @Override
+        public void close() throws IOException {
+            // no-op, the channel stays open
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (this.response == null) {
+                this.response = new ByteArrayInputStream(MultiplexedChannel.this.exchange(this.request.toByteArray()));
+            }
+            return this.response;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return this.request;
+        }
+
+        @Override
+        public void send(final ResponseListener listener) {
+            MultiplexedChannel.this.exchange(this.request.toByteArray(), listener);
+        }
+    }
+}
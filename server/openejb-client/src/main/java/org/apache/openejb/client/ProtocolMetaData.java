@@ -31,13 +31,17 @@ import java.util.Arrays;
  * Protocol-Version   = "OEJP" "/" 1*DIGIT "." 1*DIGIT
  * <p/>
  * Some compatability is guaranteed with the major part of the version number.
+ * <p/>
+ * 4.7 adds the multiplexed connections, see {@link KeepAliveStyle#MULTIPLEX}.
+ * 4.8 adds the class descriptor dictionaries, see {@link KeepAliveStyle#DESCRIPTORS}.
+ * 4.9 adds the deployment codes and method numbers of the requests, see {@link EJBMethodIndex}.
  *
  * @version $Revision$ $Date$
  */
 @SuppressWarnings("UnusedDeclaration")
 public class ProtocolMetaData {
 
-    public static final String VERSION = "4.6";
+    public static final String VERSION = "4.9";
 
     private static final String OEJB = "OEJP";
     private transient String id;
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The result of a remote invocation completed by the connection which receives the response,
+ * no thread waits for it unless {@link #get()} is called.
+ * <p/>
+ * The business methods annotated with <code>@Asynchronous</code> return it when the connections are
+ * multiplexed, see {@link SocketConnectionFactory#isMultiplexed()}. Listeners are notified when it is done.
+ */
+public class RemoteFuture<T> implements Future<T> {
+
+    /**
+     * Runs the listeners in the thread completing the future, they must not block.
+     */
+    public static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final Logger logger = Logger.getLogger("OpenEJB.client");
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final List<Runnable> listeners = new ArrayList<Runnable>();
+    private boolean done;
+    private volatile boolean cancelled;
+    private volatile T value;
+    private volatile Throwable failure;
+
+    /**
+     * @param listener called once the future is done, right away if it already is
+     * @param executor runs the listener, {@link #DIRECT} runs it in the thread completing the future
+     */
+    public void addListener(final Runnable listener, final Executor executor) {
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(listener);
+                } catch (final RuntimeException e) {
+                    logger.log(Level.WARNING, "Listener " + listener + " failed: " + e.getMessage(), e);
+                }
+            }
+        };
+
+        synchronized (this.listeners) {
+            if (!this.done) {
+                this.listeners.add(task);
+                return;
+            }
+        }
+        task.run();
+    }
+
+    boolean complete(final T value) {
+        return this.done(value, null, false);
+    }
+
+    boolean fail(final Throwable failure) {
+        return this.done(null, failure, false);
+    }
+
+    /**
+     * Only stops waiting for the response, the server still processes the request.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        return this.done(null, null, true);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.latch.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        this.latch.await();
+        return this.getValue();
+    }
+
+    @Override
+    public T get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!this.latch.await(timeout, unit)) {
+            throw new TimeoutException("No response after " + timeout + " " + unit);
+        }
+        return this.getValue();
+    }
+
+    private T getValue() throws ExecutionException {
+        if (this.cancelled) {
+            throw new CancellationException();
+        }
+        if (this.failure != null) {
+            throw new ExecutionException(this.failure);
+        }
+        return this.value;
+    }
+
+    private boolean done(final T value, final Throwable failure, final boolean cancelled) {
+        final List<Runnable> listeners;
+        synchronized (this.listeners) {
+            if (this.done) {
+                return false;
+            }
+            this.value = value;
+            this.failure = failure;
+            this.cancelled = cancelled;
+            this.done = true;
+            this.latch.countDown();
+
+            listeners = new ArrayList<Runnable>(this.listeners);
+            this.listeners.clear();
+        }
+
+        for (final Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+}
@@ -50,5 +50,9 @@ public class ResponseCodes {
     public static final int JNDI_WEBSERVICE = 25;
     public static final int JNDI_REFERENCE = 26;
     // LOGOUT codes: 27-28
+    /**
+     * The server doesn't know the deployment code or method number of the request, see {@link EJBMethodIndex}.
+     */
+    public static final int EJB_INDEX_STALE = 29;
 }
 
@@ -18,8 +18,11 @@ package org.apache.openejb.client;
 
 import org.apache.openejb.client.event.ConnectionOpened;
 import org.apache.openejb.client.event.ConnectionPoolCreated;
+import org.apache.openejb.client.event.ConnectionPoolResized;
 import org.apache.openejb.client.event.ConnectionPoolTimeout;
 
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.BufferedInputStream;
@@ -28,18 +31,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StreamCorruptedException;
+import java.lang.management.ManagementFactory;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
 
 public class SocketConnectionFactory implements ConnectionFactory {
@@ -55,13 +69,51 @@ public class SocketConnectionFactory implements ConnectionFactory {
     public static final String PROPERTY_KEEPALIVE = "openejb.client.keepalive";
     public static final String ENABLED_CIPHER_SUITES = "openejb.client.enabledCipherSuites";
 
+    /**
+     * Grows the pools when all their connections are in use, up to {@link #PROPERTY_POOL_MAX}.
+     */
+    public static final String PROPERTY_POOL_ADAPTIVE = "openejb.client.connection.pool.adaptive";
+
+    /**
+     * Maximum size of an adaptive pool, four times {@link #PROPERTY_POOL_SIZE} by default.
+     */
+    public static final String PROPERTY_POOL_MAX = "openejb.client.connection.pool.max";
+
+    /**
+     * Milliseconds after which unused pooled connections are closed, one minute by default in
+     * adaptive mode, never otherwise.
+     */
+    public static final String PROPERTY_POOL_IDLE = "openejb.client.connection.pool.idle";
+
+    /**
+     * Registers the pools in the platform MBean server, see {@link ConnectionPoolMBean}. The pools live as long
+     * as the client classes so this is off by default.
+     */
+    public static final String PROPERTY_POOL_JMX = "openejb.client.connection.pool.jmx";
+
+    /**
+     * Number of multiplexed connections per server when {@link #PROPERTY_KEEPALIVE} is <code>multiplex</code>.
+     */
+    public static final String PROPERTY_MULTIPLEX_CONNECTIONS = "openejb.client.connection.multiplex.size";
+
+    // servers not supporting the multiplexed connections or the descriptors are retried after this delay
+    private static final long UNSUPPORTED_RETRY = TimeUnit.MINUTES.toMillis(5);
+
     private static final Map<URI, Pool> connections = new ConcurrentHashMap<URI, Pool>();
+    private static final ConcurrentMap<URI, MultiplexedChannel[]> channels = new ConcurrentHashMap<URI, MultiplexedChannel[]>();
+    private static final Map<String, Long> unsupported = new ConcurrentHashMap<String, Long>();
+    private static final Logger logger = Logger.getLogger("OpenEJB.client");
+    private static volatile ScheduledExecutorService evictor;
     private int size = 5;
+    private int multiplexSize = 2;
     private long timeoutPool = 1000;
     private int timeoutConnect = 1000;
     private int timeoutRead = 14400000;
     private int timeoutLinger;
     private String[] enabledCipherSuites;
+    private boolean adaptive;
+    private int maxSize;
+    private long idleTimeout;
 
     public SocketConnectionFactory() {
 
@@ -71,6 +123,10 @@ public class SocketConnectionFactory implements ConnectionFactory {
         this.timeoutLinger = this.getTimeoutLinger();
         this.timeoutRead = this.getTimeoutRead();
         this.enabledCipherSuites = this.getEnabledCipherSuites();
+        this.multiplexSize = Math.max(1, getInt(System.getProperties(), PROPERTY_MULTIPLEX_CONNECTIONS, this.multiplexSize));
+        this.adaptive = Boolean.parseBoolean(System.getProperty(PROPERTY_POOL_ADAPTIVE));
+        this.maxSize = getInt(System.getProperties(), PROPERTY_POOL_MAX, this.size * 4);
+        this.idleTimeout = getLong(System.getProperties(), PROPERTY_POOL_IDLE, this.adaptive ? TimeUnit.MINUTES.toMillis(1) : 0);
 
         try {
             String property = System.getProperty(PROPERTY_KEEPALIVE);
@@ -83,6 +139,34 @@ public class SocketConnectionFactory implements ConnectionFactory {
         }
     }
 
+    /**
+     * @return true if the requests share multiplexed connections, their responses are then read
+     * by the connection threads, see {@link MultiplexedChannel.AsyncConnection}
+     */
+    public static boolean isMultiplexed() {
+        return KeepAliveStyle.MULTIPLEX.name().equalsIgnoreCase(System.getProperty(PROPERTY_KEEPALIVE));
+    }
+
+    /**
+     * @return the number of open multiplexed connections to the server
+     */
+    public static int getMultiplexedChannels(final URI uri) {
+        final MultiplexedChannel[] opened = channels.get(uri);
+        if (opened == null) {
+            return 0;
+        }
+
+        int open = 0;
+        synchronized (opened) {
+            for (final MultiplexedChannel channel : opened) {
+                if (channel != null && channel.isOpen()) {
+                    open++;
+                }
+            }
+        }
+        return open;
+    }
+
     private String[] getEnabledCipherSuites() {
         final String property = System.getProperty(ENABLED_CIPHER_SUITES);
         if (property != null) {
@@ -153,6 +237,13 @@ public class SocketConnectionFactory implements ConnectionFactory {
     @Override
     public Connection getConnection(final URI uri) throws java.io.IOException {
 
+        if (KeepAliveStyle.MULTIPLEX == this.keepAliveStyle) {
+            final Connection connection = this.getMultiplexedConnection(uri);
+            if (connection != null) {
+                return connection;
+            }
+        }
+
         final Pool pool = this.getPool(uri);
 
         SocketConnection conn = pool.get();
@@ -160,6 +251,15 @@ public class SocketConnectionFactory implements ConnectionFactory {
             try {
                 conn = new SocketConnection(uri, pool);
                 conn.open(uri);
+
+                if (KeepAliveStyle.DESCRIPTORS == this.keepAliveStyle && isSupported(KeepAliveStyle.DESCRIPTORS, uri)
+                    && !conn.negotiateDescriptors()) {
+                    // older servers close the connection
+                    setUnsupported(KeepAliveStyle.DESCRIPTORS, uri);
+                    conn.cleanUp();
+                    conn = new SocketConnection(uri, pool);
+                    conn.open(uri);
+                }
             } catch (IOException e) {
 
                 conn.cleanUp();
@@ -185,13 +285,16 @@ public class SocketConnectionFactory implements ConnectionFactory {
             return this.getConnection(uri);
         }
 
+        // the multiplexed connections fall back on the pooled ones, the descriptors were negotiated when opened
+        final KeepAliveStyle style = KeepAliveStyle.MULTIPLEX == this.keepAliveStyle || KeepAliveStyle.DESCRIPTORS == this.keepAliveStyle
+            ? KeepAliveStyle.PING : this.keepAliveStyle;
         try {
-            ouputStream.write(this.keepAliveStyle.ordinal());
+            ouputStream.write(style.ordinal());
             ouputStream.flush();
 
-            switch (this.keepAliveStyle) {
+            switch (style) {
                 case PING_PING: {
-                    ouputStream.write(this.keepAliveStyle.ordinal());
+                    ouputStream.write(style.ordinal());
                     ouputStream.flush();
                     break;
                 }
@@ -209,16 +312,137 @@ public class SocketConnectionFactory implements ConnectionFactory {
         return conn;
     }
 
+    /**
+     * @return a connection on the least loaded multiplexed connection, a new one is opened when
+     * all are busy and the limit isn't reached, or null if the server doesn't support them
+     */
+    private Connection getMultiplexedConnection(final URI uri) throws IOException {
+        if (!isSupported(KeepAliveStyle.MULTIPLEX, uri)) {
+            return null;
+        }
+
+        MultiplexedChannel[] opened = channels.get(uri);
+        if (opened == null) {
+            opened = new MultiplexedChannel[this.multiplexSize];
+            final MultiplexedChannel[] existing = channels.putIfAbsent(uri, opened);
+            if (existing != null) {
+                opened = existing;
+            }
+        }
+
+        synchronized (opened) {
+            MultiplexedChannel best = null;
+            int free = -1;
+            for (int i = 0; i < opened.length; i++) {
+                final MultiplexedChannel channel = opened[i];
+                if (channel == null || !channel.isOpen()) {
+                    if (free < 0) {
+                        free = i;
+                    }
+                } else if (best == null || channel.getPending() < best.getPending()) {
+                    best = channel;
+                }
+            }
+
+            if (free >= 0 && (best == null || best.getPending() > 0)) {
+                final MultiplexedChannel channel = this.openChannel(uri);
+                if (channel != null) {
+                    opened[free] = channel;
+                    best = channel;
+                } else {
+                    setUnsupported(KeepAliveStyle.MULTIPLEX, uri);
+                }
+            }
+
+            return best != null ? best.newConnection() : null;
+        }
+    }
+
+    private MultiplexedChannel openChannel(final URI uri) throws IOException {
+        final SocketConnection conn = new SocketConnection(uri, null);
+        conn.open(uri);
+
+        try {
+            final MultiplexedChannel channel = new MultiplexedChannel(conn, this.timeoutRead);
+            if (channel.handshake()) {
+                return channel;
+            }
+        } catch (IOException e) {
+            // older servers close the connection
+        }
+
+        conn.discard();
+        return null;
+    }
+
+    private static boolean isSupported(final KeepAliveStyle style, final URI uri) {
+        final String key = style + " " + uri;
+        final Long retry = unsupported.get(key);
+        if (retry == null) {
+            return true;
+        }
+        if (retry > System.currentTimeMillis()) {
+            return false;
+        }
+        unsupported.remove(key);
+        return true;
+    }
+
+    private static void setUnsupported(final KeepAliveStyle style, final URI uri) {
+        unsupported.put(style + " " + uri, System.currentTimeMillis() + UNSUPPORTED_RETRY);
+    }
+
     private Pool getPool(final URI uri) {
         Pool pool = connections.get(uri);
         if (pool == null) {
-            pool = new Pool(uri, this.getSize(), this.timeoutPool);
+            pool = new Pool(uri, this.getSize(), this.timeoutPool, this.adaptive, this.maxSize, this.idleTimeout);
             connections.put(uri, pool);
+            if (Boolean.parseBoolean(System.getProperty(PROPERTY_POOL_JMX))) {
+                register(pool);
+            }
+            if (this.idleTimeout > 0) {
+                scheduleEviction(pool, this.idleTimeout);
+            }
         }
         return pool;
     }
 
-    class SocketConnection implements Connection {
+    private static void register(final Pool pool) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(pool, ConnectionPoolMBean.class),
+                new ObjectName("openejb.client:type=ConnectionPool,uri=" + ObjectName.quote(pool.getUri())));
+        } catch (final Throwable e) {
+            // already registered by another factory or no JMX in this environment
+            logger.log(Level.FINEST, "Can't register the connection pool of " + pool.getUri() + ": " + e.getMessage());
+        }
+    }
+
+    private static void scheduleEviction(final Pool pool, final long idleTimeout) {
+        if (evictor == null) {
+            synchronized (SocketConnectionFactory.class) {
+                if (evictor == null) {
+                    evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            final Thread thread = new Thread(r, "OpenEJB.client.pool.evictor");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+
+        final long period = Math.max(100, idleTimeout / 2);
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                pool.evict();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    class SocketConnection implements Connection, ClassDescriptors.Holder {
 
         private Socket socket = null;
         private final URI uri;
@@ -229,6 +453,8 @@ public class SocketConnectionFactory implements ConnectionFactory {
         private OutputStream out;
         private InputStream in;
         private boolean gzip = false;
+        private ClassDescriptors descriptors;
+        private volatile long lastUsed;
 
         public SocketConnection(final URI uri, final Pool pool) {
             this.uri = uri;
@@ -297,7 +523,12 @@ public class SocketConnectionFactory implements ConnectionFactory {
 
                 this.socket.setTcpNoDelay(true);
                 this.socket.setSoLinger(true, SocketConnectionFactory.this.timeoutLinger);
+
+                final long start = System.nanoTime();
                 this.socket.connect(address, SocketConnectionFactory.this.timeoutConnect);
+                if (null != this.pool) {
+                    this.pool.connected(System.nanoTime() - start);
+                }
 
                 //Four hours default
                 this.socket.setSoTimeout(SocketConnectionFactory.this.timeoutRead);
@@ -329,6 +560,39 @@ public class SocketConnectionFactory implements ConnectionFactory {
 
         }
 
+        /**
+         * @return false if the server doesn't support {@link KeepAliveStyle#DESCRIPTORS}
+         */
+        private boolean negotiateDescriptors() {
+            try {
+                final OutputStream out = this.getOutputStream();
+                out.write(KeepAliveStyle.DESCRIPTORS.ordinal());
+                new ProtocolMetaData().writeExternal(out);
+                out.flush();
+
+                final InputStream in = this.getInputStream();
+                if (in.read() != KeepAliveStyle.DESCRIPTORS.ordinal()) {
+                    return false;
+                }
+
+                final ProtocolMetaData server = new ProtocolMetaData();
+                server.readExternal(in);
+                if (!server.isAtLeast(4, 8)) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+
+            this.descriptors = new ClassDescriptors();
+            return true;
+        }
+
+        @Override
+        public ClassDescriptors getClassDescriptors() {
+            return this.descriptors;
+        }
+
         private IOException failure(final String err, final Throwable e) {
             this.discard();
             return new IOException(err, e);
@@ -337,7 +601,9 @@ public class SocketConnectionFactory implements ConnectionFactory {
         @Override
         public void discard() {
             try {
-                this.pool.put(null);
+                if (null != this.pool) { // multiplexed connections are not pooled
+                    this.pool.put(null);
+                }
             } finally {
                 this.discarded = true;
                 this.cleanUp();
@@ -437,18 +703,35 @@ public class SocketConnectionFactory implements ConnectionFactory {
         }
     }
 
-    private static class Pool {
+    private static class Pool implements ConnectionPoolMBean {
+
+        // upper bounds of the wait histogram buckets in milliseconds
+        private static final long[] WAIT_BOUNDS = {1, 5, 10, 50, 100, 500, 1000};
 
         private final Semaphore semaphore;
         private final Stack<SocketConnection> pool;
         private final long timeout;
         private final TimeUnit timeUnit;
-        private final int size;
+        private final int initialSize;
+        private final int maxSize;
+        private final boolean adaptive;
+        private final long idleTimeout;
         private final URI uri;
+        private volatile int size;
 
-        private Pool(final URI uri, final int size, final long timeout) {
+        private final AtomicLongArray waits = new AtomicLongArray(WAIT_BOUNDS.length + 1);
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong connects = new AtomicLong();
+        private final AtomicLong connectTime = new AtomicLong();
+        private volatile long maxConnectTime;
+
+        private Pool(final URI uri, final int size, final long timeout, final boolean adaptive, final int maxSize, final long idleTimeout) {
             this.uri = uri;
             this.size = size;
+            this.initialSize = size;
+            this.adaptive = adaptive;
+            this.maxSize = adaptive ? Math.max(size, maxSize) : size;
+            this.idleTimeout = idleTimeout;
             this.semaphore = new Semaphore(size);
             this.pool = new Stack<SocketConnection>();
             this.timeout = timeout;
@@ -462,14 +745,22 @@ public class SocketConnectionFactory implements ConnectionFactory {
         }
 
         public SocketConnection get() throws IOException {
+            final long start = System.nanoTime();
             try {
-                if (this.semaphore.tryAcquire(this.timeout, this.timeUnit)) {
+                if (this.semaphore.tryAcquire()
+                    || this.adaptive && this.grow() && this.semaphore.tryAcquire()
+                    || this.semaphore.tryAcquire(this.timeout, this.timeUnit)) {
+
+                    this.waited(System.nanoTime() - start);
                     return this.pool.pop();
                 }
             } catch (InterruptedException e) {
                 Thread.interrupted();
             }
 
+            this.waited(System.nanoTime() - start);
+            this.timeouts.incrementAndGet();
+
             final ConnectionPoolTimeoutException exception = new ConnectionPoolTimeoutException("No connections available in pool (size " +
                 this.size +
                 ").  Waited for " +
@@ -481,10 +772,167 @@ public class SocketConnectionFactory implements ConnectionFactory {
         }
 
         public void put(final SocketConnection connection) {
+            if (connection != null) {
+                connection.lastUsed = System.currentTimeMillis();
+            }
             this.pool.push(connection);
             this.semaphore.release();
         }
 
+        /**
+         * Adds a connection to the pool when all are in use, up to the max size.
+         */
+        private boolean grow() {
+            final int previous;
+            synchronized (this) {
+                previous = this.size;
+                if (previous >= this.maxSize) {
+                    return false;
+                }
+                this.size = previous + 1;
+            }
+
+            this.put(null);
+            Client.fireEvent(new ConnectionPoolResized(this.uri, previous, previous + 1, this.getActive()));
+            return true;
+        }
+
+        /**
+         * Closes the connections idle for longer than the idle timeout, an adaptive pool
+         * also gives up the connections it added under contention.
+         */
+        private void evict() {
+            final long expired = System.currentTimeMillis() - this.idleTimeout;
+
+            // takes all the available connections, the ones in use are left alone
+            final List<SocketConnection> available = new ArrayList<SocketConnection>();
+            while (this.semaphore.tryAcquire()) {
+                available.add(this.pool.pop());
+            }
+
+            final int previous = this.size;
+            int removed = 0;
+            for (int i = available.size() - 1; i >= 0; i--) { // oldest first
+                final SocketConnection connection = available.get(i);
+                if (connection != null && connection.lastUsed < expired) {
+                    connection.cleanUp();
+                    available.set(i, null);
+                }
+
+                synchronized (this) {
+                    if (available.get(i) == null && this.size > this.initialSize) {
+                        this.size--;
+                        removed++;
+                        available.remove(i);
+                    }
+                }
+            }
+
+            for (int i = available.size() - 1; i >= 0; i--) {
+                this.pool.push(available.get(i));
+                this.semaphore.release();
+            }
+
+            if (removed > 0) {
+                Client.fireEvent(new ConnectionPoolResized(this.uri, previous, previous - removed, this.getActive()));
+            }
+        }
+
+        private void waited(final long nanos) {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < WAIT_BOUNDS.length && millis >= WAIT_BOUNDS[bucket]) {
+                bucket++;
+            }
+            this.waits.incrementAndGet(bucket);
+        }
+
+        private void connected(final long nanos) {
+            this.connects.incrementAndGet();
+            this.connectTime.addAndGet(nanos);
+            if (nanos > this.maxConnectTime) {
+                this.maxConnectTime = nanos;
+            }
+        }
+
+        @Override
+        public String getUri() {
+            return this.uri.toString();
+        }
+
+        @Override
+        public int getSize() {
+            return this.size;
+        }
+
+        @Override
+        public int getMaxSize() {
+            return this.maxSize;
+        }
+
+        @Override
+        public int getActive() {
+            return Math.max(0, this.size - this.semaphore.availablePermits());
+        }
+
+        @Override
+        public int getIdle() {
+            int idle = 0;
+            synchronized (this.pool) {
+                for (final SocketConnection connection : this.pool) {
+                    if (connection != null) {
+                        idle++;
+                    }
+                }
+            }
+            return idle;
+        }
+
+        @Override
+        public long getTimeouts() {
+            return this.timeouts.get();
+        }
+
+        @Override
+        public long[] getWaitHistogramBounds() {
+            return WAIT_BOUNDS.clone();
+        }
+
+        @Override
+        public long[] getWaitHistogram() {
+            final long[] histogram = new long[this.waits.length()];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = this.waits.get(i);
+            }
+            return histogram;
+        }
+
+        @Override
+        public double getAverageConnectTime() {
+            final long count = this.connects.get();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(this.connectTime.get() / count) / 1000.;
+        }
+
+        @Override
+        public double getMaxConnectTime() {
+            return TimeUnit.NANOSECONDS.toMicros(this.maxConnectTime) / 1000.;
+        }
+
+        @Override
+        public void closeIdle() {
+            int available = 0;
+            while (this.semaphore.tryAcquire()) {
+                final SocketConnection connection = this.pool.pop();
+                if (connection != null) {
+                    connection.cleanUp();
+                }
+                available++;
+            }
+            for (int i = 0; i < available; i++) {
+                this.put(null);
+            }
+        }
+
         @Override
         public String toString() {
             return "Pool{" +
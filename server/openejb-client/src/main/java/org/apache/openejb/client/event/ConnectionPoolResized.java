@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.client.event;
+
+import java.net.URI;
+
+/**
+ * An adaptive connection pool grew under contention or shrank once its connections were idle.
+ */
+@Log(Log.Level.FINE)
+public class ConnectionPoolResized {
+
+    private final URI uri;
+    private final int previous;
+    private final int size;
+    private final int active;
+
+    public ConnectionPoolResized(final URI uri, final int previous, final int size, final int active) {
+        this.uri = uri;
+        this.previous = previous;
+        this.size = size;
+        this.active = active;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public int getPrevious() {
+        return previous;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolResized{" +
+            "uri=" + uri +
+            ", previous=" + previous +
+            ", size=" + size +
+            ", active=" + active +
+            '}';
+    }
+}
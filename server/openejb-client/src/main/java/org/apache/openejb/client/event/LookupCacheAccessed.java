@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.client.event;
+
+import java.net.URI;
+
+/**
+ * A lookup went through the lookup cache, see {@link org.apache.openejb.client.LookupCache}.
+ * The counters are the totals of the cache of this server.
+ */
+@Log(Log.Level.FINEST)
+public class LookupCacheAccessed {
+
+    private final URI server;
+    private final String name;
+    private final boolean hit;
+    private final long hits;
+    private final long misses;
+
+    public LookupCacheAccessed(final URI server, final String name, final boolean hit, final long hits, final long misses) {
+        this.server = server;
+        this.name = name;
+        this.hit = hit;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    public URI getServer() {
+        return server;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isHit() {
+        return hit;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRatio() {
+        final long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "LookupCacheAccessed{" +
+            "server=" + server +
+            ", name=" + name +
+            ", hit=" + hit +
+            ", hitRatio=" + getHitRatio() +
+            '}';
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.client.event;
+
+import java.net.URI;
+
+/**
+ * The lookup cache of a server was cleared, see {@link org.apache.openejb.client.LookupCache}.
+ */
+@Log(Log.Level.FINE)
+public class LookupCacheCleared {
+
+    private final URI server;
+    private final int size;
+    private final String reason;
+
+    public LookupCacheCleared(final URI server, final int size, final String reason) {
+        this.server = server;
+        this.size = size;
+        this.reason = reason;
+    }
+
+    public URI getServer() {
+        return server;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "LookupCacheCleared{" +
+            "server=" + server +
+            ", size=" + size +
+            ", reason='" + reason + "'" +
+            '}';
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.client.event;
+
+import java.net.URI;
+
+/**
+ * A server the least loaded connection strategy avoids until it recovers.
+ */
+@Log(Log.Level.WARNING)
+public class ServerEjected {
+
+    private final URI server;
+    private final int failures;
+    private final long duration;
+    private final double latency;
+
+    public ServerEjected(final URI server, final int failures, final long duration, final double latency) {
+        this.server = server;
+        this.failures = failures;
+        this.duration = duration;
+        this.latency = latency;
+    }
+
+    public URI getServer() {
+        return server;
+    }
+
+    /**
+     * @return the consecutive failures
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return how long the server is avoided in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the average response time of the server in milliseconds
+     */
+    public double getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerEjected{" +
+            "server=" + server +
+            ", failures=" + failures +
+            ", duration=" + duration +
+            "ms, latency=" + String.format("%.2f", latency) +
+            "ms}";
+    }
+}
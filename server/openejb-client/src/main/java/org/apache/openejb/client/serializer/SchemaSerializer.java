@@ -0,0 +1,926 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client.serializer;
+
+import org.apache.openejb.client.EjbObjectInputStream;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An {@link EJBDSerializer} encoding the parameters and results with a codec built once per class
+ * from its fields instead of the java serialization.
+ * <p/>
+ * Numbers use a variable length encoding, strings and class names are sent once per value and then
+ * referenced by their index. Supported values are the primitives and their wrappers, String, BigInteger,
+ * BigDecimal, Date, byte[], enums, arrays, the lists, sets and maps of java.util, the java.time values
+ * and the classes with a no-arg constructor whose fields are supported values. Static and transient
+ * fields are skipped. Objects are copied as a tree: shared references are duplicated and cycles rejected.
+ * Sorted collections are read with their natural ordering.
+ * <p/>
+ * Classes other than the built-in ones are only read when they match {@link #WHITELIST}, comma separated
+ * prefixes which default to <code>tomee.serialization.class.whitelist</code>; nothing matches when neither
+ * is set. Every class also goes through the {@link EjbObjectInputStream.BlacklistClassResolver}.
+ * Reading an object only calls its no-arg constructor, no readObject or readResolve method.
+ * <p/>
+ * Both sides need the same version of the classes, the fields of each class are checked with a hash
+ * when the class is first sent.
+ */
+public class SchemaSerializer implements EJBDSerializer {
+
+    public static final String WHITELIST = "openejb.ejbd.serializer.whitelist";
+
+    private static final int MAX_DEPTH = 256;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte CHAR = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte STRING = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte BIG_DECIMAL = 12;
+    private static final byte DATE = 13;
+    private static final byte BYTES = 14;
+    private static final byte ENUM = 15;
+    private static final byte ARRAY = 16;
+    private static final byte COLLECTION = 17;
+    private static final byte MAP = 18;
+    private static final byte TEMPORAL = 19;
+    private static final byte OBJECT = 20;
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+    private static final Map<String, Class<?>> BUILT_IN = new HashMap<String, Class<?>>();
+    // the only collections instantiated when reading
+    private static final Set<Class<?>> COLLECTIONS = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+        ArrayList.class, LinkedList.class, HashSet.class, LinkedHashSet.class, TreeSet.class,
+        HashMap.class, LinkedHashMap.class, TreeMap.class));
+
+    static {
+        for (final Class<?> type : Arrays.<Class<?>>asList(boolean.class, byte.class, short.class, char.class,
+            int.class, long.class, float.class, double.class)) {
+            PRIMITIVES.put(type.getName(), type);
+        }
+        for (final Class<?> type : Arrays.<Class<?>>asList(Object.class, Boolean.class, Byte.class, Short.class,
+            Character.class, Integer.class, Long.class, Float.class, Double.class, String.class,
+            BigInteger.class, BigDecimal.class, Date.class)) {
+            BUILT_IN.put(type.getName(), type);
+        }
+        for (final Class<?> type : COLLECTIONS) {
+            BUILT_IN.put(type.getName(), type);
+        }
+    }
+
+    private static final ClassValue<Codec> CODECS = new ClassValue<Codec>() {
+        @Override
+        protected Codec computeValue(final Class<?> type) {
+            return codec(type);
+        }
+    };
+
+    private final String[] whitelist;
+    private final EjbObjectInputStream.BlacklistClassResolver blacklist = new EjbObjectInputStream.BlacklistClassResolver() {
+    };
+
+    public SchemaSerializer() {
+        this(System.getProperty(WHITELIST, System.getProperty("tomee.serialization.class.whitelist", "")));
+    }
+
+    /**
+     * @param whitelist comma separated prefixes of the classes which can be read
+     */
+    public SchemaSerializer(final String whitelist) {
+        final List<String> prefixes = new ArrayList<String>();
+        for (final String prefix : whitelist.split(" *, *")) {
+            if (!prefix.trim().isEmpty()) {
+                prefixes.add(prefix.trim());
+            }
+        }
+        this.whitelist = prefixes.toArray(new String[prefixes.size()]);
+    }
+
+    @Override
+    public Serializable serialize(final Object o) {
+        final Writer writer = new Writer();
+        writer.value(o);
+        return writer.toByteArray();
+    }
+
+    /**
+     * @param clazz class of the value when it was written, only used to find the class loader
+     *              since collections can be read with another implementation
+     */
+    @Override
+    public Object deserialize(final Serializable o, final Class<?> clazz) {
+        if (!byte[].class.isInstance(o)) {
+            throw new IllegalArgumentException("Expected the bytes written by " + SchemaSerializer.class.getSimpleName() + ", got " + (o == null ? null : o.getClass().getName()));
+        }
+
+        final ClassLoader loader = clazz != null && clazz.getClassLoader() != null ? clazz.getClassLoader() : Thread.currentThread().getContextClassLoader();
+        final Reader reader = new Reader(byte[].class.cast(o), loader);
+        final Object value = reader.value();
+        if (reader.position != reader.buffer.length) {
+            throw new IllegalArgumentException("Unexpected data after the value, " + (reader.buffer.length - reader.position) + " bytes left");
+        }
+        return value;
+    }
+
+    private Class<?> load(final String name, final ClassLoader loader) {
+        final Class<?> primitive = PRIMITIVES.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+
+        this.blacklist.check(name);
+
+        if (name.startsWith("[")) {
+            final int dimensions = name.lastIndexOf('[') + 1;
+            if (name.charAt(dimensions) == 'L') {
+                this.load(name.substring(dimensions + 1, name.length() - 1), loader);
+            }
+            return forName(name, loader);
+        }
+
+        final Class<?> builtIn = BUILT_IN.get(name);
+        if (builtIn != null) {
+            return builtIn;
+        }
+        if (!name.startsWith("java.time.") && !this.isWhitelisted(name)) {
+            throw new SecurityException(name + " can't be read by " + SchemaSerializer.class.getSimpleName() + ", add it to " + WHITELIST);
+        }
+
+        return forName(name, loader);
+    }
+
+    private static Class<?> forName(final String name, final ClassLoader loader) {
+        try {
+            return Class.forName(name, false, loader);
+        } catch (final ClassNotFoundException e) {
+            throw new IllegalArgumentException("Can't load " + name, e);
+        }
+    }
+
+    private boolean isWhitelisted(final String name) {
+        for (final String prefix : this.whitelist) {
+            if ("*".equals(prefix) || name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Codec codec(final Class<?> type) {
+        if (Boolean.class == type) {
+            return new Codec(TRUE);
+        } else if (Byte.class == type) {
+            return new Codec(BYTE);
+        } else if (Short.class == type) {
+            return new Codec(SHORT);
+        } else if (Character.class == type) {
+            return new Codec(CHAR);
+        } else if (Integer.class == type) {
+            return new Codec(INT);
+        } else if (Long.class == type) {
+            return new Codec(LONG);
+        } else if (Float.class == type) {
+            return new Codec(FLOAT);
+        } else if (Double.class == type) {
+            return new Codec(DOUBLE);
+        } else if (String.class == type) {
+            return new Codec(STRING);
+        } else if (BigInteger.class == type) {
+            return new Codec(BIG_INTEGER);
+        } else if (BigDecimal.class == type) {
+            return new Codec(BIG_DECIMAL);
+        } else if (Date.class == type) {
+            return new Codec(DATE);
+        } else if (byte[].class == type) {
+            return new Codec(BYTES);
+        } else if (type.isEnum()) {
+            return new Codec(ENUM);
+        } else if (type.getSuperclass() != null && type.getSuperclass().isEnum()) {
+            // constant with a body
+            return CODECS.get(type.getSuperclass());
+        } else if (type.isArray()) {
+            return new Codec(ARRAY);
+        } else if (Map.class.isAssignableFrom(type)) {
+            return new CollectionCodec(MAP, COLLECTIONS.contains(type) ? type : SortedMap.class.isAssignableFrom(type) ? TreeMap.class : LinkedHashMap.class);
+        } else if (Collection.class.isAssignableFrom(type)) {
+            return new CollectionCodec(COLLECTION, COLLECTIONS.contains(type) ? type
+                : SortedSet.class.isAssignableFrom(type) ? TreeSet.class
+                : Set.class.isAssignableFrom(type) ? LinkedHashSet.class : ArrayList.class);
+        } else if (type.getName().startsWith("java.time.")) {
+            return new TemporalCodec(type);
+        } else if (type.getName().startsWith("java.") || type.getName().startsWith("javax.")) {
+            return new Codec(NULL, type.getName() + " is not supported by " + SchemaSerializer.class.getSimpleName());
+        }
+        return new ObjectCodec(type);
+    }
+
+    private static int zigzag(final int i) {
+        return (i << 1) ^ (i >> 31);
+    }
+
+    private static long zigzag(final long l) {
+        return (l << 1) ^ (l >> 63);
+    }
+
+    private static class Codec {
+
+        protected final byte tag;
+        protected final String error;
+
+        private Codec(final byte tag) {
+            this(tag, null);
+        }
+
+        private Codec(final byte tag, final String error) {
+            this.tag = tag;
+            this.error = error;
+        }
+
+        /**
+         * @return a hash of the fields, checked when the class is first read
+         */
+        protected int schema() {
+            return 0;
+        }
+    }
+
+    private static class CollectionCodec extends Codec {
+
+        // implementation used to read the values back
+        private final Class<?> implementation;
+
+        private CollectionCodec(final byte tag, final Class<?> implementation) {
+            super(tag);
+            this.implementation = implementation;
+        }
+    }
+
+    private static class TemporalCodec extends Codec {
+
+        private final Method parse;
+
+        private TemporalCodec(final Class<?> type) {
+            super(TEMPORAL, type.getName() + " is not supported by " + SchemaSerializer.class.getSimpleName());
+            Method method = null;
+            try {
+                method = type.getMethod("parse", CharSequence.class);
+                if (!Modifier.isStatic(method.getModifiers()) || method.getReturnType() != type) {
+                    method = null;
+                }
+            } catch (final NoSuchMethodException e) {
+                // not a value
+            }
+            this.parse = method;
+        }
+
+        private Object parse(final String text) {
+            try {
+                return this.parse.invoke(null, text);
+            } catch (final Exception e) {
+                throw new IllegalArgumentException("Can't parse " + text + " with " + this.parse, e);
+            }
+        }
+    }
+
+    private static class ObjectCodec extends Codec {
+
+        private final Class<?> type;
+        private final Constructor<?> constructor;
+        private final Slot[] slots;
+        private final int schema;
+
+        private ObjectCodec(final Class<?> type) {
+            super(OBJECT, type.getName() + " needs a no-arg constructor to be used by " + SchemaSerializer.class.getSimpleName());
+            this.type = type;
+
+            Constructor<?> noArg = null;
+            if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+                try {
+                    noArg = type.getDeclaredConstructor();
+                    noArg.setAccessible(true);
+                } catch (final NoSuchMethodException e) {
+                    // see error
+                }
+            }
+            this.constructor = noArg;
+
+            // super classes first, then by name so both sides agree on the order
+            final List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                hierarchy.add(0, c);
+            }
+
+            final List<Slot> slots = new ArrayList<Slot>();
+            int schema = 1;
+            for (final Class<?> c : hierarchy) {
+                final Field[] fields = c.getDeclaredFields();
+                Arrays.sort(fields, new Comparator<Field>() {
+                    @Override
+                    public int compare(final Field f1, final Field f2) {
+                        return f1.getName().compareTo(f2.getName());
+                    }
+                });
+                for (final Field field : fields) {
+                    final int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    slots.add(new Slot(field));
+                    schema = 31 * schema + (c.getName() + '.' + field.getName() + ':' + field.getType().getName()).hashCode();
+                }
+            }
+            this.slots = slots.toArray(new Slot[slots.size()]);
+            this.schema = schema;
+        }
+
+        @Override
+        protected int schema() {
+            return this.schema;
+        }
+
+        private Object newInstance() {
+            if (this.constructor == null) {
+                throw new IllegalArgumentException(this.error);
+            }
+            try {
+                return this.constructor.newInstance();
+            } catch (final Exception e) {
+                throw new IllegalArgumentException("Can't create a " + this.type.getName(), e);
+            }
+        }
+    }
+
+    private static class Slot {
+
+        private final Field field;
+        private final char kind;
+
+        private Slot(final Field field) {
+            this.field = field;
+            final Class<?> type = field.getType();
+            if (!type.isPrimitive()) {
+                this.kind = 'L';
+            } else if (boolean.class == type) {
+                this.kind = 'Z';
+            } else if (long.class == type) {
+                this.kind = 'J';
+            } else {
+                // B C D F I S like the descriptors
+                this.kind = Character.toUpperCase(type.getName().charAt(0));
+            }
+        }
+
+        private void write(final Writer writer, final Object o) throws IllegalAccessException {
+            switch (this.kind) {
+                case 'Z':
+                    writer.write(this.field.getBoolean(o) ? 1 : 0);
+                    break;
+                case 'B':
+                    writer.write(this.field.getByte(o));
+                    break;
+                case 'S':
+                    writer.varint(zigzag(this.field.getShort(o)));
+                    break;
+                case 'C':
+                    writer.varint(this.field.getChar(o));
+                    break;
+                case 'I':
+                    writer.varint(zigzag(this.field.getInt(o)));
+                    break;
+                case 'J':
+                    writer.varlong(zigzag(this.field.getLong(o)));
+                    break;
+                case 'F':
+                    writer.fixed(Float.floatToIntBits(this.field.getFloat(o)), 4);
+                    break;
+                case 'D':
+                    writer.fixed(Double.doubleToLongBits(this.field.getDouble(o)), 8);
+                    break;
+                default:
+                    writer.value(this.field.get(o));
+            }
+        }
+
+        private void read(final Reader reader, final Object o) throws IllegalAccessException {
+            switch (this.kind) {
+                case 'Z':
+                    this.field.setBoolean(o, reader.read() != 0);
+                    break;
+                case 'B':
+                    this.field.setByte(o, (byte) reader.read());
+                    break;
+                case 'S':
+                    this.field.setShort(o, (short) reader.zigzag());
+                    break;
+                case 'C':
+                    this.field.setChar(o, (char) reader.varint());
+                    break;
+                case 'I':
+                    this.field.setInt(o, reader.zigzag());
+                    break;
+                case 'J':
+                    this.field.setLong(o, reader.zigzagLong());
+                    break;
+                case 'F':
+                    this.field.setFloat(o, Float.intBitsToFloat((int) reader.fixed(4)));
+                    break;
+                case 'D':
+                    this.field.setDouble(o, Double.longBitsToDouble(reader.fixed(8)));
+                    break;
+                default:
+                    final Object value = reader.value();
+                    if (value != null && !this.field.getType().isInstance(value)) {
+                        throw new IllegalArgumentException("Can't set a " + value.getClass().getName() + " in " + this.field);
+                    }
+                    this.field.set(o, value);
+            }
+        }
+    }
+
+    private static class Writer {
+
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+        private byte[] buffer = new byte[128];
+        private int position;
+        private int depth;
+
+        private void value(final Object o) {
+            if (o == null) {
+                this.write(NULL);
+                return;
+            }
+            if (++this.depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("Object graph deeper than " + MAX_DEPTH + ", cycles are not supported");
+            }
+            try {
+                this.write(CODECS.get(o.getClass()), o);
+            } finally {
+                this.depth--;
+            }
+        }
+
+        private void write(final Codec codec, final Object o) {
+            switch (codec.tag) {
+                case TRUE:
+                    this.write(Boolean.class.cast(o) ? TRUE : FALSE);
+                    break;
+                case BYTE:
+                    this.write(BYTE);
+                    this.write(Byte.class.cast(o));
+                    break;
+                case SHORT:
+                    this.write(SHORT);
+                    this.varint(zigzag(Short.class.cast(o)));
+                    break;
+                case CHAR:
+                    this.write(CHAR);
+                    this.varint(Character.class.cast(o));
+                    break;
+                case INT:
+                    this.write(INT);
+                    this.varint(zigzag(Integer.class.cast(o)));
+                    break;
+                case LONG:
+                    this.write(LONG);
+                    this.varlong(zigzag(Long.class.cast(o)));
+                    break;
+                case FLOAT:
+                    this.write(FLOAT);
+                    this.fixed(Float.floatToIntBits(Float.class.cast(o)), 4);
+                    break;
+                case DOUBLE:
+                    this.write(DOUBLE);
+                    this.fixed(Double.doubleToLongBits(Double.class.cast(o)), 8);
+                    break;
+                case STRING:
+                    this.write(STRING);
+                    this.string(String.class.cast(o));
+                    break;
+                case BIG_INTEGER:
+                    this.write(BIG_INTEGER);
+                    this.bytes(BigInteger.class.cast(o).toByteArray());
+                    break;
+                case BIG_DECIMAL:
+                    final BigDecimal decimal = BigDecimal.class.cast(o);
+                    this.write(BIG_DECIMAL);
+                    this.bytes(decimal.unscaledValue().toByteArray());
+                    this.varint(zigzag(decimal.scale()));
+                    break;
+                case DATE:
+                    this.write(DATE);
+                    this.varlong(zigzag(Date.class.cast(o).getTime()));
+                    break;
+                case BYTES:
+                    this.write(BYTES);
+                    this.bytes(byte[].class.cast(o));
+                    break;
+                case ENUM:
+                    final Enum<?> constant = Enum.class.cast(o);
+                    this.write(ENUM);
+                    this.type(constant.getDeclaringClass(), 0);
+                    this.string(constant.name());
+                    break;
+                case ARRAY:
+                    final int length = Array.getLength(o);
+                    this.write(ARRAY);
+                    this.type(o.getClass().getComponentType(), 0);
+                    this.varint(length);
+                    for (int i = 0; i < length; i++) {
+                        this.value(Array.get(o, i));
+                    }
+                    break;
+                case COLLECTION:
+                    final Collection<?> collection = Collection.class.cast(o);
+                    this.write(COLLECTION);
+                    this.type(CollectionCodec.class.cast(codec).implementation, 0);
+                    this.varint(collection.size());
+                    for (final Object item : collection) {
+                        this.value(item);
+                    }
+                    break;
+                case MAP:
+                    final Map<?, ?> map = Map.class.cast(o);
+                    this.write(MAP);
+                    this.type(CollectionCodec.class.cast(codec).implementation, 0);
+                    this.varint(map.size());
+                    for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                        this.value(entry.getKey());
+                        this.value(entry.getValue());
+                    }
+                    break;
+                case TEMPORAL:
+                    if (TemporalCodec.class.cast(codec).parse == null) {
+                        throw new IllegalArgumentException(codec.error);
+                    }
+                    this.write(TEMPORAL);
+                    this.type(o.getClass(), 0);
+                    this.string(o.toString());
+                    break;
+                case OBJECT:
+                    final ObjectCodec object = ObjectCodec.class.cast(codec);
+                    if (object.constructor == null) {
+                        throw new IllegalArgumentException(object.error);
+                    }
+                    this.write(OBJECT);
+                    this.type(object.type, object.schema);
+                    try {
+                        for (final Slot slot : object.slots) {
+                            slot.write(this, o);
+                        }
+                    } catch (final IllegalAccessException e) {
+                        throw new IllegalArgumentException(e);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(codec.error);
+            }
+        }
+
+        /**
+         * A class is sent once per value as its name and fields hash, then as its index.
+         */
+        private void type(final Class<?> type, final int schema) {
+            final Integer index = this.classes.get(type);
+            if (index != null) {
+                this.varint(index + 1);
+                return;
+            }
+            this.classes.put(type, this.classes.size());
+            this.varint(0);
+            this.string(type.getName());
+            this.varint(zigzag(schema));
+        }
+
+        private void string(final String s) {
+            final Integer index = this.strings.get(s);
+            if (index != null) {
+                this.varint(index + 1);
+                return;
+            }
+            this.strings.put(s, this.strings.size());
+            this.varint(0);
+            this.bytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void bytes(final byte[] bytes) {
+            this.varint(bytes.length);
+            this.ensure(bytes.length);
+            System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+            this.position += bytes.length;
+        }
+
+        private void write(final int b) {
+            this.ensure(1);
+            this.buffer[this.position++] = (byte) b;
+        }
+
+        private void varint(final int i) {
+            this.ensure(5);
+            int value = i;
+            while ((value & ~0x7F) != 0) {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void varlong(final long l) {
+            this.ensure(10);
+            long value = l;
+            while ((value & ~0x7FL) != 0) {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void fixed(final long value, final int size) {
+            this.ensure(size);
+            for (int i = size - 1; i >= 0; i--) {
+                this.buffer[this.position++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        private void ensure(final int size) {
+            if (this.position + size > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + size));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, this.position);
+        }
+    }
+
+    private class Reader {
+
+        private final byte[] buffer;
+        private final ClassLoader loader;
+        private final List<String> strings = new ArrayList<String>();
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+        private int position;
+        private int depth;
+
+        private Reader(final byte[] buffer, final ClassLoader loader) {
+            this.buffer = buffer;
+            this.loader = loader;
+        }
+
+        private Object value() {
+            if (++this.depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("Object graph deeper than " + MAX_DEPTH);
+            }
+            try {
+                return this.read((byte) this.read());
+            } finally {
+                this.depth--;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object read(final byte tag) {
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case BYTE:
+                    return (byte) this.read();
+                case SHORT:
+                    return (short) this.zigzag();
+                case CHAR:
+                    return (char) this.varint();
+                case INT:
+                    return this.zigzag();
+                case LONG:
+                    return this.zigzagLong();
+                case FLOAT:
+                    return Float.intBitsToFloat((int) this.fixed(4));
+                case DOUBLE:
+                    return Double.longBitsToDouble(this.fixed(8));
+                case STRING:
+                    return this.string();
+                case BIG_INTEGER:
+                    return new BigInteger(this.bytes());
+                case BIG_DECIMAL:
+                    final BigInteger unscaled = new BigInteger(this.bytes());
+                    return new BigDecimal(unscaled, this.zigzag());
+                case DATE:
+                    return new Date(this.zigzagLong());
+                case BYTES:
+                    return this.bytes();
+                case ENUM: {
+                    final Class<?> type = this.type();
+                    if (!type.isEnum()) {
+                        throw new IllegalArgumentException(type.getName() + " is not an enum");
+                    }
+                    return Enum.valueOf(type.asSubclass(Enum.class), this.string());
+                }
+                case ARRAY: {
+                    final Class<?> component = this.type();
+                    final int length = this.count();
+                    final Object array = Array.newInstance(component, length);
+                    for (int i = 0; i < length; i++) {
+                        Array.set(array, i, this.value());
+                    }
+                    return array;
+                }
+                case COLLECTION: {
+                    final Collection<Object> collection = Collection.class.cast(this.newCollection(Collection.class));
+                    for (int i = this.count(); i > 0; i--) {
+                        collection.add(this.value());
+                    }
+                    return collection;
+                }
+                case MAP: {
+                    final Map<Object, Object> map = Map.class.cast(this.newCollection(Map.class));
+                    for (int i = this.count(); i > 0; i--) {
+                        final Object key = this.value();
+                        map.put(key, this.value());
+                    }
+                    return map;
+                }
+                case TEMPORAL: {
+                    final Class<?> type = this.type();
+                    final Codec codec = CODECS.get(type);
+                    if (codec.tag != TEMPORAL || TemporalCodec.class.cast(codec).parse == null) {
+                        throw new IllegalArgumentException(type.getName() + " is not a java.time value");
+                    }
+                    return TemporalCodec.class.cast(codec).parse(this.string());
+                }
+                case OBJECT: {
+                    final Class<?> type = this.type();
+                    final Codec codec = CODECS.get(type);
+                    if (codec.tag != OBJECT) {
+                        throw new IllegalArgumentException(type.getName() + " can't be read as an object");
+                    }
+                    final ObjectCodec object = ObjectCodec.class.cast(codec);
+                    final Object o = object.newInstance();
+                    try {
+                        for (final Slot slot : object.slots) {
+                            slot.read(this, o);
+                        }
+                    } catch (final IllegalAccessException e) {
+                        throw new IllegalArgumentException(e);
+                    }
+                    return o;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown tag " + tag + " at " + (this.position - 1));
+            }
+        }
+
+        private Object newCollection(final Class<?> api) {
+            final Class<?> type = this.type();
+            if (!COLLECTIONS.contains(type) || !api.isAssignableFrom(type)) {
+                throw new IllegalArgumentException(type.getName() + " is not a supported " + api.getSimpleName());
+            }
+            try {
+                return type.newInstance();
+            } catch (final Exception e) {
+                throw new IllegalArgumentException("Can't create a " + type.getName(), e);
+            }
+        }
+
+        private Class<?> type() {
+            final int index = this.varint();
+            if (index > 0) {
+                if (index > this.classes.size()) {
+                    throw new IllegalArgumentException("Unknown class " + index);
+                }
+                return this.classes.get(index - 1);
+            }
+
+            final Class<?> type = SchemaSerializer.this.load(this.string(), this.loader);
+            final int schema = this.zigzag();
+            if (schema != 0 && schema != CODECS.get(type).schema()) {
+                throw new IllegalArgumentException("The fields of " + type.getName() + " don't match the ones of the sender");
+            }
+            this.classes.add(type);
+            return type;
+        }
+
+        private String string() {
+            final int index = this.varint();
+            if (index > 0) {
+                if (index > this.strings.size()) {
+                    throw new IllegalArgumentException("Unknown string " + index);
+                }
+                return this.strings.get(index - 1);
+            }
+
+            final String s = new String(this.bytes(), StandardCharsets.UTF_8);
+            this.strings.add(s);
+            return s;
+        }
+
+        private byte[] bytes() {
+            final int length = this.count();
+            final byte[] bytes = Arrays.copyOfRange(this.buffer, this.position, this.position + length);
+            this.position += length;
+            return bytes;
+        }
+
+        /**
+         * @return a number of elements, each needs at least one byte so it can't exceed the remaining ones
+         */
+        private int count() {
+            final int count = this.varint();
+            if (count < 0 || count > this.buffer.length - this.position) {
+                throw new IllegalArgumentException("Invalid length " + count + " at " + this.position);
+            }
+            return count;
+        }
+
+        private int read() {
+            if (this.position >= this.buffer.length) {
+                throw new IllegalArgumentException("Unexpected end of data");
+            }
+            return this.buffer[this.position++] & 0xFF;
+        }
+
+        private int varint() {
+            return (int) this.varlong(5);
+        }
+
+        private long varlong(final int max) {
+            long value = 0;
+            for (int i = 0; i < max; i++) {
+                final int b = this.read();
+                value |= (long) (b & 0x7F) << (i * 7);
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Invalid variable length number at " + this.position);
+        }
+
+        private int zigzag() {
+            final int i = this.varint();
+            return (i >>> 1) ^ -(i & 1);
+        }
+
+        private long zigzagLong() {
+            final long l = this.varlong(10);
+            return (l >>> 1) ^ -(l & 1);
+        }
+
+        private long fixed(final int size) {
+            long value = 0;
+            for (int i = 0; i < size; i++) {
+                value = (value << 8) | this.read();
+            }
+            return value;
+        }
+    }
+}
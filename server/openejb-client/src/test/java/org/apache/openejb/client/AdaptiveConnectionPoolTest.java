@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AdaptiveConnectionPoolTest {
+
+    private ServerSocket server;
+
+    @Before
+    public void start() throws Exception {
+        server = new ServerSocket(0);
+        final Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                final List<Socket> sockets = new ArrayList<Socket>();
+                try {
+                    while (true) {
+                        sockets.add(server.accept());
+                    }
+                } catch (final IOException e) {
+                    // closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_SIZE, "1");
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_TIMEOUT, "100");
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_ADAPTIVE, "true");
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_MAX, "3");
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_IDLE, "200");
+        System.setProperty(SocketConnectionFactory.PROPERTY_POOL_JMX, "true");
+    }
+
+    @After
+    public void stop() throws Exception {
+        System.clearProperty(SocketConnectionFactory.PROPERTY_POOL_SIZE);
+        System.clearProperty(SocketConnectionFactory.PROPERTY_POOL_TIMEOUT);
+        System.clearProperty(SocketConnectionFactory.PROPERTY_POOL_ADAPTIVE);
+        System.clearProperty(SocketConnectionFactory.PROPERTY_POOL_MAX);
+        System.clearProperty(SocketConnectionFactory.PROPERTY_POOL_IDLE);
+        System.clearProperty(SocketConnectionFactory.PROPERTY_POOL_JMX);
+        server.close();
+    }
+
+    @Test
+    public void growAndShrink() throws Exception {
+        final URI uri = URI.create("ejbd://localhost:" + server.getLocalPort());
+        final SocketConnectionFactory factory = new SocketConnectionFactory();
+
+        final List<Connection> connections = new ArrayList<Connection>();
+        for (int i = 0; i < 3; i++) {
+            connections.add(factory.getConnection(uri));
+        }
+
+        final MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("openejb.client:type=ConnectionPool,uri=" + ObjectName.quote(uri.toString()));
+        Assert.assertEquals(3, mbeans.getAttribute(name, "Size"));
+        Assert.assertEquals(3, mbeans.getAttribute(name, "Active"));
+
+        try {
+            factory.getConnection(uri);
+            Assert.fail("the pool is at its max size");
+        } catch (final ConnectionPoolTimeoutException e) {
+            // ok
+        }
+        Assert.assertEquals(1L, mbeans.getAttribute(name, "Timeouts"));
+
+        for (final Connection connection : connections) {
+            connection.close();
+        }
+        Assert.assertEquals(3, mbeans.getAttribute(name, "Idle"));
+        Assert.assertTrue((Double) mbeans.getAttribute(name, "MaxConnectTime") > 0);
+
+        // the idle connections are closed and the pool goes back to its initial size
+        final long end = System.currentTimeMillis() + 5000;
+        while (((Integer) mbeans.getAttribute(name, "Size")) > 1 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(1, mbeans.getAttribute(name, "Size"));
+        Assert.assertEquals(0, mbeans.getAttribute(name, "Idle"));
+
+        long waits = 0;
+        for (final long count : (long[]) mbeans.getAttribute(name, "WaitHistogram")) {
+            waits += count;
+        }
+        Assert.assertEquals(4, waits);
+        mbeans.unregisterMBean(name);
+    }
+
+    @Test
+    public void notRegisteredByDefault() throws Exception {
+        System.clearProperty(SocketConnectionFactory.PROPERTY_POOL_JMX);
+        final URI uri = URI.create("ejbd://127.0.0.1:" + server.getLocalPort());
+        new SocketConnectionFactory().getConnection(uri).close();
+
+        final ObjectName name = new ObjectName("openejb.client:type=ConnectionPool,uri=" + ObjectName.quote(uri.toString()));
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
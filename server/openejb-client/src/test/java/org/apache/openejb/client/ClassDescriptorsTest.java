@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class ClassDescriptorsTest extends TestCase {
+
+    public void testRoundTrip() throws Exception {
+        final ClassDescriptors writer = new ClassDescriptors();
+        final ClassDescriptors reader = new ClassDescriptors();
+
+        for (int i = 0; i < 5; i++) {
+            final Order order = new Order(i);
+            assertEquals(order, roundTrip(writer, reader, order));
+        }
+    }
+
+    public void testDescriptorsSentOnce() throws Exception {
+        final ClassDescriptors writer = new ClassDescriptors();
+        final ClassDescriptors reader = new ClassDescriptors();
+
+        final int plain = plainSize(new Order(1));
+        final int first = size(writer, reader, new Order(1));
+        final int second = size(writer, reader, new Order(2));
+
+        // the first stream still describes all the classes, the next ones only use ids
+        assertTrue(first + " / " + plain, first >= plain);
+        assertTrue(second + " / " + plain, second < plain / 2);
+    }
+
+    public void testReset() throws Exception {
+        System.setProperty(ClassDescriptors.MAX_PROPERTY, "2");
+        final ClassDescriptors writer;
+        try {
+            writer = new ClassDescriptors();
+        } finally {
+            System.clearProperty(ClassDescriptors.MAX_PROPERTY);
+        }
+        final ClassDescriptors reader = new ClassDescriptors();
+
+        for (int i = 0; i < 5; i++) {
+            final Order order = new Order(i);
+            assertEquals(order, roundTrip(writer, reader, order));
+            assertEquals(new Date(i), roundTrip(writer, reader, new Date(i)));
+        }
+    }
+
+    public void testStreamNotReadBreaks() throws Exception {
+        final ClassDescriptors writer = new ClassDescriptors();
+        final ClassDescriptors reader = new ClassDescriptors();
+        assertEquals(new Order(1), roundTrip(writer, reader, new Order(1)));
+
+        // the reader gives up on a stream carrying a new descriptor
+        final ObjectOutputStream skipped = writer.newOutputStream(new ByteArrayOutputStream());
+        skipped.writeObject(new Date(1));
+        skipped.flush();
+
+        try {
+            roundTrip(writer, reader, new Order(2));
+            fail();
+        } catch (final StreamCorruptedException e) {
+            assertTrue(reader.isBroken());
+        }
+    }
+
+    private static Object roundTrip(final ClassDescriptors writer, final ClassDescriptors reader, final Object o) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = writer.newOutputStream(bytes);
+        out.writeObject(o);
+        out.flush();
+
+        final ObjectInputStream in = reader.newInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return in.readObject();
+    }
+
+    private static int size(final ClassDescriptors writer, final ClassDescriptors reader, final Object o) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = writer.newOutputStream(bytes);
+        out.writeObject(o);
+        out.flush();
+
+        // keeps the reader in sync
+        reader.newInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        return bytes.size();
+    }
+
+    private static int plainSize(final Object o) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(o);
+        out.flush();
+        return bytes.size();
+    }
+
+    public static class Order implements Serializable {
+
+        private final long id;
+        private final String customer;
+        private final List<Line> lines = new ArrayList<Line>();
+
+        public Order(final long id) {
+            this.id = id;
+            this.customer = "customer-" + id;
+            this.lines.add(new Line("book", 2));
+            this.lines.add(new Line("pen", 10));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Order)) {
+                return false;
+            }
+            final Order order = (Order) o;
+            return this.id == order.id && this.customer.equals(order.customer) && this.lines.equals(order.lines);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) this.id;
+        }
+    }
+
+    public static class Line implements Serializable {
+
+        private final String product;
+        private final int quantity;
+
+        public Line(final String product, final int quantity) {
+            this.product = product;
+            this.quantity = quantity;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Line)) {
+                return false;
+            }
+            final Line line = (Line) o;
+            return this.quantity == line.quantity && this.product.equals(line.product);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.quantity;
+        }
+    }
+}
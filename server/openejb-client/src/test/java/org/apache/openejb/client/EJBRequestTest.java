@@ -25,6 +25,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.Method;
 
@@ -42,6 +43,11 @@ public class EJBRequestTest extends TestCase {
     static interface FooObject extends EJBObject {
 
         String businessMethod(String param);
+
+        String tokenMethod(Token token);
+    }
+
+    public static class Token implements java.io.Serializable {
     }
 
     @Override
@@ -145,6 +151,142 @@ public class EJBRequestTest extends TestCase {
         invoke(requestMethod, method, args);
     }
 
+    public void testIndexedBusinessMethod() throws Exception {
+        final EJBMethodIndex index = EJBMethodIndex.of(ejb);
+        ejb.setIndex(7, 42, index);
+
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final EJBRequest request = new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, ejb, method, new Object[]{"hola mundo"}, null, null);
+
+        final EJBRequest actual = readIndexed(write(request), index, 42);
+
+        assertFalse(actual.getBody().isStaleIndex());
+        assertNull("DeploymentId", actual.getDeploymentId());
+        assertEquals("DeploymentCode", 7, actual.getDeploymentCode());
+        assertEquals("MethodInstance", method, actual.getMethodInstance());
+        assertEquals("MethodName", "businessMethod", actual.getMethodName());
+        assertEquals("InterfaceClass", FooObject.class, actual.getInterfaceClass());
+        assertEquals("MethodParamTypes", String.class, actual.getMethodParamTypes()[0]);
+        assertEquals("MethodParameters", "hola mundo", actual.getMethodParameters()[0]);
+    }
+
+    public void testStaleIndex() throws Exception {
+        final EJBMethodIndex index = EJBMethodIndex.of(ejb);
+        ejb.setIndex(7, 42, index);
+
+        final Method method = FooHome.class.getMethod("findByPrimaryKey", new Class[]{Integer.class});
+        final EJBRequest request = new EJBRequest(RequestMethodCode.EJB_HOME_FIND, ejb, method, new Object[]{4}, null, null);
+
+        // the server restarted
+        final EJBRequest actual = readIndexed(write(request), index, 43);
+        assertTrue(actual.getBody().isStaleIndex());
+        assertNull(actual.getMethodInstance());
+
+        // the client sends the names again
+        ejb.clearIndex();
+        final EJBRequest retried = readIndexed(write(request), index, 43);
+        assertFalse(retried.getBody().isStaleIndex());
+        assertEquals("DeploymentId", "FooBeanID", retried.getDeploymentId());
+        assertEquals("MethodInstance", method, retried.getMethodInstance());
+        assertEquals("MethodParameters", 4, retried.getMethodParameters()[0]);
+    }
+
+    public void testReusedCode() throws Exception {
+        final EJBMethodIndex index = EJBMethodIndex.of(ejb);
+        ejb.setIndex(7, 42, index);
+
+        final Method method = FooObject.class.getMethod("tokenMethod", new Class[]{Token.class});
+        final EJBRequest request = new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, ejb, method, new Object[]{new Token()}, null, null);
+
+        // the code now belongs to a bean which doesn't see the classes of the parameters
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(request))) {
+            @Override
+            protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (Token.class.getName().equals(desc.getName())) {
+                    throw new ClassNotFoundException(desc.getName());
+                }
+                return super.resolveClass(desc);
+            }
+        };
+        final EJBRequest actual = new EJBRequest();
+        actual.readExternal(in);
+        actual.getBody().setServerIndex(index, 43);
+        actual.getBody().readExternal(in);
+
+        assertTrue(actual.getBody().isStaleIndex());
+        assertNull(actual.getMethodInstance());
+    }
+
+    public void testNamesBeforeProtocol49() throws Exception {
+        ejb.setIndex(7, 42, EJBMethodIndex.of(ejb));
+
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final EJBRequest request = new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, ejb, method, new Object[]{"hola mundo"}, null, null);
+        final ProtocolMetaData metaData = new ProtocolMetaData("4.8");
+        request.setMetaData(metaData);
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(request)));
+        final EJBRequest actual = new EJBRequest();
+        actual.setMetaData(metaData);
+        actual.readExternal(in);
+        actual.getBody().readExternal(in);
+
+        assertEquals("DeploymentId", "FooBeanID", actual.getDeploymentId());
+        assertEquals("MethodInstance", method, actual.getMethodInstance());
+    }
+
+    public void testServerPinnedTo48() throws Exception {
+        // a 4.8 server never gives an index, the request must keep the format that server reads
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final EJBRequest request = new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, ejb, method, new Object[]{"hola mundo"}, null, null);
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(request)));
+        assertEquals(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD.getCode(), in.readByte());
+        assertEquals("FooBeanID", in.readObject());
+        in.readShort();
+        in.readObject();
+        in.readInt();
+
+        in.readByte();
+        assertNull(in.readObject());
+        assertNull(in.readObject());
+        assertEquals(FooObject.class, in.readObject());
+        assertEquals("businessMethod", in.readUTF());
+        assertEquals(1, in.readByte());
+    }
+
+    public void testMethodIndexOrder() throws Exception {
+        final EJBMethodIndex index = EJBMethodIndex.of(ejb);
+        assertEquals(index.getHash(), EJBMethodIndex.of(ejb).getHash());
+
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(i, index.indexOf(index.getMethod(i)));
+        }
+        assertEquals(-1, index.indexOf(Object.class.getMethod("toString")));
+        assertNull(index.getMethod(index.size()));
+
+        // the methods of EJBObject are numbered for the remote interface, not the home
+        assertEquals(FooObject.class, index.getInterface(index.indexOf(EJBObject.class.getMethod("remove"))));
+        assertEquals(FooHome.class, index.getInterface(index.indexOf(EJBHome.class.getMethod("getEJBMetaData"))));
+    }
+
+    private static byte[] write(final EJBRequest request) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        request.writeExternal(out);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    private static EJBRequest readIndexed(final byte[] bytes, final EJBMethodIndex index, final int stamp) throws IOException, ClassNotFoundException {
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        final EJBRequest actual = new EJBRequest();
+        actual.readExternal(in);
+        actual.getBody().setServerIndex(index, stamp);
+        actual.getBody().readExternal(in);
+        return actual;
+    }
+
     private void invoke(final RequestMethodCode requestMethod, final Method method, final Object[] args) throws IOException, ClassNotFoundException {
 
         final EJBRequest expected = new EJBRequest(requestMethod, ejb, method, args, null, null);
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The server only speaks HTTP/1.1, the client falls back to it.
+ */
+public class Http2ConnectionTest {
+    private HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void init() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(0), 5);
+        server.createContext("/ejb", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                final String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                requests.add(exchange.getRequestMethod() + " " + contentEncoding + " " + exchange.getRequestHeaders().getFirst("Authorization"));
+
+                exchange.getResponseHeaders().set("Accept-Encoding", "gzip");
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(200, -1);
+                    exchange.close();
+                    return;
+                }
+
+                final InputStream in = "gzip".equals(contentEncoding) ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody();
+                final byte[] body = read(in);
+
+                final boolean gzip = "gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+                if (gzip) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, 0);
+                final OutputStream out = gzip ? new GZIPOutputStream(exchange.getResponseBody()) : exchange.getResponseBody();
+                out.write(new StringBuilder(new String(body, "UTF-8")).reverse().toString().getBytes("UTF-8"));
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void close() {
+        server.stop(0);
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        assertFalse(new HttpConnectionFactory().getConnection(uri("")) instanceof Http2Connection);
+    }
+
+    @Test
+    public void call() throws Exception {
+        Assume.assumeTrue(Http2Connection.isEnabled(uri("?http2=true")));
+
+        final Connection connection = new HttpConnectionFactory().getConnection(uri("?http2=true&basic.username=test&basic.password=pwd"));
+        assertTrue(connection instanceof Http2Connection);
+        assertEquals("cba", call(connection, "abc"));
+
+        assertEquals("HEAD null Basic dGVzdDpwd2Q=", requests.get(0));
+        assertEquals("POST null Basic dGVzdDpwd2Q=", requests.get(1));
+    }
+
+    @Test
+    public void gzip() throws Exception {
+        Assume.assumeTrue(Http2Connection.isEnabled(uri("?http2=true")));
+
+        final HttpConnectionFactory factory = new HttpConnectionFactory();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("olleh" + i, call(factory.getConnection(uri("?http2=true&gzip=true")), i + "hello"));
+        }
+
+        // warmed up once, the requests are compressed since the server accepts it
+        assertEquals(4, requests.size());
+        assertEquals("HEAD null null", requests.get(0));
+        for (final String request : requests.subList(1, 4)) {
+            assertEquals("POST gzip null", request);
+        }
+    }
+
+    @Test
+    public void evictedEndpointIsShutDownOnceItsConnectionsAreClosed() throws Exception {
+        Assume.assumeTrue(Http2Connection.isEnabled(uri("?http2=true")));
+
+        final HttpConnectionFactory factory = new HttpConnectionFactory();
+        final Connection open = factory.getConnection(uri("?http2=true&endpoint=open"));
+        final Object endpoint = get(open, "endpoint");
+        for (int i = 0; i < 20; i++) {
+            factory.getConnection(uri("?http2=true&endpoint=" + i)).close();
+        }
+
+        final Map<?, ?> endpoints = (Map<?, ?>) get(null, "endpoints");
+        synchronized (endpoints) {
+            assertTrue(endpoints.size() <= 16);
+            assertFalse(endpoints.containsKey(open.getURI()));
+        }
+        assertFalse((Boolean) get(endpoint, "shutdown"));
+
+        open.close();
+        assertTrue((Boolean) get(endpoint, "shutdown"));
+
+        final Connection reopened = factory.getConnection(uri("?http2=true&endpoint=open"));
+        assertNotSame(endpoint, get(reopened, "endpoint"));
+        reopened.close();
+    }
+
+    private URI uri(final String query) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/ejb" + query);
+    }
+
+    private static String call(final Connection connection, final String message) throws IOException {
+        try {
+            final OutputStream out = connection.getOutputStream();
+            out.write(message.getBytes("UTF-8"));
+            out.flush();
+            return new String(read(connection.getInputStream()), "UTF-8");
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static Object get(final Object instance, final String name) throws Exception {
+        final Class<?> type = instance == null || instance instanceof Connection ? Http2Connection.class : instance.getClass();
+        final Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(instance);
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[256];
+        int read;
+        while ((read = in.read(buffer)) > -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LeastLoadedConnectionStrategyTest {
+
+    private final AtomicInteger down = new AtomicInteger();
+
+    @Before
+    public void register() {
+        ConnectionManager.registerFactory("test", new ConnectionFactory() {
+            @Override
+            public Connection getConnection(final URI uri) throws IOException {
+                return new TestConnection(uri);
+            }
+        });
+        ConnectionManager.registerFactory("down", new ConnectionFactory() {
+            @Override
+            public Connection getConnection(final URI uri) throws IOException {
+                down.incrementAndGet();
+                throw new ConnectException(uri.toString());
+            }
+        });
+    }
+
+    @After
+    public void unregister() {
+        ConnectionManager.unregisterFactory("test");
+        ConnectionManager.unregisterFactory("down");
+        Client.failed.remove();
+    }
+
+    @Test
+    public void slowServerAvoided() throws Exception {
+        final URI slow = URI.create("test://slow:4201");
+        final URI[] uris = {slow, URI.create("test://fast1:4201"), URI.create("test://fast2:4201")};
+        final ClusterMetaData cluster = new ClusterMetaData(System.currentTimeMillis(), uris);
+        final LeastLoadedConnectionStrategy strategy = new LeastLoadedConnectionStrategy();
+
+        // one call on each server so they all have a latency
+        for (final URI uri : uris) {
+            final Connection connection = strategy.connect(cluster, uri);
+            Thread.sleep(uri == slow ? 50 : 1);
+            connection.close();
+        }
+        Assert.assertTrue(strategy.getLatency(slow) >= 50);
+
+        int slowCalls = 0;
+        for (int i = 0; i < 100; i++) {
+            final Connection connection = strategy.connect(cluster, new ServerMetaData());
+            if (slow.equals(connection.getURI())) {
+                slowCalls++;
+            }
+            connection.close();
+        }
+        Assert.assertEquals(0, slowCalls);
+    }
+
+    @Test
+    public void inFlight() throws Exception {
+        final URI uri = URI.create("test://one:4201");
+        final ClusterMetaData cluster = new ClusterMetaData(System.currentTimeMillis(), uri);
+        final LeastLoadedConnectionStrategy strategy = new LeastLoadedConnectionStrategy();
+
+        final Connection first = strategy.connect(cluster, new ServerMetaData());
+        final Connection second = strategy.connect(cluster, new ServerMetaData());
+        Assert.assertEquals(2, strategy.getInFlight(uri));
+
+        first.close();
+        first.close();
+        second.discard();
+        Assert.assertEquals(0, strategy.getInFlight(uri));
+    }
+
+    @Test
+    public void failingServerEjected() throws Exception {
+        final URI[] uris = {URI.create("down://down:4201"), URI.create("test://up:4201")};
+        final ClusterMetaData cluster = new ClusterMetaData(System.currentTimeMillis(), uris);
+        final LeastLoadedConnectionStrategy strategy = new LeastLoadedConnectionStrategy();
+
+        for (int i = 0; i < 20; i++) {
+            Client.failed.remove();
+            final Connection connection = strategy.connect(cluster, new ServerMetaData());
+            Assert.assertEquals(uris[1], connection.getURI());
+            connection.close();
+        }
+
+        // at most the first selection tried the failing server
+        Assert.assertTrue(down.get() <= 1);
+    }
+
+    @Test
+    public void discardDoesNotEject() throws Exception {
+        final URI[] uris = {URI.create("test://a:4201"), URI.create("test://b:4201")};
+        final ClusterMetaData cluster = new ClusterMetaData(System.currentTimeMillis(), uris);
+        final LeastLoadedConnectionStrategy strategy = new LeastLoadedConnectionStrategy();
+
+        // a request failing on the client side (argument not serializable for instance)
+        final Connection discarded = strategy.connect(cluster, uris[0]);
+        discarded.discard();
+        Assert.assertEquals(0, strategy.getInFlight(uris[0]));
+
+        final Connection failed = strategy.connect(cluster, uris[1]);
+        LeastLoadedConnectionStrategy.transportFailed(failed);
+        failed.discard();
+        Assert.assertEquals(0, strategy.getInFlight(uris[1]));
+
+        for (int i = 0; i < 20; i++) {
+            Client.failed.remove();
+            final Connection connection = strategy.connect(cluster, new ServerMetaData());
+            Assert.assertEquals(uris[0], connection.getURI());
+            connection.close();
+        }
+    }
+
+    private static class TestConnection implements Connection {
+
+        private final URI uri;
+
+        private TestConnection(final URI uri) {
+            this.uri = uri;
+        }
+
+        @Override
+        public void discard() {
+        }
+
+        @Override
+        public URI getURI() {
+            return this.uri;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return new ByteArrayOutputStream();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client.serializer;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class SchemaSerializerTest extends TestCase {
+
+    private final SchemaSerializer serializer = new SchemaSerializer(SchemaSerializerTest.class.getPackage().getName() + ".");
+
+    public void testValues() throws Exception {
+        for (final Object value : Arrays.asList(null, true, (byte) -3, (short) 300, 'x', -1, Integer.MAX_VALUE, Long.MIN_VALUE,
+            1.5f, Math.PI, "\u00e9t\u00e9", new BigDecimal("-12.345"), new Date(), new byte[]{1, 2}, Status.CLOSED)) {
+            final Object read = this.roundTrip(value);
+            if (value instanceof byte[]) {
+                assertTrue(Arrays.equals((byte[]) value, (byte[]) read));
+            } else {
+                assertEquals(value, read);
+            }
+        }
+
+        assertTrue(Arrays.equals(new int[]{1, -2, 3}, (int[]) this.roundTrip(new int[]{1, -2, 3})));
+        assertTrue(Arrays.deepEquals(new String[][]{{"a"}, {"b", null}}, (Object[]) this.roundTrip(new String[][]{{"a"}, {"b", null}})));
+        assertEquals(new TreeSet<String>(Arrays.asList("b", "a")), this.roundTrip(new TreeSet<String>(Arrays.asList("b", "a"))));
+        assertEquals(Collections.singletonMap("k", 1L), this.roundTrip(Collections.singletonMap("k", 1L)));
+    }
+
+    public void testObject() throws Exception {
+        final Order order = Order.sample(1);
+        assertEquals(order, this.roundTrip(order));
+        assertEquals(Arrays.asList(order, Order.sample(2)), this.roundTrip(Arrays.asList(order, Order.sample(2))));
+    }
+
+    public void testTemporal() throws Exception {
+        final Class<?> localDate;
+        try {
+            localDate = Class.forName("java.time.LocalDate");
+        } catch (final ClassNotFoundException e) {
+            return; // before java 8
+        }
+        final Object date = localDate.getMethod("of", int.class, int.class, int.class).invoke(null, 2014, 7, 14);
+        assertEquals(date, this.roundTrip(date));
+    }
+
+    public void testNotWhitelisted() throws Exception {
+        final Serializable data = this.serializer.serialize(Order.sample(1));
+        try {
+            new SchemaSerializer("").deserialize(data, Order.class);
+            fail();
+        } catch (final SecurityException e) {
+            // ok
+        }
+
+        // built-in types don't need to be whitelisted
+        assertEquals(Arrays.asList("a", 1), new SchemaSerializer("").deserialize(this.serializer.serialize(Arrays.asList("a", 1)), List.class));
+    }
+
+    public void testCycle() throws Exception {
+        final List<Object> list = new ArrayList<Object>();
+        list.add(list);
+        try {
+            this.serializer.serialize(list);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    public void testCorrupted() throws Exception {
+        final byte[] data = (byte[]) this.serializer.serialize(Order.sample(1));
+        try {
+            this.serializer.deserialize(Arrays.copyOf(data, data.length - 3), Order.class);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    public void testSmallerThanSerialization() throws Exception {
+        final List<Order> orders = new ArrayList<Order>();
+        for (int i = 0; i < 10; i++) {
+            orders.add(Order.sample(i));
+        }
+
+        final ByteArrayOutputStream java = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(java);
+        out.writeObject(orders);
+        out.close();
+
+        final int schema = ((byte[]) this.serializer.serialize(orders)).length;
+        assertTrue(schema + " / " + java.size(), schema < java.size() / 2);
+    }
+
+    private Object roundTrip(final Object o) {
+        return this.serializer.deserialize(this.serializer.serialize(o), Object.class);
+    }
+
+    public static enum Status {
+        OPEN, CLOSED
+    }
+
+    public static class Order implements Serializable {
+
+        private long id;
+        private String customer;
+        private Status status;
+        private double total;
+        private boolean paid;
+        private transient String cache = "cache";
+        private List<Line> lines = new ArrayList<Line>();
+        private Map<String, String> attributes = new HashMap<String, String>();
+
+        public static Order sample(final int id) {
+            final Order order = new Order();
+            order.id = id;
+            order.customer = "customer";
+            order.status = Status.OPEN;
+            order.total = 12.5 * id;
+            order.paid = id % 2 == 0;
+            order.lines.add(new Line("book", 2));
+            order.lines.add(new Line("pen", 10));
+            order.attributes.put("channel", "web");
+            return order;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Order)) {
+                return false;
+            }
+            final Order order = (Order) o;
+            return this.id == order.id && this.customer.equals(order.customer) && this.status == order.status
+                && this.total == order.total && this.paid == order.paid
+                && this.lines.equals(order.lines) && this.attributes.equals(order.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) this.id;
+        }
+    }
+
+    public static class Line implements Serializable {
+
+        private String product;
+        private int quantity;
+
+        protected Line() {
+            // used by the serializer
+        }
+
+        public Line(final String product, final int quantity) {
+            this.product = product;
+            this.quantity = quantity;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Line)) {
+                return false;
+            }
+            final Line line = (Line) o;
+            return this.quantity == line.quantity && this.product.equals(line.product);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.quantity;
+        }
+    }
+}
@@ -16,11 +16,14 @@
  */
 package org.apache.openejb.server.ejbd;
 
+import org.apache.openejb.assembler.classic.event.AssemblerAfterApplicationCreated;
+import org.apache.openejb.assembler.classic.event.AssemblerBeforeApplicationDestroyed;
 import org.apache.openejb.client.ClusterMetaData;
 import org.apache.openejb.client.ClusterRequest;
 import org.apache.openejb.client.ClusterResponse;
 import org.apache.openejb.client.ProtocolMetaData;
 import org.apache.openejb.client.Response;
+import org.apache.openejb.observer.Observes;
 import org.apache.openejb.server.DiscoveryListener;
 import org.apache.openejb.util.Join;
 import org.apache.openejb.util.LogCategory;
@@ -39,6 +42,11 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
+ * Sends the cluster locations to the clients having an older version.
+ * <p/>
+ * Deploying or undeploying an application creates a new version too so the clients
+ * drop their cached lookups, see org.apache.openejb.client.LookupCache.
+ *
  * @version $Rev$ $Date$
  */
 public class ClusterRequestHandler extends RequestHandler implements DiscoveryListener {
@@ -134,6 +142,14 @@ public class ClusterRequestHandler extends RequestHandler implements DiscoveryLi
         }
     }
 
+    public void deployed(@Observes final AssemblerAfterApplicationCreated event) {
+        data.touch();
+    }
+
+    public void undeployed(@Observes final AssemblerBeforeApplicationDestroyed event) {
+        data.touch();
+    }
+
     private URI unwrap(final URI uri) throws URISyntaxException {
         return new URI(uri.getSchemeSpecificPart());
     }
@@ -212,10 +228,24 @@ public class ClusterRequestHandler extends RequestHandler implements DiscoveryLi
             }
         }
 
+        /**
+         * Same locations, new version.
+         */
+        public void touch() {
+            final Lock lock = sync.writeLock();
+            lock.lock();
+            try {
+                current.set(newClusterMetaData(set, current.get()));
+            } finally {
+                lock.unlock();
+            }
+        }
+
         private static ClusterMetaData newClusterMetaData(final Set set, final ClusterMetaData current) {
             final URI[] locations = new URI[set.size()];
             set.toArray(locations);
-            return new ClusterMetaData(System.currentTimeMillis(), locations);
+            // strictly increasing, clients only update when their version is older
+            return new ClusterMetaData(Math.max(System.currentTimeMillis(), current.getVersion() + 1), locations);
         }
 
         public ClusterMetaData current() {
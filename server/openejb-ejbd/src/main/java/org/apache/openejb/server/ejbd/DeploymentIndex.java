@@ -1,4 +1,4 @@
-/**
+/*
  * Licensed to the Apache Software Foundation (ASF) under one or more
  * contributor license agreements.  See the NOTICE file distributed with
  * this work for additional information regarding copyright ownership.
@@ -17,43 +17,136 @@
 package org.apache.openejb.server.ejbd;
 
 import org.apache.openejb.BeanContext;
+import org.apache.openejb.assembler.classic.event.AssemblerBeforeApplicationDestroyed;
+import org.apache.openejb.client.EJBMethodIndex;
 import org.apache.openejb.client.EJBRequest;
+import org.apache.openejb.observer.Observes;
 import org.apache.openejb.util.Messages;
 
 import java.rmi.RemoteException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * The dispatch table of the deployments, a request carrying a code instead of a deployment id
+ * is resolved with an array lookup.
+ * <p/>
+ * The remote views looked up by the clients get a code with their {@link EJBMethodIndex} so the requests
+ * only send the number of the view and of the method. The views of an application are removed when it
+ * is undeployed and their codes given to the next views, each view has its own stamp so the clients
+ * holding the code of a removed view send the names again.
+ */
 public class DeploymentIndex {
 
     Messages messages = new Messages("org.apache.openejb.server.ejbd");
 
-    BeanContext[] deployments = null;
+    // random so the stamps of two servers differ, incremented so the stamps of a reused code differ
+    private int stamp = new SecureRandom().nextInt();
+
+    private volatile View[] views;
+
+    private final Map<String, Integer> index = new HashMap<>();
+
+    // deployment id and interface names
+    private final Map<List<String>, View> byInterfaces = new HashMap<>();
 
-    Map index = null;
+    // codes of the undeployed views
+    private final Deque<Integer> free = new ArrayDeque<>();
 
-    @SuppressWarnings("unchecked")
     public DeploymentIndex(final BeanContext[] beanContexts) {
 
-        deployments = new BeanContext[beanContexts.length + 1];
+        views = new View[beanContexts.length + 1];
+
+        for (int i = 0; i < beanContexts.length; i++) {
+            views[i + 1] = new View(i + 1, nextStamp(), beanContexts[i], null);
+            index.put((String) beanContexts[i].getDeploymentID(), i + 1);
+        }
+    }
+
+    /**
+     * @param interfaces the views in the order of {@link EJBMethodIndex#interfaces}
+     * @return the view or null if all the codes of a short are used by deployed views
+     */
+    public synchronized View index(final BeanContext beanContext, final List<Class> interfaces) {
+        final List<String> key = new ArrayList<>(interfaces.size() + 1);
+        key.add((String) beanContext.getDeploymentID());
+        for (final Class view : interfaces) {
+            key.add(view.getName());
+        }
+
+        View view = byInterfaces.get(key);
+        if (view != null && view.beanContext == beanContext) {
+            return view;
+        }
+
+        final Integer reused = free.poll();
+        if (reused == null && views.length > Short.MAX_VALUE) {
+            return null;
+        }
 
-        System.arraycopy(beanContexts, 0, deployments, 1, beanContexts.length);
+        final int code = reused != null ? reused : views.length;
+        view = new View(code, nextStamp(), beanContext, new EJBMethodIndex(interfaces));
+        final View[] copy = code < views.length ? views.clone() : Arrays.copyOf(views, code + 1);
+        copy[code] = view;
+        views = copy;
+        byInterfaces.put(key, view);
+        index.put((String) beanContext.getDeploymentID(), code);
+        return view;
+    }
 
-        index = new HashMap(deployments.length);
-        for (int i = 1; i < deployments.length; i++) {
-            index.put(deployments[i].getDeploymentID(), i);
+    private int nextStamp() {
+        if (++stamp == 0) {
+            ++stamp;
         }
+        return stamp;
     }
 
-    public BeanContext getDeployment(final EJBRequest req) throws RemoteException {
+    public synchronized void undeployed(@Observes final AssemblerBeforeApplicationDestroyed event) {
+        if (event.getContext() == null) {
+            return;
+        }
 
-        final BeanContext info;
+        final List<BeanContext> beanContexts = event.getContext().getBeanContexts();
+        final View[] copy = views.clone();
+        for (int i = 1; i < copy.length; i++) {
+            if (copy[i] != null && beanContexts.contains(copy[i].beanContext)) {
+                copy[i] = null;
+                free.add(i);
+            }
+        }
+        views = copy;
 
-        final int deploymentCode = req.getDeploymentCode();
-        if (deploymentCode > 0 && deploymentCode < deployments.length) {
-            info = deployments[deploymentCode];
-            req.setDeploymentId((String) info.getDeploymentID());
-            return info;
+        for (final Iterator<View> it = byInterfaces.values().iterator(); it.hasNext(); ) {
+            if (beanContexts.contains(it.next().beanContext)) {
+                it.remove();
+            }
+        }
+        for (final BeanContext beanContext : beanContexts) {
+            index.remove(beanContext.getDeploymentID());
+        }
+    }
+
+    /**
+     * @return the view or null if the code is unknown, it comes from another server or the application was redeployed
+     */
+    public View getView(final int code) {
+        final View[] views = this.views;
+        return code > 0 && code < views.length ? views[code] : null;
+    }
+
+    public BeanContext getDeployment(final EJBRequest req) throws RemoteException {
+
+        final View view = getView(req.getDeploymentCode());
+        if (view != null) {
+            req.setDeploymentId((String) view.beanContext.getDeploymentID());
+            return view.beanContext;
         }
 
         if (req.getDeploymentId() == null) {
@@ -67,18 +160,15 @@ public class DeploymentIndex {
 
         req.setDeploymentCode(idCode);
 
-        if (req.getDeploymentCode() < 0 || req.getDeploymentCode() >= deployments.length) {
-            throw new RemoteException(messages.format("invalidDeploymentIdAndCode", req.getDeploymentId(), req.getDeploymentCode()));
-        }
-        return deployments[req.getDeploymentCode()];
+        return getDeployment(idCode);
     }
 
     public int getDeploymentIndex(final BeanContext deployment) {
         return getDeploymentIndex((String) deployment.getDeploymentID());
     }
 
-    public int getDeploymentIndex(final String deploymentID) {
-        final Integer idCode = (Integer) index.get(deploymentID);
+    public synchronized int getDeploymentIndex(final String deploymentID) {
+        final Integer idCode = index.get(deploymentID);
 
         return (idCode == null) ? -1 : idCode;
     }
@@ -92,7 +182,44 @@ public class DeploymentIndex {
     }
 
     public BeanContext getDeployment(final int index) {
-        return deployments[index];
+        final View view = getView(index);
+        return view == null ? null : view.beanContext;
     }
-}
 
+    public static class View {
+
+        private final int code;
+        private final int stamp;
+        private final BeanContext beanContext;
+        private final EJBMethodIndex methods;
+
+        private View(final int code, final int stamp, final BeanContext beanContext, final EJBMethodIndex methods) {
+            this.code = code;
+            this.stamp = stamp;
+            this.beanContext = beanContext;
+            this.methods = methods;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * @return the version of the code, sent with it to the clients
+         */
+        public int getStamp() {
+            return stamp;
+        }
+
+        public BeanContext getBeanContext() {
+            return beanContext;
+        }
+
+        /**
+         * @return the methods or null for the deployments given to the constructor
+         */
+        public EJBMethodIndex getMethods() {
+            return methods;
+        }
+    }
+}
@@ -19,7 +19,10 @@ package org.apache.openejb.server.ejbd;
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.OpenEJBRuntimeException;
 import org.apache.openejb.ProxyInfo;
+import org.apache.openejb.client.ClassDescriptors;
 import org.apache.openejb.client.ClusterResponse;
+import org.apache.openejb.client.EJBMetaDataImpl;
+import org.apache.openejb.client.EJBMethodIndex;
 import org.apache.openejb.client.EJBRequest;
 import org.apache.openejb.client.EjbObjectInputStream;
 import org.apache.openejb.client.FlushableGZIPOutputStream;
@@ -57,7 +60,7 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
     static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_SERVER_REMOTE, "org.apache.openejb.server.util.resources");
 
     private ClientObjectFactory clientObjectFactory;
-    //    DeploymentIndex deploymentIndex;
+    private DeploymentIndex deploymentIndex;
     private RequestHandler ejbHandler;
     private JndiRequestHandler jndiHandler;
     private RequestHandler authHandler;
@@ -75,7 +78,8 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
 
     public void init(final Properties props) throws Exception {
         containerSystem = SystemInstance.get().getComponent(ContainerSystem.class);
-        //        deploymentIndex = new DeploymentIndex(containerSystem.deployments());
+        deploymentIndex = new DeploymentIndex(new BeanContext[0]);
+        SystemInstance.get().addObserver(deploymentIndex);
 
         clientObjectFactory = new ClientObjectFactory(this, props);
 
@@ -84,6 +88,7 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
         authHandler = new AuthRequestHandler(this);
         logoutHandler = new LogoutRequestHandler(this);
         clusterHandler = new ClusterRequestHandler(this);
+        SystemInstance.get().addObserver(clusterHandler);
         gzip = "true".equalsIgnoreCase(props.getProperty("gzip", "false"));
 
         try {
@@ -183,13 +188,16 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
 
         try {
 
+            // class descriptors negotiated by the keep-alive connection, see KeepAliveServer
+            final ClassDescriptors descriptors = ClassDescriptors.of(rawIn);
+
             final RequestInfos.RequestInfo info = RequestInfos.info();
             info.setInputStream(countStreams ? new CountingInputStream(rawIn) : rawIn);
 
             // Read client Protocol Version
             final InputStream cis = info.getInputStream();
             clientProtocol.readExternal(cis);
-            ois = new EjbObjectInputStream(cis);
+            ois = null != descriptors ? descriptors.newInputStream(cis) : new EjbObjectInputStream(cis);
 
             // Read ServerMetaData
             final ServerMetaData serverMetaData = new ServerMetaData();
@@ -217,7 +225,7 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
 
                     try {
                         info.setOutputStream(countStreams ? new CountingOutputStream(rawOut) : rawOut);
-                        oos = new ObjectOutputStream(info.getOutputStream());
+                        oos = null != descriptors ? descriptors.newOutputStream(info.getOutputStream()) : new ObjectOutputStream(info.getOutputStream());
                         clusterResponse.setMetaData(clientProtocol);
                         clusterResponse.writeExternal(oos);
                         oos.flush();
@@ -269,7 +277,7 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
                 clientProtocol.writeExternal(cos);
                 cos.flush();
 
-                oos = new ObjectOutputStream(cos);
+                oos = null != descriptors ? descriptors.newOutputStream(cos) : new ObjectOutputStream(cos);
                 clusterHandler.processResponse(clusterResponse, oos, clientProtocol);
                 oos.flush();
 
@@ -347,7 +355,20 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
         }
     }
 
+    /**
+     * @return the deployment or null if the request carries a code this server doesn't know
+     */
     protected BeanContext getDeployment(final EJBRequest req) throws RemoteException {
+        if (req.getDeploymentId() == null && req.getDeploymentCode() > 0) {
+            final DeploymentIndex.View view = deploymentIndex.getView(req.getDeploymentCode());
+            if (view == null) {
+                return null;
+            }
+            req.setDeploymentId((String) view.getBeanContext().getDeploymentID());
+            req.getBody().setServerIndex(view.getMethods(), view.getStamp());
+            return view.getBeanContext();
+        }
+
         final String deploymentId = req.getDeploymentId();
         final BeanContext beanContext = containerSystem.getBeanContext(deploymentId);
         if (beanContext == null) {
@@ -356,6 +377,16 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
         return beanContext;
     }
 
+    /**
+     * Gives a code to the view so the requests of the clients can skip the names, see {@link EJBMethodIndex}.
+     */
+    void index(final BeanContext beanContext, final EJBMetaDataImpl metaData) {
+        final DeploymentIndex.View view = deploymentIndex.index(beanContext, EJBMethodIndex.interfaces(metaData));
+        if (view != null) {
+            metaData.setIndex(view.getCode(), view.getStamp(), view.getMethods());
+        }
+    }
+
     public Response processEjbRequest(final ObjectInputStream in, final ProtocolMetaData metaData) throws Exception {
         return ejbHandler.processRequest(in, metaData);
     }
@@ -422,6 +453,15 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
         return gzip;
     }
 
+    public void stop() {
+        if (clusterHandler != null) {
+            SystemInstance.get().removeObserver(clusterHandler);
+        }
+        if (deploymentIndex != null) {
+            SystemInstance.get().removeObserver(deploymentIndex);
+        }
+    }
+
     public EJBDSerializer getSerializer() {
         return serializer;
     }
@@ -128,6 +128,16 @@ class EjbRequestHandler extends RequestHandler {
                 return setResponseError(res, version, t, "Unkown error occured while retrieving deployment: " + req);
             }
 
+            if (di == null) {
+                failed = true;
+                try { // keeps the connection usable
+                    req.getBody().readExternal(in);
+                } catch (Throwable t) {
+                    // the classes of an unknown deployment are not found
+                }
+                return setResponseStale(res, version, req);
+            }
+
             try {
 
                 //Need to set this for deserialization of the body - Will always be reset by EjbDaemon
@@ -144,9 +154,18 @@ class EjbRequestHandler extends RequestHandler {
                 res.stop(EJBResponse.Time.DESERIALIZATION);
             } catch (Throwable t) {
                 failed = true;
+                if (req.getBody().isStaleIndex()) {
+                    // parameters of another bean sent with a reused code
+                    return setResponseStale(res, version, req);
+                }
                 return setResponseError(res, version, t, "Error caught during request body deserialization: " + req);
             }
 
+            if (req.getBody().isStaleIndex()) {
+                failed = true;
+                return setResponseStale(res, version, req);
+            }
+
             try {
                 call = CallContext.getCallContext();
                 call.setEJBRequest(req);
@@ -580,6 +599,15 @@ class EjbRequestHandler extends RequestHandler {
         res.setResponse(req.getVersion(), ResponseCodes.EJB_OK, null);
     }
 
+    private EJBResponse setResponseStale(final EJBResponse res, final byte version, final EJBRequest req) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Unknown deployment code or method number, the client will send the names - " + req);
+        }
+
+        res.setResponse(version, ResponseCodes.EJB_INDEX_STALE, null);
+        return res;
+    }
+
     private EJBResponse setResponseError(final EJBResponse res, final byte version, final Throwable error, final String message) {
 
         //This is fatal for the client, but not the server.
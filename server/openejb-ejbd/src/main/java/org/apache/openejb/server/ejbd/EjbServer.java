@@ -18,6 +18,7 @@ package org.apache.openejb.server.ejbd;
 
 import org.apache.openejb.ProxyInfo;
 import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.loader.Options;
 import org.apache.openejb.server.ServiceException;
 
 import javax.ejb.EJBHome;
@@ -49,7 +50,7 @@ public class EjbServer implements org.apache.openejb.server.ServerService, org.a
             props.setProperty("name", getName());
         }
         server.init(props);
-        keepAlive = new KeepAliveServer(this, server.isGzip());
+        keepAlive = new KeepAliveServer(this, server.isGzip(), new Options(props));
     }
 
     @Override
@@ -69,6 +70,7 @@ public class EjbServer implements org.apache.openejb.server.ServerService, org.a
     public void stop() throws ServiceException {
         if (null != keepAlive) {
             keepAlive.stop();
+            server.stop();
         } else {
             logNotInitialized();
         }
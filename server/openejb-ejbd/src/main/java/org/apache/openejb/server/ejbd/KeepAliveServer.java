@@ -17,7 +17,11 @@
 package org.apache.openejb.server.ejbd;
 
 import org.apache.openejb.client.FlushableGZIPOutputStream;
+import org.apache.openejb.client.ClassDescriptors;
 import org.apache.openejb.client.KeepAliveStyle;
+import org.apache.openejb.client.ProtocolMetaData;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.server.ServerService;
 import org.apache.openejb.server.ServiceException;
 import org.apache.openejb.server.ServicePool;
@@ -28,12 +32,18 @@ import org.apache.openejb.util.Logger;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -41,26 +51,60 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.GZIPInputStream;
 
 /**
+ * Keeps the ejbd connections open between requests.
+ * <p/>
+ * A client sending {@link KeepAliveStyle#MULTIPLEX} switches its connection to multiplexed mode:
+ * the connection then carries <code>[request id (int)][length (int)][request]</code> frames,
+ * each request is processed concurrently and its response sent back as soon as it is ready
+ * in a frame with the same id, so responses can come back out of order.
+ * A frame is limited to {@link #MULTIPLEX_MAX_FRAME} bytes, a larger one closes the connection,
+ * and a connection stops being read while {@link #MULTIPLEX_MAX_INFLIGHT} of its requests are processed.
+ * <p/>
+ * When the service accepts its connections through channels (<code>nio = true</code>) the idle connections
+ * are parked on a {@link SessionSelector} instead of holding a thread, the frames of the multiplexed
+ * connections are read by the selector too. Gzip connections always hold their thread.
+ * <p/>
+ * A client sending {@link KeepAliveStyle#DESCRIPTORS} keeps the class descriptors sent on its connection,
+ * the requests and responses then send them only once, see {@link ClassDescriptors}.
+ *
  * @version $Rev$ $Date$
  */
 public class KeepAliveServer implements ServerService {
 
+    public static final String MULTIPLEX_MAX_FRAME = "openejb.server.ejbd.multiplex.max-frame";
+    public static final String MULTIPLEX_MAX_INFLIGHT = "openejb.server.ejbd.multiplex.max-inflight";
+
+    private static final int DEFAULT_MAX_FRAME = 4 * 1024 * 1024;
+    private static final int DEFAULT_MAX_INFLIGHT = 64;
+
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_SERVER.createChild("keepalive"), KeepAliveServer.class);
     private final ServerService service;
     private final long timeout = (1000 * 10);
 
     private final AtomicBoolean running = new AtomicBoolean(false);
-    private final ConcurrentHashMap<Thread, Session> sessions = new ConcurrentHashMap<Thread, Session>();
+    private final ConcurrentHashMap<Socket, Session> sessions = new ConcurrentHashMap<Socket, Session>();
     private BlockingQueue<Runnable> threadQueue;
     private Timer timer;
     private final boolean gzip;
+    private final int workerCount;
+    private final int selectorCount;
+    private final long idleTimeout;
+    private final AtomicInteger nextSelector = new AtomicInteger();
+    private volatile SessionSelector[] selectors;
+    private volatile ThreadPoolExecutor workers;
 
     @SuppressWarnings("deprecation")
     public KeepAliveServer() {
@@ -73,8 +117,22 @@ public class KeepAliveServer implements ServerService {
     }
 
     public KeepAliveServer(final ServerService service, final boolean gzip) {
+        this(service, gzip, new Options(new Properties()));
+    }
+
+    /**
+     * @param options the service options, <code>workers</code> sizes the pool processing the requests
+     *                of the parked and multiplexed connections (<code>threads</code> by default so as many
+     *                requests run as in blocking mode), <code>selectors</code> is the number of
+     *                threads watching the parked connections and <code>idleTimeout</code> (ms) closes
+     *                the parked connections without requests
+     */
+    public KeepAliveServer(final ServerService service, final boolean gzip, final Options options) {
         this.service = service;
         this.gzip = gzip;
+        this.workerCount = Math.max(1, options.get("workers", options.get("threads", 150)));
+        this.selectorCount = Math.max(0, options.get("selectors", 1));
+        this.idleTimeout = options.get("idleTimeout", 600000L);
     }
 
     private void closeInactiveSessions() {
@@ -83,6 +141,16 @@ public class KeepAliveServer implements ServerService {
             return;
         }
 
+        final long now = System.currentTimeMillis();
+
+        if (this.idleTimeout > 0) {
+            for (final Session session : new ArrayList<Session>(this.sessions.values())) {
+                if (session.selected && session.inflight.get() == 0 && now - session.lastRequest.get() > this.idleTimeout) {
+                    session.end();
+                }
+            }
+        }
+
         final BlockingQueue<Runnable> queue = this.getQueue();
         if (queue == null) {
             return;
@@ -93,8 +161,6 @@ public class KeepAliveServer implements ServerService {
             return;
         }
 
-        final long now = System.currentTimeMillis();
-
         final List<Session> current = new ArrayList<Session>();
         current.addAll(this.sessions.values());
 
@@ -104,7 +170,7 @@ public class KeepAliveServer implements ServerService {
 
             if (l.tryLock()) {
                 try {
-                    if (now - session.lastRequest.get() > this.timeout) {
+                    if (now - session.lastRequest.get() > this.timeout && session.inflight.get() == 0) {
 
                         backlog--;
 
@@ -161,7 +227,7 @@ public class KeepAliveServer implements ServerService {
     private BlockingQueue<Runnable> getQueue() {
         if (this.threadQueue == null) {
             // this can be null if timer fires before service is fully initialized
-            final ServicePool incoming = Unwrappable.class.isInstance(service) ? Unwrappable.class.cast(service).unwrap(ServicePool.class) : null;
+            final ServicePool incoming = this.getServicePool();
             if (incoming == null) {
                 return null;
             }
@@ -171,12 +237,83 @@ public class KeepAliveServer implements ServerService {
         return this.threadQueue;
     }
 
+    private ServicePool getServicePool() {
+        return Unwrappable.class.isInstance(service) ? Unwrappable.class.cast(service).unwrap(ServicePool.class) : null;
+    }
+
+    /**
+     * The requests of the parked and multiplexed connections are processed by the workers.
+     * The caller can be a selector so it never waits: the queue is not bounded, a parked connection queues
+     * a single request and a multiplexed connection stops being read once it has too many frames in flight
+     * or the workers are saturated, see {@link Session#frame(int, byte[])}.
+     */
+    private ThreadPoolExecutor getWorkers() {
+        if (this.workers == null) {
+            synchronized (this) {
+                if (this.workers == null) {
+                    final ThreadPoolExecutor executor = new ThreadPoolExecutor(this.workerCount, this.workerCount, 1, TimeUnit.MINUTES,
+                        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                            private final AtomicInteger i = new AtomicInteger(0);
+
+                            @Override
+                            public Thread newThread(final Runnable r) {
+                                final Thread t = new Thread(r, "OpenEJB." + KeepAliveServer.this.getName() + ".worker." + i.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        });
+                    executor.allowCoreThreadTimeOut(true);
+                    this.workers = executor;
+                }
+            }
+        }
+        return this.workers;
+    }
+
+    private boolean saturated() {
+        return this.getWorkers().getQueue().size() >= this.workerCount;
+    }
+
+    /**
+     * @return the selector watching a new parked connection or null if parking is disabled
+     */
+    private SessionSelector getSelector() {
+        if (this.selectorCount == 0) {
+            return null;
+        }
+
+        if (this.selectors == null) {
+            synchronized (this) {
+                if (this.selectors == null) {
+                    final SessionSelector[] opened = new SessionSelector[this.selectorCount];
+                    try {
+                        for (int i = 0; i < opened.length; i++) {
+                            opened[i] = new SessionSelector("OpenEJB." + this.getName() + ".selector." + (i + 1));
+                        }
+                    } catch (IOException e) {
+                        logger.warning("Can't open the selectors, idle connections will hold their thread: " + e.getMessage());
+                        for (final SessionSelector selector : opened) {
+                            if (selector != null) {
+                                selector.stop();
+                            }
+                        }
+                        return null;
+                    }
+                    this.selectors = opened;
+                }
+            }
+        }
+
+        final SessionSelector[] current = this.selectors;
+        return current[(this.nextSelector.getAndIncrement() & Integer.MAX_VALUE) % current.length];
+    }
+
     public Session addSession(final Session session) {
-        return this.sessions.put(session.thread, session);
+        return this.sessions.put(session.socket, session);
     }
 
     public Session removeSession(final Session session) {
-        return this.sessions.remove(session.thread);
+        return this.sessions.remove(session.socket);
     }
 
     public class KeepAliveTimer extends TimerTask {
@@ -193,23 +330,39 @@ public class KeepAliveServer implements ServerService {
         }
     }
 
-    private class Session {
+    private class Session implements SessionSelector.Parked, SessionSelector.Frames {
 
-        private final Thread thread;
         private final KeepAliveServer kas;
         private final Lock lock = new ReentrantLock();
 
         // only used inside the Lock
         private final AtomicLong lastRequest;
+        // requests of a multiplexed connection being processed
+        private final AtomicInteger inflight = new AtomicInteger();
+        private final int maxInflight = Math.max(1, SystemInstance.get().getOptions().get(MULTIPLEX_MAX_INFLIGHT, DEFAULT_MAX_INFLIGHT));
+        // notified when a blocking multiplexed connection can read again
+        private final Object capacity = new Object();
+        // the reading was suspended because the workers were saturated
+        private volatile boolean throttled;
+        // reads the frames when the connection is multiplexed on a selector
+        private volatile SessionSelector.FrameReader reader;
+        private final Object writeLock = new Object();
         private final Socket socket;
+        private final boolean parkable;
+        // parked or multiplexed on a selector
+        private volatile boolean selected;
+        private volatile boolean nonBlocking;
         private InputStream in = null;
         private OutputStream out = null;
+        private DataOutputStream output = null;
+        // class descriptors of the connection, only set once negotiated
+        private ClassDescriptors descriptors = null;
 
         private Session(final KeepAliveServer kas, final Socket socket) {
             this.kas = kas;
             this.socket = socket;
             this.lastRequest = new AtomicLong(System.currentTimeMillis());
-            this.thread = Thread.currentThread();
+            this.parkable = !KeepAliveServer.this.gzip && socket.getChannel() != null;
         }
 
         @Override
@@ -224,8 +377,7 @@ public class KeepAliveServer implements ServerService {
         private void service() throws ServiceException, IOException {
             this.kas.addSession(this);
 
-            int i = -1;
-
+            boolean parked = false;
             try {
 
                 final Lock l1 = this.lock;
@@ -243,7 +395,28 @@ public class KeepAliveServer implements ServerService {
                     l1.unlock();
                 }
 
+                parked = this.serve();
+            } finally {
+                if (!parked) {
+                    this.end();
+                }
+            }
+        }
+
+        /**
+         * Processes the requests until the connection is closed or parked.
+         *
+         * @return true if the connection was parked until its next request
+         */
+        private boolean serve() throws ServiceException, IOException {
+            int i = -1;
+
+            try {
                 while (KeepAliveServer.this.running.get()) {
+                    if (this.parkable && this.in.available() == 0 && KeepAliveServer.this.park(this)) {
+                        return true;
+                    }
+
                     try {
                         i = in.read();
                     } catch (SocketException e) {
@@ -255,6 +428,13 @@ public class KeepAliveServer implements ServerService {
                         break;
                     }
                     final KeepAliveStyle style = KeepAliveStyle.values()[i];
+                    if (KeepAliveStyle.MULTIPLEX == style) {
+                        return this.multiplex();
+                    }
+                    if (KeepAliveStyle.DESCRIPTORS == style) {
+                        this.descriptors();
+                        continue;
+                    }
 
                     final Lock l2 = this.lock;
                     l2.lock();
@@ -274,8 +454,12 @@ public class KeepAliveServer implements ServerService {
                         }
 
                         try {
-                            KeepAliveServer.this.service.service(new Input(in), new Output(out));
+                            KeepAliveServer.this.service.service(new Input(in, this.descriptors), new Output(out));
                             out.flush();
+                            if (this.descriptors != null && this.descriptors.isBroken()) {
+                                // the client discards the connection too
+                                break;
+                            }
                         } catch (SocketException e) {
                             // Socket closed.
                             break;
@@ -289,12 +473,185 @@ public class KeepAliveServer implements ServerService {
                 throw new IOException("Unexpected byte " + i);
             } catch (InterruptedIOException e) {
                 Thread.interrupted();
-            } finally {
+            }
+            return false;
+        }
 
-                close();
+        @Override
+        public void readable() {
+            this.selected = false;
+            try {
+                KeepAliveServer.this.getWorkers().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        RequestInfos.initRequestInfo(Session.this.socket);
+                        try {
+                            if (!Session.this.serve()) {
+                                Session.this.end();
+                            }
+                        } catch (Throwable e) {
+                            logger.debug("Keep-alive connection failed: " + e.getMessage());
+                            Session.this.end();
+                        } finally {
+                            RequestInfos.clearRequestInfo();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // stopping
+                this.end();
+            }
+        }
 
-                this.kas.removeSession(this);
+        /**
+         * @return false if the connection has too many requests in flight or the workers are saturated,
+         * the reading resumes once one of its requests is processed
+         */
+        @Override
+        public boolean frame(final int id, final byte[] request) {
+            this.lastRequest.set(System.currentTimeMillis());
+            boolean accepting = this.inflight.incrementAndGet() < this.maxInflight;
+            if (accepting && KeepAliveServer.this.saturated()) {
+                this.throttled = true;
+                accepting = false;
             }
+            try {
+                KeepAliveServer.this.getWorkers().execute(new Frame(this, id, request));
+            } catch (RejectedExecutionException e) {
+                // stopping
+                this.inflight.decrementAndGet();
+                this.end();
+                return false;
+            }
+            return accepting;
+        }
+
+        private void processed() {
+            final int remaining = this.inflight.decrementAndGet();
+            if (this.throttled) {
+                this.throttled = false;
+            } else if (remaining != this.maxInflight - 1) {
+                return;
+            }
+
+            final SessionSelector.FrameReader current = this.reader;
+            if (current != null) {
+                current.resume();
+            } else {
+                synchronized (this.capacity) {
+                    this.capacity.notifyAll();
+                }
+            }
+        }
+
+        private void awaitCapacity() throws InterruptedIOException {
+            synchronized (this.capacity) {
+                while (this.inflight.get() >= this.maxInflight && KeepAliveServer.this.running.get()) {
+                    try {
+                        this.capacity.wait(1000);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("Interrupted waiting for the multiplexed requests");
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void failed(final Throwable e) {
+            if (KeepAliveServer.this.running.get() && !EOFException.class.isInstance(e)) {
+                logger.debug("Keep-alive connection failed: " + e.getMessage());
+            }
+            this.end();
+        }
+
+        private void descriptors() throws IOException {
+            final ProtocolMetaData protocol = new ProtocolMetaData();
+            protocol.readExternal(in);
+            if (!protocol.isAtLeast(4, 8)) {
+                throw new IOException("Class descriptors require the protocol 4.8, client uses " + protocol.getSpec());
+            }
+
+            out.write(KeepAliveStyle.DESCRIPTORS.ordinal());
+            new ProtocolMetaData().writeExternal(out);
+            out.flush();
+            this.descriptors = new ClassDescriptors();
+        }
+
+        /**
+         * Reads the frames of a multiplexed connection, on a selector when the connection can be parked
+         * otherwise in this thread until the connection is closed.
+         * The frames are processed by the workers.
+         *
+         * @return true if the frames are read by a selector
+         */
+        private boolean multiplex() throws IOException {
+            final ProtocolMetaData protocol = new ProtocolMetaData();
+            protocol.readExternal(in);
+            if (!protocol.isAtLeast(4, 7)) {
+                throw new IOException("Multiplexed connections require the protocol 4.7, client uses " + protocol.getSpec());
+            }
+
+            final DataInputStream input = new DataInputStream(in);
+            this.output = new DataOutputStream(out);
+            synchronized (this.writeLock) {
+                this.output.write(KeepAliveStyle.MULTIPLEX.ordinal());
+                new ProtocolMetaData().writeExternal(this.output);
+                this.output.flush();
+            }
+
+            final int maxFrame = SystemInstance.get().getOptions().get(MULTIPLEX_MAX_FRAME, DEFAULT_MAX_FRAME);
+            if (this.parkable && this.in.available() == 0) {
+                final SessionSelector selector = KeepAliveServer.this.getSelector();
+                if (selector != null) {
+                    this.selected = true;
+                    this.nonBlocking = true;
+                    this.reader = selector.reader(maxFrame, this);
+                    selector.frames(this.socket.getChannel(), this.reader);
+                    return true;
+                }
+            }
+
+            while (KeepAliveServer.this.running.get()) {
+                final int id;
+                try {
+                    id = input.readInt();
+                } catch (EOFException | SocketException e) {
+                    // client hung up
+                    break;
+                }
+
+                final int length = input.readInt();
+                if (length < 0 || length > maxFrame) {
+                    throw new IOException("Invalid frame length " + length + " for request " + id);
+                }
+                final byte[] request = new byte[length];
+                input.readFully(request);
+
+                if (!this.frame(id, request)) {
+                    this.awaitCapacity();
+                }
+            }
+            return false;
+        }
+
+        private void writeFrame(final int id, final ByteArrayOutputStream response) throws IOException {
+            synchronized (this.writeLock) {
+                if (this.nonBlocking) {
+                    final ByteBuffer buffer = ByteBuffer.allocate(8 + response.size());
+                    buffer.putInt(id).putInt(response.size()).put(response.toByteArray()).flip();
+                    SessionSelector.write(this.socket.getChannel(), buffer, Math.max(0, this.socket.getSoTimeout()));
+                } else {
+                    this.output.writeInt(id);
+                    this.output.writeInt(response.size());
+                    response.writeTo(this.output);
+                    this.output.flush();
+                }
+            }
+        }
+
+        private void end() {
+            this.close();
+            this.kas.removeSession(this);
         }
 
         private void close() {
@@ -324,6 +681,59 @@ public class KeepAliveServer implements ServerService {
         }
     }
 
+    private class Frame implements Runnable {
+
+        private final Session session;
+        private final int id;
+        private final byte[] request;
+
+        private Frame(final Session session, final int id, final byte[] request) {
+            this.session = session;
+            this.id = id;
+            this.request = request;
+        }
+
+        @Override
+        public void run() {
+            final ByteArrayOutputStream response = new ByteArrayOutputStream(1024);
+            RequestInfos.initRequestInfo(this.session.socket);
+            try {
+                KeepAliveServer.this.service.service(new ByteArrayInputStream(this.request), response);
+            } catch (Throwable e) {
+                // the response is incomplete or empty, the client fails this request only
+                logger.debug("Multiplexed request " + this.id + " failed: " + e.getMessage());
+            } finally {
+                RequestInfos.clearRequestInfo();
+            }
+
+            try {
+                this.session.writeFrame(this.id, response);
+            } catch (IOException e) {
+                // the client is gone
+                this.session.end();
+            } finally {
+                this.session.lastRequest.set(System.currentTimeMillis());
+                this.session.processed();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Frame{id=" + this.id + ", size=" + this.request.length + '}';
+        }
+    }
+
+    private boolean park(final Session session) {
+        final SessionSelector selector = this.getSelector();
+        if (selector == null) {
+            return false;
+        }
+
+        session.selected = true;
+        selector.park(session.socket.getChannel(), session);
+        return true;
+    }
+
     @Override
     public void service(final Socket socket) throws ServiceException, IOException {
         RequestInfos.initRequestInfo(socket);
@@ -374,6 +784,18 @@ public class KeepAliveServer implements ServerService {
             } catch (Throwable e) {
                 //Ignore
             }
+            synchronized (this) {
+                if (this.selectors != null) {
+                    for (final SessionSelector selector : this.selectors) {
+                        selector.stop();
+                    }
+                    this.selectors = null;
+                }
+                if (this.workers != null) {
+                    this.workers.shutdown();
+                    this.workers = null;
+                }
+            }
         }
     }
 
@@ -382,10 +804,22 @@ public class KeepAliveServer implements ServerService {
         this.service.init(props);
     }
 
-    public class Input extends java.io.FilterInputStream {
+    public class Input extends java.io.FilterInputStream implements ClassDescriptors.Holder {
+
+        private final ClassDescriptors descriptors;
 
         public Input(final InputStream in) {
+            this(in, null);
+        }
+
+        public Input(final InputStream in, final ClassDescriptors descriptors) {
             super(in);
+            this.descriptors = descriptors;
+        }
+
+        @Override
+        public ClassDescriptors getClassDescriptors() {
+            return this.descriptors;
         }
 
         @Override
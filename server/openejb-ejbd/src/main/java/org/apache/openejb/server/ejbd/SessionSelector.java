@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Watches the idle ejbd connections so they don't hold a thread between two requests.
+ * <p/>
+ * A parked connection is deregistered and put back in blocking mode as soon as its next request
+ * starts to arrive, the request is then read and processed by a worker thread.
+ * Multiplexed connections stay registered, their frames are read here and only complete
+ * frames are handed to the workers. The reading of a connection is suspended while it has
+ * too many frames in flight and resumed by {@link FrameReader#resume()}.
+ */
+class SessionSelector implements Runnable {
+
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_SERVER.createChild("keepalive"), SessionSelector.class);
+
+    interface Parked {
+        /**
+         * The channel is readable, it is deregistered and in blocking mode again.
+         */
+        void readable();
+
+        void failed(Throwable e);
+    }
+
+    interface Frames {
+        /**
+         * @return false to stop reading the connection until {@link FrameReader#resume()}
+         */
+        boolean frame(int id, byte[] request);
+
+        void failed(Throwable e);
+    }
+
+    private final Selector selector;
+    private final Queue<Runnable> registrations = new ConcurrentLinkedQueue<Runnable>();
+    private volatile boolean running = true;
+
+    SessionSelector(final String name) throws IOException {
+        this.selector = Selector.open();
+
+        final Thread thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void park(final SocketChannel channel, final Parked callback) {
+        this.register(channel, callback);
+    }
+
+    FrameReader reader(final int maxFrame, final Frames callback) {
+        return new FrameReader(maxFrame, callback);
+    }
+
+    void frames(final SocketChannel channel, final FrameReader reader) {
+        this.register(channel, reader);
+    }
+
+    private void register(final SocketChannel channel, final Object attachment) {
+        this.registrations.add(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    channel.configureBlocking(false);
+                    channel.register(SessionSelector.this.selector, SelectionKey.OP_READ, attachment);
+                } catch (final Exception e) {
+                    failed(attachment, e);
+                }
+            }
+        });
+        this.selector.wakeup();
+    }
+
+    void stop() {
+        this.running = false;
+        try {
+            this.selector.close();
+        } catch (final IOException e) {
+            //Ignore
+        }
+    }
+
+    @Override
+    public void run() {
+        final List<SelectionKey> readable = new ArrayList<SelectionKey>();
+        while (this.running) {
+            try {
+                this.selector.select();
+
+                Runnable registration;
+                while ((registration = this.registrations.poll()) != null) {
+                    registration.run();
+                }
+
+                final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.attachment() instanceof FrameReader) {
+                        FrameReader.class.cast(key.attachment()).read(key);
+                    } else {
+                        key.cancel();
+                        readable.add(key);
+                    }
+                }
+
+                if (!readable.isEmpty()) {
+                    // deregisters the cancelled keys so the channels can go back in blocking mode
+                    this.selector.selectNow();
+                    for (final SelectionKey key : readable) {
+                        final Parked parked = Parked.class.cast(key.attachment());
+                        try {
+                            key.channel().configureBlocking(true);
+                            parked.readable();
+                        } catch (final Exception e) {
+                            parked.failed(e);
+                        }
+                    }
+                    readable.clear();
+                }
+            } catch (final ClosedSelectorException e) {
+                break;
+            } catch (final Throwable e) {
+                logger.warning("Unexpected error selecting the ejbd connections: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void failed(final Object attachment, final Throwable e) {
+        if (attachment instanceof FrameReader) {
+            FrameReader.class.cast(attachment).callback.failed(e);
+        } else {
+            Parked.class.cast(attachment).failed(e);
+        }
+    }
+
+    /**
+     * Writes a buffer to a non blocking channel, waiting for the channel to be writable when the socket buffer is full.
+     */
+    static void write(final SocketChannel channel, final ByteBuffer buffer, final long timeout) throws IOException {
+        Selector writable = null;
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) == 0) {
+                    if (writable == null) {
+                        writable = Selector.open();
+                        channel.register(writable, SelectionKey.OP_WRITE);
+                    }
+                    if (writable.select(timeout) == 0) {
+                        throw new SocketTimeoutException("Can't write the response in " + timeout + "ms");
+                    }
+                    writable.selectedKeys().clear();
+                }
+            }
+        } finally {
+            if (writable != null) {
+                writable.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the <code>[id][length][request]</code> frames of a multiplexed connection.
+     */
+    class FrameReader {
+
+        private final int maxFrame;
+        private final Frames callback;
+        private final ByteBuffer header = ByteBuffer.allocate(8);
+        private volatile SelectionKey key;
+        private ByteBuffer request;
+        private int id;
+
+        private FrameReader(final int maxFrame, final Frames callback) {
+            this.maxFrame = maxFrame;
+            this.callback = callback;
+        }
+
+        /**
+         * Reads the connection again after {@link Frames#frame(int, byte[])} suspended it.
+         */
+        void resume() {
+            SessionSelector.this.registrations.add(new Runnable() {
+                @Override
+                public void run() {
+                    final SelectionKey current = FrameReader.this.key;
+                    if (current != null && current.isValid()) {
+                        current.interestOps(SelectionKey.OP_READ);
+                    }
+                }
+            });
+            SessionSelector.this.selector.wakeup();
+        }
+
+        private void read(final SelectionKey key) {
+            this.key = key;
+            final SocketChannel channel = SocketChannel.class.cast(key.channel());
+            try {
+                while (true) {
+                    if (this.request == null) {
+                        if (channel.read(this.header) < 0) {
+                            throw new EOFException();
+                        }
+                        if (this.header.hasRemaining()) {
+                            return;
+                        }
+
+                        this.header.flip();
+                        this.id = this.header.getInt();
+                        final int length = this.header.getInt();
+                        this.header.clear();
+                        if (length < 0 || length > this.maxFrame) {
+                            throw new IOException("Invalid frame length " + length + " for request " + this.id);
+                        }
+                        this.request = ByteBuffer.allocate(length);
+                    }
+
+                    if (this.request.hasRemaining() && channel.read(this.request) < 0) {
+                        throw new EOFException();
+                    }
+                    if (this.request.hasRemaining()) {
+                        return;
+                    }
+
+                    final byte[] frame = this.request.array();
+                    this.request = null;
+                    if (!this.callback.frame(this.id, frame)) {
+                        key.interestOps(0);
+                        return;
+                    }
+                }
+            } catch (final Throwable e) {
+                key.cancel();
+                this.callback.failed(e);
+            }
+        }
+    }
+}
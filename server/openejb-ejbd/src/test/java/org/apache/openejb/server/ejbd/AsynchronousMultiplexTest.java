@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import junit.framework.TestCase;
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.client.RemoteFuture;
+import org.apache.openejb.client.SocketConnectionFactory;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceDaemon;
+import org.apache.openejb.server.ServicePool;
+
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
+import javax.ejb.Remote;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous invocations answered by the multiplexed connections, without a thread per call.
+ */
+public class AsynchronousMultiplexTest extends TestCase {
+
+    public void test() throws Exception {
+        final EjbServer ejbServer = new EjbServer();
+        final KeepAliveServer keepAliveServer = new KeepAliveServer(ejbServer, false);
+
+        final Properties initProps = new Properties();
+        initProps.setProperty("openejb.deployments.classpath.include", "");
+        initProps.setProperty("openejb.deployments.classpath.filter.descriptors", "true");
+        OpenEJB.init(initProps, new ServerFederation());
+        ejbServer.init(new Properties());
+
+        final ServicePool pool = new ServicePool(keepAliveServer, 10, 5000, true);
+        final ServiceDaemon serviceDaemon = new ServiceDaemon(pool, 0, "localhost");
+        serviceDaemon.start();
+
+        System.setProperty(SocketConnectionFactory.PROPERTY_KEEPALIVE, "multiplex");
+        try {
+            final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+            final ConfigurationFactory config = new ConfigurationFactory();
+
+            final EjbJar ejbJar = new EjbJar();
+            ejbJar.addEnterpriseBean(new StatelessBean(AsyncEchoBean.class));
+            assembler.createApplication(config.configureApplication(ejbJar));
+
+            final Properties props = new Properties();
+            props.put(Context.INITIAL_CONTEXT_FACTORY, "org.apache.openejb.client.RemoteInitialContextFactory");
+            props.put(Context.PROVIDER_URL, "ejbd://127.0.0.1:" + serviceDaemon.getPort());
+            final AsyncEcho echo = (AsyncEcho) new InitialContext(props).lookup("AsyncEchoBeanRemote");
+
+            final int calls = 200;
+            final CountDownLatch latch = new CountDownLatch(calls);
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                final Future<String> future = echo.echo("message " + i);
+                assertTrue(future instanceof RemoteFuture);
+                ((RemoteFuture<String>) future).addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        latch.countDown();
+                    }
+                }, RemoteFuture.DIRECT);
+                futures.add(future);
+            }
+
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            for (int i = 0; i < calls; i++) {
+                assertEquals(new StringBuilder("message " + i).reverse().toString(), futures.get(i).get());
+            }
+        } finally {
+            System.clearProperty(SocketConnectionFactory.PROPERTY_KEEPALIVE);
+            serviceDaemon.stop();
+            OpenEJB.destroy();
+        }
+    }
+
+    public static class AsyncEchoBean implements AsyncEcho {
+
+        @Override
+        @Asynchronous
+        public Future<String> echo(final String s) {
+            return new AsyncResult<>(new StringBuilder(s).reverse().toString());
+        }
+    }
+
+    @Remote
+    public static interface AsyncEcho {
+
+        public Future<String> echo(String s);
+    }
+}
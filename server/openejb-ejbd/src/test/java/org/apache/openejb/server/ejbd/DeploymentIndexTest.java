@@ -20,6 +20,7 @@ import org.apache.openejb.AppContext;
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.ModuleContext;
 import org.apache.openejb.SystemException;
+import org.apache.openejb.assembler.classic.event.AssemblerBeforeApplicationDestroyed;
 import org.apache.openejb.client.EJBMetaDataImpl;
 import org.apache.openejb.client.EJBRequest;
 import org.apache.openejb.client.InterfaceType;
@@ -30,6 +31,8 @@ import org.junit.Test;
 
 import java.lang.reflect.Method;
 import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
 
 public class DeploymentIndexTest {
 
@@ -76,4 +79,29 @@ public class DeploymentIndexTest {
         deploymentIndex.getDeployment(request);
     }
 
+    @Test
+    public void testIndex() {
+        final List<Class> interfaces = Arrays.<Class>asList(Runnable.class);
+        final DeploymentIndex.View view = deploymentIndex.index(beanContext, interfaces);
+
+        Assert.assertEquals(3, view.getCode());
+        Assert.assertSame(view, deploymentIndex.index(beanContext, interfaces));
+        Assert.assertSame(view, deploymentIndex.getView(3));
+        Assert.assertEquals(1, view.getMethods().size());
+        Assert.assertNotEquals(0, view.getStamp());
+
+        // the same interfaces, even loaded again, give the same view
+        Assert.assertSame(view, deploymentIndex.index(beanContext, Arrays.<Class>asList(Runnable.class)));
+
+        beanContext.getModuleContext().getAppContext().getBeanContexts().add(beanContext);
+        deploymentIndex.undeployed(new AssemblerBeforeApplicationDestroyed(null, beanContext.getModuleContext().getAppContext()));
+
+        // the codes of the undeployed views are given again with another stamp
+        Assert.assertNull(deploymentIndex.getView(3));
+        final DeploymentIndex.View redeployed = deploymentIndex.index(beanContext, interfaces);
+        Assert.assertEquals(1, redeployed.getCode());
+        Assert.assertNotEquals(view.getStamp(), redeployed.getStamp());
+        Assert.assertSame(redeployed, deploymentIndex.getView(1));
+    }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import junit.framework.TestCase;
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.client.Client;
+import org.apache.openejb.client.JNDIContext;
+import org.apache.openejb.client.event.LookupCacheAccessed;
+import org.apache.openejb.client.event.LookupCacheCleared;
+import org.apache.openejb.client.event.Observes;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceDaemon;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lookups served by the client cache until an application is deployed.
+ */
+public class LookupCacheTest extends TestCase {
+
+    public void test() throws Exception {
+        final Properties initProps = new Properties();
+        initProps.setProperty("openejb.deployments.classpath.include", "");
+        initProps.setProperty("openejb.deployments.classpath.filter.descriptors", "true");
+        OpenEJB.init(initProps, new ServerFederation());
+
+        final EjbServer ejbServer = new EjbServer();
+        ejbServer.init(new Properties());
+        final ServiceDaemon serviceDaemon = new ServiceDaemon(ejbServer, 0, "localhost");
+        serviceDaemon.start();
+
+        final CacheObserver observer = new CacheObserver();
+        Client.addEventObserver(observer);
+        try {
+            final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+            final ConfigurationFactory config = new ConfigurationFactory();
+
+            final EjbJar ejbJar = new EjbJar("echo");
+            ejbJar.addEnterpriseBean(new StatelessBean(MultiplexTest.EchoBean.class));
+            assembler.createApplication(config.configureApplication(ejbJar));
+
+            final Properties props = new Properties();
+            props.put(Context.INITIAL_CONTEXT_FACTORY, "org.apache.openejb.client.RemoteInitialContextFactory");
+            props.put(Context.PROVIDER_URL, "ejbd://127.0.0.1:" + serviceDaemon.getPort());
+            props.put(JNDIContext.LOOKUP_CACHE_SIZE, "10");
+
+            final MultiplexTest.Echo echo = (MultiplexTest.Echo) new InitialContext(props).lookup("EchoBeanRemote");
+            assertEquals("cba", echo.echo("abc"));
+            assertEquals(0, observer.hits.get());
+
+            final MultiplexTest.Echo cached = (MultiplexTest.Echo) new InitialContext(props).lookup("EchoBeanRemote");
+            assertEquals("fed", cached.echo("def"));
+            assertEquals(1, observer.hits.get());
+            assertEquals(1, observer.misses.get());
+
+            // the next response carries the new cluster version
+            final EjbJar other = new EjbJar("other");
+            other.addEnterpriseBean(new StatelessBean("OtherBean", MultiplexTest.EchoBean.class));
+            assembler.createApplication(config.configureApplication(other));
+            assertEquals("ihg", cached.echo("ghi"));
+            assertEquals(1, observer.cleared.get());
+
+            new InitialContext(props).lookup("EchoBeanRemote");
+            assertEquals(2, observer.misses.get());
+        } finally {
+            Client.removeEventObserver(observer);
+            serviceDaemon.stop();
+            OpenEJB.destroy();
+        }
+    }
+
+    public static class CacheObserver {
+
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicInteger misses = new AtomicInteger();
+        private final AtomicInteger cleared = new AtomicInteger();
+
+        public void accessed(@Observes final LookupCacheAccessed event) {
+            (event.isHit() ? this.hits : this.misses).incrementAndGet();
+        }
+
+        public void cleared(@Observes final LookupCacheCleared event) {
+            this.cleared.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import junit.framework.TestCase;
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.client.KeepAliveStyle;
+import org.apache.openejb.client.ProtocolMetaData;
+import org.apache.openejb.client.SocketConnectionFactory;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceDaemon;
+import org.apache.openejb.server.ServicePool;
+
+import javax.ejb.Remote;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent invocations sharing the multiplexed connections.
+ */
+public class MultiplexTest extends TestCase {
+
+    private ServiceDaemon serviceDaemon;
+
+    @Override
+    protected void setUp() throws Exception {
+        final EjbServer ejbServer = new EjbServer();
+        final KeepAliveServer keepAliveServer = new KeepAliveServer(ejbServer, false);
+
+        final Properties initProps = new Properties();
+        initProps.setProperty("openejb.deployments.classpath.include", "");
+        initProps.setProperty("openejb.deployments.classpath.filter.descriptors", "true");
+        OpenEJB.init(initProps, new ServerFederation());
+        ejbServer.init(new Properties());
+
+        final ServicePool pool = new ServicePool(keepAliveServer, 10, 5000, true);
+        serviceDaemon = new ServiceDaemon(pool, 0, "localhost");
+        serviceDaemon.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        serviceDaemon.stop();
+        OpenEJB.destroy();
+    }
+
+    public void test() throws Exception {
+        System.setProperty(SocketConnectionFactory.PROPERTY_KEEPALIVE, "multiplex");
+        try {
+            final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+            final ConfigurationFactory config = new ConfigurationFactory();
+
+            final EjbJar ejbJar = new EjbJar();
+            ejbJar.addEnterpriseBean(new StatelessBean(EchoBean.class));
+            assembler.createApplication(config.configureApplication(ejbJar));
+
+            final String uri = "ejbd://127.0.0.1:" + serviceDaemon.getPort();
+            final Properties props = new Properties();
+            props.put(Context.INITIAL_CONTEXT_FACTORY, "org.apache.openejb.client.RemoteInitialContextFactory");
+            props.put(Context.PROVIDER_URL, uri);
+            final Echo echo = (Echo) new InitialContext(props).lookup("EchoBeanRemote");
+
+            final int threads = 20;
+            final CountDownLatch latch = new CountDownLatch(threads);
+            final Collection<Throwable> errors = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < threads; i++) {
+                final int id = i;
+                KeepAilveTest.thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 50; j++) {
+                                final String message = id + " - " + j;
+                                assertEquals(new StringBuilder(message).reverse().toString(), echo.echo(message));
+                            }
+                        } catch (final Throwable e) {
+                            errors.add(e);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }, true);
+            }
+
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            assertTrue(errors.toString(), errors.isEmpty());
+
+            // the pooled sockets would have been used if the handshake failed
+            assertTrue(SocketConnectionFactory.getMultiplexedChannels(URI.create(uri)) > 0);
+        } finally {
+            System.clearProperty(SocketConnectionFactory.PROPERTY_KEEPALIVE);
+        }
+    }
+
+    public void testFrameTooLarge() throws Exception {
+        try (final Socket socket = new Socket("localhost", serviceDaemon.getPort())) {
+            socket.setSoTimeout(10000);
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            final DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            out.write(KeepAliveStyle.MULTIPLEX.ordinal());
+            new ProtocolMetaData().writeExternal(out);
+            out.flush();
+            assertEquals(KeepAliveStyle.MULTIPLEX.ordinal(), in.read());
+            new ProtocolMetaData().readExternal(in);
+
+            // the server closes the connection instead of allocating the frame
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            assertEquals(-1, in.read());
+        }
+    }
+
+    public static class EchoBean implements Echo {
+
+        @Override
+        public String echo(final String s) {
+            return new StringBuilder(s).reverse().toString();
+        }
+    }
+
+    @Remote
+    public static interface Echo {
+
+        public String echo(String s);
+    }
+}
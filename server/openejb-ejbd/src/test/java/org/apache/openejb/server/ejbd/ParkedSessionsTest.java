@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import junit.framework.TestCase;
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceDaemon;
+import org.apache.openejb.server.ServicePool;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * More keep-alive connections than service threads, the idle ones wait on the selector.
+ */
+public class ParkedSessionsTest extends TestCase {
+
+    public void test() throws Exception {
+        final Properties initProps = new Properties();
+        initProps.setProperty("openejb.deployments.classpath.include", "");
+        initProps.setProperty("openejb.deployments.classpath.filter.descriptors", "true");
+        OpenEJB.init(initProps, new ServerFederation());
+
+        final Properties props = new Properties();
+        props.setProperty("bind", "127.0.0.1");
+        props.setProperty("port", "0");
+        props.setProperty("nio", "true");
+        props.setProperty("threadsCore", "2");
+        props.setProperty("threads", "2");
+
+        final ServiceDaemon serviceDaemon = new ServiceDaemon(new ServicePool(new EjbServer(), new Options(props)));
+        serviceDaemon.init(props);
+        serviceDaemon.start();
+
+        try {
+            final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+            final ConfigurationFactory config = new ConfigurationFactory();
+
+            final EjbJar ejbJar = new EjbJar();
+            ejbJar.addEnterpriseBean(new StatelessBean(MultiplexTest.EchoBean.class));
+            assembler.createApplication(config.configureApplication(ejbJar));
+
+            final int clients = 20;
+            final CountDownLatch latch = new CountDownLatch(clients);
+            final Collection<Throwable> errors = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < clients; i++) {
+                // one connection pool per client
+                final Properties clientProps = new Properties();
+                clientProps.put(Context.INITIAL_CONTEXT_FACTORY, "org.apache.openejb.client.RemoteInitialContextFactory");
+                clientProps.put(Context.PROVIDER_URL, "ejbd://127.0.0.1:" + serviceDaemon.getPort() + "?" + i);
+                final MultiplexTest.Echo echo = (MultiplexTest.Echo) new InitialContext(clientProps).lookup("EchoBeanRemote");
+
+                final int id = i;
+                KeepAilveTest.thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 5; j++) {
+                                final String message = id + " - " + j;
+                                assertEquals(new StringBuilder(message).reverse().toString(), echo.echo(message));
+                                Thread.sleep(100);
+                            }
+                        } catch (final Throwable e) {
+                            errors.add(e);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }, true);
+            }
+
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+            assertTrue(errors.toString(), errors.isEmpty());
+        } finally {
+            serviceDaemon.stop();
+            OpenEJB.destroy();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import org.apache.openejb.loader.SystemInstance;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The gzip negotiation of the ejb over http requests, see org.apache.openejb.client.Http2Connection.
+ * <p/>
+ * Every response advertises that gzip request bodies are accepted, the client compresses its requests
+ * once it saw it. The responses are compressed when the client asks for it with Accept-Encoding.
+ * A HEAD request only gets the headers, the clients send one to warm their connection up.
+ * <p/>
+ * An inflated request body can't exceed openejb.http.gzip.max-inflated-size bytes (64MB by default,
+ * a negative value disables the check) so a small compressed request can't fill the heap.
+ */
+final class ContentEncoding {
+
+    private static final String GZIP = "gzip";
+    private static final long MAX_INFLATED_SIZE = SystemInstance.get().getOptions().get("openejb.http.gzip.max-inflated-size", 64L * 1024 * 1024);
+
+    private ContentEncoding() {
+        // no-op
+    }
+
+    /**
+     * @return true if the request was a warm up which is already answered
+     */
+    static boolean negotiate(final HttpServletRequest request, final HttpServletResponse response) {
+        response.setHeader("Accept-Encoding", GZIP);
+        if ("HEAD".equals(request.getMethod())) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            return true;
+        }
+        return false;
+    }
+
+    static InputStream input(final HttpServletRequest request) throws IOException {
+        final InputStream in = request.getInputStream();
+        if (!GZIP.equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+            return in;
+        }
+        final InputStream inflated = new GZIPInputStream(in);
+        return MAX_INFLATED_SIZE < 0 ? inflated : new LimitedInputStream(inflated, MAX_INFLATED_SIZE);
+    }
+
+    static OutputStream output(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final OutputStream out = response.getOutputStream();
+        final String accepted = request.getHeader("Accept-Encoding");
+        if (accepted == null || !accepted.toLowerCase().contains(GZIP)) {
+            return out;
+        }
+        response.setHeader("Content-Encoding", GZIP);
+        return new GZIPOutputStream(out, 512);
+    }
+
+    /**
+     * Writes the end of the compressed response, the servlet container closes the stream.
+     */
+    static void finish(final OutputStream out) throws IOException {
+        if (out instanceof GZIPOutputStream) {
+            ((GZIPOutputStream) out).finish();
+            out.flush();
+        }
+    }
+
+    static final class LimitedInputStream extends FilterInputStream {
+        private final long max;
+        private long read;
+
+        LimitedInputStream(final InputStream in, final long max) {
+            super(in);
+            this.max = max;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(final long n) throws IOException {
+            read += n;
+            if (read > max) {
+                throw new IOException("Inflated request body exceeds " + max + " bytes");
+            }
+        }
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.openejb.server.httpd;
 
 import org.apache.openejb.server.ServerService;
 
+import java.io.OutputStream;
+
 /**
  * @version $Revision$ $Date$
  */
@@ -31,6 +33,12 @@ public class ServerServiceAdapter implements HttpListener {
     }
 
     public void onMessage(HttpRequest request, HttpResponse response) throws Exception {
-        service.service(request.getInputStream(), response.getOutputStream());
+        if (ContentEncoding.negotiate(request, response)) {
+            return;
+        }
+
+        final OutputStream out = ContentEncoding.output(request, response);
+        service.service(ContentEncoding.input(request), out);
+        ContentEncoding.finish(out);
     }
 }
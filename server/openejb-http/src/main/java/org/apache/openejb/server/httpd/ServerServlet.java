@@ -24,12 +24,12 @@ import org.apache.openejb.server.ejbd.EjbServer;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
-import javax.servlet.ServletInputStream;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 public class ServerServlet extends HttpServlet {
     private static final String ACTIVATED_INIT_PARAM = "activated";
@@ -53,11 +53,16 @@ public class ServerServlet extends HttpServlet {
             return;
         }
 
-        ServletInputStream in = request.getInputStream();
-        ServletOutputStream out = response.getOutputStream();
+        if (ContentEncoding.negotiate(request, response)) {
+            return;
+        }
+
+        InputStream in = ContentEncoding.input(request);
+        OutputStream out = ContentEncoding.output(request, response);
         try {
             RequestInfos.initRequestInfo(request);
             ejbServer.service(in, out);
+            ContentEncoding.finish(out);
         } catch (ServiceException e) {
             throw new ServletException("ServerService error: " + ejbServer.getClass().getName() + " -- " + e.getMessage(), e);
         } finally {
@@ -39,6 +39,7 @@ import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -69,6 +70,7 @@ public class ServiceDaemon extends UnwrappbleServerService {
     private String ip;
 
     private boolean secure;
+    private boolean nio;
     private StringTemplate discoveryUriFormat;
     private URI serviceUri;
     private Properties props;
@@ -125,6 +127,9 @@ public class ServiceDaemon extends UnwrappbleServerService {
 
         this.secure = options.get("secure", false);
 
+        // accepted sockets have a channel so idle connections can wait on a selector, ssl sockets can't
+        this.nio = !this.secure && options.get("nio", false);
+
         this.timeout = options.get("timeout", this.timeout);
 
         this.enabledCipherSuites = options.get("enabledCipherSuites", "SSL_DH_anon_WITH_RC4_128_MD5").split(",");
@@ -149,7 +154,7 @@ public class ServiceDaemon extends UnwrappbleServerService {
                     serverSocket = factory.createServerSocket(this.port, this.backlog, this.inetAddress);
                     ((SSLServerSocket) serverSocket).setEnabledCipherSuites(this.enabledCipherSuites);
                 } else {
-                    serverSocket = new ServerSocket();
+                    serverSocket = this.nio ? ServerSocketChannel.open().socket() : new ServerSocket();
                     serverSocket.setReuseAddress(true);
 
                     try {
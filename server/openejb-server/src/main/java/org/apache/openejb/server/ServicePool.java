@@ -61,7 +61,7 @@ public class ServicePool extends ServerServiceFilter {
         this(next, properties.get("threadsCore", 10), properties.get("threads", 150),
                 properties.get("queue", 0), properties.get("block", true),
                 properties.get("keepAliveTime", KEEP_ALIVE_TIME),
-                properties.get("forceSocketClose", true));
+                properties.get("forceSocketClose", !properties.get("nio", false))); // nio services keep idle sockets open
     }
 
     public ServicePool(final ServerService next, final int threads) {
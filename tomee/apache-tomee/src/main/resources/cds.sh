@@ -0,0 +1,112 @@
+#! /bin/sh
+
+# Licensed to the Apache Software Foundation (ASF) under one or more
+# contributor license agreements.  See the NOTICE file distributed with
+# this work for additional information regarding copyright ownership.
+# The ASF licenses this file to You under the Apache License, Version 2.0
+# (the "License"); you may not use this file except in compliance with
+# the License.  You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+#
+# Class data sharing (CDS) support.
+#
+#   cds.sh train    starts TomEE with the deployed applications, stops it once started
+#                   and dumps the loaded classes in $TOMEE_CDS_ARCHIVE
+#   cds.sh run      catalina.sh run using the archive
+#   cds.sh start    catalina.sh start using the archive
+#
+# TOMEE_CDS_ARCHIVE defaults to $CATALINA_BASE/work/tomee.jsa.
+#
+# The archive is created with -XX:ArchiveClassesAtExit (java 13+) which also covers
+# classes of the container and webapp classloaders when they come from jars.
+# Older JVMs only get a class list (-XX:DumpLoadedClassList) dumped for the JVM
+# and bootstrap classes. The archive must be recreated when the JVM, TomEE or
+# the applications change, the JVM ignores it otherwise.
+#
+
+PRG="$0"
+
+while [ -h "$PRG" ]; do
+  ls=`ls -ld "$PRG"`
+  link=`expr "$ls" : '.*-> \(.*\)$'`
+  if expr "$link" : '/.*' > /dev/null; then
+    PRG="$link"
+  else
+    PRG=`dirname "$PRG"`/"$link"
+  fi
+done
+
+PRGDIR=`dirname "$PRG"`
+[ -z "$CATALINA_HOME" ] && CATALINA_HOME=`cd "$PRGDIR/.." >/dev/null; pwd`
+[ -z "$CATALINA_BASE" ] && CATALINA_BASE="$CATALINA_HOME"
+
+if [ -r "$CATALINA_BASE/bin/setenv.sh" ]; then
+  . "$CATALINA_BASE/bin/setenv.sh"
+elif [ -r "$CATALINA_HOME/bin/setenv.sh" ]; then
+  . "$CATALINA_HOME/bin/setenv.sh"
+fi
+if [ -r "$CATALINA_HOME"/bin/setclasspath.sh ]; then
+  . "$CATALINA_HOME"/bin/setclasspath.sh
+else
+  echo "Cannot find $CATALINA_HOME/bin/setclasspath.sh"
+  echo "This file is needed to run this program"
+  exit 1
+fi
+
+[ -z "$TOMEE_CDS_ARCHIVE" ] && TOMEE_CDS_ARCHIVE="$CATALINA_BASE/work/tomee.jsa"
+
+hasJvmFlag() {
+  "$_RUNJAVA" -XX:+PrintFlagsFinal -version 2>/dev/null | grep -q " $1 "
+}
+
+case "$1" in
+  train)
+    mkdir -p `dirname "$TOMEE_CDS_ARCHIVE"`
+    rm -f "$TOMEE_CDS_ARCHIVE"
+    if hasJvmFlag ArchiveClassesAtExit; then
+      CATALINA_OPTS="$CATALINA_OPTS -XX:ArchiveClassesAtExit=$TOMEE_CDS_ARCHIVE"
+    elif hasJvmFlag DumpLoadedClassList; then
+      CATALINA_OPTS="$CATALINA_OPTS -XX:DumpLoadedClassList=$TOMEE_CDS_ARCHIVE.classlist"
+    else
+      echo "This JVM doesn't support class data sharing archives for applications"
+      exit 1
+    fi
+    CATALINA_OPTS="$CATALINA_OPTS -Dtomee.cds.training=true"
+    export CATALINA_OPTS
+    "$CATALINA_HOME"/bin/catalina.sh run || exit $?
+
+    if [ -r "$TOMEE_CDS_ARCHIVE.classlist" ]; then
+      # same classpath than catalina.sh otherwise the JVM ignores the archive
+      CDS_CLASSPATH="$CATALINA_HOME"/bin/bootstrap.jar
+      if [ -r "$CATALINA_BASE/bin/tomcat-juli.jar" ] ; then
+        CDS_CLASSPATH=$CDS_CLASSPATH:$CATALINA_BASE/bin/tomcat-juli.jar
+      else
+        CDS_CLASSPATH=$CDS_CLASSPATH:$CATALINA_HOME/bin/tomcat-juli.jar
+      fi
+      "$_RUNJAVA" -Xshare:dump -XX:SharedClassListFile="$TOMEE_CDS_ARCHIVE.classlist" \
+        -XX:SharedArchiveFile="$TOMEE_CDS_ARCHIVE" -cp "$CDS_CLASSPATH" || exit $?
+    fi
+    echo "Created $TOMEE_CDS_ARCHIVE"
+    ;;
+  run|start)
+    if [ -r "$TOMEE_CDS_ARCHIVE" ]; then
+      CATALINA_OPTS="$CATALINA_OPTS -XX:SharedArchiveFile=$TOMEE_CDS_ARCHIVE -Xshare:auto"
+      export CATALINA_OPTS
+    else
+      echo "No $TOMEE_CDS_ARCHIVE, run 'cds.sh train' first, starting without class data sharing"
+    fi
+    exec "$CATALINA_HOME"/bin/catalina.sh "$1"
+    ;;
+  *)
+    echo "Usage: cds.sh ( train | run | start )"
+    exit 1
+    ;;
+esac
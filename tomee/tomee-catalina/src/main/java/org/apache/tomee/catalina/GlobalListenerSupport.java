@@ -29,6 +29,7 @@ import org.apache.catalina.core.StandardServer;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.tomee.catalina.cluster.TomEEClusterListener;
 import org.apache.tomee.catalina.remote.TomEERemoteWebapp;
+import org.apache.tomee.catalina.warmup.WarmupReplayer;
 import org.apache.tomee.loader.TomcatHelper;
 
 import java.beans.PropertyChangeEvent;
@@ -46,6 +47,12 @@ import java.util.Map;
 public class GlobalListenerSupport implements PropertyChangeListener, LifecycleListener {
     private static final boolean REMOTE_SUPPORT = SystemInstance.get().getOptions().get("tomee.remote.support", false);
 
+    /**
+     * Training run for class data sharing (bin/cds.sh): once started the server is stopped
+     * so the JVM exits and dumps the classes loaded during the startup.
+     */
+    public static final String CDS_TRAINING = "tomee.cds.training";
+
     /**
      * The LifecycleEvent type for the "component init" event.
      * Tomcat 6.0.x only
@@ -153,6 +160,10 @@ public class GlobalListenerSupport implements PropertyChangeListener, LifecycleL
                 contextListener.start(standardServer);
             }
 
+            if (Lifecycle.AFTER_START_EVENT.equals(type) && SystemInstance.get().getOptions().get(CDS_TRAINING, false)) {
+                standardServer.stopAwait();
+            }
+
             if (Lifecycle.BEFORE_STOP_EVENT.equals(type)) {
                 TomcatHelper.setStopping(true);
                 final TomEEClusterListener tomEEClusterListener = SystemInstance.get().getComponent(TomEEClusterListener.class);
@@ -210,6 +221,7 @@ public class GlobalListenerSupport implements PropertyChangeListener, LifecycleL
         if (container instanceof StandardEngine) {
             final StandardEngine engine = (StandardEngine) container;
             engineAdded(engine);
+            WarmupReplayer.install(service);
         }
     }
 
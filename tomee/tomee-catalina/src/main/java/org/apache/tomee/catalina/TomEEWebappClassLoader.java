@@ -50,7 +50,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -87,11 +86,9 @@ public class TomEEWebappClassLoader extends ParallelWebappClassLoader {
     private ClassLoaderConfigurer configurer;
     private final boolean isEar;
     private final ClassLoader containerClassLoader;
-    private volatile boolean originalDelegate;
     private final int hashCode;
     private Collection<File> additionalRepos;
     private volatile boolean stopped = false;
-    private final Map<String, Boolean> filterTempCache = new HashMap<>(); // used only in sync block + isEar
     private volatile LazyStopStandardRoot webResourceRoot;
 
     public TomEEWebappClassLoader() {
@@ -99,7 +96,6 @@ public class TomEEWebappClassLoader extends ParallelWebappClassLoader {
         setJavaseClassLoader(getSystemClassLoader());
         containerClassLoader = ParentClassLoaderFinder.Helper.get();
         isEar = getInternalParent() != null && !getInternalParent().equals(containerClassLoader) && defaultEarBehavior();
-        originalDelegate = getDelegate();
     }
 
     public TomEEWebappClassLoader(final ClassLoader parent) {
@@ -108,7 +104,6 @@ public class TomEEWebappClassLoader extends ParallelWebappClassLoader {
         setJavaseClassLoader(getSystemClassLoader());
         containerClassLoader = ParentClassLoaderFinder.Helper.get();
         isEar = getInternalParent() != null && !getInternalParent().equals(containerClassLoader) && defaultEarBehavior();
-        originalDelegate = getDelegate();
     }
 
     public ClassLoader getInternalParent() {
@@ -121,12 +116,6 @@ public class TomEEWebappClassLoader extends ParallelWebappClassLoader {
         return super.hashCode();
     }
 
-    @Override
-    public void setDelegate(final boolean delegate) {
-        this.delegate = delegate;
-        this.originalDelegate = delegate;
-    }
-
     @Override
     public void stop() throws LifecycleException {
         // in our destroyapplication method we need a valid classloader to TomcatWebAppBuilder.afterStop()
@@ -140,6 +129,8 @@ public class TomEEWebappClassLoader extends ParallelWebappClassLoader {
         return additionalRepos;
     }
 
+    // no instance lock there: the delegation is computed per call instead of toggling the delegate/javaseClassLoader
+    // fields around super.loadClass() so only the class loading lock of the name is used (parallel capable loader)
     @Override
     public Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
         if ("org.apache.openejb.hibernate.OpenEJBJtaPlatform".equals(name)
@@ -150,72 +141,110 @@ public class TomEEWebappClassLoader extends ParallelWebappClassLoader {
                 || "org.apache.openejb.eclipselink.JTATransactionController".equals(name)
                 || "org.apache.tomee.mojarra.TomEEInjectionProvider".equals(name)) {
             // don't load them from system classloader (breaks all in embedded mode and no sense in other cases)
-            synchronized (this) {
-                final ClassLoader old = getJavaseClassLoader();
-                setJavaseClassLoader(NoClassClassLoader.INSTANCE);
-                delegate = false;
-                try {
-                    return super.loadClass(name, resolve);
-                } finally {
-                    setJavaseClassLoader(old);
-                    setDelegate(originalDelegate);
-                }
-            }
+            return loadWithDelegation(name, resolve, false, false);
         }
 
         // avoid to redefine classes from server in this classloader is it not already loaded
         if (URLClassLoaderFirst.shouldDelegateToTheContainer(this, name)) { // dynamic validation handling overriding
             try {
                 return OpenEJB.class.getClassLoader().loadClass(name); // we could use containerClassLoader but this is server loader so cut it even more
-            } catch (final ClassNotFoundException e) {
-                synchronized (this) {
-                    return super.loadClass(name, resolve);
+            } catch (final ClassNotFoundException | NoClassDefFoundError e) {
+                return super.loadClass(name, resolve);
+            }
+        } else if (name.startsWith("javax.faces.") || name.startsWith("org.apache.webbeans.jsf")) {
+            return delegate ? loadWithDelegation(name, resolve, false, true) : super.loadClass(name, resolve);
+        }
+        if (isEar && !filter(name, true)) {
+            if (URLClassLoaderFirst.class.isInstance(getInternalParent())) { // true
+                final URLClassLoaderFirst urlClassLoaderFirst = URLClassLoaderFirst.class.cast(getInternalParent());
+                Class<?> c = urlClassLoaderFirst.findAlreadyLoadedClass(name);
+                if (c != null) {
+                    return c;
                 }
-            } catch (final NoClassDefFoundError ncdfe) {
-                synchronized (this) {
-                    return super.loadClass(name, resolve);
+                c = urlClassLoaderFirst.loadInternal(name, resolve);
+                if (c != null) {
+                    return c;
                 }
             }
-        } else if (name.startsWith("javax.faces.") || name.startsWith("org.apache.webbeans.jsf")) {
-            synchronized (this) {
-                delegate = false;
+            return loadWithDelegation(name, resolve, getResource(name.replace('.', '/') + CLASS_EXTENSION) == null, true);
+        }
+        return super.loadClass(name, resolve);
+    }
+
+    // same lookup order and checks than WebappClassLoaderBase#loadClass() but with an explicit delegation
+    private Class<?> loadWithDelegation(final String name, final boolean resolve,
+                                        final boolean parentFirst, final boolean useJavaseLoader) throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            checkStateForClassLoading(name);
+
+            Class<?> clazz = findLoadedClass0(name);
+            if (clazz == null) {
+                clazz = findLoadedClass(name);
+            }
+            if (clazz != null) {
+                if (resolve) {
+                    resolveClass(clazz);
+                }
+                return clazz;
+            }
+
+            if (useJavaseLoader) {
+                final ClassLoader javaseLoader = getJavaseClassLoader();
+                if (javaseLoader != null && javaseLoader.getResource(name.replace('.', '/') + CLASS_EXTENSION) != null) {
+                    clazz = loadFrom(javaseLoader, name);
+                }
+            }
+            if (clazz == null) {
+                checkPackageAccess(name);
+            }
+            if (clazz == null && parentFirst) {
+                clazz = loadFrom(getInternalParent(), name);
+            }
+            if (clazz == null) {
                 try {
-                    return super.loadClass(name, resolve);
-                } finally {
-                    setDelegate(originalDelegate);
+                    clazz = findClass(name);
+                } catch (final ClassNotFoundException ignored) {
+                    // no-op
                 }
             }
+            if (clazz == null && !parentFirst) {
+                clazz = loadFrom(getInternalParent(), name);
+            }
+            if (clazz == null) {
+                throw new ClassNotFoundException(name);
+            }
+            if (resolve) {
+                resolveClass(clazz);
+            }
+            return clazz;
         }
-        synchronized (this) { // TODO: rework it to avoid it and get aligned on Java 7 classloaders (but not a big issue)
-            if (isEar) {
-                final boolean filter = filter(name, true);
-                filterTempCache.put(name, filter); // will be called again by super.loadClass() so cache it
-                if (!filter) {
-                    if (URLClassLoaderFirst.class.isInstance(getInternalParent())) { // true
-                        final URLClassLoaderFirst urlClassLoaderFirst = URLClassLoaderFirst.class.cast(getInternalParent());
-                        Class<?> c = urlClassLoaderFirst.findAlreadyLoadedClass(name);
-                        if (c != null) {
-                            return c;
-                        }
-                        c = urlClassLoaderFirst.loadInternal(name, resolve);
-                        if (c != null) {
-                            return c;
-                        }
-                    }
-                    return loadWithDelegate(getResource(name.replace('.', '/') + CLASS_EXTENSION) == null, resolve, name);
-                }
+    }
+
+    private static void checkPackageAccess(final String name) throws ClassNotFoundException {
+        final SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager == null) {
+            return;
+        }
+        final int i = name.lastIndexOf('.');
+        if (i >= 0) {
+            try {
+                securityManager.checkPackageAccess(name.substring(0, i));
+            } catch (final SecurityException se) {
+                final String error = "Security Violation, attempt to use Restricted Class: " + name;
+                LOGGER.info(error, se);
+                throw new ClassNotFoundException(error, se);
             }
-            return super.loadClass(name, resolve);
         }
     }
 
-    private Class<?> loadWithDelegate(final boolean delegate, final boolean resolve, final String name) throws ClassNotFoundException {
-        setDelegate(delegate);
+    private static Class<?> loadFrom(final ClassLoader loader, final String name) {
+        if (loader == null) {
+            return null;
+        }
         try {
-            return super.loadClass(name, resolve);
-        } finally {
-            filterTempCache.remove(name); // no more needed since class is loaded, avoid to waste mem
-            setDelegate(originalDelegate);
+            return Class.forName(name, false, loader);
+        } catch (final ClassNotFoundException ignored) {
+            return null;
         }
     }
 
@@ -252,14 +281,6 @@ public class TomEEWebappClassLoader extends ParallelWebappClassLoader {
         if ("org.apache.tomee.mojarra.TomEEInjectionProvider".equals(name)) {
             return false;
         }
-        if (isEar) { // check we are called from super and we already cached the result in loadClass
-            synchronized (this) {
-                final Boolean cache = filterTempCache.get(name);
-                if (cache != null) {
-                    return cache;
-                }
-            }
-        }
         return URLClassLoaderFirst.shouldSkip(name);
     }
 
@@ -549,15 +570,6 @@ public class TomEEWebappClassLoader extends ParallelWebappClassLoader {
         this.webResourceRoot = webResourceRoot;
     }
 
-    private static class NoClassClassLoader extends ClassLoader {
-        private static final NoClassClassLoader INSTANCE = new NoClassClassLoader();
-
-        @Override
-        public Class<?> loadClass(final String name) throws ClassNotFoundException {
-            throw new ClassNotFoundException();
-        }
-    }
-
     private static final class PremptiveDirResourceSet extends DirResourceSet {
         private static final String WEB_INF_CLASSES = "/WEB-INF/classes";
 
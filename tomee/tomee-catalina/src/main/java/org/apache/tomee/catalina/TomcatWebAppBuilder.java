@@ -87,6 +87,7 @@ import org.apache.openejb.cdi.CdiBuilder;
 import org.apache.openejb.cdi.OpenEJBLifecycle;
 import org.apache.openejb.cdi.Proxys;
 import org.apache.openejb.config.AppModule;
+import org.apache.openejb.config.ArchiveIndex;
 import org.apache.openejb.config.ConfigurationFactory;
 import org.apache.openejb.config.DeploymentLoader;
 import org.apache.openejb.config.EjbModule;
@@ -102,6 +103,7 @@ import org.apache.openejb.jee.EnvEntry;
 import org.apache.openejb.jee.WebApp;
 import org.apache.openejb.loader.Files;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.StartupProfiler;
 import org.apache.openejb.server.httpd.BeginWebBeansListener;
 import org.apache.openejb.server.httpd.EndWebBeansListener;
 import org.apache.openejb.server.httpd.HttpSession;
@@ -263,6 +265,9 @@ public class TomcatWebAppBuilder implements WebAppBuilder, ContextListener, Pare
 
     private final Set<CatalinaCluster> clusters = new HashSet<CatalinaCluster>();
 
+    // contexts holding an archive index scope from configureStart until tomcat scanned their jars (START_EVENT)
+    private final Set<StandardContext> indexedContexts = Collections.newSetFromMap(new ConcurrentHashMap<StandardContext, Boolean>());
+
     private ClassLoader parentClassLoader;
     private boolean initJEEInfo = true;
     private final ServletContextHandler servletContextHandler;
@@ -1122,7 +1127,14 @@ public class TomcatWebAppBuilder implements WebAppBuilder, ContextListener, Pare
 
         TomcatHelper.configureJarScanner(standardContext);
 
-        startInternal(standardContext);
+        // shared by the module loading, descriptor and TLD lookups of this webapp,
+        // tomcat scans the jars for TLDs after this event so the scope is released in start()
+        if (indexedContexts.add(standardContext)) {
+            ArchiveIndex.acquire();
+        }
+        try (final StartupProfiler.Span ignored = StartupProfiler.start("TomcatWebAppBuilder " + standardContext.getName())) {
+            startInternal(standardContext);
+        }
 
         // clear a bit log for default case
         addMyFacesDefaultParameters(standardContext.getLoader().getClassLoader(), standardContext.getServletContext());
@@ -1135,7 +1147,13 @@ public class TomcatWebAppBuilder implements WebAppBuilder, ContextListener, Pare
 
     @Override
     public void start(final StandardContext standardContext) {
-        // nothing to do for now
+        releaseArchiveIndex(standardContext);
+    }
+
+    private void releaseArchiveIndex(final StandardContext standardContext) {
+        if (indexedContexts.remove(standardContext)) {
+            ArchiveIndex.release();
+        }
     }
 
     /**
@@ -2026,6 +2044,8 @@ public class TomcatWebAppBuilder implements WebAppBuilder, ContextListener, Pare
      */
     @Override
     public void beforeStop(final StandardContext standardContext) {
+        releaseArchiveIndex(standardContext); // failed start
+
         final ClassLoader classLoader = standardContext.getLoader().getClassLoader();
 
         // if it is not our custom loader clean up now otherwise wait afterStop
@@ -24,6 +24,7 @@ import java.util.concurrent.Semaphore;
  * The classes listed and loaded eagerly have static initializers which take a tiny bit of time.
  * These initializers cannot be actually run in parallel because classes are loaded serially,
  * but executing them back to back does help speed things up a bit.
+ * Warming up the applications themselves is done by {@link org.apache.tomee.catalina.warmup.WarmupReplayer}.
  *
  * @version $Rev$ $Date$
  */
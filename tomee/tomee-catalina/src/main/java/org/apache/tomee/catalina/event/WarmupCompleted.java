@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.event;
+
+import org.apache.openejb.observer.Event;
+
+/**
+ * Fired once the warmup requests of a service were replayed, before its connectors start.
+ */
+@Event
+public class WarmupCompleted {
+    private final String service;
+    private final int requests;
+    private final int failures;
+    private final long duration;
+
+    public WarmupCompleted(final String service, final int requests, final int failures, final long duration) {
+        this.service = service;
+        this.requests = requests;
+        this.failures = failures;
+        this.duration = duration;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the warmup duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmupCompleted{" +
+                "service=" + service +
+                ", requests=" + requests +
+                ", failures=" + failures +
+                ", duration=" + duration +
+                '}';
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.warmup;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import java.io.IOException;
+import javax.servlet.ServletException;
+
+/**
+ * Engine valve recording the successful GET requests so they can be replayed by {@link WarmupReplayer}
+ * at the next start. Query strings and path parameters (<code>;jsessionid=...</code>) are not recorded
+ * since they often carry user data, requests replayed by the warmup and upgrade requests are ignored.
+ * <p/>
+ * The recorded requests are merged with the already stored ones when the engine stops.
+ */
+public class WarmupRecorderValve extends ValveBase {
+    private final WarmupRequests requests = new WarmupRequests();
+
+    public WarmupRecorderValve() {
+        super(true);
+    }
+
+    @Override
+    protected void startInternal() throws LifecycleException {
+        requests.load();
+        super.startInternal();
+    }
+
+    @Override
+    protected void stopInternal() throws LifecycleException {
+        super.stopInternal();
+        requests.store();
+    }
+
+    @Override
+    public void invoke(final Request request, final Response response) throws IOException, ServletException {
+        getNext().invoke(request, response);
+
+        if (!"GET".equals(request.getMethod()) || response.getStatus() >= 400
+            || request.getHeader(WarmupReplayer.HEADER) != null || request.getHeader("Upgrade") != null
+            || request.getHost() == null) {
+            return;
+        }
+        requests.hit(request.getHost().getName(), stripPathParameters(request.getRequestURI()));
+    }
+
+    WarmupRequests getRequests() {
+        return requests;
+    }
+
+    static String stripPathParameters(final String uri) {
+        int semicolon = uri.indexOf(';');
+        if (semicolon < 0) {
+            return uri;
+        }
+
+        final StringBuilder builder = new StringBuilder(uri.length());
+        int start = 0;
+        while (semicolon >= 0) {
+            builder.append(uri, start, semicolon);
+            start = uri.indexOf('/', semicolon);
+            if (start < 0) {
+                return builder.toString();
+            }
+            semicolon = uri.indexOf(';', start);
+        }
+        return builder.append(uri, start, uri.length()).toString();
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.warmup;
+
+import org.apache.catalina.Engine;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.Service;
+import org.apache.catalina.connector.Connector;
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.tomee.catalina.event.WarmupCompleted;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays the {@link WarmupRequests} through the whole stack (valves, filters, servlets, JAX-RS, CDI, EJB)
+ * once the webapps are deployed but before the connectors of the service start, so lazy initializations,
+ * proxy generation and the JIT are done before the first real request.
+ * <p/>
+ * Requests are sent over HTTP to a private connector bound on the loopback on a random port, they carry
+ * the {@link #HEADER} header. Only GET and HEAD requests are replayed: business invocations with
+ * arguments can't be synthesized without side effects, they are warmed up through the endpoints calling them.
+ * <p/>
+ * Once done a {@link WarmupCompleted} event is fired and the <code>openejb.management:ObjectType=Warmup</code>
+ * MBean reports the server as ready.
+ */
+public class WarmupReplayer implements LifecycleListener {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP, WarmupReplayer.class);
+
+    public static final String HEADER = "X-TomEE-Warmup";
+    public static final String RECORD_PROPERTY = "tomee.warmup.record";
+    public static final String REPLAY_PROPERTY = "tomee.warmup.replay";
+    public static final String ITERATIONS_PROPERTY = "tomee.warmup.iterations";
+    public static final String TIMEOUT_PROPERTY = "tomee.warmup.timeout"; // seconds
+
+    private static final String LOOPBACK = "127.0.0.1";
+
+    private static final AtomicInteger PENDING = new AtomicInteger();
+    private static final AtomicInteger REQUESTS = new AtomicInteger();
+    private static final AtomicInteger FAILURES = new AtomicInteger();
+    private static final AtomicLong DURATION = new AtomicLong();
+    private static volatile boolean registered;
+
+    private final Service service;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private WarmupReplayer(final Service service) {
+        this.service = service;
+    }
+
+    /**
+     * Adds the recorder valve and the replay hook to a service according to the configuration.
+     */
+    public static void install(final Service service) {
+        final Engine engine = (Engine) service.getContainer();
+        if (engine == null) {
+            return;
+        }
+
+        if (SystemInstance.get().getOptions().get(RECORD_PROPERTY, false)) {
+            engine.getPipeline().addValve(new WarmupRecorderValve());
+        }
+
+        if (!SystemInstance.get().getOptions().get(REPLAY_PROPERTY, false)) {
+            return;
+        }
+
+        final Connector[] connectors = service.findConnectors();
+        if (connectors.length == 0) {
+            return;
+        }
+
+        final WarmupReplayer replayer = new WarmupReplayer(service);
+        for (final Connector connector : connectors) {
+            connector.addLifecycleListener(replayer);
+        }
+        PENDING.incrementAndGet();
+        register();
+    }
+
+    public static boolean isReady() {
+        return PENDING.get() == 0;
+    }
+
+    @Override
+    public void lifecycleEvent(final LifecycleEvent event) {
+        // the first connector to start triggers the warmup, the engine and the mapper are started at that point
+        if (Lifecycle.BEFORE_START_EVENT.equals(event.getType()) && started.compareAndSet(false, true)) {
+            try {
+                replay();
+            } finally {
+                PENDING.decrementAndGet();
+            }
+        }
+    }
+
+    private void replay() {
+        final long start = System.nanoTime();
+        final Engine engine = (Engine) service.getContainer();
+
+        final WarmupRequests recorded = new WarmupRequests();
+        recorded.load();
+        final List<WarmupRequests.Request> requests = recorded.toReplay(engine.getDefaultHost());
+
+        int sent = 0;
+        int failures = 0;
+        if (!requests.isEmpty()) {
+            final int iterations = Math.max(1, SystemInstance.get().getOptions().get(ITERATIONS_PROPERTY, 10));
+            final long deadline = start + TimeUnit.SECONDS.toNanos(SystemInstance.get().getOptions().get(TIMEOUT_PROPERTY, 60));
+
+            final Connector connector = new Connector("HTTP/1.1");
+            connector.setPort(0);
+            connector.setProperty("address", LOOPBACK);
+            connector.setService(service);
+            try {
+                connector.start();
+                final int port = connector.getLocalPort();
+
+                replay:
+                for (int i = 0; i < iterations; i++) {
+                    for (final WarmupRequests.Request request : requests) {
+                        if (System.nanoTime() > deadline) {
+                            LOGGER.warning("Warmup of " + service.getName() + " timed out after " + sent + " requests");
+                            break replay;
+                        }
+
+                        sent++;
+                        try {
+                            if (send(port, request) >= 400) {
+                                failures++;
+                            }
+                        } catch (final IOException e) {
+                            failures++;
+                            LOGGER.debug("Warmup request " + request + " failed: " + e.getMessage());
+                        }
+                    }
+                }
+            } catch (final LifecycleException e) {
+                LOGGER.warning("Can't start the warmup connector of " + service.getName() + ": " + e.getMessage());
+            } finally {
+                try {
+                    connector.stop();
+                    connector.destroy();
+                } catch (final LifecycleException e) {
+                    LOGGER.debug("Can't stop the warmup connector: " + e.getMessage());
+                }
+            }
+        }
+
+        final long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        REQUESTS.addAndGet(sent);
+        FAILURES.addAndGet(failures);
+        DURATION.addAndGet(ms);
+
+        LOGGER.info("Warmup of " + service.getName() + " replayed " + sent + " requests ("
+            + requests.size() + " distinct, " + failures + " failures) in " + ms + " ms");
+        SystemInstance.get().fireEvent(new WarmupCompleted(service.getName(), sent, failures, ms));
+    }
+
+    private static int send(final int port, final WarmupRequests.Request request) throws IOException {
+        final int timeout = (int) TimeUnit.SECONDS.toMillis(30);
+        try (final Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(LOOPBACK, port), timeout);
+            socket.setSoTimeout(timeout);
+
+            final OutputStream out = socket.getOutputStream();
+            out.write((request.getMethod() + ' ' + request.getUri() + " HTTP/1.1\r\n"
+                + "Host: " + request.getHost() + "\r\n"
+                + HEADER + ": true\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            final InputStream in = socket.getInputStream();
+            final StringBuilder status = new StringBuilder();
+            int c;
+            while ((c = in.read()) >= 0 && c != '\n') {
+                status.append((char) c);
+            }
+
+            final byte[] buffer = new byte[8192];
+            while (in.read(buffer) >= 0) { // the whole response is rendered even if we don't use it
+                // no-op
+            }
+
+            final String[] parts = status.toString().split(" ");
+            if (parts.length < 2) {
+                throw new IOException("Invalid status line: '" + status + "'");
+            }
+            try {
+                return Integer.parseInt(parts[1]);
+            } catch (final NumberFormatException nfe) {
+                throw new IOException("Invalid status line: '" + status + "'");
+            }
+        }
+    }
+
+    private static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        LocalMBeanServer.registerDynamicWrapperSilently(new WarmupMBean(),
+            new ObjectNameBuilder("openejb.management").set("ObjectType", "Warmup").build());
+    }
+
+    @MBean
+    @Internal
+    @Description("Startup warmup")
+    public static final class WarmupMBean {
+        @ManagedAttribute
+        @Description("Are all the warmups done")
+        public boolean getReady() {
+            return isReady();
+        }
+
+        @ManagedAttribute
+        @Description("Replayed requests")
+        public int getRequests() {
+            return REQUESTS.get();
+        }
+
+        @ManagedAttribute
+        @Description("Replayed requests which failed")
+        public int getFailures() {
+            return FAILURES.get();
+        }
+
+        @ManagedAttribute
+        @Description("Warmup duration in ms")
+        public long getDuration() {
+            return DURATION.get();
+        }
+    }
+}
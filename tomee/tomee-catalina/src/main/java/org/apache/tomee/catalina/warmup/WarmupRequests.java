@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.warmup;
+
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The requests to replay at startup: the ones recorded by {@link WarmupRecorderValve}
+ * in {@link #FILE_PROPERTY} (<code>${openejb.base}/data/warmup.requests</code> by default)
+ * and the ones configured with {@link #REQUESTS_PROPERTY}.
+ * <p/>
+ * The file has one <code>hits host uri</code> line per request, most hit first.
+ * <p/>
+ * The counts decay: the stored ones are halved when loaded and, once {@link #MAX_PROPERTY} twice
+ * distinct requests are recorded, only the most hit ones are kept with their counts halved,
+ * so the recorded requests follow the current traffic.
+ */
+public class WarmupRequests {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP, WarmupRequests.class);
+
+    public static final String FILE_PROPERTY = "tomee.warmup.file";
+
+    /**
+     * Comma separated requests, <code>[GET|HEAD] /context/path?query</code>, sent to the default host.
+     */
+    public static final String REQUESTS_PROPERTY = "tomee.warmup.requests";
+
+    /**
+     * Maximum number of distinct recorded requests, the most hit ones are kept.
+     */
+    public static final String MAX_PROPERTY = "tomee.warmup.max-requests";
+
+    private final ConcurrentMap<Request, AtomicLong> hits = new ConcurrentHashMap<>();
+    private final int max;
+
+    public WarmupRequests() {
+        max = SystemInstance.get().getOptions().get(MAX_PROPERTY, 200);
+    }
+
+    public void hit(final String host, final String uri) {
+        final Request key = new Request("GET", host, uri);
+        AtomicLong counter = hits.get(key);
+        if (counter == null) {
+            if (hits.size() >= max * 2) {
+                trim();
+            }
+            counter = new AtomicLong();
+            final AtomicLong existing = hits.putIfAbsent(key, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Keeps the most hit requests and halves their counts so new requests can replace them.
+     */
+    private synchronized void trim() {
+        if (hits.size() < max * 2) { // already trimmed by another thread
+            return;
+        }
+
+        final Set<Request> kept = new HashSet<>();
+        for (final Map.Entry<Request, AtomicLong> entry : sorted()) {
+            kept.add(entry.getKey());
+            decay(entry.getValue());
+        }
+        hits.keySet().retainAll(kept);
+    }
+
+    private static void decay(final AtomicLong counter) {
+        long current;
+        do {
+            current = counter.get();
+        } while (!counter.compareAndSet(current, current / 2));
+    }
+
+    public static File file() {
+        final String configured = SystemInstance.get().getOptions().get(FILE_PROPERTY, (String) null);
+        return configured != null ? new File(configured) : new File(SystemInstance.get().getBase().getDirectory(), "data/warmup.requests");
+    }
+
+    public void load() {
+        final File file = file();
+        if (!file.isFile()) {
+            return;
+        }
+
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(IO.read(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.trim().split(" ");
+                if (parts.length != 3 || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    final Request key = new Request("GET", parts[1], parts[2]);
+                    final long count = Long.parseLong(parts[0]) / 2; // previous runs weight less
+                    final AtomicLong existing = hits.putIfAbsent(key, new AtomicLong(count));
+                    if (existing != null) {
+                        existing.addAndGet(count);
+                    }
+                } catch (final NumberFormatException nfe) {
+                    // skip
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.warning("Can't read warmup requests " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    public void store() {
+        final List<Map.Entry<Request, AtomicLong>> sorted = sorted();
+        if (sorted.isEmpty()) {
+            return;
+        }
+
+        final File file = file();
+        final File parent = file.getParentFile();
+        final File tmp = new File(parent, file.getName() + ".tmp");
+        try {
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Can't create " + parent.getAbsolutePath());
+            }
+            try (final Writer writer = new OutputStreamWriter(IO.write(tmp), StandardCharsets.UTF_8)) {
+                writer.write("# hits host uri, recorded by " + WarmupRecorderValve.class.getName() + "\n");
+                for (final Map.Entry<Request, AtomicLong> entry : sorted) {
+                    writer.write(entry.getValue().get() + " " + entry.getKey().host + " " + entry.getKey().uri + "\n");
+                }
+            }
+            if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+                throw new IOException("Can't rename " + tmp.getAbsolutePath());
+            }
+        } catch (final IOException e) {
+            LOGGER.warning("Can't store warmup requests " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param defaultHost host of the configured requests
+     * @return the configured requests then the recorded ones, most hit first
+     */
+    public List<Request> toReplay(final String defaultHost) {
+        final List<Request> requests = new ArrayList<>();
+
+        final String configured = SystemInstance.get().getOptions().get(REQUESTS_PROPERTY, (String) null);
+        if (configured != null) {
+            for (final String value : configured.split(",")) {
+                final String trimmed = value.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+
+                final int space = trimmed.indexOf(' ');
+                final String method = space > 0 ? trimmed.substring(0, space).toUpperCase() : "GET";
+                final String uri = space > 0 ? trimmed.substring(space + 1).trim() : trimmed;
+                if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                    LOGGER.warning("Ignoring warmup request '" + trimmed + "', only GET and HEAD requests are replayed");
+                    continue;
+                }
+                requests.add(new Request(method, defaultHost, uri));
+            }
+        }
+
+        for (final Map.Entry<Request, AtomicLong> entry : sorted()) {
+            if (!requests.contains(entry.getKey())) {
+                requests.add(entry.getKey());
+            }
+        }
+        return requests;
+    }
+
+    private List<Map.Entry<Request, AtomicLong>> sorted() {
+        final List<Map.Entry<Request, AtomicLong>> sorted = new ArrayList<>(hits.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<Request, AtomicLong>>() {
+            @Override
+            public int compare(final Map.Entry<Request, AtomicLong> o1, final Map.Entry<Request, AtomicLong> o2) {
+                return Long.compare(o2.getValue().get(), o1.getValue().get());
+            }
+        });
+        return sorted.size() > max ? sorted.subList(0, max) : sorted;
+    }
+
+    public static final class Request {
+        private final String method;
+        private final String host;
+        private final String uri;
+
+        public Request(final String method, final String host, final String uri) {
+            this.method = method;
+            this.host = host;
+            this.uri = uri.startsWith("/") ? uri : "/" + uri;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Request request = (Request) o;
+            return method.equals(request.method) && host.equals(request.host) && uri.equals(request.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = method.hashCode();
+            result = 31 * result + host.hashCode();
+            result = 31 * result + uri.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + host + uri;
+        }
+    }
+}
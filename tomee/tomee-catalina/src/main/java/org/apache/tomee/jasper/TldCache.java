@@ -0,0 +1,498 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.jasper;
+
+import org.apache.catalina.util.ServerInfo;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.URLs;
+import org.apache.tomcat.util.descriptor.tld.TagFileXml;
+import org.apache.tomcat.util.descriptor.tld.TagXml;
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+import org.apache.tomcat.util.descriptor.tld.ValidatorXml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.servlet.jsp.tagext.FunctionInfo;
+import javax.servlet.jsp.tagext.TagAttributeInfo;
+import javax.servlet.jsp.tagext.TagVariableInfo;
+
+/**
+ * Parsed TLDs keyed by the checksum of the jar (or TLD file) they come from and their entry name.
+ * <p/>
+ * Entries are shared by all the webapps of the JVM and stored under {@link #LOCATION_PROPERTY}
+ * (<code>${openejb.base}/work/tld-cache</code> by default) so a restart does not parse them again.
+ * The stored format depends on the Tomcat version, a Tomcat upgrade ignores the previous files.
+ * <p/>
+ * A jar is only hashed when its path, size and last modified date are unknown, the checksums are persisted
+ * next to the TLDs ({@value #CHECKSUMS}) so an unchanged jar is not read again after a restart.
+ * <p/>
+ * TLDs which are not a local file or an entry of a local jar (unpacked war for instance) are not cached.
+ */
+public final class TldCache {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP, TldCache.class);
+
+    public static final String ACTIVE_PROPERTY = "tomee.tld.cache";
+    public static final String LOCATION_PROPERTY = "tomee.tld.cache.location";
+
+    private static final int MAGIC = 0x544c4443; // TLDC
+    private static final int FORMAT = 1;
+    private static final String CHECKSUMS = "checksums.txt";
+
+    private static final TldCache INSTANCE = new TldCache();
+
+    private final ConcurrentMap<String, TaglibXml> parsed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> checksums = new ConcurrentHashMap<>(); // path|length|mtime -> sha-256
+    private volatile boolean checksumsLoaded;
+    private volatile File directory;
+
+    private TldCache() {
+        this(null);
+    }
+
+    TldCache(final File directory) {
+        this.directory = directory;
+    }
+
+    public static TldCache get() {
+        return INSTANCE;
+    }
+
+    public static boolean isActive() {
+        return SystemInstance.get().getOptions().get(ACTIVE_PROPERTY, true);
+    }
+
+    /**
+     * @param path the TLD to look up
+     * @return the cache key of this TLD or null if it can't be cached
+     */
+    public String key(final TldResourcePath path) {
+        final URL url = path.getUrl();
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+
+        final File file;
+        try {
+            file = URLs.toFile(url);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+
+        final String checksum = checksum(file);
+        if (checksum == null) {
+            return null;
+        }
+        return path.getEntryName() == null ? checksum : checksum + '!' + path.getEntryName();
+    }
+
+    public TaglibXml find(final String key) {
+        final TaglibXml cached = parsed.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final File file = file(key);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !ServerInfo.getServerNumber().equals(in.readUTF()) || !key.equals(in.readUTF())) {
+                return null;
+            }
+            final TaglibXml taglib = read(in);
+            final TaglibXml existing = parsed.putIfAbsent(key, taglib);
+            return existing != null ? existing : taglib;
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.debug("Can't read cached TLD " + file.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void store(final String key, final TaglibXml taglib) {
+        if (parsed.putIfAbsent(key, taglib) != null) {
+            return;
+        }
+
+        final File file = file(key);
+        if (file == null) {
+            return;
+        }
+
+        final File tmp = new File(file.getParentFile(), file.getName() + '.' + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeUTF(ServerInfo.getServerNumber());
+                out.writeUTF(key);
+                write(out, taglib);
+            }
+            if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+                throw new IOException("Can't rename " + tmp.getAbsolutePath());
+            }
+        } catch (final IOException e) {
+            LOGGER.debug("Can't cache TLD " + key + ": " + e.getMessage());
+            if (tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    private File file(final String key) {
+        final File dir = directory();
+        return dir == null ? null : new File(dir, hex(digest().digest(key.getBytes(StandardCharsets.UTF_8))) + ".tld.bin");
+    }
+
+    private File directory() {
+        File dir = directory;
+        if (dir == null) {
+            final String configured = SystemInstance.get().getOptions().get(LOCATION_PROPERTY, (String) null);
+            dir = configured != null ? new File(configured) : new File(SystemInstance.get().getBase().getDirectory(), "work/tld-cache");
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                LOGGER.warning("Can't create TLD cache directory " + dir.getAbsolutePath() + ", TLDs will only be cached in memory");
+                return null;
+            }
+            directory = dir;
+        }
+        return dir;
+    }
+
+    private String checksum(final File file) {
+        final String id = file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+        loadChecksums();
+        final String cached = checksums.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        final MessageDigest digest = digest();
+        try (final InputStream in = IO.read(file)) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (final IOException e) {
+            return null;
+        }
+
+        final String checksum = hex(digest.digest());
+        if (checksums.putIfAbsent(id, checksum) == null) {
+            saveChecksum(id, checksum);
+        }
+        return checksum;
+    }
+
+    // lines of files which changed or disappeared since they were hashed are dropped
+    private void loadChecksums() {
+        if (checksumsLoaded) {
+            return;
+        }
+        synchronized (checksums) {
+            if (checksumsLoaded) {
+                return;
+            }
+            try {
+                doLoadChecksums();
+            } finally {
+                checksumsLoaded = true;
+            }
+        }
+    }
+
+    private void doLoadChecksums() {
+        final File dir = directory();
+        final File index = dir == null ? null : new File(dir, CHECKSUMS);
+        if (index == null || !index.isFile()) {
+            return;
+        }
+
+        boolean stale = false;
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(index), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.lastIndexOf('\t');
+                if (separator > 0 && isCurrent(line.substring(0, separator))) {
+                    checksums.put(line.substring(0, separator), line.substring(separator + 1));
+                } else {
+                    stale = true;
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.debug("Can't read TLD checksums " + index.getAbsolutePath() + ": " + e.getMessage());
+            return;
+        }
+
+        if (stale) {
+            final File tmp = new File(dir, CHECKSUMS + '.' + Thread.currentThread().getId() + ".tmp");
+            try {
+                try (final Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+                    for (final Map.Entry<String, String> checksum : checksums.entrySet()) {
+                        writer.write(checksum.getKey() + '\t' + checksum.getValue() + '\n');
+                    }
+                }
+                if (!tmp.renameTo(index) && (!index.delete() || !tmp.renameTo(index))) {
+                    throw new IOException("Can't rename " + tmp.getAbsolutePath());
+                }
+            } catch (final IOException e) {
+                LOGGER.debug("Can't rewrite TLD checksums " + index.getAbsolutePath() + ": " + e.getMessage());
+                if (tmp.exists() && !tmp.delete()) {
+                    tmp.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    private void saveChecksum(final String id, final String checksum) {
+        final File dir = directory();
+        if (dir == null || id.indexOf('\n') >= 0) {
+            return;
+        }
+        synchronized (checksums) {
+            try (final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, CHECKSUMS), true), StandardCharsets.UTF_8)) {
+                writer.write(id + '\t' + checksum + '\n');
+            } catch (final IOException e) {
+                LOGGER.debug("Can't save TLD checksum of " + id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // path|length|mtime
+    private static boolean isCurrent(final String id) {
+        final int lastModified = id.lastIndexOf('|');
+        final int length = lastModified > 0 ? id.lastIndexOf('|', lastModified - 1) : -1;
+        if (length <= 0) {
+            return false;
+        }
+        final File file = new File(id.substring(0, length));
+        try {
+            return file.isFile() && file.length() == Long.parseLong(id.substring(length + 1, lastModified))
+                && file.lastModified() == Long.parseLong(id.substring(lastModified + 1));
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    // same fields as the ones dumped by TldSnapshotGenerator
+    static void write(final DataOutputStream out, final TaglibXml taglib) throws IOException {
+        writeString(out, taglib.getTlibVersion());
+        writeString(out, taglib.getJspVersion());
+        writeString(out, taglib.getShortName());
+        writeString(out, taglib.getUri());
+        writeString(out, taglib.getInfo());
+
+        final ValidatorXml validator = taglib.getValidator();
+        out.writeBoolean(validator != null);
+        if (validator != null) {
+            writeString(out, validator.getValidatorClass());
+            out.writeInt(validator.getInitParams().size());
+            for (final Map.Entry<String, String> param : validator.getInitParams().entrySet()) {
+                writeString(out, param.getKey());
+                writeString(out, param.getValue());
+            }
+        }
+
+        out.writeInt(taglib.getTags().size());
+        for (final TagXml tag : taglib.getTags()) {
+            writeString(out, tag.getName());
+            writeString(out, tag.getTagClass());
+            writeString(out, tag.getTeiClass());
+            writeString(out, tag.getBodyContent());
+            writeString(out, tag.getDisplayName());
+            writeString(out, tag.getSmallIcon());
+            writeString(out, tag.getLargeIcon());
+            writeString(out, tag.getInfo());
+            out.writeBoolean(tag.hasDynamicAttributes());
+
+            out.writeInt(tag.getAttributes().size());
+            for (final TagAttributeInfo attr : tag.getAttributes()) {
+                writeString(out, attr.getName());
+                out.writeBoolean(attr.isRequired());
+                writeString(out, attr.getTypeName());
+                out.writeBoolean(attr.canBeRequestTime());
+                out.writeBoolean(attr.isFragment());
+                writeString(out, attr.getDescription());
+                out.writeBoolean(attr.isDeferredValue());
+                out.writeBoolean(attr.isDeferredMethod());
+                writeString(out, attr.getExpectedTypeName());
+                writeString(out, attr.getMethodSignature());
+            }
+
+            out.writeInt(tag.getVariables().size());
+            for (final TagVariableInfo var : tag.getVariables()) {
+                writeString(out, var.getNameGiven());
+                writeString(out, var.getNameFromAttribute());
+                writeString(out, var.getClassName());
+                out.writeBoolean(var.getDeclare());
+                out.writeInt(var.getScope());
+            }
+        }
+
+        out.writeInt(taglib.getTagFiles().size());
+        for (final TagFileXml file : taglib.getTagFiles()) {
+            writeString(out, file.getName());
+            writeString(out, file.getPath());
+            writeString(out, file.getDisplayName());
+            writeString(out, file.getSmallIcon());
+            writeString(out, file.getLargeIcon());
+            writeString(out, file.getInfo());
+        }
+
+        out.writeInt(taglib.getListeners().size());
+        for (final String listener : taglib.getListeners()) {
+            writeString(out, listener);
+        }
+
+        out.writeInt(taglib.getFunctions().size());
+        for (final FunctionInfo function : taglib.getFunctions()) {
+            writeString(out, function.getName());
+            writeString(out, function.getFunctionClass());
+            writeString(out, function.getFunctionSignature());
+        }
+    }
+
+    static TaglibXml read(final DataInputStream in) throws IOException {
+        final TaglibXml taglib = new TaglibXml();
+        taglib.setTlibVersion(readString(in));
+        taglib.setJspVersion(readString(in));
+        taglib.setShortName(readString(in));
+        taglib.setUri(readString(in));
+        taglib.setInfo(readString(in));
+
+        if (in.readBoolean()) {
+            final ValidatorXml validator = new ValidatorXml();
+            validator.setValidatorClass(readString(in));
+            final int params = in.readInt();
+            for (int i = 0; i < params; i++) {
+                validator.addInitParam(readString(in), readString(in));
+            }
+            taglib.setValidator(validator);
+        }
+
+        final int tags = in.readInt();
+        for (int i = 0; i < tags; i++) {
+            final TagXml tag = new TagXml();
+            tag.setName(readString(in));
+            tag.setTagClass(readString(in));
+            tag.setTeiClass(readString(in));
+            tag.setBodyContent(readString(in));
+            tag.setDisplayName(readString(in));
+            tag.setSmallIcon(readString(in));
+            tag.setLargeIcon(readString(in));
+            tag.setInfo(readString(in));
+            tag.setDynamicAttributes(in.readBoolean());
+
+            final int attributes = in.readInt();
+            for (int j = 0; j < attributes; j++) {
+                tag.getAttributes().add(new TagAttributeInfo(
+                    readString(in), in.readBoolean(), readString(in), in.readBoolean(), in.readBoolean(), readString(in),
+                    in.readBoolean(), in.readBoolean(), readString(in), readString(in)));
+            }
+
+            final int variables = in.readInt();
+            for (int j = 0; j < variables; j++) {
+                tag.getVariables().add(new TagVariableInfo(readString(in), readString(in), readString(in), in.readBoolean(), in.readInt()));
+            }
+            taglib.addTag(tag);
+        }
+
+        final int files = in.readInt();
+        for (int i = 0; i < files; i++) {
+            final TagFileXml file = new TagFileXml();
+            file.setName(readString(in));
+            file.setPath(readString(in));
+            file.setDisplayName(readString(in));
+            file.setSmallIcon(readString(in));
+            file.setLargeIcon(readString(in));
+            file.setInfo(readString(in));
+            taglib.getTagFiles().add(file);
+        }
+
+        final int listeners = in.readInt();
+        for (int i = 0; i < listeners; i++) {
+            taglib.getListeners().add(readString(in));
+        }
+
+        final int functions = in.readInt();
+        for (int i = 0; i < functions; i++) {
+            taglib.getFunctions().add(new FunctionInfo(readString(in), readString(in), readString(in)));
+        }
+        return taglib;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.jasper;
+
+import org.apache.tomcat.util.descriptor.tld.TagFileXml;
+import org.apache.tomcat.util.descriptor.tld.TagXml;
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+import org.apache.tomcat.util.descriptor.tld.TldParser;
+import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import javax.servlet.jsp.tagext.FunctionInfo;
+import javax.servlet.jsp.tagext.TagAttributeInfo;
+import javax.servlet.jsp.tagext.TagVariableInfo;
+
+/**
+ * Regenerates the body of <code>TomEETldScanner.populateMyfacesAndJstlData()</code>
+ * when the MyFaces or JSTL version changes.
+ * <p/>
+ * Usage: <code>java -cp ... org.apache.tomee.jasper.TldSnapshotGenerator myfaces-impl.jar taglibs-standard-impl.jar</code>,
+ * the generated code is printed on the standard output.
+ */
+public final class TldSnapshotGenerator {
+    private final PrintStream out;
+
+    private TldSnapshotGenerator(final PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: TldSnapshotGenerator <myfaces-impl jar> <taglibs-standard-impl jar>...");
+            System.exit(1);
+        }
+
+        final TldSnapshotGenerator generator = new TldSnapshotGenerator(System.out);
+        final TldParser parser = new TldParser(true, false, true);
+        for (final String jar : args) {
+            generator.jar(parser, new File(jar));
+        }
+    }
+
+    private void jar(final TldParser parser, final File file) throws Exception {
+        final String ref = file.getName().contains("myfaces") ? "MYFACES_URL" : "JSTL_URL";
+        final URL url = file.toURI().toURL();
+
+        final List<String> tlds = new ArrayList<>();
+        try (final JarFile jar = new JarFile(file)) {
+            final Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                final String name = entries.nextElement().getName();
+                if (name.startsWith("META-INF/") && name.endsWith(".tld")) {
+                    tlds.add(name);
+                }
+            }
+        }
+        Collections.sort(tlds);
+
+        out.println("        if (" + ref + " != null) {");
+        for (final String tld : tlds) {
+            taglib(ref, tld, parser.parse(new TldResourcePath(url, null, tld)));
+        }
+        out.println("        }");
+    }
+
+    private void taglib(final String ref, final String entry, final TaglibXml taglib) {
+        out.println("            {");
+        out.println("                final TldResourcePath path = new TldResourcePath(" + ref + ", null, " + q(entry) + ");");
+        if (taglib.getUri() != null) {
+            out.println("                URI_TLD_RESOURCE.put(" + q(taglib.getUri()) + ", path);");
+        }
+        out.println("                final TaglibXml taglibXml = new TaglibXml();");
+        set("                ", "taglibXml.setTlibVersion", taglib.getTlibVersion());
+        set("                ", "taglibXml.setJspVersion", taglib.getJspVersion());
+        set("                ", "taglibXml.setShortName", taglib.getShortName());
+        set("                ", "taglibXml.setUri", taglib.getUri());
+        set("                ", "taglibXml.setInfo", taglib.getInfo());
+        if (taglib.getValidator() != null) {
+            out.println("                final ValidatorXml validator = new ValidatorXml();");
+            set("                ", "validator.setValidatorClass", taglib.getValidator().getValidatorClass());
+            out.println("                taglibXml.setValidator(validator);");
+            for (final Map.Entry<String, String> param : taglib.getValidator().getInitParams().entrySet()) {
+                out.println("                taglibXml.getValidator().addInitParam(" + q(param.getKey()) + ", " + q(param.getValue()) + ");");
+            }
+        }
+        for (final TagXml tag : taglib.getTags()) {
+            tag(tag);
+        }
+        for (final TagFileXml file : taglib.getTagFiles()) {
+            out.println("                {");
+            out.println("                    final TagFileXml file = new TagFileXml();");
+            set("                    ", "file.setName", file.getName());
+            set("                    ", "file.setPath", file.getPath());
+            set("                    ", "file.setDisplayName", file.getDisplayName());
+            set("                    ", "file.setSmallIcon", file.getSmallIcon());
+            set("                    ", "file.setLargeIcon", file.getLargeIcon());
+            set("                    ", "file.setInfo", file.getInfo());
+            out.println("                    taglibXml.getTagFiles().add(file);");
+            out.println("                }");
+        }
+        for (final String listener : taglib.getListeners()) {
+            out.println("                taglibXml.getListeners().add(" + q(listener) + ");");
+        }
+        for (final FunctionInfo function : taglib.getFunctions()) {
+            out.println("                {");
+            out.println("                    final FunctionInfo function = new FunctionInfo(" + q(function.getName()) + ", "
+                + q(function.getFunctionClass()) + ", " + q(function.getFunctionSignature()) + ");");
+            out.println("                    taglibXml.getFunctions().add(function);");
+            out.println("                }");
+        }
+        out.println("                TLD_RESOURCE_TAG_LIB.put(path, taglibXml);");
+        out.println("            }");
+    }
+
+    private void tag(final TagXml tag) {
+        out.println("                {");
+        out.println("                    final TagXml tag = new TagXml();");
+        set("                    ", "tag.setName", tag.getName());
+        set("                    ", "tag.setTagClass", tag.getTagClass());
+        set("                    ", "tag.setTeiClass", tag.getTeiClass());
+        set("                    ", "tag.setBodyContent", tag.getBodyContent());
+        set("                    ", "tag.setDisplayName", tag.getDisplayName());
+        set("                    ", "tag.setSmallIcon", tag.getSmallIcon());
+        set("                    ", "tag.setLargeIcon", tag.getLargeIcon());
+        set("                    ", "tag.setInfo", tag.getInfo());
+        if (tag.hasDynamicAttributes()) {
+            out.println("                    tag.setDynamicAttributes(true);");
+        }
+        for (final TagAttributeInfo attr : tag.getAttributes()) {
+            out.println("                    {");
+            out.println("                        final TagAttributeInfo attr = new TagAttributeInfo("
+                + q(attr.getName()) + ", " + attr.isRequired() + ", " + q(attr.getTypeName()) + ", "
+                + attr.canBeRequestTime() + ", " + attr.isFragment() + ", " + q(attr.getDescription()) + ", "
+                + attr.isDeferredValue() + ", " + attr.isDeferredMethod() + ", " + q(attr.getExpectedTypeName()) + ", "
+                + q(attr.getMethodSignature()) + ");");
+            out.println("                        tag.getAttributes().add(attr);");
+            out.println("                    }");
+        }
+        for (final TagVariableInfo var : tag.getVariables()) {
+            out.println("                    {");
+            out.println("                        final TagVariableInfo var = new TagVariableInfo(" + q(var.getNameGiven()) + ", "
+                + q(var.getNameFromAttribute()) + ", " + q(var.getClassName()) + ", " + var.getDeclare() + ", " + var.getScope() + ");");
+            out.println("                        tag.getVariables().add(var);");
+            out.println("                    }");
+        }
+        out.println("                    taglibXml.addTag(tag);");
+        out.println("                }");
+    }
+
+    private void set(final String indent, final String setter, final String value) {
+        if (value != null) {
+            out.println(indent + setter + "(" + q(value) + ");");
+        }
+    }
+
+    private static String q(final String value) {
+        if (value == null) {
+            return "null";
+        }
+        final StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (final char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                case '\t':
+                    builder.append(' ');
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -24,10 +24,13 @@ import org.apache.tomcat.util.descriptor.tld.TaglibXml;
 import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
 import org.apache.tomcat.util.descriptor.tld.ValidatorXml;
 import org.apache.tomee.installer.Paths;
+import org.xml.sax.SAXException;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.servlet.ServletContext;
 import javax.servlet.jsp.tagext.FunctionInfo;
@@ -49,12 +52,46 @@ public class TomEETldScanner extends TldScanner {
 
     private final Map<String, TldResourcePath> uriTldResourcePathMapParent;
     private final Map<TldResourcePath, TaglibXml> tldResourcePathTaglibXmlMapParent;
+    private final List<String> listenersParent;
 
     public TomEETldScanner(final ServletContext context, final boolean namespaceAware, final boolean validate, final boolean blockExternal) {
         super(context, namespaceAware, validate, blockExternal);
         uriTldResourcePathMapParent = (Map<String, TldResourcePath>) Reflections.get(this, "uriTldResourcePathMap");
         tldResourcePathTaglibXmlMapParent = (Map<TldResourcePath, TaglibXml>) Reflections.get(this, "tldResourcePathTaglibXmlMap");
-        // we don't care about listeners since we add it ourself
+        listenersParent = (List<String>) Reflections.get(this, "listeners"); // only used for cached TLDs, platform ones are added by ourself
+    }
+
+    @Override
+    protected void parseTld(final TldResourcePath path) throws IOException, SAXException {
+        if (tldResourcePathTaglibXmlMapParent.containsKey(path) || !TldCache.isActive()) {
+            super.parseTld(path);
+            return;
+        }
+
+        final TldCache cache = TldCache.get();
+        final String key = cache.key(path);
+        if (key == null) {
+            super.parseTld(path);
+            return;
+        }
+
+        final TaglibXml cached = cache.find(key);
+        if (cached == null) {
+            super.parseTld(path);
+            final TaglibXml parsed = tldResourcePathTaglibXmlMapParent.get(path);
+            if (parsed != null) {
+                cache.store(key, parsed);
+            }
+            return;
+        }
+
+        // same registration as TldScanner does for a parsed TLD
+        final String uri = cached.getUri();
+        if (uri != null && !uriTldResourcePathMapParent.containsKey(uri)) {
+            uriTldResourcePathMapParent.put(uri, path);
+        }
+        tldResourcePathTaglibXmlMapParent.put(path, cached);
+        listenersParent.addAll(cached.getListeners());
     }
 
     @Override
@@ -7204,110 +7241,6 @@ public class TomEETldScanner extends TldScanner {
         }
         return null;
     }
-    // used to dump container ones when nothing is in apps
-    /*
-    private void sysout() {
-        System.out.println();
-        System.out.println();
-        System.out.println();
-        System.out.println();
-        for (final Map.Entry<String, TldResourcePath> entry : uriTldResourcePathMapParent.entrySet()) {
-            System.out.println("{");
-            System.out.println("final TldResourcePath path = new TldResourcePath("
-                + (entry.getValue().getUrl().toExternalForm().contains("myfaces")? "MYFACES_URL" :
-                (entry.getValue().getUrl().toExternalForm().contains("taglibs-standard-jstlel")? "JSTL_URL" : "???"))
-                + ", null, \"" + entry.getValue().getEntryName() + "\");");
-            System.out.println("URI_TLD_RESOURCE.put(\"" + entry.getKey() + "\", path);");
 
-            final TaglibXml tagLibs = tldResourcePathTaglibXmlMapParent.get(entry.getValue());
-            if (tagLibs != null) {
-                System.out.println("final TaglibXml taglibXml = new TaglibXml();");
-                if (tagLibs.getTlibVersion() != null) System.out.println("taglibXml.setTlibVersion(\"" + tagLibs.getTlibVersion() + "\");");
-                if (tagLibs.getJspVersion() != null) System.out.println("taglibXml.setJspVersion(\"" + tagLibs.getJspVersion() + "\");");
-                if (tagLibs.getShortName() != null) System.out.println("taglibXml.setShortName(\"" + tagLibs.getShortName() + "\");");
-                if (tagLibs.getUri() != null) System.out.println("taglibXml.setUri(\"" + tagLibs.getUri() + "\");");
-                if (tagLibs.getInfo() != null) System.out.println("taglibXml.setInfo(\"" + t(tagLibs.getInfo()) + "\");");
-                if (tagLibs.getValidator() != null) {
-                    System.out.println("final ValidatorXml validator = new ValidatorXml();");
-                    System.out.println("validator.setValidatorClass(\"" + tagLibs.getValidator().getValidatorClass() + "\");");
-                    System.out.println("taglibXml.setValidator(validator);");
-                    for (final Map.Entry<String, String> param : tagLibs.getValidator().getInitParams().entrySet()) {
-                        System.out.println("taglibXml.getValidator().addInitParam(\"" + param.getKey() + "\", \"" + t(param.getValue()) + "\");");
-                    }
-                }
-                for (final TagXml xml : tagLibs.getTags()) {
-                    System.out.println("{");
-                    System.out.println("final TagXml tag = new TagXml();");
-                    if (xml.getName() != null) System.out.println("tag.setName(\"" + xml.getName() + "\");");
-                    if (xml.getTagClass() != null) System.out.println("tag.setTagClass(\"" + xml.getTagClass() + "\");");
-                    if (xml.getTeiClass() != null) System.out.println("tag.setTeiClass(\"" + xml.getTeiClass() + "\");");
-                    if (xml.getBodyContent() != null) System.out.println("tag.setBodyContent(\"" + xml.getBodyContent() + "\");");
-                    if (xml.getDisplayName() != null) System.out.println("tag.setDisplayName(\"" + xml.getDisplayName() + "\");");
-                    if (xml.getSmallIcon() != null) System.out.println("tag.setSmallIcon(\"" + xml.getSmallIcon() + "\");");
-                    if (xml.getLargeIcon() != null) System.out.println("tag.setLargeIcon(\"" + xml.getLargeIcon() + "\");");
-                    if (xml.getInfo() != null) System.out.println("tag.setInfo(\"" + t(xml.getInfo()) + "\");");
-                    if (xml.hasDynamicAttributes()) System.out.println("tag.setDynamicAttributes(" + xml.hasDynamicAttributes() + ");");
-                    for (final TagAttributeInfo attr : xml.getAttributes()) {
-                        System.out.println("{");
-                        System.out.println("final TagAttributeInfo attr = new TagAttributeInfo(" +
-                            "\"" + attr.getName() + "\", " + attr.isRequired() + ", \"" + attr.getTypeName() + "\", "
-                            + attr.canBeRequestTime() + ", " + attr.isFragment() + ", \"" + t(attr.getDescription()) + "\", "
-                            + attr.isDeferredValue() + ", " + attr.isDeferredMethod() + ", \"" + attr.getExpectedTypeName() + "\", \""
-                            + attr.getMethodSignature() + "\");");
-                        System.out.println("tag.getAttributes().add(attr);");
-                        System.out.println("}");
-                    }
-                    for (final TagVariableInfo var : xml.getVariables()) {
-                        System.out.println("{");
-                        System.out.println("final TagVariableInfo var = new TagVariableInfo(\"" + var.getNameGiven() + "\", \""
-                            + var.getNameFromAttribute() + "\", \"" + var.getClassName() + "\", " + var.getDeclare() + ", " + var.getScope() + ");");
-                        System.out.println("tag.getVariables().add(var);");
-                        System.out.println("}");
-                    }
-                    System.out.println("taglibXml.addTag(tag);");
-                    System.out.println("}");
-                }
-                for (final TagFileXml file : tagLibs.getTagFiles()) {
-                    System.out.println("{");
-                    System.out.println("final TagFileXml file = new TagFileXml();");
-                    if (file.getName() != null) System.out.println("file.setName(\"" + file.getName() + "\");");
-                    if (file.getPath() != null) System.out.println("file.setPath(\"" + file.getPath() + "\");");
-                    if (file.getDisplayName() != null) System.out.println("file.setDisplayName(\"" + file.getDisplayName() + "\");");
-                    if (file.getSmallIcon() != null) System.out.println("file.setSmallIcon(\"" + file.getSmallIcon() + "\");");
-                    if (file.getLargeIcon() != null) System.out.println("file.setLargeIcon(\"" + file.getLargeIcon() + "\");");
-                    if (file.getInfo() != null) System.out.println("file.setInfo(\"" + t(file.getInfo()) + "\");");
-                    System.out.println("taglibXml.getTagFiles().add(file);");
-                    System.out.println("}");
-                }
-                for (final String listener : tagLibs.getListeners()) {
-                    System.out.println("taglibXml.getListeners().add(\"" + listener + "\");");
-                }
-                for (final FunctionInfo function : tagLibs.getFunctions()) {
-                    System.out.println("{");
-                    System.out.println("final FunctionInfo function = new FunctionInfo(\"" + function.getName() + "\", \""
-                        + function.getFunctionClass() + "\", \"" + function.getFunctionSignature() + "\");");
-                    System.out.println("taglibXml.getFunctions().add(function);");
-                    System.out.println("}");
-                }
-            }
-
-            System.out.println("TLD_RESOURCE_TAG_LIB.put(path, taglibXml);");
-            System.out.println("}");
-        }
-        System.out.println();
-        System.out.println();
-        System.out.println();
-        System.out.println();
-    }
-
-    private String t(String info) {
-        return info == null ? info : info.replace("\n", " ").replace("\"", "\\\"");
-    }
-
-    @Override
-    public void scan() throws IOException, SAXException {
-        super.scan();
-        sysout();
-    }
-    */
+    // the pre-populated data are generated by TldSnapshotGenerator
 }
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.catalina;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.openejb.classloader.WebAppEnricher;
+import org.apache.openejb.loader.JarLocation;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertSame;
+
+public class TomEEWebappClassLoaderTest {
+    private URLClassLoader parent;
+    private TomEEWebappClassLoader loader;
+
+    @Before
+    public void start() throws Exception {
+        SystemInstance.reset();
+        SystemInstance.get().setComponent(WebAppEnricher.class, new WebAppEnricher() {
+            @Override
+            public URL[] enrichment(final ClassLoader webappClassLaoder) {
+                return new URL[0];
+            }
+        });
+
+        // not the container loader so the loader behaves as an ear webapp one (explicit delegation)
+        parent = new URLClassLoader(new URL[0], TomEEWebappClassLoaderTest.class.getClassLoader());
+        loader = new TomEEWebappClassLoader(parent);
+        loader.init();
+        final StandardRoot resources = new StandardRoot();
+        loader.setResources(resources);
+        resources.setContext(new StandardContext() {
+            @Override
+            public String getDocBase() {
+                final File file = new File("target/TomEEWebappClassLoaderTest");
+                file.mkdirs();
+                return file.getAbsolutePath();
+            }
+
+            @Override
+            public String getMBeanKeyProperties() {
+                return "foo";
+            }
+        });
+        resources.start();
+        loader.start();
+        loader.addURL(JarLocation.jarLocation(Test.class).toURI().toURL());
+    }
+
+    @After
+    public void stop() throws Exception {
+        try {
+            loader.internalStop();
+        } catch (final LifecycleException e) {
+            // no-op
+        }
+        parent.close();
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void parallelLoading() throws Exception {
+        final String[] names = {
+            "org.junit.Assert", "org.junit.runner.JUnitCore", "org.junit.rules.TemporaryFolder",
+            "org.junit.runners.Parameterized", "org.junit.experimental.categories.Categories"
+        };
+
+        final int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            final Collection<Future<Class<?>[]>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(es.submit(new Callable<Class<?>[]>() {
+                    @Override
+                    public Class<?>[] call() throws Exception {
+                        start.await();
+                        final Class<?>[] classes = new Class<?>[names.length];
+                        for (int i = 0; i < names.length; i++) {
+                            classes[i] = loader.loadClass(names[i]);
+                        }
+                        return classes;
+                    }
+                }));
+            }
+            start.countDown();
+
+            final Class<?>[] expected = new Class<?>[names.length];
+            for (int i = 0; i < names.length; i++) {
+                expected[i] = loader.loadClass(names[i]);
+            }
+            for (final Future<Class<?>[]> result : results) {
+                final Class<?>[] classes = result.get(1, TimeUnit.MINUTES);
+                for (int i = 0; i < names.length; i++) {
+                    assertSame(expected[i], classes[i]);
+                }
+            }
+            for (int i = 0; i < names.length; i++) { // now served by the loaded class caches
+                assertSame(expected[i], loader.loadClass(names[i], true));
+            }
+        } finally {
+            es.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.catalina.warmup;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class WarmupRecorderValveTest {
+    @After
+    public void reset() {
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void stripPathParameters() {
+        assertEquals("/app/page", WarmupRecorderValve.stripPathParameters("/app/page"));
+        assertEquals("/app/page", WarmupRecorderValve.stripPathParameters("/app/page;jsessionid=ABC123"));
+        assertEquals("/app/a/b", WarmupRecorderValve.stripPathParameters("/app;v=1/a;x=y;z/b"));
+        assertEquals("/app/", WarmupRecorderValve.stripPathParameters("/app/;jsessionid=ABC123"));
+    }
+
+    @Test
+    public void recordsWithoutSessionId() throws Exception {
+        final WarmupRecorderValve valve = new WarmupRecorderValve();
+        valve.setNext(new ValveBase() {
+            @Override
+            public void invoke(final Request request, final Response response) {
+                // no-op
+            }
+        });
+
+        for (final String uri : new String[]{"/app/page;jsessionid=ABC", "/app/page;jsessionid=DEF"}) {
+            final org.apache.coyote.Request coyoteRequest = new org.apache.coyote.Request();
+            coyoteRequest.method().setString("GET");
+            coyoteRequest.requestURI().setString(uri);
+            final Request request = new Request();
+            request.setCoyoteRequest(coyoteRequest);
+            final StandardHost host = new StandardHost();
+            host.setName("localhost");
+            request.getMappingData().host = host;
+
+            final Response response = new Response();
+            response.setCoyoteResponse(new org.apache.coyote.Response());
+
+            valve.invoke(request, response);
+        }
+
+        final List<WarmupRequests.Request> recorded = valve.getRequests().toReplay("localhost");
+        assertEquals(1, recorded.size());
+        assertEquals("/app/page", recorded.get(0).getUri());
+    }
+}
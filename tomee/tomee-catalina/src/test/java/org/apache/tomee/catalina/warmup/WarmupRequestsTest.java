@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.catalina.warmup;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WarmupRequestsTest {
+    private File file;
+
+    @Before
+    public void init() {
+        file = new File(Files.tmpdir(), "WarmupRequestsTest-" + System.nanoTime() + "/warmup.requests");
+        SystemInstance.get().setProperty(WarmupRequests.FILE_PROPERTY, file.getAbsolutePath());
+        SystemInstance.get().setProperty(WarmupRequests.MAX_PROPERTY, "2");
+    }
+
+    @After
+    public void reset() {
+        SystemInstance.reset();
+        Files.delete(file.getParentFile());
+    }
+
+    @Test
+    public void trimKeepsMostHit() {
+        final WarmupRequests requests = new WarmupRequests();
+        hit(requests, "/a", 4);
+        hit(requests, "/b", 2);
+        hit(requests, "/c", 1);
+        hit(requests, "/d", 1);
+        hit(requests, "/e", 3); // 4 distinct requests recorded: a and b are kept with half of their hits
+
+        assertEquals(asList("/e", "/a"), uris(requests.toReplay("localhost")));
+    }
+
+    @Test
+    public void storedCountsDecay() throws Exception {
+        final WarmupRequests first = new WarmupRequests();
+        hit(first, "/old", 8);
+        first.store();
+        assertTrue(IO.slurp(file).contains("8 localhost /old"));
+
+        final WarmupRequests second = new WarmupRequests();
+        second.load();
+        hit(second, "/new", 5);
+        assertEquals(asList("/new", "/old"), uris(second.toReplay("localhost")));
+        second.store();
+        assertTrue(IO.slurp(file).contains("4 localhost /old"));
+    }
+
+    private static void hit(final WarmupRequests requests, final String uri, final int times) {
+        for (int i = 0; i < times; i++) {
+            requests.hit("localhost", uri);
+        }
+    }
+
+    private static List<String> asList(final String... uris) {
+        final List<String> list = new ArrayList<>();
+        for (final String uri : uris) {
+            list.add(uri);
+        }
+        return list;
+    }
+
+    private static List<String> uris(final List<WarmupRequests.Request> requests) {
+        final List<String> uris = new ArrayList<>();
+        for (final WarmupRequests.Request request : requests) {
+            uris.add(request.getUri());
+        }
+        return uris;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *     contributor license agreements.  See the NOTICE file distributed with
+ *     this work for additional information regarding copyright ownership.
+ *     The ASF licenses this file to You under the Apache License, Version 2.0
+ *     (the "License"); you may not use this file except in compliance with
+ *     the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package org.apache.tomee.jasper;
+
+import org.apache.catalina.util.ServerInfo;
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.tomcat.util.descriptor.tld.TagFileXml;
+import org.apache.tomcat.util.descriptor.tld.TagXml;
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+import org.apache.tomcat.util.descriptor.tld.TldParser;
+import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import javax.servlet.jsp.tagext.FunctionInfo;
+import javax.servlet.jsp.tagext.TagAttributeInfo;
+import javax.servlet.jsp.tagext.TagVariableInfo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TldCacheTest {
+    private static final String TLD = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<taglib xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"2.1\">\n" +
+        "  <description>Test tags</description>\n" +
+        "  <tlib-version>1.2</tlib-version>\n" +
+        "  <short-name>t</short-name>\n" +
+        "  <uri>http://tomee.apache.org/test</uri>\n" +
+        "  <validator>\n" +
+        "    <validator-class>org.acme.Validator</validator-class>\n" +
+        "    <init-param><param-name>strict</param-name><param-value>true</param-value></init-param>\n" +
+        "  </validator>\n" +
+        "  <listener><listener-class>org.acme.Listener</listener-class></listener>\n" +
+        "  <tag>\n" +
+        "    <description>Loops</description>\n" +
+        "    <display-name>Loop</display-name>\n" +
+        "    <name>loop</name>\n" +
+        "    <tag-class>org.acme.LoopTag</tag-class>\n" +
+        "    <tei-class>org.acme.LoopTei</tei-class>\n" +
+        "    <body-content>scriptless</body-content>\n" +
+        "    <variable><name-given>item</name-given><variable-class>java.lang.Object</variable-class>" +
+        "<declare>true</declare><scope>NESTED</scope></variable>\n" +
+        "    <attribute><name>items</name><required>true</required><rtexprvalue>true</rtexprvalue></attribute>\n" +
+        "    <attribute><name>var</name><required>false</required></attribute>\n" +
+        "    <attribute><name>action</name><deferred-method><method-signature>void run()</method-signature></deferred-method></attribute>\n" +
+        "    <attribute><name>value</name><deferred-value><type>java.lang.String</type></deferred-value></attribute>\n" +
+        "    <dynamic-attributes>true</dynamic-attributes>\n" +
+        "  </tag>\n" +
+        "  <tag-file><name>box</name><path>/META-INF/tags/box.tag</path></tag-file>\n" +
+        "  <function><name>upper</name><function-class>org.acme.Functions</function-class>" +
+        "<function-signature>java.lang.String upper(java.lang.String)</function-signature></function>\n" +
+        "</taglib>\n";
+
+    private File work;
+    private String key;
+    private TaglibXml parsed;
+
+    @Before
+    public void parse() throws Exception {
+        work = Files.mkdirs(new File("target/TldCacheTest-" + System.nanoTime()));
+        final File tld = new File(work, "test.tld");
+        IO.writeString(tld, TLD);
+
+        final TldResourcePath path = new TldResourcePath(tld.toURI().toURL(), null);
+        parsed = new TldParser(true, false, true).parse(path);
+        key = new TldCache(new File(work, "checksums")).key(path);
+        assertNotNull(key);
+    }
+
+    @After
+    public void clean() {
+        SystemInstance.reset();
+        Files.delete(work);
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            TldCache.write(out, parsed);
+        }
+        final TaglibXml read = TldCache.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertSameTaglib(parsed, read);
+
+        // nothing is lost nor added by a second pass
+        final ByteArrayOutputStream again = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(again)) {
+            TldCache.write(out, read);
+        }
+        assertArrayEquals(bytes.toByteArray(), again.toByteArray());
+    }
+
+    @Test
+    public void storedAndReadFromDisk() throws Exception {
+        final File directory = new File(work, "cache");
+        Files.mkdirs(directory);
+        new TldCache(directory).store(key, parsed);
+
+        // a new cache has nothing in memory
+        final TaglibXml read = new TldCache(directory).find(key);
+        assertNotNull(read);
+        assertSameTaglib(parsed, read);
+    }
+
+    @Test
+    public void checksumsPersisted() throws Exception {
+        final File directory = Files.mkdirs(new File(work, "cache"));
+        final File tld = new File(work, "test.tld");
+        final TldResourcePath path = new TldResourcePath(tld.toURI().toURL(), null);
+        assertEquals(key, new TldCache(directory).key(path));
+        final long lastModified = tld.lastModified();
+
+        // same size and date: the persisted checksum is trusted, the file is not read again
+        IO.writeString(tld, TLD.replace("Loops", "Lapse"));
+        assertTrue(tld.setLastModified(lastModified));
+        assertEquals(key, new TldCache(directory).key(path));
+
+        // another date: hashed again and the previous line is dropped
+        assertTrue(tld.setLastModified(lastModified + 2000));
+        final String changed = new TldCache(directory).key(path);
+        assertNotEquals(key, changed);
+        assertEquals(changed, new TldCache(directory).key(path));
+        assertEquals(1, IO.slurp(new File(directory, "checksums.txt")).split("\n").length);
+    }
+
+    @Test
+    public void invalidCacheIgnored() throws Exception {
+        final File directory = new File(work, "cache");
+        Files.mkdirs(directory);
+        new TldCache(directory).store(key, parsed);
+        final File stored = directory.listFiles()[0];
+
+        // written by another Tomcat version
+        try (final DataOutputStream out = new DataOutputStream(new FileOutputStream(stored))) {
+            out.writeInt(0x544c4443);
+            out.writeInt(1);
+            out.writeUTF(ServerInfo.getServerNumber() + "-other");
+            out.writeUTF(key);
+            TldCache.write(out, parsed);
+        }
+        assertNull(new TldCache(directory).find(key));
+
+        // truncated
+        new TldCache(directory).store(key, parsed);
+        try (final RandomAccessFile file = new RandomAccessFile(stored, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        assertNull(new TldCache(directory).find(key));
+
+        // another key
+        new TldCache(directory).store(key, parsed);
+        assertNull(new TldCache(directory).find(key + "!META-INF/other.tld"));
+    }
+
+    private static void assertSameTaglib(final TaglibXml expected, final TaglibXml actual) {
+        assertEquals(expected.getTlibVersion(), actual.getTlibVersion());
+        assertEquals(expected.getJspVersion(), actual.getJspVersion());
+        assertEquals(expected.getShortName(), actual.getShortName());
+        assertEquals(expected.getUri(), actual.getUri());
+        assertEquals(expected.getInfo(), actual.getInfo());
+        assertEquals(expected.getValidator().getValidatorClass(), actual.getValidator().getValidatorClass());
+        assertEquals(expected.getValidator().getInitParams(), actual.getValidator().getInitParams());
+        assertEquals(expected.getListeners(), actual.getListeners());
+
+        assertEquals(1, actual.getTags().size());
+        final TagXml expectedTag = expected.getTags().get(0);
+        final TagXml tag = actual.getTags().get(0);
+        assertEquals(expectedTag.getName(), tag.getName());
+        assertEquals(expectedTag.getTagClass(), tag.getTagClass());
+        assertEquals(expectedTag.getTeiClass(), tag.getTeiClass());
+        assertEquals(expectedTag.getBodyContent(), tag.getBodyContent());
+        assertEquals(expectedTag.getDisplayName(), tag.getDisplayName());
+        assertEquals(expectedTag.getSmallIcon(), tag.getSmallIcon());
+        assertEquals(expectedTag.getLargeIcon(), tag.getLargeIcon());
+        assertEquals(expectedTag.getInfo(), tag.getInfo());
+        assertEquals(expectedTag.hasDynamicAttributes(), tag.hasDynamicAttributes());
+
+        assertEquals(4, tag.getAttributes().size());
+        for (int i = 0; i < tag.getAttributes().size(); i++) {
+            final TagAttributeInfo expectedAttribute = expectedTag.getAttributes().get(i);
+            final TagAttributeInfo attribute = tag.getAttributes().get(i);
+            assertEquals(expectedAttribute.getName(), attribute.getName());
+            assertEquals(expectedAttribute.isRequired(), attribute.isRequired());
+            assertEquals(expectedAttribute.getTypeName(), attribute.getTypeName());
+            assertEquals(expectedAttribute.canBeRequestTime(), attribute.canBeRequestTime());
+            assertEquals(expectedAttribute.isFragment(), attribute.isFragment());
+            assertEquals(expectedAttribute.getDescription(), attribute.getDescription());
+            assertEquals(expectedAttribute.isDeferredValue(), attribute.isDeferredValue());
+            assertEquals(expectedAttribute.isDeferredMethod(), attribute.isDeferredMethod());
+            assertEquals(expectedAttribute.getExpectedTypeName(), attribute.getExpectedTypeName());
+            assertEquals(expectedAttribute.getMethodSignature(), attribute.getMethodSignature());
+        }
+
+        assertEquals(1, tag.getVariables().size());
+        final TagVariableInfo expectedVariable = expectedTag.getVariables().get(0);
+        final TagVariableInfo variable = tag.getVariables().get(0);
+        assertEquals(expectedVariable.getNameGiven(), variable.getNameGiven());
+        assertEquals(expectedVariable.getNameFromAttribute(), variable.getNameFromAttribute());
+        assertEquals(expectedVariable.getClassName(), variable.getClassName());
+        assertEquals(expectedVariable.getDeclare(), variable.getDeclare());
+        assertEquals(expectedVariable.getScope(), variable.getScope());
+
+        assertEquals(1, actual.getTagFiles().size());
+        final TagFileXml expectedFile = expected.getTagFiles().get(0);
+        final TagFileXml file = actual.getTagFiles().get(0);
+        assertEquals(expectedFile.getName(), file.getName());
+        assertEquals(expectedFile.getPath(), file.getPath());
+        assertEquals(expectedFile.getDisplayName(), file.getDisplayName());
+        assertEquals(expectedFile.getInfo(), file.getInfo());
+
+        assertEquals(1, actual.getFunctions().size());
+        final FunctionInfo expectedFunction = expected.getFunctions().get(0);
+        final FunctionInfo function = actual.getFunctions().get(0);
+        assertEquals(expectedFunction.getName(), function.getName());
+        assertEquals(expectedFunction.getFunctionClass(), function.getFunctionClass());
+        assertEquals(expectedFunction.getFunctionSignature(), function.getFunctionSignature());
+    }
+}
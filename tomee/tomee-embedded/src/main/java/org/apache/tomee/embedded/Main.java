@@ -76,6 +76,7 @@ public class Main {
     public static final String INTERACTIVE = "interactive";
     public static final String CONFIGURATION = "configuration-location";
     public static final String CLASSES_FILTER = "classes-filter";
+    public static final String CDS_TRAINING = "cds-training";
     public static final String HELP = "help";
 
     public static void main(final String[] args) {
@@ -184,6 +185,11 @@ public class Main {
                     }
                 }
             });
+            if (line.hasOption(CDS_TRAINING)) {
+                // the JVM dumps the loaded classes when exiting (-XX:ArchiveClassesAtExit), the shutdown hook stops the container
+                System.out.println("Training run done, exiting");
+                System.exit(0);
+            }
             if (options.hasOption(INTERACTIVE)) {
                 String l;
                 final Scanner scanner = new Scanner(System.in);
@@ -262,6 +268,7 @@ public class Main {
         options.addOption(null, CONFIGURATION, true, "a properties file containing the configuration to load");
         options.addOption(null, SINGLE_CLASSLOADER, false, "if the application should use the same classloader as the boot one");
         options.addOption(null, CLASSES_FILTER, true, "A custom implementation of a xbean filter to exclude classes to not scan");
+        options.addOption(null, CDS_TRAINING, false, "exit once applications are deployed, used with -XX:ArchiveClassesAtExit=<file> to create a class data sharing archive");
         options.addOption("h", HELP, false, "show help");
         return options;
     }
@@ -19,8 +19,10 @@
 
 package org.apache.tomee.loader;
 
+import org.apache.openejb.config.ArchiveIndex;
 import org.apache.openejb.config.NewLoaderLogic;
 import org.apache.openejb.util.URLs;
+import org.apache.tomcat.Jar;
 import org.apache.tomcat.JarScanFilter;
 import org.apache.tomcat.JarScanType;
 import org.apache.tomcat.JarScannerCallback;
@@ -65,7 +67,8 @@ public class TomEEJarScanner extends StandardJarScanner {
     }
 
     @Override
-    public void scan(final JarScanType scanType, final ServletContext context, final JarScannerCallback callback) {
+    public void scan(final JarScanType scanType, final ServletContext context, final JarScannerCallback jarScannerCallback) {
+        final JarScannerCallback callback = scanType == JarScanType.TLD ? new IndexedTldCallback(jarScannerCallback) : jarScannerCallback;
         super.scan(scanType, context, callback);
         if (!embeddedSurefireScanning(scanType, context, callback) && isScanClassPath() && !URLClassLoader.class.isInstance(getSystemClassLoader())
                 && !Boolean.getBoolean("tomee.classpath.scanning.disabled")) {
@@ -121,6 +124,47 @@ public class TomEEJarScanner extends StandardJarScanner {
         }
     }
 
+    /**
+     * Jasper walks every entry of every jar looking for META-INF/**.tld,
+     * when the deployment archive index already knows the jar has none the walk is skipped.
+     * Jars outside of a deployment scope (or not indexed) are handed to Jasper as before.
+     */
+    private static final class IndexedTldCallback implements JarScannerCallback {
+        private final JarScannerCallback delegate;
+
+        private IndexedTldCallback(final JarScannerCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void scan(final Jar jar, final String webappPath, final boolean isWebapp) throws IOException {
+            final ArchiveIndex.Entries entries = ArchiveIndex.get(jar.getJarFileURL());
+            if (entries != null && !hasTld(entries)) {
+                return;
+            }
+            delegate.scan(jar, webappPath, isWebapp);
+        }
+
+        @Override
+        public void scan(final File file, final String webappPath, final boolean isWebapp) throws IOException {
+            delegate.scan(file, webappPath, isWebapp);
+        }
+
+        @Override
+        public void scanWebInfClasses() throws IOException {
+            delegate.scanWebInfClasses();
+        }
+
+        private static boolean hasTld(final ArchiveIndex.Entries entries) {
+            for (final String name : entries.list("META-INF/", false)) {
+                if (name.endsWith(".tld")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     public /*context.xml*/ static class TomEEFilter implements JarScanFilter {
         private static final Filter INCLUDE = Filters.tokens("javax.faces-2.", "spring-security-taglibs", "spring-webmvc");
         private final JarScanFilter delegate;